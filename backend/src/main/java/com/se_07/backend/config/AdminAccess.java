@@ -0,0 +1,28 @@
+package com.se_07.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 运维接口（/api/admin/**）的访问控制
+ * 用户表没有角色字段，管理员由配置 admin.user-ids 指定（逗号分隔的用户ID）；
+ * 未配置时没有任何用户可以访问运维接口
+ */
+@Component
+public class AdminAccess {
+
+    @Value("${admin.user-ids:}")
+    private String adminUserIds = "";
+
+    public boolean isAdmin(Long userId) {
+        if (userId == null || adminUserIds == null) {
+            return false;
+        }
+        for (String id : adminUserIds.split(",")) {
+            if (id.trim().equals(userId.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
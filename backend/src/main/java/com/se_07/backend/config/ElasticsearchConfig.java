@@ -19,9 +19,20 @@ public class ElasticsearchConfig {
     @Value("${spring.elasticsearch.port:9200}")
     private int esPort;
 
+    // 连接池大小，所有检索与索引请求共用同一个客户端
+    @Value("${spring.elasticsearch.max-connections:30}")
+    private int maxConnections;
+
+    @Value("${spring.elasticsearch.max-connections-per-route:30}")
+    private int maxConnectionsPerRoute;
+
     @Bean
     public ElasticsearchClient elasticsearchClient() {
-        RestClient restClient = RestClient.builder(new HttpHost(esHost, esPort, "http")).build();
+        RestClient restClient = RestClient.builder(new HttpHost(esHost, esPort, "http"))
+                .setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder
+                        .setMaxConnTotal(maxConnections)
+                        .setMaxConnPerRoute(maxConnectionsPerRoute))
+                .build();
         ElasticsearchTransport transport = new RestClientTransport(restClient, new JacksonJsonpMapper());
         return new ElasticsearchClient(transport);
     }
@@ -0,0 +1,136 @@
+package com.se_07.backend.config;
+
+import com.se_07.backend.service.impl.GroupMembershipIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * STOMP 入站鉴权
+ * 握手时从 HTTP 会话取得登录用户（见 WebSocketConfig），本拦截器据此检查：
+ *   - SUBSCRIBE /topic/group.{groupId}、/topic/group.typing.{groupId}、/topic/group.presence.{groupId}：
+ *     必须是群成员（内存成员索引，O(1)）
+ *   - SUBSCRIBE /topic/chat.{id}、/topic/friend.{id}、/topic/group.member.{id}：只能订阅自己的
+ *   - SUBSCRIBE /user/**、SEND：必须已登录
+ *   - 其他订阅（未登记的 /topic 前缀、直接订阅 /queue 等）一律拒绝；
+ *     目的地含通配符（* ? {）时拒绝，代理按 AntPathMatcher 匹配，/topic/** 这样的订阅会收到所有群的消息
+ * 未通过的帧直接丢弃，不影响同一连接上的其他订阅
+ */
+@Component
+public class StompAuthorizationInterceptor implements ChannelInterceptor {
+    private static final Logger logger = LoggerFactory.getLogger(StompAuthorizationInterceptor.class);
+
+    private static final String GROUP_TOPIC = "/topic/group.";
+    private static final String[] GROUP_EVENT_TOPICS = {"/topic/group.typing.", "/topic/group.presence."};
+    private static final String[] PERSONAL_TOPICS = {"/topic/group.member.", "/topic/chat.", "/topic/friend."};
+    // 任何登录用户都可订阅的公共 topic（目前没有），新增广播 topic 时在此登记
+    private static final String[] PUBLIC_TOPICS = {};
+    private static final String USER_DESTINATION = "/user/";
+
+    @Autowired
+    private GroupMembershipIndex groupMembershipIndex;
+
+    @Value("${websocket.authorization.enabled:true}")
+    private boolean enabled = true;
+
+    private final LongAdder rejectedSubscribes = new LongAdder();
+    private final LongAdder rejectedSends = new LongAdder();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!enabled) {
+            return message;
+        }
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
+        if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            Long userId = resolveUserId(accessor);
+            String destination = accessor.getDestination();
+            if (!canSubscribe(userId, destination)) {
+                rejectedSubscribes.increment();
+                logger.warn("拒绝订阅 userId={}, destination={}", userId, destination);
+                return null;
+            }
+        } else if (StompCommand.SEND.equals(accessor.getCommand())) {
+            if (resolveUserId(accessor) == null) {
+                rejectedSends.increment();
+                logger.warn("拒绝未登录会话发送 destination={}", accessor.getDestination());
+                return null;
+            }
+        }
+        return message;
+    }
+
+    boolean canSubscribe(Long userId, String destination) {
+        if (userId == null || destination == null || hasPattern(destination)) {
+            return false;
+        }
+        for (String prefix : PERSONAL_TOPICS) {
+            if (destination.startsWith(prefix)) {
+                return userId.equals(parseId(destination.substring(prefix.length())));
+            }
+        }
+        for (String prefix : GROUP_EVENT_TOPICS) {
+            if (destination.startsWith(prefix)) {
+                return groupMembershipIndex.isMember(parseId(destination.substring(prefix.length())), userId);
+            }
+        }
+        if (destination.startsWith(GROUP_TOPIC)) {
+            return groupMembershipIndex.isMember(parseId(destination.substring(GROUP_TOPIC.length())), userId);
+        }
+        for (String topic : PUBLIC_TOPICS) {
+            if (destination.equals(topic)) {
+                return true;
+            }
+        }
+        return destination.startsWith(USER_DESTINATION);
+    }
+
+    private static boolean hasPattern(String destination) {
+        return destination.indexOf('*') >= 0 || destination.indexOf('?') >= 0 || destination.indexOf('{') >= 0;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("rejectedSubscribes", rejectedSubscribes.sum());
+        stats.put("rejectedSends", rejectedSends.sum());
+        return stats;
+    }
+
+    /**
+     * 登录用户ID：优先取握手时设置的 Principal，其次取复制到 WebSocket 会话的 HTTP 会话属性
+     */
+    static Long resolveUserId(StompHeaderAccessor accessor) {
+        Principal user = accessor.getUser();
+        if (user != null) {
+            return parseId(user.getName());
+        }
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        Object userId = attributes == null ? null : attributes.get("userId");
+        return userId instanceof Long ? (Long) userId : null;
+    }
+
+    private static Long parseId(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -1,24 +1,214 @@
 package com.se_07.backend.config;
 
+import com.se_07.backend.service.impl.ChatMessageIdAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+import org.springframework.web.socket.server.support.HttpSessionHandshakeInterceptor;
 
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * STOMP 消息代理配置
+ * 代理模式由 websocket.broker.mode 决定：
+ *   - simple：进程内简单代理（默认），单实例部署
+ *   - relay：把 /topic、/queue 订阅和广播中继到外部 STOMP 代理（RabbitMQ、ActiveMQ 等），多个后端实例共享聊天推送。
+ *     多个实例同时写消息表，要求聊天消息ID从数据库序列分配（chat.message-id.source=DATABASE），否则启动失败
+ * 入站/出站通道线程池、发送缓冲、发送超时和心跳均可配置，心跳用于及时清理已断开的 SockJS 会话
+ *
+ * 握手时把 HTTP 会话中的登录用户ID设为连接的 Principal，私聊通过 /user/queue/** 按用户投递，
+ * 订阅与发送由 {@link StompAuthorizationInterceptor} 鉴权
+ */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketConfig.class);
+
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode = "simple";
+
+    // 服务端发送心跳间隔 / 期望客户端心跳间隔（毫秒），0 表示关闭
+    @Value("${websocket.heartbeat.server-ms:10000}")
+    private long serverHeartbeatMs = 10000;
+
+    @Value("${websocket.heartbeat.client-ms:10000}")
+    private long clientHeartbeatMs = 10000;
+
+    @Value("${websocket.sockjs.heartbeat-ms:25000}")
+    private long sockJsHeartbeatMs = 25000;
+
+    @Value("${websocket.sockjs.disconnect-delay-ms:5000}")
+    private long sockJsDisconnectDelayMs = 5000;
+
+    @Value("${websocket.inbound.core-pool-size:8}")
+    private int inboundCorePoolSize = 8;
+
+    @Value("${websocket.inbound.max-pool-size:32}")
+    private int inboundMaxPoolSize = 32;
+
+    @Value("${websocket.inbound.queue-capacity:1000}")
+    private int inboundQueueCapacity = 1000;
+
+    @Value("${websocket.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize = 8;
+
+    @Value("${websocket.outbound.max-pool-size:32}")
+    private int outboundMaxPoolSize = 32;
+
+    @Value("${websocket.outbound.queue-capacity:1000}")
+    private int outboundQueueCapacity = 1000;
+
+    // 单条入站消息大小上限、单个会话待发送缓冲上限和单次发送超时，超过后关闭慢客户端的会话
+    @Value("${websocket.transport.message-size-limit:65536}")
+    private int messageSizeLimit = 65536;
+
+    @Value("${websocket.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit = 524288;
+
+    @Value("${websocket.transport.send-time-limit-ms:15000}")
+    private int sendTimeLimitMs = 15000;
+
+    @Value("${websocket.relay.host:localhost}")
+    private String relayHost = "localhost";
+
+    @Value("${websocket.relay.port:61613}")
+    private int relayPort = 61613;
+
+    @Value("${websocket.relay.client-login:guest}")
+    private String relayClientLogin = "guest";
+
+    @Value("${websocket.relay.client-passcode:guest}")
+    private String relayClientPasscode = "guest";
+
+    @Value("${websocket.relay.system-login:guest}")
+    private String relaySystemLogin = "guest";
+
+    @Value("${websocket.relay.system-passcode:guest}")
+    private String relaySystemPasscode = "guest";
+
+    @Value("${websocket.relay.virtual-host:}")
+    private String relayVirtualHost = "";
+
+    @Autowired
+    private StompAuthorizationInterceptor stompAuthorizationInterceptor;
+
+    @Autowired
+    private ChatMessageIdAllocator chatMessageIdAllocator;
+
+    // 框架自带的 messageBrokerTaskScheduler，简单代理发送心跳需要调度器
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    @Autowired
+    public void setMessageBrokerTaskScheduler(@Lazy TaskScheduler messageBrokerTaskScheduler) {
+        this.messageBrokerTaskScheduler = messageBrokerTaskScheduler;
+    }
+
+    boolean isRelayMode() {
+        return "relay".equalsIgnoreCase(brokerMode);
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        long[] heartbeat = {serverHeartbeatMs, clientHeartbeatMs};
+        if (isRelayMode()) {
+            checkSharedMessageIds();
+            var relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayClientLogin)
+                    .setClientPasscode(relayClientPasscode)
+                    .setSystemLogin(relaySystemLogin)
+                    .setSystemPasscode(relaySystemPasscode)
+                    .setSystemHeartbeatSendInterval(serverHeartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(clientHeartbeatMs);
+            if (!relayVirtualHost.isEmpty()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+            // 多实例之间同步在线用户，并转发本实例找不到会话的用户消息
+            relay.setUserDestinationBroadcast("/topic/unresolved-user-destination");
+            relay.setUserRegistryBroadcast("/topic/simp-user-registry");
+            logger.info("STOMP 代理使用外部中继 {}:{}", relayHost, relayPort);
+        } else {
+            config.enableSimpleBroker("/topic", "/queue")
+                    .setHeartbeatValue(heartbeat)
+                    .setTaskScheduler(messageBrokerTaskScheduler);
+        }
         config.setApplicationDestinationPrefixes("/app");
     }
 
+    /**
+     * 中继模式下多个实例共享消息表，内存分配的消息ID会在实例之间重复
+     */
+    void checkSharedMessageIds() {
+        if (chatMessageIdAllocator.getSource() != ChatMessageIdAllocator.Source.DATABASE) {
+            throw new IllegalStateException("websocket.broker.mode=relay 需要多实例共享的聊天消息ID，"
+                    + "请设置 chat.message-id.source=DATABASE");
+        }
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
-                .withSockJS();
+                .setHandshakeHandler(new SessionUserHandshakeHandler())
+                .addInterceptors(new HttpSessionHandshakeInterceptor(List.of("userId")))
+                .withSockJS()
+                .setHeartbeatTime(sockJsHeartbeatMs)
+                .setDisconnectDelay(sockJsDisconnectDelayMs);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthorizationInterceptor);
+        registration.taskExecutor()
+                .corePoolSize(inboundCorePoolSize)
+                .maxPoolSize(inboundMaxPoolSize)
+                .queueCapacity(inboundQueueCapacity);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setMessageSizeLimit(messageSizeLimit)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setSendTimeLimit(sendTimeLimitMs);
+    }
+
+    /**
+     * 以 HTTP 会话中的登录用户ID作为 WebSocket 连接的 Principal，未登录时为匿名连接
+     */
+    static class SessionUserHandshakeHandler extends DefaultHandshakeHandler {
+        @Override
+        protected Principal determineUser(ServerHttpRequest request, WebSocketHandler wsHandler,
+                                          Map<String, Object> attributes) {
+            Object userId = attributes.get("userId");
+            if (userId == null) {
+                return super.determineUser(request, wsHandler, attributes);
+            }
+            String name = userId.toString();
+            return () -> name;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -7,6 +7,7 @@ import com.se_07.backend.dto.RegisterRequest;
 import com.se_07.backend.dto.AuthResponse;
 import com.se_07.backend.dto.ChatMessageDTO;
 import com.se_07.backend.service.ChatMessageService;
+import com.se_07.backend.service.impl.PresenceRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -29,6 +30,8 @@ public class AuthController {
     private FriendService friendService;
     @Autowired
     private ChatMessageService chatMessageService;
+    @Autowired
+    private PresenceRegistry presenceRegistry;
 
     /**
      * 用户注册
@@ -114,6 +117,8 @@ public class AuthController {
         List<Long> friends = friendService.getAllFriends(userId);
         response.put("success", true);
         response.put("friends", friends);
+        // 当前在线的好友，之后的上下线通过 /user/queue/presence 推送
+        response.put("onlineFriends", presenceRegistry.onlineAmong(friends));
         return ResponseEntity.ok(response);
     }
 
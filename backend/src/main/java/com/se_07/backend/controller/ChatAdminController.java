@@ -0,0 +1,102 @@
+package com.se_07.backend.controller;
+
+import com.se_07.backend.config.AdminAccess;
+import com.se_07.backend.config.StompAuthorizationInterceptor;
+import com.se_07.backend.service.impl.ChatMessageWriteBehind;
+import com.se_07.backend.service.impl.GroupMembershipIndex;
+import com.se_07.backend.service.impl.PresenceRegistry;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 聊天运维接口，仅 admin.user-ids 中配置的管理员可访问
+ */
+@RestController
+@RequestMapping("/admin/chat")
+@CrossOrigin(originPatterns = "*", allowCredentials = "true")
+public class ChatAdminController {
+
+    @Autowired
+    private ChatMessageWriteBehind chatMessageWriteBehind;
+    @Autowired
+    private GroupMembershipIndex groupMembershipIndex;
+    @Autowired
+    private StompAuthorizationInterceptor stompAuthorizationInterceptor;
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+    @Autowired
+    private AdminAccess adminAccess;
+
+    /**
+     * 查看聊天消息写入队列状态（积压、写入延迟、失败次数）
+     * GET /api/admin/chat/write-behind
+     */
+    @GetMapping("/write-behind")
+    public ResponseEntity<Map<String, Object>> getWriteBehindStats(HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return ResponseEntity.status(401).body(createErrorResponse("用户未登录"));
+        }
+        if (!adminAccess.isAdmin(userId)) {
+            return ResponseEntity.status(403).body(createErrorResponse("无权访问"));
+        }
+
+        return ResponseEntity.ok(createSuccessResponse(chatMessageWriteBehind.getStats()));
+    }
+
+    /**
+     * 查看群成员索引命中情况和 WebSocket 鉴权拒绝次数
+     * GET /api/admin/chat/authorization
+     */
+    @GetMapping("/authorization")
+    public ResponseEntity<Map<String, Object>> getAuthorizationStats(HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return ResponseEntity.status(401).body(createErrorResponse("用户未登录"));
+        }
+        if (!adminAccess.isAdmin(userId)) {
+            return ResponseEntity.status(403).body(createErrorResponse("无权访问"));
+        }
+
+        Map<String, Object> stats = new HashMap<>(stompAuthorizationInterceptor.getStats());
+        stats.put("membershipIndex", groupMembershipIndex.getStats());
+        return ResponseEntity.ok(createSuccessResponse(stats));
+    }
+
+    /**
+     * 查看在线用户数、连接数和待广播的在线状态/正在输入事件
+     * GET /api/admin/chat/presence
+     */
+    @GetMapping("/presence")
+    public ResponseEntity<Map<String, Object>> getPresenceStats(HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return ResponseEntity.status(401).body(createErrorResponse("用户未登录"));
+        }
+        if (!adminAccess.isAdmin(userId)) {
+            return ResponseEntity.status(403).body(createErrorResponse("无权访问"));
+        }
+
+        return ResponseEntity.ok(createSuccessResponse(presenceRegistry.getStats()));
+    }
+
+    // 工具方法
+    private Map<String, Object> createSuccessResponse(Object data) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", data);
+        return response;
+    }
+
+    private Map<String, Object> createErrorResponse(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", message);
+        return response;
+    }
+}
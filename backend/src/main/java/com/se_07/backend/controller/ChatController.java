@@ -2,7 +2,9 @@ package com.se_07.backend.controller;
 
 import com.se_07.backend.dto.ChatMessageDTO;
 import com.se_07.backend.service.ChatMessageService;
+import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
 
@@ -19,13 +21,52 @@ public class ChatController {
         return chatMessageService.sendMessage(dto);
     }
 
+    /**
+     * 两名用户之间的聊天记录（游标分页，按消息ID升序）
+     * 不带游标时返回最近 limit 条；beforeId 向前翻页加载更早消息；afterId 拉取新消息
+     * 未登录返回401，当前用户不是会话的一方返回403
+     */
     @PostMapping("/history")
-    public List<ChatMessageDTO> getMessagesBetween(@RequestParam Long userId1, @RequestParam Long userId2) {
-        return chatMessageService.getMessagesBetweenUsers(userId1, userId2);
+    public ResponseEntity<List<ChatMessageDTO>> getMessagesBetween(@RequestParam Long userId1, @RequestParam Long userId2,
+                                                                   @RequestParam(required = false) Long beforeId,
+                                                                   @RequestParam(required = false) Long afterId,
+                                                                   @RequestParam(required = false) Integer limit,
+                                                                   HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (!userId.equals(userId1) && !userId.equals(userId2)) {
+            return ResponseEntity.status(403).build();
+        }
+        return ResponseEntity.ok(chatMessageService.getConversationPage(userId1, userId2, beforeId, afterId, limit));
     }
 
+    /**
+     * 当前登录用户所有收发消息（游标分页，按消息ID升序），未登录返回401
+     */
     @GetMapping("/all")
-    public List<ChatMessageDTO> getAllMessagesForUser(@RequestParam Long userId) {
-        return chatMessageService.getAllMessagesForUser(userId);
+    public ResponseEntity<List<ChatMessageDTO>> getAllMessagesForUser(@RequestParam(required = false) Long beforeId,
+                                                                      @RequestParam(required = false) Long afterId,
+                                                                      @RequestParam(required = false) Integer limit,
+                                                                      HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return ResponseEntity.status(401).build();
+        }
+        return ResponseEntity.ok(chatMessageService.getUserMessagesPage(userId, beforeId, afterId, limit));
+    }
+
+    /**
+     * 收件箱：当前登录用户最近的会话及每个会话的最后一条消息，未登录返回401
+     */
+    @GetMapping("/conversations")
+    public ResponseEntity<List<ChatMessageDTO>> getRecentConversations(@RequestParam(required = false) Integer limit,
+                                                                       HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return ResponseEntity.status(401).build();
+        }
+        return ResponseEntity.ok(chatMessageService.getRecentConversations(userId, limit));
     }
 }
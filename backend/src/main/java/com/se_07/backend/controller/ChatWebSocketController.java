@@ -1,32 +1,43 @@
 package com.se_07.backend.controller;
 
 import com.se_07.backend.dto.ChatMessageDTO;
-import com.se_07.backend.entity.ChatMessage;
 import com.se_07.backend.service.ChatMessageService;
-import com.se_07.backend.service.impl.ChatMessageServiceImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
+import java.security.Principal;
+
 @Controller
 public class ChatWebSocketController {
+    private static final Logger logger = LoggerFactory.getLogger(ChatWebSocketController.class);
+
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
     @Autowired
     private ChatMessageService chatMessageService;
 
-    // 前端发送到 /app/chat，服务端处理后推送到 /topic/chat.{toId} 和 /topic/chat.{fromId}
+    // 前端发送到 /app/chat，服务端处理后按用户推送到收发双方的 /user/queue/chat
     @MessageMapping("/chat")
-    public void processMessage(@Payload ChatMessageDTO message) {
-        // 保存到数据库
-        ChatMessage saved = chatMessageService.sendMessageDTO(message);
-        // 构造返回DTO，包含 userName
-        ChatMessageDTO dto = chatMessageService.toDTO(saved);
-        // 推送给目标用户
-        messagingTemplate.convertAndSend("/topic/chat." + dto.getToId(), dto);
-        // 推送给自己
-        messagingTemplate.convertAndSend("/topic/chat." + dto.getFromId(), dto);
+    public void processMessage(@Payload ChatMessageDTO message, Principal principal) {
+        // 发送者以握手时的登录用户为准，不信任消息体中的 fromId
+        if (principal != null) {
+            message.setFromId(Long.valueOf(principal.getName()));
+        }
+        // 分配消息ID后立即推送，数据库写入由后台批量完成（FLUSH 确认模式下写入后再推送）
+        chatMessageService.ingestMessage(message).whenComplete((dto, e) -> {
+            if (e != null) {
+                logger.error("私聊消息处理失败 fromId={}, toId={}: {}", message.getFromId(), message.getToId(), e.getMessage());
+                return;
+            }
+            // 推送给目标用户
+            messagingTemplate.convertAndSendToUser(String.valueOf(dto.getToId()), "/queue/chat", dto);
+            // 推送给自己（同一用户的其他连接）
+            messagingTemplate.convertAndSendToUser(String.valueOf(dto.getFromId()), "/queue/chat", dto);
+        });
     }
-} 
\ No newline at end of file
+}
@@ -1,9 +1,13 @@
 package com.se_07.backend.controller;
 
+import com.se_07.backend.dto.GroupChatHistoryPage;
 import com.se_07.backend.dto.GroupChatMessageDTO;
 import com.se_07.backend.entity.GroupChatInformation;
 import com.se_07.backend.service.GroupChatQueryService;
+import com.se_07.backend.service.impl.GroupMembershipIndex;
+import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
 import java.util.Map;
@@ -14,6 +18,8 @@ import java.util.Map;
 public class GroupChatQueryController {
     @Autowired
     private GroupChatQueryService groupChatQueryService;
+    @Autowired
+    private GroupMembershipIndex groupMembershipIndex;
 
     /**
      * 获取用户所在所有群聊
@@ -41,4 +47,67 @@ public class GroupChatQueryController {
     public Map<Long, List<GroupChatMessageDTO>> getGroupHistoriesByUser(@RequestParam Long userId) {
         return groupChatQueryService.getGroupHistoriesByUserId(userId);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 获取当前登录用户所有群聊的增量历史
+     * 接口映射：GET /group/updatesByUser
+     * 使用方法：
+     *   - 参数：sinceId（可选，客户端已有的最大消息ID，缺省使用已读游标）；limit（可选，每个群最多返回条数），用户为当前登录用户
+     *   - 返回：Map<群聊ID, 增量历史>，每个群只包含水位之后的最新消息、未读数和是否还有更早消息；未登录返回401
+     *   - 响应示例：{ "1": {"groupId":1, "messages":[...], "hasMore":false, "unreadCount":2, "lastReadMessageId":40} }
+     */
+    @GetMapping("/updatesByUser")
+    public ResponseEntity<Map<Long, GroupChatHistoryPage>> getGroupUpdatesByUser(@RequestParam(required = false) Long sinceId,
+                                                                                 @RequestParam(required = false) Integer limit,
+                                                                                 HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return ResponseEntity.status(401).build();
+        }
+        return ResponseEntity.ok(groupChatQueryService.getGroupUpdatesByUserId(userId, sinceId, limit));
+    }
+
+    /**
+     * 按需加载群聊的更早消息
+     * 接口映射：GET /group/messages
+     * 使用方法：
+     *   - 参数：groupId（群聊ID，Long）；beforeId（可选，返回早于该ID的消息，缺省为最新）；limit（可选）
+     *   - 返回：消息DTO列表，按消息ID升序；未登录返回401，当前用户不是群成员返回403
+     */
+    @GetMapping("/messages")
+    public ResponseEntity<List<GroupChatMessageDTO>> getGroupMessages(@RequestParam Long groupId,
+                                                                      @RequestParam(required = false) Long beforeId,
+                                                                      @RequestParam(required = false) Integer limit,
+                                                                      HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (!groupMembershipIndex.isMember(groupId, userId)) {
+            return ResponseEntity.status(403).build();
+        }
+        return ResponseEntity.ok(groupChatQueryService.getGroupMessagesPage(groupId, beforeId, limit));
+    }
+
+    /**
+     * 标记群聊已读
+     * 接口映射：POST /group/read
+     * 使用方法：
+     *   - 参数：groupId（群聊ID，Long）；messageId（已读到的消息ID，Long），用户为当前登录用户
+     *   - Content-Type: application/x-www-form-urlencoded
+     *   - 未登录返回401，当前用户不是群成员返回403
+     */
+    @PostMapping("/read")
+    public ResponseEntity<Void> markGroupRead(@RequestParam Long groupId, @RequestParam Long messageId,
+                                              HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (!groupMembershipIndex.isMember(groupId, userId)) {
+            return ResponseEntity.status(403).build();
+        }
+        groupChatQueryService.markGroupRead(groupId, userId, messageId);
+        return ResponseEntity.ok().build();
+    }
+}
@@ -2,8 +2,9 @@ package com.se_07.backend.controller;
 
 import com.se_07.backend.dto.GroupChatMessageDTO;
 import com.se_07.backend.service.GroupChatService;
-import com.se_07.backend.repository.GroupChatMessageRepository;
-import com.se_07.backend.entity.GroupChatMessage;
+import com.se_07.backend.service.impl.GroupMembershipIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -11,34 +12,47 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.CrossOrigin;
 
+import java.security.Principal;
+
 @Controller
 @CrossOrigin(originPatterns = "*", allowCredentials = "true")
 public class GroupChatWebSocketController {
+    private static final Logger logger = LoggerFactory.getLogger(GroupChatWebSocketController.class);
+
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
     @Autowired
     private GroupChatService groupChatService;
     @Autowired
-    private GroupChatMessageRepository groupChatMessageRepository;
+    private GroupMembershipIndex groupMembershipIndex;
 
     /**
      * 处理群聊消息（WebSocket）
      * 消息映射：前端发送到 /app/groupchat，服务端推送到 /topic/group.{groupId}
      * 使用方法：
      *   - 前端通过STOMP/WebSocket发送GroupChatMessageDTO对象到 /app/groupchat
-     *   - 服务端保存消息后，推送到所有群成员的 /topic/group.{groupId}
+     *   - 服务端分配消息ID后立即推送到所有群成员的 /topic/group.{groupId}，数据库写入由后台批量完成
      *   - GroupChatMessageDTO结构示例：
      *     {"groupId":1, "fromUserId":2, "content":"hello", ...}
      *   - 推送消息内容为完整的GroupChatMessageDTO，包含userName等信息
+     *   - 发送者以握手时的登录用户为准，非群成员的消息直接丢弃
      */
     @MessageMapping("/groupchat")
-    public void processGroupMessage(@Payload GroupChatMessageDTO message) {
-        // 保存到数据库
-        GroupChatMessageDTO saved = groupChatService.sendGroupMessage(message);
-        // 查出实体，补全userName
-        GroupChatMessage entity = groupChatMessageRepository.findById(saved.getMessageId()).orElse(null);
-        GroupChatMessageDTO dto = entity != null ? groupChatService.toDTO(entity) : saved;
-        // 推送给群成员
-        messagingTemplate.convertAndSend("/topic/group." + dto.getGroupId(), dto);
+    public void processGroupMessage(@Payload GroupChatMessageDTO message, Principal principal) {
+        if (principal != null) {
+            message.setUserId(Long.valueOf(principal.getName()));
+        }
+        if (!groupMembershipIndex.isMember(message.getGroupId(), message.getUserId())) {
+            logger.warn("非群成员发送群聊消息被拒绝 groupId={}, userId={}", message.getGroupId(), message.getUserId());
+            return;
+        }
+        groupChatService.ingestGroupMessage(message).whenComplete((dto, e) -> {
+            if (e != null) {
+                logger.error("群聊消息处理失败 groupId={}, userId={}: {}", message.getGroupId(), message.getUserId(), e.getMessage());
+                return;
+            }
+            // 推送给群成员
+            messagingTemplate.convertAndSend("/topic/group." + dto.getGroupId(), dto);
+        });
     }
 } 
\ No newline at end of file
@@ -2,11 +2,13 @@ package com.se_07.backend.controller;
 
 import com.se_07.backend.dto.ActivityCreateRequest;
 import com.se_07.backend.dto.AmapActivityCreateRequest;
+import com.se_07.backend.dto.DayPlanBatchRequest;
 import com.se_07.backend.dto.ItineraryActivityDTO;
 import com.se_07.backend.dto.TransportModeUpdateRequest;
 import com.se_07.backend.service.ItineraryActivityService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -49,6 +51,26 @@ public class ItineraryActivityController {
         return ResponseEntity.ok(list);
     }
 
+    /**
+     * 批量编辑指定日程的活动，返回编辑后的完整有序列表
+     * POST /api/activities/day/{dayId}/batch
+     * 活动已被其他人修改（版本号不一致）时返回 409，整批不生效
+     */
+    @PostMapping("/day/{dayId}/batch")
+    public ResponseEntity<java.util.List<ItineraryActivityDTO>> applyDayPlan(@PathVariable Long dayId,
+                                                                             @RequestBody DayPlanBatchRequest request,
+                                                                             HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return ResponseEntity.status(401).build();
+        }
+        try {
+            return ResponseEntity.ok(activityService.applyDayPlan(userId, dayId, request));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(409).build();
+        }
+    }
+
     /**
      * 更新活动的交通方式
      * PUT /api/activities/{activityId}/transport
@@ -481,44 +481,6 @@ public class ItineraryController {
         }
     }
     
-    /**
-     * 调试：检查所有社区条目的索引状态
-     * GET /api/itineraries/debug/check-index-status
-     */
-    @GetMapping("/debug/check-index-status")
-    public ResponseEntity<String> checkIndexStatus(HttpSession session) {
-        Long userId = (Long) session.getAttribute("userId");
-        if (userId == null) {
-            return ResponseEntity.status(401).build();
-        }
-        
-        try {
-            itineraryService.checkAllCommunityEntriesIndexStatus();
-            return ResponseEntity.ok("检查完成，请查看日志");
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body("检查失败: " + e.getMessage());
-        }
-    }
-    
-    /**
-     * 调试：检查Elasticsearch中的文档数量
-     * GET /api/itineraries/debug/check-es-count
-     */
-    @GetMapping("/debug/check-es-count")
-    public ResponseEntity<String> checkElasticsearchCount(HttpSession session) {
-        Long userId = (Long) session.getAttribute("userId");
-        if (userId == null) {
-            return ResponseEntity.status(401).build();
-        }
-        
-        try {
-            itineraryService.checkElasticsearchDocumentCount();
-            return ResponseEntity.ok("检查完成，请查看日志");
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body("检查失败: " + e.getMessage());
-        }
-    }
-    
     /**
      * 测试端点（不需要登录）
      * GET /api/itineraries/debug/test
@@ -528,20 +490,6 @@ public class ItineraryController {
         return ResponseEntity.ok("调试端点工作正常");
     }
     
-    /**
-     * 调试：检查Elasticsearch中的文档数量（不需要登录）
-     * GET /api/itineraries/debug/check-es-count-public
-     */
-    @GetMapping("/debug/check-es-count-public")
-    public ResponseEntity<String> checkElasticsearchCountPublic() {
-        try {
-            itineraryService.checkElasticsearchDocumentCount();
-            return ResponseEntity.ok("检查完成，请查看日志");
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body("检查失败: " + e.getMessage());
-        }
-    }
-    
     @GetMapping("/tags")
     public ResponseEntity<List<Tag>> getAvailableTags(HttpSession session) {
         try {
@@ -0,0 +1,42 @@
+package com.se_07.backend.controller;
+
+import com.se_07.backend.dto.TypingEventDTO;
+import com.se_07.backend.service.impl.GroupMembershipIndex;
+import com.se_07.backend.service.impl.PresenceRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+
+@Controller
+public class PresenceWebSocketController {
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+    @Autowired
+    private GroupMembershipIndex groupMembershipIndex;
+
+    /**
+     * 正在输入
+     * 消息映射：前端发送到 /app/typing，payload 为 {"groupId":1} 或 {"toId":2}
+     *   - 群聊：合并后推送到 /topic/group.typing.{groupId}，内容 {"type":"typing","groupId":1,"userIds":[...]}
+     *   - 私聊：合并后推送到接收者的 /user/queue/typing，内容 {"type":"typing","fromIds":[...]}
+     *   - 输入中的客户端可以频繁发送，服务端每个广播周期对每个群/接收者最多推送一次
+     */
+    @MessageMapping("/typing")
+    public void typing(@Payload TypingEventDTO event, Principal principal) {
+        if (principal == null) {
+            return;
+        }
+        Long userId = Long.valueOf(principal.getName());
+        if (event.getGroupId() != null) {
+            if (groupMembershipIndex.isMember(event.getGroupId(), userId)) {
+                presenceRegistry.groupTyping(event.getGroupId(), userId);
+            }
+        } else if (event.getToId() != null && !event.getToId().equals(userId)) {
+            presenceRegistry.directTyping(event.getToId(), userId);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.se_07.backend.controller;
+
+import com.se_07.backend.config.AdminAccess;
+import com.se_07.backend.service.impl.SearchIndexOutboxRelay;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 搜索索引运维接口，仅 admin.user-ids 中配置的管理员可访问
+ */
+@RestController
+@RequestMapping("/admin/search-index")
+@CrossOrigin(originPatterns = "*", allowCredentials = "true")
+public class SearchIndexAdminController {
+
+    @Autowired
+    private SearchIndexOutboxRelay searchIndexOutbox;
+    @Autowired
+    private AdminAccess adminAccess;
+
+    /**
+     * 查看搜索索引同步延迟（发件箱积压、重试队列、批量索引管道）
+     * GET /api/admin/search-index/lag
+     */
+    @GetMapping("/lag")
+    public ResponseEntity<Map<String, Object>> getLag(HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return ResponseEntity.status(401).body(createErrorResponse("用户未登录"));
+        }
+        if (!adminAccess.isAdmin(userId)) {
+            return ResponseEntity.status(403).body(createErrorResponse("无权访问"));
+        }
+
+        try {
+            return ResponseEntity.ok(createSuccessResponse(searchIndexOutbox.getLag()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(createErrorResponse("获取索引同步状态失败：" + e.getMessage()));
+        }
+    }
+
+    // 工具方法
+    private Map<String, Object> createSuccessResponse(Object data) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", data);
+        return response;
+    }
+
+    private Map<String, Object> createErrorResponse(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", message);
+        return response;
+    }
+}
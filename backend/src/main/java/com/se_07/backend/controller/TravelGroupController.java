@@ -7,6 +7,8 @@ import com.se_07.backend.dto.TravelGroupDTO;
 import com.se_07.backend.service.TravelGroupService;
 import com.se_07.backend.service.ItineraryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -40,12 +42,31 @@ public class TravelGroupController {
         return response;
     }
     
+    /**
+     * 分页结果：data 为当前页，另附总数和页码
+     */
+    private Map<String, Object> createPageResponse(Page<TravelGroupDTO> page) {
+        Map<String, Object> response = createSuccessResponse(page.getContent());
+        response.put("total", page.getTotalElements());
+        response.put("page", page.getNumber());
+        response.put("size", page.getSize());
+        return response;
+    }
+    
     /**
      * 获取所有公开的招募中组团
+     * 传 page 时分页返回，否则返回全部
      */
     @GetMapping("/public")
-    public ResponseEntity<Map<String, Object>> getPublicGroups(HttpSession session) {
+    public ResponseEntity<Map<String, Object>> getPublicGroups(
+            @RequestParam(required = false) Integer page,
+            @RequestParam(defaultValue = "20") int size,
+            HttpSession session) {
         try {
+            if (page != null) {
+                return ResponseEntity.ok(createPageResponse(
+                        travelGroupService.searchRecruitingGroups(null, null, null, null, PageRequest.of(page, size))));
+            }
             Long userId = (Long) session.getAttribute("userId");
             List<TravelGroupDTO> groups = travelGroupService.getPublicRecruitingGroups(userId);
             return ResponseEntity.ok(createSuccessResponse(groups));
@@ -56,6 +77,7 @@ public class TravelGroupController {
     
     /**
      * 获取所有公开的招募中组团（带搜索功能）
+     * 传 page 时分页返回，否则返回全部
      */
     @GetMapping("/public/search")
     public ResponseEntity<Map<String, Object>> searchPublicGroups(
@@ -63,8 +85,14 @@ public class TravelGroupController {
             @RequestParam(required = false) String searchType,
             @RequestParam(required = false) String startDate,
             @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(defaultValue = "20") int size,
             HttpSession session) {
         try {
+            if (page != null) {
+                return ResponseEntity.ok(createPageResponse(travelGroupService.searchRecruitingGroups(
+                        searchText, searchType, startDate, endDate, PageRequest.of(page, size))));
+            }
             Long userId = (Long) session.getAttribute("userId");
             List<TravelGroupDTO> groups = travelGroupService.getPublicRecruitingGroupsWithSearch(
                     userId, searchText, searchType, startDate, endDate);
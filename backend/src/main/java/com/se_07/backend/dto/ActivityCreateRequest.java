@@ -18,8 +18,8 @@ public class ActivityCreateRequest {
     private String attractionNotes;
 
     /**
-     * 可选：指定插入链表位置，prevId == null 表示插入到链表开头
-     * 如果都为 null，则默认追加到链表末尾。
+     * 可选：插入到 prevId 指定的活动之后，或 nextId 指定的活动之前（只能传一个）
+     * 如果都为 null，则默认追加到当天末尾。
      */
     private Long prevId;
     // 后序活动ID：若要插入到某活动之前可填写该ID
@@ -1,9 +1,15 @@
 package com.se_07.backend.dto;
 
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import lombok.Data;
 import java.util.List;
 
+/**
+ * 社区条目索引文档，字段名与 index_community_entries.py 写入的文档一致（下划线命名）
+ */
 @Data
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
 public class CommunityEntryDocument {
     private Long id;
     private String shareCode;
@@ -18,5 +24,7 @@ public class CommunityEntryDocument {
     private String authorUsername;
     private Long authorId;
     private String tags;
+    // 标签名数组（keyword），用于语义搜索时在ES中按标签过滤
+    private List<String> tagNames;
     private List<Float> vector;
-} 
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package com.se_07.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 请求体：批量编辑一天的活动
+ * 操作按顺序执行，任一操作失败则整批回滚
+ */
+@Data
+public class DayPlanBatchRequest {
+    private List<Operation> operations;
+
+    @Data
+    public static class Operation {
+        private String type;           // create / update / move / delete
+        private Long activityId;       // update / move / delete 必填
+        private Long version;          // 可选：客户端读到的版本号，与当前不一致时整批失败
+
+        private Long attractionId;     // create 必填，update 可选
+        private String title;
+        private String transportMode;
+        private String startTime;      // HH:mm，空字符串表示清除
+        private String endTime;
+        private String attractionNotes;
+
+        // create / move：插入到 prevId 之后或 nextId 之前（只能传一个），都为空时放到末尾
+        private Long prevId;
+        private Long nextId;
+    }
+}
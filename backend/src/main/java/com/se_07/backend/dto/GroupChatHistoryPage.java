@@ -0,0 +1,19 @@
+package com.se_07.backend.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单个群聊的增量历史：水位之后的最新消息（按消息ID升序）及未读状态
+ */
+@Data
+public class GroupChatHistoryPage {
+    private Long groupId;
+    private List<GroupChatMessageDTO> messages = new ArrayList<>();
+    // 水位之后还有更早的消息未返回，可用第一条消息ID作为 beforeId 继续加载
+    private boolean hasMore;
+    private long unreadCount;
+    private Long lastReadMessageId;
+}
@@ -12,8 +12,9 @@ public class ItineraryActivityDTO {
     private Long itineraryDayId;  // 只包含itineraryDay的ID
     private Integer dayNumber;     // 包含所属日程的天数
     private LocalDate date;        // 包含所属日程的日期
-    private Long prevId;
-    private Long nextId;
+    private Long position;         // 日内排序键
+    private Long prevId;           // 同一天中的前一个活动，仅在按天查询列表时填充
+    private Long nextId;           // 同一天中的后一个活动，仅在按天查询列表时填充
     private String title;
     private String transportMode;
     private String transportNotes;
@@ -21,6 +22,7 @@ public class ItineraryActivityDTO {
     private LocalTime startTime;
     private LocalTime endTime;
     private String attractionNotes;
+    private Long version;          // 乐观锁版本号，批量编辑时回传
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 } 
\ No newline at end of file
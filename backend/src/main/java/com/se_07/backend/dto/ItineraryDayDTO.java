@@ -15,8 +15,6 @@ public class ItineraryDayDTO {
     private Integer dayNumber;
     private LocalDate date;
     private String title;
-    private Long firstActivityId;
-    private Long lastActivityId;
     private String notes;
     private String accommodation;
     private String weatherInfo;
@@ -0,0 +1,13 @@
+package com.se_07.backend.dto;
+
+import lombok.Data;
+
+/**
+ * 正在输入事件：前端发送到 /app/typing，groupId 和 toId 二选一
+ * 发送者由服务端按连接的登录用户填写
+ */
+@Data
+public class TypingEventDTO {
+    private Long groupId;
+    private Long toId;
+}
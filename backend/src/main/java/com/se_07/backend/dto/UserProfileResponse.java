@@ -18,6 +18,8 @@ public class UserProfileResponse {
     private String specialRequirementsDescription;
     private List<HistoryDestinationDto> historyDestinations;
     private List<WishlistDestinationDto> wishlistDestinations;
+    // 在线状态，仅群成员列表填充
+    private Boolean online;
     
     @Data
     public static class HistoryDestinationDto {
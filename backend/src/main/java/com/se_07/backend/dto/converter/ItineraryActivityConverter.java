@@ -14,8 +14,8 @@ public class ItineraryActivityConverter {
         
         ItineraryActivityDTO dto = new ItineraryActivityDTO();
         dto.setId(entity.getId());
-        dto.setPrevId(entity.getPrevId());
-        dto.setNextId(entity.getNextId());
+        dto.setPosition(entity.getPosition());
+        dto.setVersion(entity.getVersion());
         dto.setTitle(entity.getTitle());
         dto.setTransportMode(entity.getTransportMode());
         dto.setAttraction(entity.getAttraction());
@@ -42,8 +42,7 @@ public class ItineraryActivityConverter {
         
         ItineraryActivity entity = new ItineraryActivity();
         entity.setId(dto.getId());
-        entity.setPrevId(dto.getPrevId());
-        entity.setNextId(dto.getNextId());
+        entity.setPosition(dto.getPosition());
         entity.setTitle(dto.getTitle());
         entity.setTransportMode(dto.getTransportMode());
         entity.setAttraction(dto.getAttraction());
@@ -17,8 +17,6 @@ public class ItineraryDayConverter {
         dto.setDayNumber(entity.getDayNumber());
         dto.setDate(entity.getDate());
         dto.setTitle(entity.getTitle());
-        dto.setFirstActivityId(entity.getFirstActivityId());
-        dto.setLastActivityId(entity.getLastActivityId());
         dto.setNotes(entity.getNotes());
         dto.setActualCost(entity.getActualCost());
         dto.setCreatedAt(entity.getCreatedAt());
@@ -58,8 +56,6 @@ public class ItineraryDayConverter {
         entity.setDayNumber(dto.getDayNumber());
         entity.setDate(dto.getDate());
         entity.setTitle(dto.getTitle());
-        entity.setFirstActivityId(dto.getFirstActivityId());
-        entity.setLastActivityId(dto.getLastActivityId());
         entity.setNotes(dto.getNotes());
         entity.setActualCost(dto.getActualCost());
         entity.setCreatedAt(dto.getCreatedAt());
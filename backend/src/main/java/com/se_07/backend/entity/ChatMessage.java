@@ -6,7 +6,13 @@ import java.time.LocalDateTime;
 
 @Entity
 
-@Table(name = "user_chat_message")
+@Table(name = "user_chat_message", indexes = {
+        // 会话键 (较小用户ID, 较大用户ID) + 消息ID，双向会话按游标分页只走这一个索引
+        @Index(name = "idx_chat_conversation", columnList = "user_low_id, user_high_id, message_id"),
+        @Index(name = "idx_chat_conversation_high", columnList = "user_high_id, user_low_id, message_id"),
+        @Index(name = "idx_chat_from_message", columnList = "from_user_id, message_id"),
+        @Index(name = "idx_chat_to_message", columnList = "to_user_id, message_id")
+})
 @Data
 public class ChatMessage {
     @Id
@@ -25,4 +31,20 @@ public class ChatMessage {
 
     @Column(name = "content", length = 500, nullable = true)
     private String content;
-}
\ No newline at end of file
+
+    // 会话键：两名用户中较小和较大的ID，保存时根据 fromId/toId 自动计算
+    @Column(name = "user_low_id")
+    private Long userLowId;
+
+    @Column(name = "user_high_id")
+    private Long userHighId;
+
+    @PrePersist
+    @PreUpdate
+    protected void updateConversationKey() {
+        if (fromId != null && toId != null) {
+            userLowId = Math.min(fromId, toId);
+            userHighId = Math.max(fromId, toId);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.se_07.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * 聊天消息ID序列
+ * 每张消息表一行，last_id 为已经分配出去的最大消息ID。
+ * 各实例通过条件 UPDATE 推进 last_id 申请ID，共享同一数据库的多个实例不会分到重复的ID
+ */
+@Entity
+@Table(name = "chat_message_id_sequence")
+@Data
+public class ChatMessageIdSequence {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+}
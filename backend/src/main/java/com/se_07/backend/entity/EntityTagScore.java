@@ -0,0 +1,42 @@
+package com.se_07.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * 目的地 / 景点标签权重的规范化存储
+ * 由标签权重索引根据 tag_scores JSON 同步，每个实体的每个标签一行，
+ * 供按标签排名、分页的查询在数据库中完成聚合、排序和 LIMIT
+ */
+@Entity
+@Table(name = "entity_tag_scores",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"entity_type", "entity_id", "tag_id"}),
+        indexes = @Index(name = "idx_entity_tag_scores_tag", columnList = "entity_type, tag_id, score"))
+@Data
+public class EntityTagScore {
+
+    public enum EntityType {
+        DESTINATION, ATTRACTION
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity_type", length = 16, nullable = false)
+    private EntityType entityType;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @Column(name = "tag_id", nullable = false)
+    private Long tagId;
+
+    @Column(name = "score", nullable = false)
+    private Float score;
+
+    // 标签在该实体中的权重排名（从0开始），不参与排名的标签为空
+    @Column(name = "tag_rank")
+    private Integer tagRank;
+}
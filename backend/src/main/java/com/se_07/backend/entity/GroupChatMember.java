@@ -17,6 +17,10 @@ public class GroupChatMember {
     @Column(name = "user_id")
     private Long userId;
 
+    // 已读游标：该成员已读的最后一条群消息ID，为空表示从未读过
+    @Column(name = "last_read_message_id")
+    private Long lastReadMessageId;
+
     @Data
     public static class GroupChatMemberId implements Serializable {
         private Long groupId;
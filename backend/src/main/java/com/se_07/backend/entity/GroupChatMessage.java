@@ -5,7 +5,11 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "group_chat_message")
+@Table(name = "group_chat_message", indexes = {
+        // 按群读取时间线，以及按消息ID游标增量/向前分页
+        @Index(name = "idx_group_message_time", columnList = "group_id, message_time"),
+        @Index(name = "idx_group_message_id", columnList = "group_id, message_id")
+})
 @Data
 public class GroupChatMessage {
     @Id
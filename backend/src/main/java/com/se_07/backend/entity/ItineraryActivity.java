@@ -7,7 +7,8 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 
 @Entity
-@Table(name = "itinerary_activities")
+@Table(name = "itinerary_activities",
+       indexes = @Index(name = "idx_activity_day_position", columnList = "itinerary_day_id, position"))
 @Data
 public class ItineraryActivity {
     @Id
@@ -18,11 +19,9 @@ public class ItineraryActivity {
     @JoinColumn(name = "itinerary_day_id", nullable = false)
     private ItineraryDay itineraryDay;
     
-    @Column(name = "prev_id")
-    private Long prevId = null;  // 默认为 null，表示没有前序活动
-    
-    @Column(name = "next_id")
-    private Long nextId = null;  // 默认为 null，表示没有后序活动
+    // 日内排序键，按升序排列；相邻活动之间留有间隔，插入时取中间值（见 ActivityOrdering）
+    @Column(name = "position")
+    private Long position;
     
     @Column(name = "title", length = 200, nullable = false)
     private String title;
@@ -43,6 +42,11 @@ public class ItineraryActivity {
     @Column(name = "attraction_notes", columnDefinition = "TEXT")
     private String attractionNotes;
     
+    // 乐观锁版本号，批量编辑时校验；旧数据由列默认值补 0
+    @Version
+    @Column(name = "version", columnDefinition = "bigint default 0")
+    private Long version;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
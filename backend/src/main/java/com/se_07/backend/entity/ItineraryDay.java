@@ -28,12 +28,6 @@ public class ItineraryDay {
     @Column(name = "title", length = 200, nullable = false)
     private String title;
     
-    @Column(name = "first_activity_id")
-    private Long firstActivityId = null;  // 默认为 null，表示没有活动
-    
-    @Column(name = "last_activity_id")
-    private Long lastActivityId = null;   // 默认为 null，表示没有活动
-    
     @Column(name = "notes", columnDefinition = "TEXT")
     private String notes;
     
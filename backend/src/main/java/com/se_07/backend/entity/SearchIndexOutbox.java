@@ -0,0 +1,35 @@
+package com.se_07.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 搜索索引发件箱
+ * 与业务数据在同一事务中写入，记录需要与ES同步的实体，由中继按批读取后重建对应文档。
+ * 中继处理时读取实体的最新状态，因此同一实体的多条记录和重复处理都是幂等的
+ */
+@Entity
+@Table(name = "search_index_outbox")
+@Data
+public class SearchIndexOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity_type", length = 32, nullable = false)
+    private SearchIndexRetry.EntityType entityType;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
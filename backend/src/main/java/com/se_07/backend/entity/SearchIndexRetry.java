@@ -0,0 +1,58 @@
+package com.se_07.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 搜索索引重试队列
+ * 记录索引失败的实体，由增量索引器按退避时间重新索引，直到成功或超过最大重试次数
+ */
+@Entity
+@Table(name = "search_index_retries",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"entity_type", "entity_id"}),
+        indexes = @Index(name = "idx_search_index_retries_next_attempt", columnList = "next_attempt_at"))
+@Data
+public class SearchIndexRetry {
+
+    public enum EntityType {
+        COMMUNITY_ENTRY, AUTHOR
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity_type", length = 32, nullable = false)
+    private EntityType entityType;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -8,7 +8,9 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "travel_groups")
+@Table(name = "travel_groups", indexes = {
+        @Index(name = "idx_travel_group_recruiting", columnList = "status, is_public, created_at")
+})
 @Data
 public class TravelGroup {
     @Id
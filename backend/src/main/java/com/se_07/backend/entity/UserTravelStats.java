@@ -0,0 +1,64 @@
+package com.se_07.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 用户旅行统计（物化）
+ * 每个用户一行，保存旅行统计页需要的汇总结果，时间轴和城市排行以 JSON 保存。
+ * 历史目的地增删或行程出行状态变化时，在同一事务中把 data_version 加一，
+ * computed_version 小于 data_version 表示统计已过期，需要重新计算
+ */
+@Entity
+@Table(name = "user_travel_stats")
+@Data
+public class UserTravelStats {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    // 只由 UPDATE 语句递增，实体保存时不写回，避免覆盖并发的递增
+    @Column(name = "data_version", nullable = false, updatable = false)
+    private Long dataVersion = 0L;
+
+    @Column(name = "computed_version", nullable = false)
+    private Long computedVersion = 0L;
+
+    @Column(name = "total_destinations")
+    private Integer totalDestinations;
+
+    @Column(name = "total_days")
+    private Integer totalDays;
+
+    @Column(name = "total_itineraries")
+    private Integer totalItineraries;
+
+    @Column(name = "easternmost", length = 200)
+    private String easternmost;
+
+    @Column(name = "southernmost", length = 200)
+    private String southernmost;
+
+    @Column(name = "westernmost", length = 200)
+    private String westernmost;
+
+    @Column(name = "northernmost", length = 200)
+    private String northernmost;
+
+    @Column(name = "favorite_month", length = 8)
+    private String favoriteMonth;
+
+    @Column(name = "most_travel_year", length = 8)
+    private String mostTravelYear;
+
+    @Column(name = "timeline", columnDefinition = "TEXT")
+    private String timeline;
+
+    @Column(name = "top_cities", columnDefinition = "TEXT")
+    private String topCities;
+
+    @Column(name = "computed_at")
+    private LocalDateTime computedAt;
+}
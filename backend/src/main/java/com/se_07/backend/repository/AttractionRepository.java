@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -22,6 +23,16 @@ public interface AttractionRepository extends JpaRepository<Attraction, Long> {
      */
     List<Attraction> findByDestinationIdOrderByJoinCountDesc(Long destinationId);
 
+    /**
+     * 按名称/描述关键词（小写）分页查询目的地下的景点，按join_count降序排序
+     */
+    @Query("SELECT a FROM Attraction a WHERE a.destination.id = :destinationId " +
+           "AND (LOWER(a.name) LIKE CONCAT('%', :keyword, '%') OR LOWER(a.description) LIKE CONCAT('%', :keyword, '%')) " +
+           "ORDER BY a.joinCount DESC")
+    Page<Attraction> searchByDestinationIdAndKeyword(@Param("destinationId") Long destinationId,
+                                                     @Param("keyword") String keyword,
+                                                     Pageable pageable);
+
     /**
      * 根据目的地名称查询所有景点
      */
@@ -54,6 +65,18 @@ public interface AttractionRepository extends JpaRepository<Attraction, Long> {
      * 根据名称模糊搜索景点，按热度排序
      */
     Page<Attraction> findByNameContainingIgnoreCaseOrderByJoinCountDesc(String name, Pageable pageable);
+
+    /**
+     * 批量查询景点热度（仅返回 id 与 join_count，不加载实体）
+     */
+    @Query("SELECT a.id, a.joinCount FROM Attraction a WHERE a.id IN :ids")
+    List<Object[]> findJoinCountsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 读取所有景点的标签权重（仅返回 id 与 tag_scores，不加载实体）
+     */
+    @Query("SELECT a.id, a.tagScores FROM Attraction a WHERE a.tagScores IS NOT NULL")
+    List<Object[]> findAllTagScores();
     
     /**
      * 根据高德地图POI ID查找景点
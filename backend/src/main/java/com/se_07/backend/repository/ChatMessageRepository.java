@@ -1,6 +1,7 @@
 package com.se_07.backend.repository;
 
 import com.se_07.backend.entity.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -9,6 +10,38 @@ import java.util.List;
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
     List<ChatMessage> findByFromIdOrToId(Long fromId, Long toId);
     List<ChatMessage> findByFromIdAndToId(Long fromId, Long toId);
-    @Query("SELECT m FROM ChatMessage m WHERE (m.fromId = :userId1 AND m.toId = :userId2) OR (m.fromId = :userId2 AND m.toId = :userId1) ORDER BY m.messageTime ASC")
-    List<ChatMessage> findMessagesBetweenUsers(@Param("userId1") Long userId1, @Param("userId2") Long userId2);
-}
\ No newline at end of file
+    // 按会话键查询两名用户之间的全部消息（按消息ID升序）
+    @Query("SELECT m FROM ChatMessage m WHERE m.userLowId = :lowId AND m.userHighId = :highId ORDER BY m.messageId ASC")
+    List<ChatMessage> findConversation(@Param("lowId") Long lowId, @Param("highId") Long highId);
+
+    // 会话游标分页：早于 beforeId 的消息，按消息ID降序，条数由 pageable 限制
+    @Query("SELECT m FROM ChatMessage m WHERE m.userLowId = :lowId AND m.userHighId = :highId AND m.messageId < :beforeId ORDER BY m.messageId DESC")
+    List<ChatMessage> findConversationBefore(@Param("lowId") Long lowId, @Param("highId") Long highId,
+                                             @Param("beforeId") Long beforeId, Pageable pageable);
+
+    // 会话游标分页：晚于 afterId 的消息，按消息ID升序
+    @Query("SELECT m FROM ChatMessage m WHERE m.userLowId = :lowId AND m.userHighId = :highId AND m.messageId > :afterId ORDER BY m.messageId ASC")
+    List<ChatMessage> findConversationAfter(@Param("lowId") Long lowId, @Param("highId") Long highId,
+                                            @Param("afterId") Long afterId, Pageable pageable);
+
+    // 用户发出/收到的消息游标分页，分别走 (from_user_id, message_id) 与 (to_user_id, message_id) 索引
+    @Query("SELECT m FROM ChatMessage m WHERE m.fromId = :userId AND m.messageId < :beforeId ORDER BY m.messageId DESC")
+    List<ChatMessage> findSentBefore(@Param("userId") Long userId, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("SELECT m FROM ChatMessage m WHERE m.toId = :userId AND m.messageId < :beforeId ORDER BY m.messageId DESC")
+    List<ChatMessage> findReceivedBefore(@Param("userId") Long userId, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("SELECT m FROM ChatMessage m WHERE m.fromId = :userId AND m.messageId > :afterId ORDER BY m.messageId ASC")
+    List<ChatMessage> findSentAfter(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT m FROM ChatMessage m WHERE m.toId = :userId AND m.messageId > :afterId ORDER BY m.messageId ASC")
+    List<ChatMessage> findReceivedAfter(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable pageable);
+
+    // 收件箱：用户最近的 limit 个会话及每个会话的最后一条消息，按最后消息ID降序
+    @Query(value = "SELECT m.* FROM user_chat_message m JOIN (" +
+            "SELECT MAX(message_id) AS last_id FROM user_chat_message WHERE user_low_id = :userId GROUP BY user_high_id " +
+            "UNION " +
+            "SELECT MAX(message_id) AS last_id FROM user_chat_message WHERE user_high_id = :userId GROUP BY user_low_id" +
+            ") t ON m.message_id = t.last_id ORDER BY m.message_id DESC LIMIT :limit", nativeQuery = true)
+    List<ChatMessage> findLatestConversations(@Param("userId") Long userId, @Param("limit") int limit);
+}
@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 
@@ -20,18 +21,25 @@ public interface CommunityEntryRepository extends JpaRepository<CommunityEntry,
     @Transactional
     void deleteByItineraryId(Long itineraryId);
     
-    // 检索所有人可见的行程
-    @Query("SELECT ce FROM CommunityEntry ce JOIN ce.itinerary i WHERE i.permissionStatus = '所有人可见' ORDER BY ce.createdAt DESC")
+    // 检索所有人可见的行程（同时加载行程和作者）
+    @Query("SELECT ce FROM CommunityEntry ce JOIN FETCH ce.itinerary i JOIN FETCH i.user LEFT JOIN FETCH i.creator " +
+           "WHERE i.permissionStatus = '所有人可见' ORDER BY ce.createdAt DESC")
     List<CommunityEntry> findPublicEntries();
 
+    // 按ID批量检索社区条目（同时加载行程和作者）
+    @Query("SELECT ce FROM CommunityEntry ce JOIN FETCH ce.itinerary i JOIN FETCH i.user LEFT JOIN FETCH i.creator " +
+           "WHERE ce.id IN :ids")
+    List<CommunityEntry> findWithItineraryByIdIn(@Param("ids") Collection<Long> ids);
+
     // 查找热门作者
     @Query("SELECT i.user.id, i.user.username, SUM(ce.viewCount) FROM CommunityEntry ce JOIN ce.itinerary i GROUP BY i.user.id, i.user.username ORDER BY SUM(ce.viewCount) DESC")
     List<Object[]> findAuthorPopularity();
     
     // 搜索社区条目 - 按行程名称、描述、目的地、作者用户名搜索
     @Query("SELECT DISTINCT ce FROM CommunityEntry ce " +
-           "JOIN ce.itinerary i " +
-           "LEFT JOIN i.user u " +
+           "JOIN FETCH ce.itinerary i " +
+           "JOIN FETCH i.user u " +
+           "LEFT JOIN FETCH i.creator " +
            "LEFT JOIN i.itineraryDays id " +
            "LEFT JOIN id.activities act " +
            "LEFT JOIN act.attraction attr " +
@@ -45,8 +53,8 @@ public interface CommunityEntryRepository extends JpaRepository<CommunityEntry,
            "ORDER BY ce.createdAt DESC")
     List<CommunityEntry> searchPublicEntries(@Param("searchTerm") String searchTerm);
     
-    // 按目的地搜索社区条目（分页）
-    @Query(value = "SELECT DISTINCT ce.* FROM community_entries ce " +
+    // 按目的地搜索社区条目ID（分页）
+    @Query(value = "SELECT DISTINCT ce.id, ce.created_at FROM community_entries ce " +
            "JOIN itineraries i ON ce.itinerary_id = i.id " +
            "LEFT JOIN itinerary_days id ON i.id = id.itinerary_id " +
            "LEFT JOIN itinerary_activities act ON id.id = act.itinerary_day_id " +
@@ -56,9 +64,9 @@ public interface CommunityEntryRepository extends JpaRepository<CommunityEntry,
            "AND LOWER(d.name) LIKE LOWER(CONCAT('%', :destination, '%')) " +
            "ORDER BY ce.created_at DESC " +
            "LIMIT :size OFFSET :offset", nativeQuery = true)
-    List<CommunityEntry> findByDestination(@Param("destination") String destination, 
-                                          @Param("offset") int offset, 
-                                          @Param("size") int size);
+    List<Object[]> findIdsByDestination(@Param("destination") String destination,
+                                        @Param("offset") int offset,
+                                        @Param("size") int size);
     
     // 按目的地搜索社区条目总数
     @Query("SELECT COUNT(DISTINCT ce) FROM CommunityEntry ce " +
@@ -82,10 +90,14 @@ public interface CommunityEntryRepository extends JpaRepository<CommunityEntry,
     List<CommunityEntry> findAllPublic();
     
     // 查询所有公开社区条目，按热度降序排序（分页）
-    @Query("SELECT ce FROM CommunityEntry ce JOIN ce.itinerary i WHERE i.permissionStatus = '所有人可见' ORDER BY ce.viewCount DESC")
+    @Query(value = "SELECT ce FROM CommunityEntry ce JOIN FETCH ce.itinerary i JOIN FETCH i.user LEFT JOIN FETCH i.creator " +
+           "WHERE i.permissionStatus = '所有人可见' ORDER BY ce.viewCount DESC",
+           countQuery = "SELECT COUNT(ce) FROM CommunityEntry ce JOIN ce.itinerary i WHERE i.permissionStatus = '所有人可见'")
     org.springframework.data.domain.Page<CommunityEntry> findAllPublicByPopularity(org.springframework.data.domain.Pageable pageable);
     
     // 查询所有公开社区条目，按时间降序排序（分页）
-    @Query("SELECT ce FROM CommunityEntry ce JOIN ce.itinerary i WHERE i.permissionStatus = '所有人可见' ORDER BY ce.createdAt DESC")
+    @Query(value = "SELECT ce FROM CommunityEntry ce JOIN FETCH ce.itinerary i JOIN FETCH i.user LEFT JOIN FETCH i.creator " +
+           "WHERE i.permissionStatus = '所有人可见' ORDER BY ce.createdAt DESC",
+           countQuery = "SELECT COUNT(ce) FROM CommunityEntry ce JOIN ce.itinerary i WHERE i.permissionStatus = '所有人可见'")
     org.springframework.data.domain.Page<CommunityEntry> findAllPublicByTime(org.springframework.data.domain.Pageable pageable);
 } 
\ No newline at end of file
@@ -10,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -23,4 +24,10 @@ public interface CommunityEntryTagRepository extends JpaRepository<CommunityEntr
 
     @Query("SELECT cet.tag.tag AS tag, COUNT(cet) AS cnt FROM CommunityEntryTag cet GROUP BY cet.tag.tag ORDER BY cnt DESC")
     List<Object[]> findTagPopularity();
+
+    /**
+     * 批量查询社区条目的标签名称（社区条目ID, 标签名称）
+     */
+    @Query("SELECT cet.communityEntry.id, t.tag FROM CommunityEntryTag cet JOIN cet.tag t WHERE cet.communityEntry.id IN :entryIds")
+    List<Object[]> findTagNamesByCommunityEntryIdIn(@Param("entryIds") Collection<Long> entryIds);
 } 
\ No newline at end of file
@@ -50,4 +50,8 @@ public interface DestinationRepository extends JpaRepository<Destination, Long>
     Optional<Destination> findByName(String name);
 
     List<Destination> findByNameIn(List<String> names);
+
+    // 读取所有目的地的标签权重（仅返回 id 与 tag_scores，不加载实体）
+    @Query("SELECT d.id, d.tagScores FROM Destination d WHERE d.tagScores IS NOT NULL")
+    List<Object[]> findAllTagScores();
 } 
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.se_07.backend.repository;
+
+import com.se_07.backend.entity.EntityTagScore;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EntityTagScoreRepository extends JpaRepository<EntityTagScore, Long> {
+
+    /**
+     * 按所选标签的正权重之和降序返回一页目的地ID，可选按名称/描述关键词（小写，LIKE 通配符已转义）过滤
+     */
+    @Query(value = "SELECT s.entity_id FROM entity_tag_scores s " +
+                   "JOIN destinations d ON d.id = s.entity_id " +
+                   "WHERE s.entity_type = 'DESTINATION' AND s.tag_id IN (:tagIds) AND s.score > 0 " +
+                   "AND (:keyword IS NULL OR LOWER(d.name) LIKE CONCAT('%', :keyword, '%') " +
+                   "OR LOWER(d.description) LIKE CONCAT('%', :keyword, '%')) " +
+                   "GROUP BY s.entity_id " +
+                   "ORDER BY SUM(s.score) DESC, s.entity_id " +
+                   "LIMIT :limit OFFSET :offset",
+           nativeQuery = true)
+    List<Long> findDestinationIdsByTags(@Param("tagIds") Collection<Long> tagIds,
+                                        @Param("keyword") String keyword,
+                                        @Param("limit") int limit,
+                                        @Param("offset") long offset);
+
+    @Query(value = "SELECT COUNT(DISTINCT s.entity_id) FROM entity_tag_scores s " +
+                   "JOIN destinations d ON d.id = s.entity_id " +
+                   "WHERE s.entity_type = 'DESTINATION' AND s.tag_id IN (:tagIds) AND s.score > 0 " +
+                   "AND (:keyword IS NULL OR LOWER(d.name) LIKE CONCAT('%', :keyword, '%') " +
+                   "OR LOWER(d.description) LIKE CONCAT('%', :keyword, '%'))",
+           nativeQuery = true)
+    long countDestinationsByTags(@Param("tagIds") Collection<Long> tagIds,
+                                 @Param("keyword") String keyword);
+
+    /**
+     * 目的地下前N个标签包含全部所选标签的景点，按热度降序分页，可选按名称/描述关键词（小写，LIKE 通配符已转义）过滤
+     */
+    @Query(value = "SELECT a.id FROM attractions a " +
+                   "JOIN entity_tag_scores s ON s.entity_type = 'ATTRACTION' AND s.entity_id = a.id " +
+                   "WHERE a.destination_id = :destinationId AND s.tag_id IN (:tagIds) AND s.tag_rank < :topN " +
+                   "AND (:keyword IS NULL OR LOWER(a.name) LIKE CONCAT('%', :keyword, '%') " +
+                   "OR LOWER(a.description) LIKE CONCAT('%', :keyword, '%')) " +
+                   "GROUP BY a.id, a.join_count " +
+                   "HAVING COUNT(DISTINCT s.tag_id) = :tagCount " +
+                   "ORDER BY a.join_count DESC, a.id " +
+                   "LIMIT :limit OFFSET :offset",
+           nativeQuery = true)
+    List<Long> findAttractionIdsByTopTags(@Param("destinationId") Long destinationId,
+                                          @Param("tagIds") Collection<Long> tagIds,
+                                          @Param("tagCount") int tagCount,
+                                          @Param("topN") int topN,
+                                          @Param("keyword") String keyword,
+                                          @Param("limit") int limit,
+                                          @Param("offset") long offset);
+
+    @Query(value = "SELECT COUNT(*) FROM (SELECT a.id FROM attractions a " +
+                   "JOIN entity_tag_scores s ON s.entity_type = 'ATTRACTION' AND s.entity_id = a.id " +
+                   "WHERE a.destination_id = :destinationId AND s.tag_id IN (:tagIds) AND s.tag_rank < :topN " +
+                   "AND (:keyword IS NULL OR LOWER(a.name) LIKE CONCAT('%', :keyword, '%') " +
+                   "OR LOWER(a.description) LIKE CONCAT('%', :keyword, '%')) " +
+                   "GROUP BY a.id " +
+                   "HAVING COUNT(DISTINCT s.tag_id) = :tagCount) matched",
+           nativeQuery = true)
+    long countAttractionsByTopTags(@Param("destinationId") Long destinationId,
+                                   @Param("tagIds") Collection<Long> tagIds,
+                                   @Param("tagCount") int tagCount,
+                                   @Param("topN") int topN,
+                                   @Param("keyword") String keyword);
+}
@@ -2,10 +2,18 @@ package com.se_07.backend.repository;
 
 import com.se_07.backend.entity.Friend;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
 
 public interface FriendRepository extends JpaRepository<Friend, Long> {
     List<Friend> findAllById(Long id);
     void deleteByIdAndFriendId(Long id, Long friendId);
     boolean existsByIdAndFriendId(Long id, Long friendId);
+
+    // 批量查询多个用户的好友关系，返回 (用户ID, 好友ID)
+    @Query("SELECT f.id, f.friendId FROM Friend f WHERE f.id IN :ids")
+    List<Object[]> findPairsByIdIn(@Param("ids") Collection<Long> ids);
 } 
\ No newline at end of file
@@ -2,9 +2,12 @@ package com.se_07.backend.repository;
 
 import com.se_07.backend.entity.GroupChatMember;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface GroupChatMemberRepository extends JpaRepository<GroupChatMember, GroupChatMember.GroupChatMemberId> {
@@ -12,7 +15,23 @@ public interface GroupChatMemberRepository extends JpaRepository<GroupChatMember
     @Query("SELECT m.groupId FROM GroupChatMember m WHERE m.userId = :userId")
     List<Long> findGroupIdsByUserId(@Param("userId") Long userId);
 
+    @Query("SELECT m.userId FROM GroupChatMember m WHERE m.groupId = :groupId")
+    List<Long> findUserIdsByGroupId(@Param("groupId") Long groupId);
+
+    // 批量查询多个用户所在的群，返回 (用户ID, 群ID)
+    @Query("SELECT m.userId, m.groupId FROM GroupChatMember m WHERE m.userId IN :userIds")
+    List<Object[]> findGroupPairsByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
     List<GroupChatMember> findByGroupId(Long groupId);
 
     GroupChatMember findByGroupIdAndUserId(Long groupId, Long userId);
+
+    List<GroupChatMember> findByUserId(Long userId);
+
+    // 推进已读游标，只前进不后退
+    @Modifying
+    @Transactional
+    @Query("UPDATE GroupChatMember m SET m.lastReadMessageId = :messageId WHERE m.groupId = :groupId AND m.userId = :userId " +
+            "AND (m.lastReadMessageId IS NULL OR m.lastReadMessageId < :messageId)")
+    int advanceReadCursor(@Param("groupId") Long groupId, @Param("userId") Long userId, @Param("messageId") Long messageId);
 } 
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.se_07.backend.repository;
 
 import com.se_07.backend.entity.GroupChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -9,4 +10,18 @@ import java.util.List;
 public interface GroupChatMessageRepository extends JpaRepository<GroupChatMessage, Long> {
     @Query("SELECT m FROM GroupChatMessage m WHERE m.groupId = :groupId ORDER BY m.messageTime ASC")
     List<GroupChatMessage> findByGroupIdOrderByMessageTimeAsc(@Param("groupId") Long groupId);
+
+    // 晚于 afterId 的最新消息，按消息ID降序，条数由 pageable 限制
+    @Query("SELECT m FROM GroupChatMessage m WHERE m.groupId = :groupId AND m.messageId > :afterId ORDER BY m.messageId DESC")
+    List<GroupChatMessage> findLatestAfter(@Param("groupId") Long groupId, @Param("afterId") Long afterId, Pageable pageable);
+
+    // 早于 beforeId 的消息，按消息ID降序，用于向前翻页
+    @Query("SELECT m FROM GroupChatMessage m WHERE m.groupId = :groupId AND m.messageId < :beforeId ORDER BY m.messageId DESC")
+    List<GroupChatMessage> findBefore(@Param("groupId") Long groupId, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    // 用户所在各群的未读消息数：[群ID, 未读数]，只返回有未读的群
+    @Query("SELECT m.groupId, COUNT(m) FROM GroupChatMessage m, GroupChatMember gm " +
+            "WHERE gm.userId = :userId AND m.groupId = gm.groupId AND m.messageId > COALESCE(gm.lastReadMessageId, 0) " +
+            "GROUP BY m.groupId")
+    List<Object[]> countUnreadByUserId(@Param("userId") Long userId);
 } 
\ No newline at end of file
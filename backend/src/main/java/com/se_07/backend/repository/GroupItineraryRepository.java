@@ -2,6 +2,9 @@ package com.se_07.backend.repository;
 
 import com.se_07.backend.entity.GroupItinerary;
 import com.se_07.backend.entity.TravelGroup;
+import com.se_07.backend.entity.TravelGroupMember;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -28,4 +31,18 @@ public interface GroupItineraryRepository extends JpaRepository<GroupItinerary,
            "JOIN FETCH i.user " +
            "WHERE gi.group.id = :groupId")
     List<GroupItinerary> findByGroupIdWithItinerary(@Param("groupId") Long groupId);
-} 
\ No newline at end of file
+
+    /**
+     * 用户所在团队的行程（一页），每行为 (行程, 团队名称, 团队创建者ID, 用户在团队中的角色)
+     * 成员关系、团队行程、行程和团队一次连接，按行程创建时间倒序在数据库中排序分页
+     */
+    @Query(value = "SELECT i, g.title, g.creator.id, m.role FROM GroupItinerary gi " +
+           "JOIN gi.itinerary i JOIN FETCH i.user LEFT JOIN FETCH i.creator JOIN gi.group g, TravelGroupMember m " +
+           "WHERE m.group = g AND m.user.id = :userId AND m.joinStatus = :joinStatus " +
+           "ORDER BY i.createdAt DESC, i.id DESC",
+           countQuery = "SELECT COUNT(gi) FROM GroupItinerary gi JOIN gi.itinerary i, TravelGroupMember m " +
+           "WHERE m.group = gi.group AND m.user.id = :userId AND m.joinStatus = :joinStatus")
+    Page<Object[]> findTeamItineraryRows(@Param("userId") Long userId,
+                                         @Param("joinStatus") TravelGroupMember.JoinStatus joinStatus,
+                                         Pageable pageable);
+}
@@ -2,6 +2,8 @@ package com.se_07.backend.repository;
 
 import com.se_07.backend.entity.ItineraryActivity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,6 +15,27 @@ public interface ItineraryActivityRepository extends JpaRepository<ItineraryActi
      * 根据日程ID查找所有活动
      */
     List<ItineraryActivity> findByItineraryDayId(Long itineraryDayId);
+
+    /**
+     * 按位置顺序查找日程的所有活动（位置相同时按ID）
+     */
+    List<ItineraryActivity> findByItineraryDayIdOrderByPositionAscIdAsc(Long itineraryDayId);
+
+    /**
+     * 查找位置在给定值之前的最近一个活动
+     */
+    ItineraryActivity findFirstByItineraryDayIdAndPositionLessThanOrderByPositionDesc(Long itineraryDayId, Long position);
+
+    /**
+     * 查找位置在给定值之后的最近一个活动
+     */
+    ItineraryActivity findFirstByItineraryDayIdAndPositionGreaterThanOrderByPositionAsc(Long itineraryDayId, Long position);
+
+    /**
+     * 日程中活动的最大位置，没有活动时为 null
+     */
+    @Query("SELECT MAX(a.position) FROM ItineraryActivity a WHERE a.itineraryDay.id = :dayId")
+    Long findMaxPositionByItineraryDayId(@Param("dayId") Long itineraryDayId);
     
     /**
      * 根据日程ID删除所有活动
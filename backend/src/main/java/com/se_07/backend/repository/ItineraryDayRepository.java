@@ -1,9 +1,11 @@
 package com.se_07.backend.repository;
 
 import com.se_07.backend.entity.ItineraryDay;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,6 +16,12 @@ public interface ItineraryDayRepository extends JpaRepository<ItineraryDay, Long
      */
     List<ItineraryDay> findByItineraryIdOrderByDayNumber(Long itineraryId);
     
+    /**
+     * 批量加载多个行程的日程，连同活动、景点和目的地（实体图，一条查询）
+     */
+    @EntityGraph(attributePaths = {"activities", "activities.attraction", "activities.attraction.destination"})
+    List<ItineraryDay> findWithActivitiesByItineraryIdIn(Collection<Long> itineraryIds);
+    
     /**
      * 根据行程ID删除所有日程
      */
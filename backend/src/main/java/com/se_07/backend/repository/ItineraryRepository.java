@@ -6,10 +6,13 @@ import com.se_07.backend.entity.Itinerary.EditStatus;
 import com.se_07.backend.entity.Itinerary.PermissionStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +25,12 @@ public interface ItineraryRepository extends JpaRepository<Itinerary, Long> {
     // 根据用户ID和出行状态获取行程
     List<Itinerary> findByUserIdAndTravelStatus(Long userId, TravelStatus travelStatus);
     
+    // 旅行统计使用的投影：行程ID、标题及日程的最早日期、最晚日期和天数
+    @Query("SELECT i.id, i.title, MIN(d.date), MAX(d.date), COUNT(d) FROM Itinerary i LEFT JOIN i.itineraryDays d " +
+           "WHERE i.user.id = :userId AND i.travelStatus = :travelStatus GROUP BY i.id, i.title")
+    List<Object[]> findDaySummariesByUserIdAndTravelStatus(@Param("userId") Long userId,
+                                                           @Param("travelStatus") TravelStatus travelStatus);
+    
     // 根据用户ID和编辑状态获取行程
     List<Itinerary> findByUserIdAndEditStatus(Long userId, EditStatus editStatus);
     
@@ -57,4 +66,20 @@ public interface ItineraryRepository extends JpaRepository<Itinerary, Long> {
      */
     @Query("SELECT i FROM Itinerary i WHERE i.user.id = ?1 AND i.groupId IS NOT NULL ORDER BY i.createdAt DESC")
     Page<Itinerary> findTeamItineraries(Long userId, Pageable pageable);
-}
\ No newline at end of file
+
+    /**
+     * 批量查询行程涉及的目的地名称（行程ID, 目的地名称），按天数和活动位置排列，
+     * 每个活动一行，同一目的地可能重复出现，由调用方按首次出现的顺序去重
+     */
+    @Query("SELECT day.itinerary.id, d.name FROM ItineraryActivity act " +
+           "JOIN act.itineraryDay day JOIN act.attraction a JOIN a.destination d " +
+           "WHERE day.itinerary.id IN :itineraryIds " +
+           "ORDER BY day.itinerary.id, day.dayNumber, act.position, act.id")
+    List<Object[]> findDestinationNamesByItineraryIdIn(@Param("itineraryIds") Collection<Long> itineraryIds);
+
+    /**
+     * 批量加载行程及其用户和日程（实体图，一条查询）
+     */
+    @EntityGraph(attributePaths = {"user", "creator", "itineraryDays"})
+    List<Itinerary> findWithDaysByIdIn(Collection<Long> ids);
+}
@@ -0,0 +1,37 @@
+package com.se_07.backend.repository;
+
+import com.se_07.backend.entity.SearchIndexOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SearchIndexOutboxRepository extends JpaRepository<SearchIndexOutbox, Long> {
+
+    /**
+     * 按写入顺序读取待同步的记录
+     */
+    List<SearchIndexOutbox> findAllByOrderByIdAsc(Pageable pageable);
+
+    /**
+     * 最早一条待同步记录的写入时间，用于计算同步延迟
+     */
+    @Query("SELECT MIN(o.createdAt) FROM SearchIndexOutbox o")
+    LocalDateTime findOldestCreatedAt();
+
+    /**
+     * 同步完成后移除记录
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SearchIndexOutbox o WHERE o.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
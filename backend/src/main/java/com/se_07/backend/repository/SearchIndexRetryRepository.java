@@ -0,0 +1,41 @@
+package com.se_07.backend.repository;
+
+import com.se_07.backend.entity.SearchIndexRetry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SearchIndexRetryRepository extends JpaRepository<SearchIndexRetry, Long> {
+
+    Optional<SearchIndexRetry> findByEntityTypeAndEntityId(SearchIndexRetry.EntityType entityType, Long entityId);
+
+    /**
+     * 查询到期且未超过最大重试次数的记录
+     */
+    @Query("SELECT r FROM SearchIndexRetry r WHERE r.nextAttemptAt <= :now AND r.attempts < :maxAttempts ORDER BY r.nextAttemptAt")
+    List<SearchIndexRetry> findDue(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts, Pageable pageable);
+
+    /**
+     * 已超过最大重试次数、不再自动重试的记录数
+     */
+    long countByAttemptsGreaterThanEqual(Integer attempts);
+
+    /**
+     * 索引成功后移除对应的重试记录
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SearchIndexRetry r WHERE r.entityType = :entityType AND r.entityId IN :entityIds")
+    int deleteByEntityTypeAndEntityIdIn(@Param("entityType") SearchIndexRetry.EntityType entityType,
+                                        @Param("entityIds") Collection<Long> entityIds);
+}
@@ -3,8 +3,11 @@ package com.se_07.backend.repository;
 import com.se_07.backend.entity.TravelGroup;
 import com.se_07.backend.entity.TravelGroupMember;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,8 +17,20 @@ public interface TravelGroupMemberRepository extends JpaRepository<TravelGroupMe
     Optional<TravelGroupMember> findByGroupIdAndUserId(Long groupId, Long userId);
     
     List<TravelGroupMember> findByGroupId(Long groupId);
+
+    /**
+     * 批量获取多个组团的成员（连同用户），用于组团列表一次性组装成员信息
+     */
+    @Query("SELECT m FROM TravelGroupMember m JOIN FETCH m.user WHERE m.group.id IN :groupIds ORDER BY m.id")
+    List<TravelGroupMember> findWithUserByGroupIdIn(@Param("groupIds") Collection<Long> groupIds);
     
     List<TravelGroupMember> findByUserId(Long userId);
+
+    /**
+     * 用户有成员记录的组团ID（不区分加入状态）
+     */
+    @Query("SELECT m.group.id FROM TravelGroupMember m WHERE m.user.id = :userId")
+    List<Long> findGroupIdsByUserId(@Param("userId") Long userId);
     
     Long countByGroupId(Long groupId);
 
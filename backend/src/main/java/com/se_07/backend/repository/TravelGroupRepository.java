@@ -1,9 +1,17 @@
 package com.se_07.backend.repository;
 
 import com.se_07.backend.entity.TravelGroup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,4 +22,77 @@ public interface TravelGroupRepository extends JpaRepository<TravelGroup, Long>
     List<TravelGroup> findByIsPublicTrueAndStatus(TravelGroup.GroupStatus status);
 
     List<TravelGroup> findByStatusOrderByCreatedAtDesc(TravelGroup.GroupStatus status);
-} 
\ No newline at end of file
+
+    /**
+     * 公开、指定状态且未满员的组团，按创建时间倒序分页
+     * 团名 / 创建者用户名 / 目的地名称为小写的 LIKE 模式，与日期范围一样为空时不过滤
+     * 状态、公开和创建时间走 idx_travel_group_recruiting 索引
+     */
+    @Query(value = "SELECT g FROM TravelGroup g JOIN FETCH g.creator c JOIN FETCH g.destination d " +
+           "WHERE g.isPublic = true AND g.status = :status AND g.currentMembers < g.maxMembers " +
+           "AND (:title IS NULL OR LOWER(g.title) LIKE :title) " +
+           "AND (:creatorName IS NULL OR LOWER(c.username) LIKE :creatorName) " +
+           "AND (:destinationName IS NULL OR LOWER(d.name) LIKE :destinationName) " +
+           "AND (:startFrom IS NULL OR g.startDate >= :startFrom) " +
+           "AND (:endTo IS NULL OR g.endDate <= :endTo) " +
+           "ORDER BY g.createdAt DESC, g.id DESC",
+           countQuery = "SELECT COUNT(g) FROM TravelGroup g JOIN g.creator c JOIN g.destination d " +
+           "WHERE g.isPublic = true AND g.status = :status AND g.currentMembers < g.maxMembers " +
+           "AND (:title IS NULL OR LOWER(g.title) LIKE :title) " +
+           "AND (:creatorName IS NULL OR LOWER(c.username) LIKE :creatorName) " +
+           "AND (:destinationName IS NULL OR LOWER(d.name) LIKE :destinationName) " +
+           "AND (:startFrom IS NULL OR g.startDate >= :startFrom) " +
+           "AND (:endTo IS NULL OR g.endDate <= :endTo)")
+    Page<TravelGroup> searchRecruiting(@Param("status") TravelGroup.GroupStatus status,
+                                       @Param("title") String title,
+                                       @Param("creatorName") String creatorName,
+                                       @Param("destinationName") String destinationName,
+                                       @Param("startFrom") LocalDate startFrom,
+                                       @Param("endTo") LocalDate endTo,
+                                       Pageable pageable);
+
+    /**
+     * 推荐索引使用的组团特征，每行为 (ID, 创建者ID, 目的地ID, 出发日期, 当前人数, 人数上限)
+     * 只包含公开、指定状态且未满员的组团
+     */
+    @Query("SELECT g.id, g.creator.id, g.destination.id, g.startDate, g.currentMembers, g.maxMembers FROM TravelGroup g " +
+           "WHERE g.isPublic = true AND g.status = :status AND g.currentMembers < g.maxMembers")
+    List<Object[]> findRecommendationFeatures(@Param("status") TravelGroup.GroupStatus status);
+
+    /**
+     * 按ID批量获取仍可推荐的组团（连同创建者和目的地）：公开、指定状态且未满员
+     * 推荐索引可能滞后于数据库，取出结果时按当前状态再过滤一次
+     */
+    @Query("SELECT g FROM TravelGroup g JOIN FETCH g.creator JOIN FETCH g.destination WHERE g.id IN :ids " +
+           "AND g.isPublic = true AND g.status = :status AND g.currentMembers < g.maxMembers")
+    List<TravelGroup> findRecommendableWithCreatorAndDestinationByIdIn(@Param("ids") Collection<Long> ids,
+                                                                       @Param("status") TravelGroup.GroupStatus status);
+
+    /**
+     * 原子占用一个名额：仅在未满员时人数加一，招募中的组团加满时同时改为已满员
+     * 返回更新行数，0 表示已满员；并发审批由行锁串行化，不会超员
+     * 状态赋值写在人数之前，MySQL 按顺序赋值时判断的仍是加一之前的人数
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE TravelGroup g SET " +
+           "g.status = CASE WHEN g.status = :recruiting AND g.currentMembers + 1 >= g.maxMembers THEN :full ELSE g.status END, " +
+           "g.currentMembers = g.currentMembers + 1, g.updatedAt = :now " +
+           "WHERE g.id = :groupId AND g.currentMembers < g.maxMembers")
+    int admitMember(@Param("groupId") Long groupId,
+                    @Param("recruiting") TravelGroup.GroupStatus recruiting,
+                    @Param("full") TravelGroup.GroupStatus full,
+                    @Param("now") LocalDateTime now);
+
+    /**
+     * 原子释放一个名额：人数减一，已满员的组团恢复为招募中；创建者占用的名额不释放
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE TravelGroup g SET " +
+           "g.status = CASE WHEN g.status = :full THEN :recruiting ELSE g.status END, " +
+           "g.currentMembers = g.currentMembers - 1, g.updatedAt = :now " +
+           "WHERE g.id = :groupId AND g.currentMembers > 1")
+    int releaseMember(@Param("groupId") Long groupId,
+                      @Param("recruiting") TravelGroup.GroupStatus recruiting,
+                      @Param("full") TravelGroup.GroupStatus full,
+                      @Param("now") LocalDateTime now);
+}
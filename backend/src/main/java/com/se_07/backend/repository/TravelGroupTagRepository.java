@@ -1,7 +1,10 @@
 package com.se_07.backend.repository;
 
+import com.se_07.backend.entity.TravelGroup;
 import com.se_07.backend.entity.TravelGroupTag;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -17,4 +20,9 @@ public interface TravelGroupTagRepository extends JpaRepository<TravelGroupTag,
     
     // 删除组团的所有标签
     void deleteByGroupId(Long groupId);
+
+    // 推荐索引使用的标签权重：(组团ID, 标签ID, 权重)，只包含公开且为指定状态的组团
+    @Query("SELECT t.group.id, t.tag.id, t.weight FROM TravelGroupTag t " +
+           "WHERE t.group.isPublic = true AND t.group.status = :status")
+    List<Object[]> findWeightsByGroupStatus(@Param("status") TravelGroup.GroupStatus status);
 } 
\ No newline at end of file
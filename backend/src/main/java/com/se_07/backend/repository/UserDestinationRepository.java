@@ -64,4 +64,13 @@ public interface UserDestinationRepository extends JpaRepository<UserDestination
     List<UserDestination> findAutoAddedByUserPreferencesIdAndType(
             @Param("userPreferencesId") Long userPreferencesId,
             @Param("type") UserDestination.Type type);
+
+    // 旅行统计使用的投影：行程ID、天数、起止日期、备注、目的地名称和经纬度，按添加时间倒序
+    @Query("SELECT ud.itineraryId, ud.days, ud.startDate, ud.endDate, ud.notes, d.name, d.latitude, d.longitude " +
+           "FROM UserDestination ud JOIN ud.destination d, UserPreferences p " +
+           "WHERE p.id = ud.userPreferencesId AND p.user.id = :userId AND ud.type = :type " +
+           "ORDER BY ud.createdAt DESC, ud.id DESC")
+    List<Object[]> findStatsRowsByUserIdAndType(
+            @Param("userId") Long userId,
+            @Param("type") UserDestination.Type type);
 } 
\ No newline at end of file
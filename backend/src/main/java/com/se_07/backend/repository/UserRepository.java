@@ -2,7 +2,10 @@ package com.se_07.backend.repository;
 
 import com.se_07.backend.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 
@@ -11,4 +14,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
     List<User> findByUsernameContaining(String username);
+
+    // 批量读取用户摘要：[用户ID, 用户名, 档案头像]
+    @Query("SELECT u.id, u.username, p.avatarUrl FROM User u LEFT JOIN UserProfile p ON p.user = u WHERE u.id IN :ids")
+    List<Object[]> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
 } 
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.se_07.backend.repository;
+
+import com.se_07.backend.entity.UserTravelStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserTravelStatsRepository extends JpaRepository<UserTravelStats, Long> {
+
+    /**
+     * 标记用户的旅行统计已过期，返回更新的行数（用户还没有统计行时为 0）
+     */
+    @Modifying
+    @Query("UPDATE UserTravelStats s SET s.dataVersion = s.dataVersion + 1 WHERE s.userId = :userId")
+    int markStale(@Param("userId") Long userId);
+}
@@ -4,12 +4,17 @@ import com.se_07.backend.dto.ChatMessageDTO;
 import com.se_07.backend.entity.ChatMessage;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface ChatMessageService {
     ChatMessageDTO sendMessage(ChatMessageDTO dto);
     List<ChatMessageDTO> getMessagesBetween(Long fromId, Long toId);
     List<ChatMessageDTO> getAllMessagesForUser(Long userId);
     List<ChatMessageDTO> getMessagesBetweenUsers(Long userId1, Long userId2);
+    List<ChatMessageDTO> getConversationPage(Long userId1, Long userId2, Long beforeId, Long afterId, Integer limit);
+    List<ChatMessageDTO> getUserMessagesPage(Long userId, Long beforeId, Long afterId, Integer limit);
+    List<ChatMessageDTO> getRecentConversations(Long userId, Integer limit);
     ChatMessage sendMessageDTO(ChatMessageDTO dto);
+    CompletableFuture<ChatMessageDTO> ingestMessage(ChatMessageDTO dto);
     ChatMessageDTO toDTO(ChatMessage msg);
 }
\ No newline at end of file
@@ -12,7 +12,7 @@ public interface CommunityService {
     List<Map<String, Object>> getPublicCommunityEntries();
     
     /**
-     * 根据分享码获取社区条目
+     * 根据分享码获取社区条目（只读，不增加查看次数）
      * @param shareCode 分享码
      * @return 社区条目信息，如果不存在则返回null
      */
@@ -27,6 +27,7 @@ public interface CommunityService {
     
     /**
      * 增加社区条目的查看次数
+     * 计数先累加在内存中，定时批量写回数据库
      * @param entryId 社区条目ID
      */
     void incrementViewCount(Long entryId);
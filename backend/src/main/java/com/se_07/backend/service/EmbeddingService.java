@@ -1,5 +1,7 @@
 package com.se_07.backend.service;
 
+import java.util.List;
+
 public interface EmbeddingService {
     /**
      * 获取单条文本的向量表示
@@ -7,4 +9,11 @@ public interface EmbeddingService {
      * @return 768 维浮点数组
      */
     float[] embed(String text);
-} 
\ No newline at end of file
+
+    /**
+     * 批量获取文本的向量表示，一次请求嵌入服务
+     * @param texts 输入文本列表
+     * @return 与输入顺序一致的向量列表，失败的文本对应空数组
+     */
+    List<float[]> embedBatch(List<String> texts);
+}
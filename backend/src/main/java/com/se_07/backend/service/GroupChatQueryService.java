@@ -1,14 +1,19 @@
 package com.se_07.backend.service;
 
+import com.se_07.backend.dto.GroupChatHistoryPage;
 import com.se_07.backend.dto.GroupChatMessageDTO;
 import com.se_07.backend.entity.GroupChatInformation;
+import com.se_07.backend.entity.GroupChatMember;
 import com.se_07.backend.entity.GroupChatMessage;
 import com.se_07.backend.repository.GroupChatInformationRepository;
 import com.se_07.backend.repository.GroupChatMemberRepository;
 import com.se_07.backend.repository.GroupChatMessageRepository;
-import com.se_07.backend.repository.UserRepository;
-import com.se_07.backend.entity.User;
+import com.se_07.backend.service.impl.UserSummaryCache;
+import com.se_07.backend.service.impl.UserSummaryCache.UserSummary;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -25,7 +30,13 @@ public class GroupChatQueryService {
     @Autowired
     private GroupChatMessageRepository groupChatMessageRepository;
     @Autowired
-    private UserRepository userRepository;
+    private UserSummaryCache userSummaryCache;
+
+    @Value("${group-chat.history.default-limit:50}")
+    private int defaultLimit = 50;
+
+    @Value("${group-chat.history.max-limit:200}")
+    private int maxLimit = 200;
 
     private static final Logger logger = LoggerFactory.getLogger(GroupChatQueryService.class);
 
@@ -43,26 +54,102 @@ public class GroupChatQueryService {
     // 查询用户所有群聊的历史消息
     public Map<Long, List<GroupChatMessageDTO>> getGroupHistoriesByUserId(Long userId) {
         List<Long> groupIds = groupChatMemberRepository.findGroupIdsByUserId(userId);
-        Map<Long, List<GroupChatMessageDTO>> result = new HashMap<>();
+        Map<Long, List<GroupChatMessage>> messagesByGroup = new LinkedHashMap<>();
+        Set<Long> senderIds = new HashSet<>();
         for (Long groupId : groupIds) {
-            List<GroupChatMessageDTO> messages = groupChatMessageRepository
-                .findByGroupIdOrderByMessageTimeAsc(groupId)
-                .stream()
+            List<GroupChatMessage> messages = groupChatMessageRepository.findByGroupIdOrderByMessageTimeAsc(groupId);
+            messages.forEach(msg -> senderIds.add(msg.getUserId()));
+            messagesByGroup.put(groupId, messages);
+        }
+
+        // 所有群的发送者用户名从用户摘要缓存一次批量读取
+        Map<Long, UserSummary> senders = userSummaryCache.getAll(senderIds);
+        Map<Long, List<GroupChatMessageDTO>> result = new HashMap<>();
+        messagesByGroup.forEach((groupId, messages) -> result.put(groupId, toDTOs(messages, senders)));
+        return result;
+    }
+
+    /**
+     * 查询用户所有群聊的增量历史
+     * 每个群只返回水位之后的最新 limit 条消息（按消息ID升序）：水位为客户端传入的 sinceId，
+     * 未传入时使用成员的已读游标，从未读过则返回最近 limit 条。更早的消息通过 {@link #getGroupMessagesPage} 按需加载
+     */
+    public Map<Long, GroupChatHistoryPage> getGroupUpdatesByUserId(Long userId, Long sinceId, Integer limit) {
+        Pageable page = PageRequest.of(0, resolveLimit(limit) + 1);
+        List<GroupChatMember> memberships = groupChatMemberRepository.findByUserId(userId);
+        Map<Long, Long> unreadCounts = new HashMap<>();
+        for (Object[] row : groupChatMessageRepository.countUnreadByUserId(userId)) {
+            unreadCounts.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+
+        Map<Long, GroupChatHistoryPage> result = new LinkedHashMap<>();
+        Map<Long, List<GroupChatMessage>> messagesByGroup = new HashMap<>();
+        Set<Long> senderIds = new HashSet<>();
+        for (GroupChatMember membership : memberships) {
+            Long groupId = membership.getGroupId();
+            Long watermark = sinceId != null ? sinceId : membership.getLastReadMessageId();
+            // 多取一条用于判断水位之后是否还有更早的消息
+            List<GroupChatMessage> messages = new ArrayList<>(groupChatMessageRepository.findLatestAfter(
+                    groupId, watermark != null ? watermark : 0L, page));
+            GroupChatHistoryPage history = new GroupChatHistoryPage();
+            history.setGroupId(groupId);
+            history.setHasMore(messages.size() >= page.getPageSize());
+            if (history.isHasMore()) {
+                messages = messages.subList(0, page.getPageSize() - 1);
+            }
+            Collections.reverse(messages);
+            history.setUnreadCount(unreadCounts.getOrDefault(groupId, 0L));
+            history.setLastReadMessageId(membership.getLastReadMessageId());
+            messages.forEach(msg -> senderIds.add(msg.getUserId()));
+            messagesByGroup.put(groupId, messages);
+            result.put(groupId, history);
+        }
+
+        Map<Long, UserSummary> senders = userSummaryCache.getAll(senderIds);
+        result.forEach((groupId, history) -> history.setMessages(toDTOs(messagesByGroup.get(groupId), senders)));
+        return result;
+    }
+
+    /**
+     * 向前翻页：群内早于 beforeId（缺省为最新）的 limit 条消息，按消息ID升序
+     */
+    public List<GroupChatMessageDTO> getGroupMessagesPage(Long groupId, Long beforeId, Integer limit) {
+        List<GroupChatMessage> messages = new ArrayList<>(groupChatMessageRepository.findBefore(
+                groupId, beforeId != null ? beforeId : Long.MAX_VALUE, PageRequest.of(0, resolveLimit(limit))));
+        Collections.reverse(messages);
+        Map<Long, UserSummary> senders = userSummaryCache.getAll(
+                messages.stream().map(GroupChatMessage::getUserId).collect(Collectors.toSet()));
+        return toDTOs(messages, senders);
+    }
+
+    /**
+     * 将成员的已读游标推进到 messageId，游标只前进不后退
+     */
+    public void markGroupRead(Long groupId, Long userId, Long messageId) {
+        int updated = groupChatMemberRepository.advanceReadCursor(groupId, userId, messageId);
+        logger.debug("更新群聊已读游标 groupId={}, userId={}, messageId={}, updated={}", groupId, userId, messageId, updated);
+    }
+
+    private int resolveLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return defaultLimit;
+        }
+        return Math.min(limit, maxLimit);
+    }
+
+    private List<GroupChatMessageDTO> toDTOs(List<GroupChatMessage> messages, Map<Long, UserSummary> senders) {
+        return messages.stream()
                 .map(msg -> {
                     GroupChatMessageDTO dto = new GroupChatMessageDTO();
                     dto.setMessageId(msg.getMessageId());
                     dto.setGroupId(msg.getGroupId());
                     dto.setUserId(msg.getUserId());
-                    // 查询用户名
-                    User user = userRepository.findById(msg.getUserId()).orElse(null);
-                    dto.setUserName(user != null ? user.getUsername() : null);
+                    UserSummary sender = senders.get(msg.getUserId());
+                    dto.setUserName(sender != null ? sender.getUsername() : null);
                     dto.setContent(msg.getContent());
                     dto.setMessageTime(msg.getMessageTime());
                     return dto;
                 })
                 .collect(Collectors.toList());
-            result.put(groupId, messages);
-        }
-        return result;
     }
 } 
\ No newline at end of file
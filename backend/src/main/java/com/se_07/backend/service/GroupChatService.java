@@ -3,9 +3,11 @@ package com.se_07.backend.service;
 import com.se_07.backend.entity.GroupChatMessage;
 import com.se_07.backend.dto.GroupChatMessageDTO;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface GroupChatService {
     GroupChatMessageDTO sendGroupMessage(GroupChatMessageDTO dto);
+    CompletableFuture<GroupChatMessageDTO> ingestGroupMessage(GroupChatMessageDTO dto);
     List<GroupChatMessageDTO> getGroupMessages(Long groupId);
     GroupChatMessageDTO toDTO(GroupChatMessage msg);
 } 
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.se_07.backend.service;
 
 import com.se_07.backend.dto.ActivityCreateRequest;
 import com.se_07.backend.dto.AmapActivityCreateRequest;
+import com.se_07.backend.dto.DayPlanBatchRequest;
 import com.se_07.backend.dto.ItineraryActivityDTO;
 import java.util.List;
 
@@ -23,6 +24,15 @@ public interface ItineraryActivityService {
      */
     java.util.List<ItineraryActivityDTO> getActivitiesByDay(Long userId, Long itineraryDayId);
 
+    /**
+     * 批量编辑一天的活动：按顺序执行创建、修改、移动、删除操作，一次鉴权、一个事务
+     * @param userId 当前登录用户ID
+     * @param itineraryDayId 日程ID
+     * @param request 操作列表
+     * @return 编辑后按顺序排列的活动DTO列表
+     */
+    java.util.List<ItineraryActivityDTO> applyDayPlan(Long userId, Long itineraryDayId, DayPlanBatchRequest request);
+
     /**
      * 更新活动运输模式
      * @param userId 当前登录用户ID
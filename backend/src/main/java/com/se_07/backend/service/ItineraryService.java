@@ -156,16 +156,6 @@ public interface ItineraryService {
      * @return 分享码
      */
     String generateShareCode(Long itineraryId, Long userId, ShareCodeRequest request);
-    
-    /**
-     * 检查所有社区条目的索引状态（用于调试）
-     */
-    void checkAllCommunityEntriesIndexStatus();
-    
-    /**
-     * 检查Elasticsearch中的文档数量（用于调试）
-     */
-    void checkElasticsearchDocumentCount();
 
     /**
      * 创建团队行程
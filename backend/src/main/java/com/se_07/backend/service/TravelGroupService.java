@@ -5,6 +5,8 @@ import com.se_07.backend.dto.ItineraryCreateRequest;
 import com.se_07.backend.dto.ItineraryDTO;
 import com.se_07.backend.dto.TravelGroupDTO;
 import com.se_07.backend.entity.TravelGroup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 
 import java.util.List;
 import java.util.Map;
@@ -30,6 +32,11 @@ public interface TravelGroupService {
      * 获取所有公开的招募中组团（带搜索功能）
      */
     List<TravelGroupDTO> getPublicRecruitingGroupsWithSearch(Long currentUserId, String searchText, String searchType, String startDate, String endDate);
+
+    /**
+     * 分页搜索公开的招募中组团，过滤、排序和分页在数据库中完成
+     */
+    Page<TravelGroupDTO> searchRecruitingGroups(String searchText, String searchType, String startDate, String endDate, Pageable pageable);
     
     /**
      * 根据目的地获取组团
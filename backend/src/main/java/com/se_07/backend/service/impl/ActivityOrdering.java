@@ -0,0 +1,229 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.entity.ItineraryActivity;
+import com.se_07.backend.entity.ItineraryDay;
+import com.se_07.backend.repository.ItineraryActivityRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 日内活动排序
+ * 每个活动带一个 position 排序键，相邻活动之间留 {@link #GAP} 的间隔：
+ *   - 追加到末尾：最大位置 + GAP
+ *   - 插入到某活动之前/之后：取与相邻活动位置的中间值
+ * 插入只写新活动一行，读取是一条按 (itinerary_day_id, position) 索引排序的查询。
+ * 同一位置反复插入把间隔用完时，对该天重新按 GAP 编号（rebalance）。
+ *
+ * 启动时把旧版 prev_id / next_id 链表迁移为位置：沿 first_activity_id 遍历链表，
+ * 链表断裂时剩余活动按ID顺序排在后面
+ */
+@Component
+public class ActivityOrdering {
+    private static final Logger logger = LoggerFactory.getLogger(ActivityOrdering.class);
+
+    public static final long GAP = 1L << 20;
+
+    @Autowired
+    private ItineraryActivityRepository activityRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${itinerary.activity.position-migration.enabled:true}")
+    private boolean migrationEnabled = true;
+
+    /**
+     * 第 index 个（从 0 开始）活动的初始位置，用于批量创建
+     */
+    public static long initialPosition(int index) {
+        return (index + 1) * GAP;
+    }
+
+    /**
+     * 计算新活动在日程中的位置：prevId 指定插入到其后，nextId 指定插入到其前，都为空时追加到末尾
+     */
+    public long positionFor(ItineraryDay day, Long prevId, Long nextId) {
+        if (prevId != null && nextId != null) {
+            throw new RuntimeException("prevId 和 nextId 只能传一个");
+        }
+        Long dayId = day.getId();
+        if (nextId != null) {
+            ItineraryActivity next = anchor(dayId, nextId, "nextId");
+            ItineraryActivity before = activityRepository
+                    .findFirstByItineraryDayIdAndPositionLessThanOrderByPositionDesc(dayId, next.getPosition());
+            if (before == null) {
+                return next.getPosition() - GAP;
+            }
+            return between(dayId, before.getPosition(), next.getPosition(), nextId, false);
+        }
+        if (prevId != null) {
+            ItineraryActivity prev = anchor(dayId, prevId, "prevId");
+            ItineraryActivity after = activityRepository
+                    .findFirstByItineraryDayIdAndPositionGreaterThanOrderByPositionAsc(dayId, prev.getPosition());
+            if (after == null) {
+                return prev.getPosition() + GAP;
+            }
+            return between(dayId, prev.getPosition(), after.getPosition(), prevId, true);
+        }
+        Long max = activityRepository.findMaxPositionByItineraryDayId(dayId);
+        return max == null ? GAP : max + GAP;
+    }
+
+    /**
+     * 重新按 GAP 为日程的活动编号，返回排好序的活动
+     */
+    public List<ItineraryActivity> rebalance(Long dayId) {
+        List<ItineraryActivity> activities = activityRepository.findByItineraryDayIdOrderByPositionAscIdAsc(dayId);
+        renumber(activities);
+        activityRepository.saveAll(activities);
+        logger.info("日程活动重新编号 dayId={}, 活动数={}", dayId, activities.size());
+        return activities;
+    }
+
+    /**
+     * 把活动放到内存中有序列表的 index 处并分配位置，不查库（批量编辑时使用）
+     * 间隔用完或相邻活动没有位置时，整个列表重新编号，由调用方统一保存
+     */
+    public static void place(List<ItineraryActivity> ordered, int index, ItineraryActivity activity) {
+        ordered.add(index, activity);
+        Long prev = index > 0 ? ordered.get(index - 1).getPosition() : null;
+        Long next = index + 1 < ordered.size() ? ordered.get(index + 1).getPosition() : null;
+        boolean hasPrev = index > 0;
+        boolean hasNext = index + 1 < ordered.size();
+        if ((hasPrev && prev == null) || (hasNext && next == null) || (hasPrev && hasNext && next - prev <= 1)) {
+            renumber(ordered);
+        } else if (hasPrev && hasNext) {
+            activity.setPosition(prev + (next - prev) / 2);
+        } else if (hasPrev) {
+            activity.setPosition(prev + GAP);
+        } else if (hasNext) {
+            activity.setPosition(next - GAP);
+        } else {
+            activity.setPosition(GAP);
+        }
+    }
+
+    private static void renumber(List<ItineraryActivity> activities) {
+        for (int i = 0; i < activities.size(); i++) {
+            activities.get(i).setPosition(initialPosition(i));
+        }
+    }
+
+    private ItineraryActivity anchor(Long dayId, Long activityId, String name) {
+        ItineraryActivity activity = activityRepository.findById(activityId)
+                .orElseThrow(() -> new RuntimeException(name + " 不存在"));
+        if (!activity.getItineraryDay().getId().equals(dayId)) {
+            throw new RuntimeException(name + " 不属于同一天程");
+        }
+        if (activity.getPosition() == null) {
+            // 未迁移的数据，先整体编号
+            activity = findIn(rebalance(dayId), activityId);
+        }
+        return activity;
+    }
+
+    /**
+     * 两个相邻位置的中间值；间隔用完时重新编号后在锚点活动旁重新计算
+     */
+    private long between(Long dayId, long lower, long upper, Long anchorId, boolean afterAnchor) {
+        if (upper - lower > 1) {
+            return lower + (upper - lower) / 2;
+        }
+        List<ItineraryActivity> activities = rebalance(dayId);
+        int index = activities.indexOf(findIn(activities, anchorId));
+        int prevIndex = afterAnchor ? index : index - 1;
+        long prevPosition = prevIndex >= 0 ? activities.get(prevIndex).getPosition() : 0;
+        long nextPosition = prevIndex + 1 < activities.size()
+                ? activities.get(prevIndex + 1).getPosition() : prevPosition + 2 * GAP;
+        return prevPosition + (nextPosition - prevPosition) / 2;
+    }
+
+    private static ItineraryActivity findIn(List<ItineraryActivity> activities, Long activityId) {
+        for (ItineraryActivity activity : activities) {
+            if (activity.getId().equals(activityId)) {
+                return activity;
+            }
+        }
+        throw new RuntimeException("活动不存在");
+    }
+
+    @PostConstruct
+    void migrateLegacyLinkedLists() {
+        if (!migrationEnabled) {
+            return;
+        }
+        try {
+            int migrated = migrateLinkedLists();
+            if (migrated > 0) {
+                logger.info("活动链表迁移为位置排序完成，共 {} 条", migrated);
+            }
+        } catch (Exception e) {
+            logger.error("活动链表迁移失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 为 position 为空的活动按旧链表顺序分配位置，返回更新的行数
+     */
+    int migrateLinkedLists() {
+        List<Map<String, Object>> rows;
+        try {
+            rows = jdbcTemplate.queryForList(
+                    "SELECT a.id, a.itinerary_day_id, a.next_id, d.first_activity_id FROM itinerary_activities a "
+                            + "JOIN itinerary_days d ON d.id = a.itinerary_day_id WHERE a.position IS NULL");
+        } catch (DataAccessException e) {
+            // 新建的库没有旧链表列，按ID顺序编号
+            rows = jdbcTemplate.queryForList(
+                    "SELECT id, itinerary_day_id FROM itinerary_activities WHERE position IS NULL");
+        }
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, List<Map<String, Object>>> byDay = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            byDay.computeIfAbsent(toLong(row.get("itinerary_day_id")), id -> new ArrayList<>()).add(row);
+        }
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (List<Map<String, Object>> dayRows : byDay.values()) {
+            List<Long> ordered = linkedOrder(dayRows);
+            for (int i = 0; i < ordered.size(); i++) {
+                batchArgs.add(new Object[]{initialPosition(i), ordered.get(i)});
+            }
+        }
+        jdbcTemplate.batchUpdate("UPDATE itinerary_activities SET position = ? WHERE id = ?", batchArgs);
+        return batchArgs.size();
+    }
+
+    /**
+     * 沿链表得到一天内活动的顺序，遇到断链或环时停止，未遍历到的活动按ID顺序追加
+     */
+    static List<Long> linkedOrder(List<Map<String, Object>> dayRows) {
+        Map<Long, Long> nextIds = new HashMap<>();
+        TreeSet<Long> remaining = new TreeSet<>();
+        for (Map<String, Object> row : dayRows) {
+            Long id = toLong(row.get("id"));
+            nextIds.put(id, toLong(row.get("next_id")));
+            remaining.add(id);
+        }
+        List<Long> ordered = new ArrayList<>(dayRows.size());
+        Long current = toLong(dayRows.get(0).get("first_activity_id"));
+        while (current != null && remaining.remove(current)) {
+            ordered.add(current);
+            current = nextIds.get(current);
+        }
+        ordered.addAll(remaining);
+        return ordered;
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+}
@@ -2,13 +2,12 @@ package com.se_07.backend.service.impl;
 
 import com.se_07.backend.entity.Attraction;
 import com.se_07.backend.repository.AttractionRepository;
-import com.se_07.backend.repository.TagRepository;
-import com.se_07.backend.entity.Tag;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.se_07.backend.repository.EntityTagScoreRepository;
 import com.se_07.backend.service.AttractionService;
+import com.se_07.backend.util.SqlLikeUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
@@ -20,14 +19,20 @@ import java.util.stream.Collectors;
 @Service
 public class AttractionServiceImpl implements AttractionService {
 
+    // 按标签筛选景点时只看权重最高的前3个标签
+    private static final int TOP_TAG_COUNT = 3;
+
     @Autowired
     private AttractionRepository attractionRepository;
     
     @Autowired
-    private ObjectMapper objectMapper;
+    private CounterWriteBuffer counterWriteBuffer;
+
+    @Autowired
+    private TagScoreIndex tagScoreIndex;
 
     @Autowired
-    private TagRepository tagRepository;
+    private EntityTagScoreRepository entityTagScoreRepository;
 
     @Override
     public Optional<Attraction> getAttractionById(Long id) {
@@ -41,61 +46,7 @@ public class AttractionServiceImpl implements AttractionService {
 
     @Override
     public List<String> getTopNTags(Attraction attraction, int n) {
-        if (attraction == null || attraction.getTagScores() == null || attraction.getTagScores().isEmpty()) {
-            return java.util.Collections.emptyList();
-        }
-
-        try {
-            com.fasterxml.jackson.databind.JsonNode root = objectMapper.readTree(attraction.getTagScores());
-            Map<String, Double> idToScore = new java.util.HashMap<>();
-
-            if (root.isObject()) {
-                // {"7":37, "12":10, ...}
-                root.fields().forEachRemaining(entry -> {
-                    if (entry.getValue().isNumber()) {
-                        idToScore.put(entry.getKey(), entry.getValue().asDouble());
-                    }
-                });
-            } else if (root.isArray()) {
-                // [0,0,0,37,...]  index+1 == tagId
-                int idx = 0;
-                for (com.fasterxml.jackson.databind.JsonNode node : root) {
-                    if (node.isNumber()) {
-                        double score = node.asDouble();
-                        if (score > 0) {
-                            idToScore.put(String.valueOf(idx + 1), score); // tag IDs start at 1
-                        }
-                    }
-                    idx++;
-                }
-            } else {
-                return java.util.Collections.emptyList();
-            }
-
-            // 获取权重最高的N个标签ID
-            List<Long> topTagIds = idToScore.entrySet().stream()
-                    .sorted((e1, e2) -> Double.compare(e2.getValue(), e1.getValue()))
-                    .limit(n)
-                    .map(e -> Long.valueOf(e.getKey()))
-                    .collect(Collectors.toList());
-
-            if (topTagIds.isEmpty()) {
-                return java.util.Collections.emptyList();
-            }
-
-            Map<Long, String> idToTag = tagRepository.findAllById(topTagIds)
-                    .stream()
-                    .collect(Collectors.toMap(Tag::getId, Tag::getTag));
-
-            return topTagIds.stream()
-                    .map(id -> idToTag.getOrDefault(id, ""))
-                    .filter(tag -> !tag.isEmpty())
-                    .collect(Collectors.toList());
-
-        } catch (Exception e) {
-            System.err.println("解析景点标签权重JSON失败: " + e.getMessage());
-            return java.util.Collections.emptyList();
-        }
+        return tagScoreIndex.topTags(attraction, n);
     }
 
     @Override
@@ -121,12 +72,8 @@ public class AttractionServiceImpl implements AttractionService {
 
     @Override
     public void incrementJoinCount(Long attractionId) {
-        Optional<Attraction> attractionOpt = attractionRepository.findById(attractionId);
-        if (attractionOpt.isPresent()) {
-            Attraction attraction = attractionOpt.get();
-            attraction.setJoinCount((attraction.getJoinCount() == null ? 0 : attraction.getJoinCount()) + 1);
-            attractionRepository.save(attraction);
-        }
+        // 原子累加，由 CounterWriteBuffer 定时批量写回，避免读-改-写丢失并发更新
+        counterWriteBuffer.increment(CounterWriteBuffer.Counter.ATTRACTION_JOINS, attractionId);
     }
 
     @Override
@@ -152,40 +99,40 @@ public class AttractionServiceImpl implements AttractionService {
 
     @Override
     public Page<Attraction> getAttractionsByDestinationWithFilters(Long destinationId, String tagParam, String keyword, Pageable pageable) {
-        List<Attraction> attractions = attractionRepository.findByDestinationIdOrderByJoinCountDesc(destinationId);
-
-        // 标签过滤
-        if (tagParam != null && !tagParam.trim().isEmpty()) {
-            java.util.List<String> tagList = java.util.Arrays.stream(tagParam.split(","))
-                    .map(String::trim)
-                    .filter(s -> !s.isEmpty())
-                    .collect(Collectors.toList());
-            if (!tagList.isEmpty()) {
-                attractions = attractions.stream()
-                        .filter(a -> {
-                            List<String> topTags = getTopNTags(a, 3);
-                            // 需要包含 tagList 中所有标签才通过
-                            return tagList.stream().allMatch(topTags::contains);
-                        })
+        String kw = keyword != null && !keyword.trim().isEmpty() ? SqlLikeUtils.escapeLike(keyword.trim().toLowerCase()) : null;
+        List<String> tagList = tagParam == null ? java.util.Collections.emptyList() :
+                java.util.Arrays.stream(tagParam.split(","))
+                        .map(String::trim)
+                        .filter(s -> !s.isEmpty())
+                        .distinct()
                         .collect(Collectors.toList());
-            }
+
+        // 没有标签条件时直接由数据库分页
+        if (tagList.isEmpty()) {
+            return kw == null
+                    ? attractionRepository.findByDestinationIdOrderByJoinCountDesc(destinationId, pageable)
+                    : attractionRepository.searchByDestinationIdAndKeyword(destinationId, kw, pageable);
+        }
+
+        // 景点前3个标签需要包含所有所选标签，不存在的标签不可能命中
+        List<Long> tagIds = tagScoreIndex.resolveTagIds(tagList);
+        if (tagIds.size() < tagList.size()) {
+            return new PageImpl<>(java.util.Collections.emptyList(), pageable, 0);
         }
 
-        // 关键词过滤
-        if (keyword != null && !keyword.trim().isEmpty()) {
-            String kw = keyword.trim().toLowerCase();
-            attractions = attractions.stream()
-                    .filter(a -> {
-                        String name = a.getName() != null ? a.getName().toLowerCase() : "";
-                        String desc = a.getDescription() != null ? a.getDescription().toLowerCase() : "";
-                        return name.contains(kw) || desc.contains(kw);
-                    })
-                    .collect(Collectors.toList());
+        long total = entityTagScoreRepository.countAttractionsByTopTags(destinationId, tagIds, tagIds.size(), TOP_TAG_COUNT, kw);
+        if (total == 0 || pageable.getOffset() >= total) {
+            return new PageImpl<>(java.util.Collections.emptyList(), pageable, total);
         }
 
-        int start = (int) pageable.getOffset();
-        int end = Math.min(start + pageable.getPageSize(), attractions.size());
-        List<Attraction> pageContent = start >= attractions.size() ? java.util.Collections.emptyList() : attractions.subList(start, end);
-        return new org.springframework.data.domain.PageImpl<>(pageContent, pageable, attractions.size());
+        List<Long> pageIds = entityTagScoreRepository.findAttractionIdsByTopTags(
+                destinationId, tagIds, tagIds.size(), TOP_TAG_COUNT, kw, pageable.getPageSize(), pageable.getOffset());
+        Map<Long, Attraction> id2Attraction = attractionRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(Attraction::getId, a -> a));
+        List<Attraction> pageContent = pageIds.stream()
+                .map(id2Attraction::get)
+                .filter(java.util.Objects::nonNull)
+                .collect(Collectors.toList());
+        return new PageImpl<>(pageContent, pageable, total);
     }
-} 
\ No newline at end of file
+}
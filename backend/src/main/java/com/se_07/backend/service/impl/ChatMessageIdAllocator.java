@@ -0,0 +1,119 @@
+package com.se_07.backend.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 聊天消息ID分配器
+ * DATABASE 模式下从 chat_message_id_sequence 表申请ID：读取 last_id 后用条件 UPDATE 推进一个块，
+ * 更新不到行说明被其他实例抢先，重新读取后再试，因此多个实例共享同一数据库时ID不会重复。
+ * 序列行在首次使用时按消息表当前的最大ID初始化。
+ *
+ * 块大小大于 1 时每个实例在自己的块内递增分配，实例之间的ID不再按时间先后排列，
+ * 按ID增量拉取的读者可能漏掉其他实例的消息，因此多实例部署应保持块大小为 1。
+ * LOCAL 模式按消息表当前最大ID在内存中递增分配，不访问序列表，只能用于单实例部署。
+ * AUTO（默认）按 STOMP 代理模式选择：进程内代理为单实例部署，使用 LOCAL，发送消息不再等待数据库；
+ * relay 模式为多实例部署，使用 DATABASE
+ */
+@Component
+public class ChatMessageIdAllocator {
+    private static final Logger logger = LoggerFactory.getLogger(ChatMessageIdAllocator.class);
+
+    public static final String CHAT_MESSAGE_TABLE = "user_chat_message";
+    public static final String GROUP_MESSAGE_TABLE = "group_chat_message";
+
+    private static final int MAX_UPDATE_ATTEMPTS = 20;
+
+    public enum Source {
+        AUTO, DATABASE, LOCAL
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${chat.message-id.source:AUTO}")
+    private Source source = Source.AUTO;
+
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode = "simple";
+
+    @Value("${chat.message-id.block-size:1}")
+    private int blockSize = 1;
+
+    // 每张表当前持有的ID块：下一个可分配的ID和块内最大ID
+    private final Map<String, long[]> blocks = new HashMap<>();
+
+    /**
+     * 实际使用的ID来源，AUTO 已按代理模式解析为 DATABASE 或 LOCAL
+     */
+    public Source getSource() {
+        if (source != Source.AUTO) {
+            return source;
+        }
+        return "relay".equalsIgnoreCase(brokerMode) ? Source.DATABASE : Source.LOCAL;
+    }
+
+    /**
+     * 为指定消息表分配下一个消息ID
+     */
+    public synchronized long next(String table) {
+        long[] block = blocks.get(table);
+        if (block == null || block[0] > block[1]) {
+            block = reserve(table);
+            blocks.put(table, block);
+        }
+        return block[0]++;
+    }
+
+    private long[] reserve(String table) {
+        if (getSource() == Source.LOCAL) {
+            // 单实例模式只在首次使用时读取一次最大ID，之后一直在内存中递增
+            return new long[]{maxMessageId(table) + 1, Long.MAX_VALUE};
+        }
+        int size = Math.max(1, blockSize);
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            Long last = lastId(table);
+            if (last == null) {
+                initSequence(table);
+                continue;
+            }
+            int updated = jdbcTemplate.update(
+                    "UPDATE chat_message_id_sequence SET last_id = ? WHERE name = ? AND last_id = ?",
+                    last + size, table, last);
+            if (updated == 1) {
+                return new long[]{last + 1, last + size};
+            }
+        }
+        throw new RuntimeException("消息ID分配冲突，请稍后重试");
+    }
+
+    private Long lastId(String table) {
+        List<Long> rows = jdbcTemplate.queryForList(
+                "SELECT last_id FROM chat_message_id_sequence WHERE name = ?", Long.class, table);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private void initSequence(String table) {
+        long max = maxMessageId(table);
+        try {
+            jdbcTemplate.update("INSERT INTO chat_message_id_sequence (name, last_id) VALUES (?, ?)", table, max);
+            logger.info("初始化聊天消息ID序列 {}，起始ID {}", table, max);
+        } catch (DuplicateKeyException e) {
+            // 其他实例已经初始化
+        }
+    }
+
+    private long maxMessageId(String table) {
+        Long max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(message_id), 0) FROM " + table, Long.class);
+        return max == null ? 0L : max;
+    }
+}
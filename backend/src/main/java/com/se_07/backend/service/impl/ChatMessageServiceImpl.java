@@ -3,13 +3,18 @@ package com.se_07.backend.service.impl;
 import com.se_07.backend.dto.ChatMessageDTO;
 import com.se_07.backend.entity.ChatMessage;
 import com.se_07.backend.repository.ChatMessageRepository;
-import com.se_07.backend.repository.UserRepository;
-import com.se_07.backend.entity.User;
 import com.se_07.backend.service.ChatMessageService;
+import com.se_07.backend.service.impl.UserSummaryCache.UserSummary;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,71 +24,189 @@ public class ChatMessageServiceImpl implements ChatMessageService {
     @Autowired
     private ChatMessageRepository chatMessageRepository;
     @Autowired
-    private UserRepository userRepository;
+    private UserSummaryCache userSummaryCache;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ChatMessageWriteBehind chatMessageWriteBehind;
+
+    @Value("${chat.history.default-limit:50}")
+    private int defaultLimit = 50;
+
+    @Value("${chat.history.max-limit:200}")
+    private int maxLimit = 200;
 
     private static final Logger logger = LoggerFactory.getLogger(ChatMessageServiceImpl.class);
 
+    /**
+     * 为会话键列上线前写入的历史消息补齐 (user_low_id, user_high_id)，补齐后走索引只匹配到零行
+     */
+    @PostConstruct
+    void backfillConversationKeys() {
+        try {
+            int updated = jdbcTemplate.update("UPDATE user_chat_message SET user_low_id = LEAST(from_user_id, to_user_id), " +
+                    "user_high_id = GREATEST(from_user_id, to_user_id) WHERE user_low_id IS NULL");
+            if (updated > 0) {
+                logger.info("已为 {} 条历史聊天消息补齐会话键", updated);
+            }
+        } catch (Exception e) {
+            logger.warn("补齐聊天消息会话键失败: {}", e.getMessage());
+        }
+    }
+
     @Override
     public ChatMessageDTO sendMessage(ChatMessageDTO dto) {
-        ChatMessage msg = new ChatMessage();
-        msg.setMessageId(dto.getMessageId());
-        msg.setFromId(dto.getFromId());
-        msg.setToId(dto.getToId());
-        msg.setMessageTime(dto.getMessageTime());
-        msg.setContent(dto.getContent());
-        ChatMessage saved = chatMessageRepository.save(msg);
-        dto.setMessageId(saved.getMessageId());
+        ChatMessage msg = toEntity(dto);
+        awaitAcknowledge(chatMessageWriteBehind.enqueue(msg));
+        dto.setMessageId(msg.getMessageId());
+        dto.setMessageTime(msg.getMessageTime());
         return dto;
     }
 
     @Override
     public ChatMessage sendMessageDTO(ChatMessageDTO dto) {
+        ChatMessage msg = toEntity(dto);
+        awaitAcknowledge(chatMessageWriteBehind.enqueue(msg));
+        return msg;
+    }
+
+    /**
+     * 消息分配ID后立即返回可推送的DTO，不等待数据库写入；
+     * FLUSH 确认模式下返回的 Future 在消息写入数据库后才完成
+     */
+    @Override
+    public CompletableFuture<ChatMessageDTO> ingestMessage(ChatMessageDTO dto) {
+        ChatMessage msg = toEntity(dto);
+        CompletableFuture<Void> persisted = chatMessageWriteBehind.enqueue(msg);
+        return chatMessageWriteBehind.acknowledge(persisted, toDTO(msg));
+    }
+
+    private ChatMessage toEntity(ChatMessageDTO dto) {
+        // 消息ID由写入管道统一分配，忽略客户端传入的ID
+        if (dto.getContent() != null && dto.getContent().length() > ChatMessageWriteBehind.MAX_CONTENT_LENGTH) {
+            throw new RuntimeException("消息内容不能超过" + ChatMessageWriteBehind.MAX_CONTENT_LENGTH + "字");
+        }
         ChatMessage msg = new ChatMessage();
-        msg.setMessageId(dto.getMessageId());
         msg.setFromId(dto.getFromId());
         msg.setToId(dto.getToId());
-        msg.setMessageTime(dto.getMessageTime() != null ? dto.getMessageTime() : java.time.LocalDateTime.now());
+        msg.setMessageTime(dto.getMessageTime());
         msg.setContent(dto.getContent());
-        return chatMessageRepository.save(msg);
+        return msg;
+    }
+
+    private void awaitAcknowledge(CompletableFuture<Void> persisted) {
+        chatMessageWriteBehind.acknowledge(persisted, null).join();
     }
 
     @Override
     public List<ChatMessageDTO> getMessagesBetween(Long fromId, Long toId) {
-        return chatMessageRepository.findByFromIdAndToId(fromId, toId)
-                .stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        return toDTOs(chatMessageRepository.findByFromIdAndToId(fromId, toId));
     }
 
     @Override
     public List<ChatMessageDTO> getAllMessagesForUser(Long userId) {
-        return chatMessageRepository.findByFromIdOrToId(userId, userId)
-                .stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        return toDTOs(chatMessageRepository.findByFromIdOrToId(userId, userId));
     }
 
-    // 查询两名用户之间所有聊天记录（双向，按时间升序）
+    // 查询两名用户之间所有聊天记录（双向，按消息ID升序）
     public List<ChatMessageDTO> getMessagesBetweenUsers(Long userId1, Long userId2) {
-        return chatMessageRepository.findMessagesBetweenUsers(userId1, userId2)
-                .stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        return toDTOs(chatMessageRepository.findConversation(Math.min(userId1, userId2), Math.max(userId1, userId2)));
+    }
+
+    /**
+     * 两名用户之间的聊天记录游标分页，结果按消息ID升序
+     * 指定 afterId 时返回其后的新消息，否则返回 beforeId（缺省为最新）之前的最近 limit 条
+     */
+    @Override
+    public List<ChatMessageDTO> getConversationPage(Long userId1, Long userId2, Long beforeId, Long afterId, Integer limit) {
+        Long lowId = Math.min(userId1, userId2);
+        Long highId = Math.max(userId1, userId2);
+        Pageable page = PageRequest.of(0, resolveLimit(limit));
+        if (afterId != null) {
+            return toDTOs(chatMessageRepository.findConversationAfter(lowId, highId, afterId, page));
+        }
+        List<ChatMessage> messages = new ArrayList<>(chatMessageRepository.findConversationBefore(
+                lowId, highId, beforeId != null ? beforeId : Long.MAX_VALUE, page));
+        Collections.reverse(messages);
+        return toDTOs(messages);
+    }
+
+    /**
+     * 用户所有收发消息的游标分页，结果按消息ID升序
+     * 发出和收到的消息各自按索引取 limit 条再合并，避免 OR 条件导致全表扫描
+     */
+    @Override
+    public List<ChatMessageDTO> getUserMessagesPage(Long userId, Long beforeId, Long afterId, Integer limit) {
+        int size = resolveLimit(limit);
+        Pageable page = PageRequest.of(0, size);
+        boolean forward = afterId != null;
+        List<ChatMessage> sent;
+        List<ChatMessage> received;
+        if (forward) {
+            sent = chatMessageRepository.findSentAfter(userId, afterId, page);
+            received = chatMessageRepository.findReceivedAfter(userId, afterId, page);
+        } else {
+            Long cursor = beforeId != null ? beforeId : Long.MAX_VALUE;
+            sent = chatMessageRepository.findSentBefore(userId, cursor, page);
+            received = chatMessageRepository.findReceivedBefore(userId, cursor, page);
+        }
+
+        // 按消息ID合并去重（给自己发的消息会同时出现在两边），取离游标最近的 size 条
+        TreeMap<Long, ChatMessage> merged = new TreeMap<>();
+        sent.forEach(m -> merged.put(m.getMessageId(), m));
+        received.forEach(m -> merged.put(m.getMessageId(), m));
+        NavigableMap<Long, ChatMessage> ordered = forward ? merged : merged.descendingMap();
+        List<ChatMessage> messages = ordered.values().stream().limit(size).collect(Collectors.toList());
+        if (!forward) {
+            Collections.reverse(messages);
+        }
+        return toDTOs(messages);
+    }
+
+    /**
+     * 收件箱：最近的 limit 个会话，每个会话只返回最后一条消息，按最后消息时间倒序
+     */
+    @Override
+    public List<ChatMessageDTO> getRecentConversations(Long userId, Integer limit) {
+        return toDTOs(chatMessageRepository.findLatestConversations(userId, resolveLimit(limit)));
+    }
+
+    private int resolveLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return defaultLimit;
+        }
+        return Math.min(limit, maxLimit);
+    }
+
+    /**
+     * 批量转换消息，发送者用户名从用户摘要缓存批量读取
+     */
+    private List<ChatMessageDTO> toDTOs(List<ChatMessage> messages) {
+        if (messages.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<Long> senderIds = messages.stream().map(ChatMessage::getFromId).collect(Collectors.toSet());
+        Map<Long, UserSummary> senders = userSummaryCache.getAll(senderIds);
+        List<ChatMessageDTO> result = new ArrayList<>(messages.size());
+        for (ChatMessage msg : messages) {
+            result.add(toDTO(msg, senders.get(msg.getFromId())));
+        }
+        return result;
     }
 
     @Override
     public ChatMessageDTO toDTO(ChatMessage msg) {
+        return toDTO(msg, userSummaryCache.get(msg.getFromId()));
+    }
+
+    private ChatMessageDTO toDTO(ChatMessage msg, UserSummary sender) {
         ChatMessageDTO dto = new ChatMessageDTO();
         dto.setMessageId(msg.getMessageId());
         dto.setFromId(msg.getFromId());
         dto.setToId(msg.getToId());
         dto.setMessageTime(msg.getMessageTime());
         dto.setContent(msg.getContent());
-        // 查询发送者用户名
-        User user = userRepository.findById(msg.getFromId()).orElse(null);
-        dto.setUserName(user != null ? user.getUsername() : null);
-        // 日志输出
-        logger.info("ChatMessageDTO: {}", dto);
+        dto.setUserName(sender != null ? sender.getUsername() : null);
         return dto;
     }
 }
@@ -0,0 +1,362 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.entity.ChatMessage;
+import com.se_07.backend.entity.GroupChatMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 聊天消息写后持久化（write-behind）
+ * 私聊和群聊消息在内存中分配消息ID和时间后立即可以推送，持久化通过有界队列交给后台线程，
+ * 每次把队列中的消息合并为多行 INSERT，两张表在同一事务中写入。数据库暂时不可用时整批保留并退避重试，不会丢弃或打乱顺序；
+ * 整批被拒绝（如违反约束）时改为逐条写入，只让出错的那条消息失败，不阻塞其余消息的持久化。
+ *
+ * 消息ID由 ChatMessageIdAllocator 分配，因此这两张表的所有写入都必须经过本组件。
+ * 确认模式：ENQUEUE 入队即确认；FLUSH 在消息所在批次提交后才确认
+ */
+@Component
+public class ChatMessageWriteBehind {
+    private static final Logger logger = LoggerFactory.getLogger(ChatMessageWriteBehind.class);
+
+    private static final long MAX_RETRY_BACKOFF_MS = 5000;
+
+    // 与两张消息表 content 列的长度一致，入队前校验，避免整批写入被单条消息拒绝
+    public static final int MAX_CONTENT_LENGTH = 500;
+
+    public enum Durability {
+        ENQUEUE, FLUSH
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ChatMessageIdAllocator idAllocator;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${chat.write-behind.durability:ENQUEUE}")
+    private Durability durability = Durability.ENQUEUE;
+
+    @Value("${chat.write-behind.queue-capacity:10000}")
+    private int queueCapacity = 10000;
+
+    @Value("${chat.write-behind.batch-size:200}")
+    private int batchSize = 200;
+
+    @Value("${chat.write-behind.flush-interval-ms:20}")
+    private long flushIntervalMs = 20;
+
+    @Value("${chat.write-behind.enqueue-timeout-ms:1000}")
+    private long enqueueTimeoutMs = 1000;
+
+    // 队列本身不限长，容量由 slots 控制：入队前在锁外等待空位，持锁时只做不阻塞的分配ID和入队
+    private BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private Semaphore slots = new Semaphore(queueCapacity);
+    private ScheduledExecutorService flushExecutor;
+
+    // 上次写入失败的批次，重试成功前不会取新的消息
+    private volatile List<PendingWrite> retryBatch = Collections.emptyList();
+    private int consecutiveFailures;
+    private long nextAttemptAt;
+
+    private final Object enqueueLock = new Object();
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder flushBatches = new LongAdder();
+    private final LongAdder flushErrors = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long lastFlushMillis;
+    private volatile LocalDateTime lastFlushAt;
+
+    @PostConstruct
+    void start() {
+        // 按注入后的配置重建队列容量
+        slots = new Semaphore(queueCapacity);
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+            try {
+                flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 关闭前忽略退避，尽量写完队列中剩余的消息
+        nextAttemptAt = 0;
+        flushSafely();
+        int remaining = retryBatch.size() + queue.size();
+        if (remaining > 0) {
+            logger.error("应用关闭时仍有 {} 条聊天消息未能写入数据库", remaining);
+        }
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * 分配私聊消息ID并放入写入队列，返回的 Future 在消息写入数据库后完成
+     */
+    public CompletableFuture<Void> enqueue(ChatMessage message) {
+        if (message.getMessageTime() == null) {
+            message.setMessageTime(LocalDateTime.now());
+        }
+        message.setUserLowId(Math.min(message.getFromId(), message.getToId()));
+        message.setUserHighId(Math.max(message.getFromId(), message.getToId()));
+        acquireSlot();
+        // 分配ID与入队在同一把锁内完成，保证队列（即写入）顺序与ID顺序一致，按ID增量拉取的读者不会漏掉消息
+        synchronized (enqueueLock) {
+            try {
+                message.setMessageId(idAllocator.next(ChatMessageIdAllocator.CHAT_MESSAGE_TABLE));
+            } catch (RuntimeException e) {
+                slots.release();
+                throw e;
+            }
+            return offer(new PendingWrite(message, null));
+        }
+    }
+
+    /**
+     * 分配群聊消息ID并放入写入队列，返回的 Future 在消息写入数据库后完成
+     */
+    public CompletableFuture<Void> enqueue(GroupChatMessage message) {
+        if (message.getMessageTime() == null) {
+            message.setMessageTime(LocalDateTime.now());
+        }
+        acquireSlot();
+        synchronized (enqueueLock) {
+            try {
+                message.setMessageId(idAllocator.next(ChatMessageIdAllocator.GROUP_MESSAGE_TABLE));
+            } catch (RuntimeException e) {
+                slots.release();
+                throw e;
+            }
+            return offer(new PendingWrite(null, message));
+        }
+    }
+
+    /**
+     * 按确认模式返回确认结果：ENQUEUE 立即完成，FLUSH 在写入数据库后完成
+     */
+    public <T> CompletableFuture<T> acknowledge(CompletableFuture<Void> persistedFuture, T value) {
+        if (durability == Durability.FLUSH) {
+            return persistedFuture.thenApply(v -> value);
+        }
+        return CompletableFuture.completedFuture(value);
+    }
+
+    /**
+     * 在锁外等待队列空位，超时仍无空位时拒绝
+     */
+    private void acquireSlot() {
+        try {
+            if (!slots.tryAcquire(enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new RuntimeException("聊天消息写入队列已满，请稍后重试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("聊天消息入队被中断", e);
+        }
+    }
+
+    private CompletableFuture<Void> offer(PendingWrite write) {
+        queue.add(write);
+        enqueued.increment();
+        return write.future;
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("聊天消息写入线程异常: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 把队列中的消息按批写入数据库，直到队列为空或写入失败
+     */
+    synchronized void flush() {
+        while (true) {
+            if (retryBatch.isEmpty()) {
+                List<PendingWrite> batch = new ArrayList<>(Math.min(batchSize, queue.size() + 1));
+                queue.drainTo(batch, batchSize);
+                if (batch.isEmpty()) {
+                    return;
+                }
+                slots.release(batch.size());
+                retryBatch = batch;
+            } else if (System.currentTimeMillis() < nextAttemptAt) {
+                return;
+            }
+
+            List<PendingWrite> batch = retryBatch;
+            long start = System.currentTimeMillis();
+            try {
+                writeBatch(batch);
+            } catch (NonTransientDataAccessException e) {
+                // 多行 INSERT 被整体拒绝时逐条写入，找出出错的消息
+                logger.warn("聊天消息批量写入被拒绝，改为逐条写入 {} 条消息: {}", batch.size(), e.getMessage());
+                if (!writeRowByRow(batch)) {
+                    return;
+                }
+                retryBatch = Collections.emptyList();
+                consecutiveFailures = 0;
+                continue;
+            } catch (Exception e) {
+                scheduleRetry(batch, e);
+                return;
+            }
+
+            retryBatch = Collections.emptyList();
+            consecutiveFailures = 0;
+            lastFlushMillis = System.currentTimeMillis() - start;
+            lastFlushAt = LocalDateTime.now();
+            flushBatches.increment();
+            persisted.add(batch.size());
+            for (PendingWrite write : batch) {
+                write.future.complete(null);
+            }
+        }
+    }
+
+    /**
+     * 逐条写入一批消息：违反约束的消息直接失败并丢弃，其余照常写入；
+     * 主键冲突说明这条消息已经写入（如提交结果未知后的重试），按写入成功处理；
+     * 遇到其他错误时把剩余消息留待退避重试并返回 false
+     */
+    private boolean writeRowByRow(List<PendingWrite> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite write = batch.get(i);
+            try {
+                writeBatch(Collections.singletonList(write));
+            } catch (DuplicateKeyException e) {
+                // 消息ID是入队时预先分配的，冲突的行就是这条消息本身
+                logger.info("聊天消息已写入，跳过 messageId={}", write.messageId());
+            } catch (DataIntegrityViolationException e) {
+                dropped.increment();
+                logger.error("聊天消息被数据库拒绝，已丢弃 messageId={}: {}", write.messageId(), e.getMessage());
+                write.future.completeExceptionally(new RuntimeException("聊天消息写入失败", e));
+                continue;
+            } catch (Exception e) {
+                scheduleRetry(new ArrayList<>(batch.subList(i, batch.size())), e);
+                return false;
+            }
+            persisted.increment();
+            write.future.complete(null);
+        }
+        lastFlushAt = LocalDateTime.now();
+        return true;
+    }
+
+    private void scheduleRetry(List<PendingWrite> batch, Exception e) {
+        retryBatch = batch;
+        flushErrors.increment();
+        consecutiveFailures++;
+        long backoff = Math.min(MAX_RETRY_BACKOFF_MS, flushIntervalMs * (1L << Math.min(consecutiveFailures, 16)));
+        nextAttemptAt = System.currentTimeMillis() + backoff;
+        logger.warn("聊天消息批量写入失败（第 {} 次），{} 条消息 {}ms 后重试: {}",
+                consecutiveFailures, batch.size(), backoff, e.getMessage());
+    }
+
+    /**
+     * 两张表的多行 INSERT 在同一事务中提交，失败重试时不会重复写入其中一张表
+     */
+    private void writeBatch(List<PendingWrite> batch) {
+        List<Object> chatArgs = new ArrayList<>();
+        List<Object> groupArgs = new ArrayList<>();
+        for (PendingWrite write : batch) {
+            if (write.chatMessage != null) {
+                ChatMessage m = write.chatMessage;
+                Collections.addAll(chatArgs, m.getMessageId(), m.getFromId(), m.getToId(), m.getMessageTime(),
+                        m.getContent(), m.getUserLowId(), m.getUserHighId());
+            } else {
+                GroupChatMessage m = write.groupMessage;
+                Collections.addAll(groupArgs, m.getMessageId(), m.getGroupId(), m.getUserId(), m.getContent(), m.getMessageTime());
+            }
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            if (!chatArgs.isEmpty()) {
+                jdbcTemplate.update(multiRowInsert("INSERT INTO user_chat_message (message_id, from_user_id, to_user_id, " +
+                        "message_time, content, user_low_id, user_high_id) VALUES ", 7, chatArgs.size() / 7), chatArgs.toArray());
+            }
+            if (!groupArgs.isEmpty()) {
+                jdbcTemplate.update(multiRowInsert("INSERT INTO group_chat_message (message_id, group_id, user_id, " +
+                        "content, message_time) VALUES ", 5, groupArgs.size() / 5), groupArgs.toArray());
+            }
+        });
+    }
+
+    private static String multiRowInsert(String prefix, int columns, int rows) {
+        String row = "(" + String.join(",", Collections.nCopies(columns, "?")) + ")";
+        return prefix + String.join(",", Collections.nCopies(rows, row));
+    }
+
+    /**
+     * 获取写入队列状态：积压、最早未写入消息的等待时间和累计写入情况
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        List<PendingWrite> retrying = retryBatch;
+        PendingWrite oldest = !retrying.isEmpty() ? retrying.get(0) : queue.peek();
+        stats.put("durability", durability);
+        stats.put("queueDepth", queue.size() + retrying.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("lagMillis", oldest == null ? 0L : System.currentTimeMillis() - oldest.enqueuedAt);
+        stats.put("enqueued", enqueued.sum());
+        stats.put("persisted", persisted.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("flushBatches", flushBatches.sum());
+        stats.put("flushErrors", flushErrors.sum());
+        stats.put("lastFlushMillis", lastFlushMillis);
+        stats.put("lastFlushAt", lastFlushAt);
+        return stats;
+    }
+
+    private static final class PendingWrite {
+        private final ChatMessage chatMessage;
+        private final GroupChatMessage groupMessage;
+        private final long enqueuedAt = System.currentTimeMillis();
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingWrite(ChatMessage chatMessage, GroupChatMessage groupMessage) {
+            this.chatMessage = chatMessage;
+            this.groupMessage = groupMessage;
+        }
+
+        private Long messageId() {
+            return chatMessage != null ? chatMessage.getMessageId() : groupMessage.getMessageId();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.entity.CommunityEntry;
+import com.se_07.backend.entity.Itinerary;
+import com.se_07.backend.repository.CommunityEntryTagRepository;
+import com.se_07.backend.repository.ItineraryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 社区条目卡片组装器
+ * 一页社区条目的标签和目的地各用一次 IN 查询批量读取，行程和作者由分页查询一并加载，
+ * 查询次数与条目数量无关
+ */
+@Component
+public class CommunityEntryViewAssembler {
+
+    @Autowired
+    private CommunityEntryTagRepository communityEntryTagRepository;
+
+    @Autowired
+    private ItineraryRepository itineraryRepository;
+
+    /**
+     * 组装社区条目列表
+     */
+    public List<Map<String, Object>> toEntryMaps(List<CommunityEntry> entries) {
+        return toEntryMaps(entries, false);
+    }
+
+    /**
+     * 组装单个社区条目（包含行程权限状态）
+     */
+    public Map<String, Object> toEntryDetailMap(CommunityEntry entry) {
+        return toEntryMaps(Collections.singletonList(entry), true).get(0);
+    }
+
+    private List<Map<String, Object>> toEntryMaps(List<CommunityEntry> entries, boolean includePermissionStatus) {
+        if (entries.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Long> entryIds = new ArrayList<>(entries.size());
+        Set<Long> itineraryIds = new HashSet<>();
+        for (CommunityEntry entry : entries) {
+            entryIds.add(entry.getId());
+            if (entry.getItinerary() != null) {
+                itineraryIds.add(entry.getItinerary().getId());
+            }
+        }
+
+        Map<Long, List<String>> tagsByEntry = new HashMap<>();
+        for (Object[] row : communityEntryTagRepository.findTagNamesByCommunityEntryIdIn(entryIds)) {
+            tagsByEntry.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((String) row[1]);
+        }
+
+        // 目的地按行程中的游览顺序排列，重复的目的地只保留第一次出现
+        Map<Long, Set<String>> destinationsByItinerary = new HashMap<>();
+        if (!itineraryIds.isEmpty()) {
+            for (Object[] row : itineraryRepository.findDestinationNamesByItineraryIdIn(itineraryIds)) {
+                destinationsByItinerary.computeIfAbsent((Long) row[0], k -> new LinkedHashSet<>()).add((String) row[1]);
+            }
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>(entries.size());
+        for (CommunityEntry entry : entries) {
+            Map<String, Object> entryMap = new HashMap<>();
+            entryMap.put("id", entry.getId());
+            entryMap.put("shareCode", entry.getShareCode());
+            entryMap.put("description", entry.getDescription());
+            entryMap.put("viewCount", entry.getViewCount());
+            entryMap.put("createdAt", entry.getCreatedAt());
+            entryMap.put("tags", tagsByEntry.getOrDefault(entry.getId(), new ArrayList<>()));
+
+            // 添加行程信息
+            Itinerary itinerary = entry.getItinerary();
+            if (itinerary != null) {
+                Map<String, Object> itineraryMap = new HashMap<>();
+                itineraryMap.put("id", itinerary.getId());
+                itineraryMap.put("title", itinerary.getTitle());
+                itineraryMap.put("startDate", itinerary.getStartDate());
+                itineraryMap.put("endDate", itinerary.getEndDate());
+                itineraryMap.put("coverImageUrl", itinerary.getImageUrl());
+                if (includePermissionStatus) {
+                    itineraryMap.put("permissionStatus", itinerary.getPermissionStatus());
+                }
+
+                // 处理目的地信息
+                Set<String> destinationNames = destinationsByItinerary.get(itinerary.getId());
+                if (destinationNames != null && !destinationNames.isEmpty()) {
+                    itineraryMap.put("destination", String.join("、", destinationNames));
+                } else {
+                    itineraryMap.put("destination", "待规划目的地");
+                }
+
+                // 添加用户信息
+                if (itinerary.getUser() != null) {
+                    Map<String, Object> userMap = new HashMap<>();
+                    userMap.put("id", itinerary.getUser().getId());
+                    userMap.put("username", itinerary.getUser().getUsername());
+                    itineraryMap.put("user", userMap);
+                }
+
+                entryMap.put("itinerary", itineraryMap);
+            }
+
+            result.add(entryMap);
+        }
+        return result;
+    }
+}
@@ -1,12 +1,9 @@
 package com.se_07.backend.service.impl;
 
 import com.se_07.backend.entity.CommunityEntry;
-import com.se_07.backend.entity.CommunityEntryTag;
 import com.se_07.backend.repository.CommunityEntryRepository;
 import com.se_07.backend.repository.CommunityEntryTagRepository;
 import com.se_07.backend.service.CommunityService;
-import com.se_07.backend.dto.converter.ItineraryConverter;
-import com.se_07.backend.dto.ItineraryDTO;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -32,66 +29,16 @@ public class CommunityServiceImpl implements CommunityService {
     private CommunityEntryTagRepository communityEntryTagRepository;
     
     @Autowired
-    private ItineraryConverter itineraryConverter;
+    private CommunityEntryViewAssembler entryViewAssembler;
+    
+    @Autowired
+    private CounterWriteBuffer counterWriteBuffer;
     
     @Override
     public List<Map<String, Object>> getPublicCommunityEntries() {
         try {
             List<CommunityEntry> entries = communityEntryRepository.findPublicEntries();
-            List<Map<String, Object>> result = new ArrayList<>();
-            
-            for (CommunityEntry entry : entries) {
-                Map<String, Object> entryMap = new HashMap<>();
-                entryMap.put("id", entry.getId());
-                entryMap.put("shareCode", entry.getShareCode());
-                entryMap.put("description", entry.getDescription());
-                entryMap.put("viewCount", entry.getViewCount());
-                entryMap.put("createdAt", entry.getCreatedAt());
-                
-                // 获取标签
-                List<CommunityEntryTag> tagLinks = communityEntryTagRepository.findByCommunityEntry(entry);
-                List<String> tagNames = new ArrayList<>();
-                for (CommunityEntryTag link : tagLinks) {
-                    if (link.getTag() != null) {
-                        tagNames.add(link.getTag().getTag());
-                    }
-                }
-                entryMap.put("tags", tagNames);
-                
-                // 添加行程信息
-                if (entry.getItinerary() != null) {
-                    // 使用ItineraryConverter转换为DTO，然后提取需要的信息
-                    ItineraryDTO itineraryDTO = itineraryConverter.toDTO(entry.getItinerary());
-                    
-                    Map<String, Object> itineraryMap = new HashMap<>();
-                    itineraryMap.put("id", itineraryDTO.getId());
-                    itineraryMap.put("title", itineraryDTO.getTitle());
-                    itineraryMap.put("startDate", itineraryDTO.getStartDate());
-                    itineraryMap.put("endDate", itineraryDTO.getEndDate());
-                    itineraryMap.put("coverImageUrl", itineraryDTO.getImageUrl());
-                    
-                    // 处理目的地信息
-                    if (itineraryDTO.getDestinationNames() != null && !itineraryDTO.getDestinationNames().isEmpty()) {
-                        itineraryMap.put("destination", String.join("、", itineraryDTO.getDestinationNames()));
-                    } else {
-                        itineraryMap.put("destination", "待规划目的地");
-                    }
-                    
-                    // 添加用户信息
-                    if (entry.getItinerary().getUser() != null) {
-                        Map<String, Object> userMap = new HashMap<>();
-                        userMap.put("id", entry.getItinerary().getUser().getId());
-                        userMap.put("username", entry.getItinerary().getUser().getUsername());
-                        itineraryMap.put("user", userMap);
-                    }
-                    
-                    entryMap.put("itinerary", itineraryMap);
-                }
-                
-                result.add(entryMap);
-            }
-            
-            return result;
+            return entryViewAssembler.toEntryMaps(entries);
         } catch (Exception e) {
             logger.error("获取公共社区条目失败: {}", e.getMessage());
             throw new RuntimeException("获取公共社区条目失败", e);
@@ -99,68 +46,15 @@ public class CommunityServiceImpl implements CommunityService {
     }
     
     @Override
+    @Transactional(readOnly = true)
     public Map<String, Object> getCommunityEntryByShareCode(String shareCode) {
         try {
+            // 只读：语义搜索等列表页也通过此方法渲染卡片，浏览量由 incrementViewCount 单独记录
             Optional<CommunityEntry> entryOpt = communityEntryRepository.findByShareCode(shareCode);
             if (!entryOpt.isPresent()) {
                 return null;
             }
-            
-            CommunityEntry entry = entryOpt.get();
-            
-            // 自动增加查看次数
-            entry.setViewCount(entry.getViewCount() + 1);
-            communityEntryRepository.save(entry);
-            
-            Map<String, Object> entryMap = new HashMap<>();
-            entryMap.put("id", entry.getId());
-            entryMap.put("shareCode", entry.getShareCode());
-            entryMap.put("description", entry.getDescription());
-            entryMap.put("viewCount", entry.getViewCount());
-            entryMap.put("createdAt", entry.getCreatedAt());
-            
-            // 获取标签
-            List<CommunityEntryTag> tagLinks = communityEntryTagRepository.findByCommunityEntry(entry);
-            List<String> tagNames = new ArrayList<>();
-            for (CommunityEntryTag link : tagLinks) {
-                if (link.getTag() != null) {
-                    tagNames.add(link.getTag().getTag());
-                }
-            }
-            entryMap.put("tags", tagNames);
-            
-            // 添加行程信息
-            if (entry.getItinerary() != null) {
-                // 使用ItineraryConverter转换为DTO，然后提取需要的信息
-                ItineraryDTO itineraryDTO = itineraryConverter.toDTO(entry.getItinerary());
-                
-                Map<String, Object> itineraryMap = new HashMap<>();
-                itineraryMap.put("id", itineraryDTO.getId());
-                itineraryMap.put("title", itineraryDTO.getTitle());
-                itineraryMap.put("startDate", itineraryDTO.getStartDate());
-                itineraryMap.put("endDate", itineraryDTO.getEndDate());
-                itineraryMap.put("coverImageUrl", itineraryDTO.getImageUrl());
-                itineraryMap.put("permissionStatus", itineraryDTO.getPermissionStatus());
-                
-                // 处理目的地信息
-                if (itineraryDTO.getDestinationNames() != null && !itineraryDTO.getDestinationNames().isEmpty()) {
-                    itineraryMap.put("destination", String.join("、", itineraryDTO.getDestinationNames()));
-                } else {
-                    itineraryMap.put("destination", "待规划目的地");
-                }
-                
-                // 添加用户信息
-                if (entry.getItinerary().getUser() != null) {
-                    Map<String, Object> userMap = new HashMap<>();
-                    userMap.put("id", entry.getItinerary().getUser().getId());
-                    userMap.put("username", entry.getItinerary().getUser().getUsername());
-                    itineraryMap.put("user", userMap);
-                }
-                
-                entryMap.put("itinerary", itineraryMap);
-            }
-            
-            return entryMap;
+            return entryViewAssembler.toEntryDetailMap(entryOpt.get());
         } catch (Exception e) {
             logger.error("根据分享码获取社区条目失败: {}", e.getMessage());
             throw new RuntimeException("根据分享码获取社区条目失败", e);
@@ -171,60 +65,7 @@ public class CommunityServiceImpl implements CommunityService {
     public List<Map<String, Object>> searchCommunityEntries(String searchTerm) {
         try {
             List<CommunityEntry> entries = communityEntryRepository.searchPublicEntries(searchTerm);
-            List<Map<String, Object>> result = new ArrayList<>();
-            
-            for (CommunityEntry entry : entries) {
-                Map<String, Object> entryMap = new HashMap<>();
-                entryMap.put("id", entry.getId());
-                entryMap.put("shareCode", entry.getShareCode());
-                entryMap.put("description", entry.getDescription());
-                entryMap.put("viewCount", entry.getViewCount());
-                entryMap.put("createdAt", entry.getCreatedAt());
-                
-                // 获取标签
-                List<CommunityEntryTag> tagLinks = communityEntryTagRepository.findByCommunityEntry(entry);
-                List<String> tagNames = new ArrayList<>();
-                for (CommunityEntryTag link : tagLinks) {
-                    if (link.getTag() != null) {
-                        tagNames.add(link.getTag().getTag());
-                    }
-                }
-                entryMap.put("tags", tagNames);
-                
-                // 添加行程信息
-                if (entry.getItinerary() != null) {
-                    // 使用ItineraryConverter转换为DTO，然后提取需要的信息
-                    ItineraryDTO itineraryDTO = itineraryConverter.toDTO(entry.getItinerary());
-                    
-                    Map<String, Object> itineraryMap = new HashMap<>();
-                    itineraryMap.put("id", itineraryDTO.getId());
-                    itineraryMap.put("title", itineraryDTO.getTitle());
-                    itineraryMap.put("startDate", itineraryDTO.getStartDate());
-                    itineraryMap.put("endDate", itineraryDTO.getEndDate());
-                    itineraryMap.put("coverImageUrl", itineraryDTO.getImageUrl());
-                    
-                    // 处理目的地信息
-                    if (itineraryDTO.getDestinationNames() != null && !itineraryDTO.getDestinationNames().isEmpty()) {
-                        itineraryMap.put("destination", String.join("、", itineraryDTO.getDestinationNames()));
-                    } else {
-                        itineraryMap.put("destination", "待规划目的地");
-                    }
-                    
-                    // 添加用户信息
-                    if (entry.getItinerary().getUser() != null) {
-                        Map<String, Object> userMap = new HashMap<>();
-                        userMap.put("id", entry.getItinerary().getUser().getId());
-                        userMap.put("username", entry.getItinerary().getUser().getUsername());
-                        itineraryMap.put("user", userMap);
-                    }
-                    
-                    entryMap.put("itinerary", itineraryMap);
-                }
-                
-                result.add(entryMap);
-            }
-            
-            return result;
+            return entryViewAssembler.toEntryMaps(entries);
         } catch (Exception e) {
             logger.error("搜索社区条目失败: {}", e.getMessage());
             throw new RuntimeException("搜索社区条目失败", e);
@@ -234,15 +75,8 @@ public class CommunityServiceImpl implements CommunityService {
     @Override
     public void incrementViewCount(Long entryId) {
         try {
-            Optional<CommunityEntry> entryOpt = communityEntryRepository.findById(entryId);
-            if (entryOpt.isPresent()) {
-                CommunityEntry entry = entryOpt.get();
-                entry.setViewCount(entry.getViewCount() + 1);
-                communityEntryRepository.save(entry);
-                logger.info("社区条目 {} 的查看次数已增加", entryId);
-            } else {
-                logger.warn("社区条目 {} 不存在", entryId);
-            }
+            // 计入内存计数器，由 CounterWriteBuffer 定时批量写回
+            counterWriteBuffer.increment(CounterWriteBuffer.Counter.COMMUNITY_ENTRY_VIEWS, entryId);
         } catch (Exception e) {
             logger.error("增加查看次数失败: {}", e.getMessage());
             throw new RuntimeException("增加查看次数失败", e);
@@ -287,60 +121,13 @@ public class CommunityServiceImpl implements CommunityService {
             // 获取总数
             long total = communityEntryRepository.countByDestination(destination);
             
-            // 获取分页数据
-            List<CommunityEntry> entries = communityEntryRepository.findByDestination(destination, offset, size);
-            
-            List<Map<String, Object>> result = new ArrayList<>();
-            for (CommunityEntry entry : entries) {
-                Map<String, Object> entryMap = new HashMap<>();
-                entryMap.put("id", entry.getId());
-                entryMap.put("shareCode", entry.getShareCode());
-                entryMap.put("description", entry.getDescription());
-                entryMap.put("viewCount", entry.getViewCount());
-                entryMap.put("createdAt", entry.getCreatedAt());
-                
-                // 获取标签
-                List<CommunityEntryTag> tagLinks = communityEntryTagRepository.findByCommunityEntry(entry);
-                List<String> tagNames = new ArrayList<>();
-                for (CommunityEntryTag link : tagLinks) {
-                    if (link.getTag() != null) {
-                        tagNames.add(link.getTag().getTag());
-                    }
-                }
-                entryMap.put("tags", tagNames);
-                
-                // 添加行程信息
-                if (entry.getItinerary() != null) {
-                    ItineraryDTO itineraryDTO = itineraryConverter.toDTO(entry.getItinerary());
-                    
-                    Map<String, Object> itineraryMap = new HashMap<>();
-                    itineraryMap.put("id", itineraryDTO.getId());
-                    itineraryMap.put("title", itineraryDTO.getTitle());
-                    itineraryMap.put("startDate", itineraryDTO.getStartDate());
-                    itineraryMap.put("endDate", itineraryDTO.getEndDate());
-                    itineraryMap.put("coverImageUrl", itineraryDTO.getImageUrl());
-                    
-                    // 处理目的地信息
-                    if (itineraryDTO.getDestinationNames() != null && !itineraryDTO.getDestinationNames().isEmpty()) {
-                        itineraryMap.put("destination", String.join("、", itineraryDTO.getDestinationNames()));
-                    } else {
-                        itineraryMap.put("destination", "待规划目的地");
-                    }
-                    
-                    // 添加用户信息
-                    if (entry.getItinerary().getUser() != null) {
-                        Map<String, Object> userMap = new HashMap<>();
-                        userMap.put("id", entry.getItinerary().getUser().getId());
-                        userMap.put("username", entry.getItinerary().getUser().getUsername());
-                        itineraryMap.put("user", userMap);
-                    }
-                    
-                    entryMap.put("itinerary", itineraryMap);
-                }
-                
-                result.add(entryMap);
+            // 获取分页数据：先按目的地查出本页ID，再按ID批量加载条目
+            List<Long> pageIds = new ArrayList<>();
+            for (Object[] row : communityEntryRepository.findIdsByDestination(destination, offset, size)) {
+                pageIds.add(((Number) row[0]).longValue());
             }
-            
+            List<Map<String, Object>> result = entryViewAssembler.toEntryMaps(loadInOrder(pageIds));
+
             // 构建分页响应
             Map<String, Object> response = new HashMap<>();
             response.put("content", result);
@@ -372,58 +159,8 @@ public class CommunityServiceImpl implements CommunityService {
                 entriesPage = communityEntryRepository.findAllPublicByTime(pageRequest);
             }
             
-            List<Map<String, Object>> result = new ArrayList<>();
-            for (CommunityEntry entry : entriesPage.getContent()) {
-                Map<String, Object> entryMap = new HashMap<>();
-                entryMap.put("id", entry.getId());
-                entryMap.put("shareCode", entry.getShareCode());
-                entryMap.put("description", entry.getDescription());
-                entryMap.put("viewCount", entry.getViewCount());
-                entryMap.put("createdAt", entry.getCreatedAt());
-                
-                // 获取标签
-                List<CommunityEntryTag> tagLinks = communityEntryTagRepository.findByCommunityEntry(entry);
-                List<String> tagNames = new ArrayList<>();
-                for (CommunityEntryTag link : tagLinks) {
-                    if (link.getTag() != null) {
-                        tagNames.add(link.getTag().getTag());
-                    }
-                }
-                entryMap.put("tags", tagNames);
-                
-                // 添加行程信息
-                if (entry.getItinerary() != null) {
-                    // 使用ItineraryConverter转换为DTO，然后提取需要的信息
-                    ItineraryDTO itineraryDTO = itineraryConverter.toDTO(entry.getItinerary());
-                    
-                    Map<String, Object> itineraryMap = new HashMap<>();
-                    itineraryMap.put("id", itineraryDTO.getId());
-                    itineraryMap.put("title", itineraryDTO.getTitle());
-                    itineraryMap.put("startDate", itineraryDTO.getStartDate());
-                    itineraryMap.put("endDate", itineraryDTO.getEndDate());
-                    itineraryMap.put("coverImageUrl", itineraryDTO.getImageUrl());
-                    
-                    // 处理目的地信息
-                    if (itineraryDTO.getDestinationNames() != null && !itineraryDTO.getDestinationNames().isEmpty()) {
-                        itineraryMap.put("destination", String.join("、", itineraryDTO.getDestinationNames()));
-                    } else {
-                        itineraryMap.put("destination", "待规划目的地");
-                    }
-                    
-                    // 添加用户信息
-                    if (entry.getItinerary().getUser() != null) {
-                        Map<String, Object> userMap = new HashMap<>();
-                        userMap.put("id", entry.getItinerary().getUser().getId());
-                        userMap.put("username", entry.getItinerary().getUser().getUsername());
-                        itineraryMap.put("user", userMap);
-                    }
-                    
-                    entryMap.put("itinerary", itineraryMap);
-                }
-                
-                result.add(entryMap);
-            }
-            
+            List<Map<String, Object>> result = entryViewAssembler.toEntryMaps(entriesPage.getContent());
+
             Map<String, Object> response = new HashMap<>();
             response.put("content", result);
             response.put("totalElements", entriesPage.getTotalElements());
@@ -438,4 +175,25 @@ public class CommunityServiceImpl implements CommunityService {
             throw new RuntimeException("获取排序社区条目失败", e);
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * 按ID批量加载社区条目，保持ID的顺序
+     */
+    private List<CommunityEntry> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, CommunityEntry> entriesById = new HashMap<>();
+        for (CommunityEntry entry : communityEntryRepository.findWithItineraryByIdIn(ids)) {
+            entriesById.put(entry.getId(), entry);
+        }
+        List<CommunityEntry> entries = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            CommunityEntry entry = entriesById.get(id);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,143 @@
+package com.se_07.backend.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 计数器写缓冲
+ * 浏览量、加入次数等计数先累加到内存中的 LongAdder，由后台线程定时合并为批量的
+ * {@code UPDATE ... SET col = col + ?} 写回数据库，避免每次计数都读-改-写实体
+ * （并发时会丢失更新）。应用关闭时会再刷新一次，异常退出时最多丢失一个刷新周期的计数。
+ * 写回成功后归零的计数从缓冲中移除，内存只与一个刷新周期内被计数的实体数有关
+ */
+@Component
+public class CounterWriteBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(CounterWriteBuffer.class);
+
+    public enum Counter {
+        COMMUNITY_ENTRY_VIEWS("UPDATE community_entries SET view_count = view_count + ? WHERE id = ?"),
+        DESTINATION_JOINS("UPDATE destinations SET join_count = COALESCE(join_count, 0) + ? WHERE id = ?"),
+        ATTRACTION_JOINS("UPDATE attractions SET join_count = COALESCE(join_count, 0) + ? WHERE id = ?");
+
+        private final String updateSql;
+
+        Counter(String updateSql) {
+            this.updateSql = updateSql;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${counters.flush-interval-ms:2000}")
+    private long flushIntervalMs = 2000;
+
+    private final Map<Counter, ConcurrentMap<Long, LongAdder>> pending = new EnumMap<>(Counter.class);
+    private ScheduledExecutorService flushExecutor;
+
+    public CounterWriteBuffer() {
+        for (Counter counter : Counter.values()) {
+            pending.put(counter, new ConcurrentHashMap<>());
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "counter-write-buffer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+        }
+        flushSafely();
+    }
+
+    /**
+     * 计数加一，不访问数据库
+     * 在 compute 中累加，与刷新时移除归零计数串行，不会加到已移除的 LongAdder 上
+     */
+    public void increment(Counter counter, Long id) {
+        if (id == null) {
+            return;
+        }
+        pending.get(counter).compute(id, (k, adder) -> {
+            if (adder == null) {
+                adder = new LongAdder();
+            }
+            adder.increment();
+            return adder;
+        });
+    }
+
+    /**
+     * 尚未写回数据库的计数
+     */
+    public long pendingCount(Counter counter, Long id) {
+        LongAdder adder = pending.get(counter).get(id);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("计数器写回失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 将所有累积的计数批量写回数据库，写回失败的增量放回缓冲等待下次刷新
+     */
+    synchronized void flush() {
+        for (Counter counter : Counter.values()) {
+            ConcurrentMap<Long, LongAdder> adders = pending.get(counter);
+            List<Object[]> batchArgs = new ArrayList<>();
+            for (Map.Entry<Long, LongAdder> entry : adders.entrySet()) {
+                // 读取后减去已读取的部分（而非 reset），读取期间的并发计数不会丢失
+                LongAdder adder = entry.getValue();
+                long delta = adder.sum();
+                if (delta > 0) {
+                    adder.add(-delta);
+                    batchArgs.add(new Object[]{delta, entry.getKey()});
+                }
+            }
+            if (batchArgs.isEmpty()) {
+                continue;
+            }
+
+            try {
+                jdbcTemplate.batchUpdate(counter.updateSql, batchArgs);
+                // 写回后没有新计数的条目移除；读取后又有计数的保留到下次刷新
+                for (Object[] args : batchArgs) {
+                    adders.computeIfPresent((Long) args[1], (k, adder) -> adder.sum() == 0 ? null : adder);
+                }
+            } catch (Exception e) {
+                for (Object[] args : batchArgs) {
+                    adders.get((Long) args[1]).add((Long) args[0]);
+                }
+                logger.warn("{} 计数写回失败，{} 条增量保留到下次刷新: {}", counter, batchArgs.size(), e.getMessage());
+            }
+        }
+    }
+}
@@ -2,8 +2,9 @@ package com.se_07.backend.service.impl;
 
 import com.se_07.backend.entity.Destination;
 import com.se_07.backend.repository.DestinationRepository;
+import com.se_07.backend.repository.EntityTagScoreRepository;
 import com.se_07.backend.service.DestinationService;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.se_07.backend.util.SqlLikeUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -14,7 +15,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.se_07.backend.entity.Tag;
 import com.se_07.backend.repository.TagRepository;
 
@@ -28,7 +28,13 @@ public class DestinationServiceImpl implements DestinationService {
     private TagRepository tagRepository;
     
     @Autowired
-    private ObjectMapper objectMapper;
+    private CounterWriteBuffer counterWriteBuffer;
+
+    @Autowired
+    private TagScoreIndex tagScoreIndex;
+
+    @Autowired
+    private EntityTagScoreRepository entityTagScoreRepository;
 
     @Override
     public Page<Destination> getHotDestinations(Pageable pageable) {
@@ -67,11 +73,8 @@ public class DestinationServiceImpl implements DestinationService {
 
     @Override
     public void incrementJoinCount(Long destinationId) {
-        Destination destination = destinationRepository.findById(destinationId).orElse(null);
-        if (destination != null) {
-            destination.setJoinCount(destination.getJoinCount() + 1);
-            destinationRepository.save(destination);
-        }
+        // 原子累加，由 CounterWriteBuffer 定时批量写回，避免读-改-写丢失并发更新
+        counterWriteBuffer.increment(CounterWriteBuffer.Counter.DESTINATION_JOINS, destinationId);
     }
     
     @Override
@@ -84,82 +87,28 @@ public class DestinationServiceImpl implements DestinationService {
     
     @Override
     public List<String> getTopNTags(Destination destination, int n) {
-        if (destination == null || destination.getTagScores() == null || destination.getTagScores().isEmpty()) {
-            return java.util.Collections.emptyList();
-        }
-        
-        try {
-            // 解析JSON字符串为Map<String, Object>，其中key是标签ID
-            Map<String, Object> tagScores = objectMapper.readValue(
-                destination.getTagScores(), 
-                new TypeReference<Map<String, Object>>() {}
-            );
-            
-            // 获取权重最高的N个标签ID
-            List<String> topTagIds = tagScores.entrySet().stream()
-                .filter(entry -> {
-                    // 过滤出数值类型的权重，并且权重大于0
-                    Object value = entry.getValue();
-                    if (value instanceof Number) {
-                        return ((Number) value).doubleValue() >= 0;
-                    }
-                    return false;
-                })
-                .sorted((entry1, entry2) -> {
-                    // 按权重降序排序
-                    double score1 = ((Number) entry1.getValue()).doubleValue();
-                    double score2 = ((Number) entry2.getValue()).doubleValue();
-                    return Double.compare(score2, score1);
-                })
-                .limit(n)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
-            
-            // 根据标签ID查询标签名称并保持顺序
-            if (topTagIds.isEmpty()) {
-                return java.util.Collections.emptyList();
-            }
-
-            List<Long> idList = topTagIds.stream()
-                    .map(Long::valueOf)
-                    .collect(Collectors.toList());
-
-            Map<Long, String> idToTag = tagRepository.findAllById(idList)
-                    .stream()
-                    .collect(Collectors.toMap(Tag::getId, Tag::getTag));
-
-            return idList.stream()
-                    .map(id -> idToTag.getOrDefault(id, ""))
-                    .filter(tag -> !tag.isEmpty())
-                    .collect(Collectors.toList());
-                
-        } catch (Exception e) {
-            // JSON解析失败时，返回空列表
-            System.err.println("解析标签权重JSON失败: " + e.getMessage());
-            return java.util.Collections.emptyList();
-        }
+        return tagScoreIndex.topTags(destination, n);
     }
     
-
-    
     @Override
     public List<Destination> getDestinationsByTags(List<String> tags) {
         if (tags == null || tags.isEmpty()) {
             return java.util.Collections.emptyList();
         }
         
-        // 获取所有目的地
-        List<Destination> allDestinations = destinationRepository.findAll();
+        // 在标签权重索引中计算排名，只加载命中的目的地
+        List<Long> rankedIds = tagScoreIndex.rankDestinations(tags);
+        if (rankedIds.isEmpty()) {
+            return java.util.Collections.emptyList();
+        }
+        
+        Map<Long, Destination> id2Destination = destinationRepository.findAllById(rankedIds)
+            .stream()
+            .collect(Collectors.toMap(Destination::getId, d -> d));
         
-        // 计算每个目的地的标签权重总和并排序
-        return allDestinations.stream()
-            .map(destination -> {
-                double totalScore = calculateTagsScore(destination, tags);
-                return new DestinationWithScore(destination, totalScore);
-            })
-            .filter(destWithScore -> destWithScore.getTotalScore() > 0) // 只保留有相关标签的目的地
-            .sorted((a, b) -> Double.compare(b.getTotalScore(), a.getTotalScore())) // 按权重降序排序
-            .map(DestinationWithScore::getDestination)
+        return rankedIds.stream()
+            .map(id2Destination::get)
+            .filter(java.util.Objects::nonNull)
             .collect(Collectors.toList());
     }
     
@@ -168,17 +117,7 @@ public class DestinationServiceImpl implements DestinationService {
         if (tags == null || tags.isEmpty()) {
             return Page.empty(pageable);
         }
-        
-        // 获取所有符合条件的目的地并排序
-        List<Destination> allFilteredDestinations = getDestinationsByTags(tags);
-        
-        // 手动分页
-        int start = (int) pageable.getOffset();
-        int end = Math.min(start + pageable.getPageSize(), allFilteredDestinations.size());
-        
-        List<Destination> pageContent = allFilteredDestinations.subList(start, end);
-        
-        return new PageImpl<>(pageContent, pageable, allFilteredDestinations.size());
+        return rankByTags(tags, null, pageable);
     }
     
     @Override
@@ -187,95 +126,34 @@ public class DestinationServiceImpl implements DestinationService {
             return Page.empty(pageable);
         }
         
-        // 先按标签过滤获取所有相关目的地
-        List<Destination> tagFilteredDestinations = getDestinationsByTags(tags);
-        
-        // 在标签过滤结果中进行关键词搜索
-        List<Destination> combinedResults = tagFilteredDestinations;
-        if (keyword != null && !keyword.trim().isEmpty()) {
-            String searchKeyword = keyword.trim().toLowerCase();
-            combinedResults = tagFilteredDestinations.stream()
-                .filter(dest -> 
-                    dest.getName().toLowerCase().contains(searchKeyword) ||
-                    (dest.getDescription() != null && dest.getDescription().toLowerCase().contains(searchKeyword))
-                )
-                .collect(Collectors.toList());
-        }
-        
-        // 手动分页
-        int start = (int) pageable.getOffset();
-        int end = Math.min(start + pageable.getPageSize(), combinedResults.size());
-        
-        List<Destination> pageContent = combinedResults.subList(start, end);
-        
-        return new PageImpl<>(pageContent, pageable, combinedResults.size());
+        String searchKeyword = keyword != null && !keyword.trim().isEmpty() ? SqlLikeUtils.escapeLike(keyword.trim().toLowerCase()) : null;
+        return rankByTags(tags, searchKeyword, pageable);
     }
     
     /**
-     * 计算目的地在指定标签列表上的权重总和
+     * 在数据库中按标签权重总和排序并分页，只加载当前页的目的地
      */
-    private double calculateTagsScore(Destination destination, List<String> tags) {
-        if (destination == null || destination.getTagScores() == null || destination.getTagScores().isEmpty()) {
-            return 0.0;
+    private Page<Destination> rankByTags(List<String> tags, String keyword, Pageable pageable) {
+        List<Long> tagIds = tagScoreIndex.resolveTagIds(tags);
+        if (tagIds.isEmpty()) {
+            return new PageImpl<>(java.util.Collections.emptyList(), pageable, 0);
         }
         
-        try {
-            // 首先将标签名称转换为标签ID
-            if (tags.isEmpty()) {
-                return 0.0;
-            }
-            
-            List<Long> tagIds = tagRepository.findByTagIn(tags)
-                    .stream()
-                    .map(Tag::getId)
-                    .collect(Collectors.toList());
-            
-            if (tagIds.isEmpty()) {
-                return 0.0;
-            }
-            
-            // 解析JSON字符串为Map，key是标签ID字符串
-            Map<String, Object> tagScores = objectMapper.readValue(
-                destination.getTagScores(), 
-                new TypeReference<Map<String, Object>>() {}
-            );
-            
-            // 计算选中标签的权重总和
-            return tagIds.stream()
-                .mapToDouble(tagId -> {
-                    Object scoreObj = tagScores.get(String.valueOf(tagId));
-                    if (scoreObj instanceof Number) {
-                        double score = ((Number) scoreObj).doubleValue();
-                        return Math.max(0, score); // 确保非负
-                    }
-                    return 0.0;
-                })
-                .sum();
-                
-        } catch (Exception e) {
-            System.err.println("解析标签权重JSON失败: " + e.getMessage());
-            return 0.0;
+        long total = entityTagScoreRepository.countDestinationsByTags(tagIds, keyword);
+        if (total == 0 || pageable.getOffset() >= total) {
+            return new PageImpl<>(java.util.Collections.emptyList(), pageable, total);
         }
-    }
-    
-    /**
-     * 内部类：带权重的目的地
-     */
-    private static class DestinationWithScore {
-        private final Destination destination;
-        private final double totalScore;
         
-        public DestinationWithScore(Destination destination, double totalScore) {
-            this.destination = destination;
-            this.totalScore = totalScore;
-        }
+        List<Long> pageIds = entityTagScoreRepository.findDestinationIdsByTags(
+                tagIds, keyword, pageable.getPageSize(), pageable.getOffset());
+        Map<Long, Destination> id2Destination = destinationRepository.findAllById(pageIds)
+            .stream()
+            .collect(Collectors.toMap(Destination::getId, d -> d));
         
-        public Destination getDestination() {
-            return destination;
-        }
-        
-        public double getTotalScore() {
-            return totalScore;
-        }
+        List<Destination> pageContent = pageIds.stream()
+            .map(id2Destination::get)
+            .filter(java.util.Objects::nonNull)
+            .collect(Collectors.toList());
+        return new PageImpl<>(pageContent, pageable, total);
     }
-} 
\ No newline at end of file
+}
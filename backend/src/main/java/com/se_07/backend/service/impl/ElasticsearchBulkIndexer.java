@@ -0,0 +1,394 @@
+package com.se_07.backend.service.impl;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Elasticsearch 批量索引管道
+ * 文档变更先进入待写队列，同一文档的多次变更只保留最后一次，
+ * 按数量或时间间隔触发，通过共享客户端以 _bulk 请求批量写入
+ */
+@Service
+public class ElasticsearchBulkIndexer {
+    private static final Logger logger = LoggerFactory.getLogger(ElasticsearchBulkIndexer.class);
+
+    @Autowired
+    private ElasticsearchClient esClient;
+
+    // 单次 _bulk 请求的最大操作数，待写队列达到该数量时立即触发写入
+    @Value("${elasticsearch.bulk.max-actions:200}")
+    private int maxActions = 200;
+
+    // 定时写入间隔
+    @Value("${elasticsearch.bulk.flush-interval-ms:1000}")
+    private long flushIntervalMs = 1000;
+
+    // 待写队列容量，队列满时调用方阻塞等待（背压）
+    @Value("${elasticsearch.bulk.queue-capacity:10000}")
+    private int queueCapacity = 10000;
+
+    // 队列满时调用方的最长等待时间，超时后丢弃该变更
+    @Value("${elasticsearch.bulk.offer-timeout-ms:5000}")
+    private long offerTimeoutMs = 5000;
+
+    // 写入失败（连接异常、429、5xx）的最大重试次数
+    @Value("${elasticsearch.bulk.max-retries:3}")
+    private int maxRetries = 3;
+
+    // 重试的初始等待时间，之后按指数递增
+    @Value("${elasticsearch.bulk.retry-backoff-ms:200}")
+    private long retryBackoffMs = 200;
+
+    // 待写入的操作，键为 index/id，保持入队顺序
+    private final LinkedHashMap<String, PendingAction> pending = new LinkedHashMap<>();
+    private final Object lock = new Object();
+    // 同一时刻只允许一个线程执行写入，保证同一文档的变更按顺序到达ES
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private ScheduledExecutorService scheduler;
+
+    private final List<FailureListener> failureListeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder succeededDocs = new LongAdder();
+    private final LongAdder failedDocs = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder totalFlushMillis = new LongAdder();
+    private final AtomicLong lastFlushMillis = new AtomicLong();
+    private final AtomicLong maxFlushMillis = new AtomicLong();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "es-bulk-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Elasticsearch批量索引管道已启动，批量大小: {}, 写入间隔: {}ms, 队列容量: {}",
+                maxActions, flushIntervalMs, queueCapacity);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 关闭前写入剩余的变更
+        flush();
+    }
+
+    /**
+     * 索引（新增或覆盖）文档
+     * @return 是否成功加入待写队列
+     */
+    public boolean index(String index, String id, Object document) {
+        return enqueue(new PendingAction(index, id, document));
+    }
+
+    /**
+     * 删除文档
+     * @return 是否成功加入待写队列
+     */
+    public boolean delete(String index, String id) {
+        return enqueue(new PendingAction(index, id, null));
+    }
+
+    /**
+     * 注册写入失败回调，文档在重试后仍写入失败时调用
+     */
+    public void addFailureListener(FailureListener listener) {
+        failureListeners.add(listener);
+    }
+
+    /**
+     * 当前待写入的操作数
+     */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * 获取队列深度、写入耗时等统计信息
+     */
+    public Map<String, Object> getStats() {
+        long flushCount = flushes.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queueDepth", getQueueDepth());
+        stats.put("maxQueueDepth", maxQueueDepth.get());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("enqueued", enqueued.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("flushes", flushCount);
+        stats.put("succeededDocs", succeededDocs.sum());
+        stats.put("failedDocs", failedDocs.sum());
+        stats.put("retries", retries.sum());
+        stats.put("lastFlushMillis", lastFlushMillis.get());
+        stats.put("maxFlushMillis", maxFlushMillis.get());
+        stats.put("avgFlushMillis", flushCount == 0 ? 0.0 : (double) totalFlushMillis.sum() / flushCount);
+        return stats;
+    }
+
+    /**
+     * 将队列中的全部变更写入ES
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<PendingAction> batch;
+            while (!(batch = drain()).isEmpty()) {
+                writeBatch(batch);
+            }
+        }
+    }
+
+    private boolean enqueue(PendingAction action) {
+        boolean full;
+        synchronized (lock) {
+            if (pending.containsKey(action.key())) {
+                // 同一文档的旧变更尚未写入，直接用新变更覆盖
+                pending.put(action.key(), action);
+                coalesced.increment();
+                enqueued.increment();
+                return true;
+            }
+
+            long deadline = System.currentTimeMillis() + offerTimeoutMs;
+            long remaining = offerTimeoutMs;
+            try {
+                while (pending.size() >= queueCapacity && remaining > 0) {
+                    requestFlush();
+                    lock.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (pending.size() >= queueCapacity) {
+                rejected.increment();
+                logger.warn("Elasticsearch批量索引队列已满（{}），丢弃文档 {} 的变更", queueCapacity, action.key());
+                return false;
+            }
+
+            pending.put(action.key(), action);
+            enqueued.increment();
+            maxQueueDepth.accumulateAndGet(pending.size(), Math::max);
+            full = pending.size() >= maxActions;
+        }
+        if (full) {
+            requestFlush();
+        }
+        return true;
+    }
+
+    /**
+     * 取出一批待写入的操作
+     */
+    private List<PendingAction> drain() {
+        synchronized (lock) {
+            List<PendingAction> batch = new ArrayList<>(Math.min(pending.size(), maxActions));
+            Iterator<PendingAction> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < maxActions) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            if (!batch.isEmpty()) {
+                // 唤醒因队列已满而等待的调用方
+                lock.notifyAll();
+            }
+            return batch;
+        }
+    }
+
+    private void writeBatch(List<PendingAction> batch) {
+        long start = System.currentTimeMillis();
+        List<PendingAction> toWrite = batch;
+        int attempt = 0;
+
+        while (!toWrite.isEmpty()) {
+            List<PendingAction> retryable = new ArrayList<>();
+            try {
+                BulkResponse response = esClient.bulk(buildRequest(toWrite));
+                collectFailures(toWrite, response, retryable);
+            } catch (Exception e) {
+                logger.warn("批量写入Elasticsearch失败（第{}次）: {}", attempt + 1, e.getMessage());
+                retryable.addAll(toWrite);
+            }
+
+            if (retryable.isEmpty()) {
+                break;
+            }
+            if (attempt >= maxRetries) {
+                logger.error("{} 个文档在重试 {} 次后仍写入失败，已放弃", retryable.size(), maxRetries);
+                notifyFailures(retryable, "重试" + maxRetries + "次后仍写入失败");
+                break;
+            }
+
+            // 指数退避后只重试失败的操作，已被新变更覆盖的文档不再重试
+            try {
+                Thread.sleep(retryBackoffMs << attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                notifyFailures(retryable, "写入线程被中断");
+                break;
+            }
+            attempt++;
+            retries.add(retryable.size());
+            toWrite = withoutSuperseded(retryable);
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        flushes.increment();
+        totalFlushMillis.add(elapsed);
+        lastFlushMillis.set(elapsed);
+        maxFlushMillis.accumulateAndGet(elapsed, Math::max);
+        logger.debug("批量写入 {} 个操作，耗时 {}ms", batch.size(), elapsed);
+    }
+
+    private BulkRequest buildRequest(List<PendingAction> actions) {
+        List<BulkOperation> operations = new ArrayList<>(actions.size());
+        for (PendingAction action : actions) {
+            if (action.document != null) {
+                operations.add(BulkOperation.of(b -> b.index(i -> i
+                        .index(action.index)
+                        .id(action.id)
+                        .document(action.document))));
+            } else {
+                operations.add(BulkOperation.of(b -> b.delete(d -> d
+                        .index(action.index)
+                        .id(action.id))));
+            }
+        }
+        return BulkRequest.of(r -> r.operations(operations));
+    }
+
+    /**
+     * 统计响应中每个操作的结果，可重试的失败（429、5xx）加入 retryable
+     */
+    private void collectFailures(List<PendingAction> actions, BulkResponse response, List<PendingAction> retryable) {
+        List<BulkResponseItem> items = response.items();
+        for (int i = 0; i < actions.size(); i++) {
+            PendingAction action = actions.get(i);
+            BulkResponseItem item = i < items.size() ? items.get(i) : null;
+            if (item == null) {
+                retryable.add(action);
+                continue;
+            }
+            boolean deleteNotFound = action.document == null && item.status() == 404;
+            if (item.error() == null || deleteNotFound) {
+                succeededDocs.increment();
+            } else if (item.status() == 429 || item.status() >= 500) {
+                retryable.add(action);
+            } else {
+                logger.error("文档 {} 写入失败，状态: {}, 原因: {}", action.key(), item.status(), item.error().reason());
+                notifyFailures(List.of(action), item.error().reason());
+            }
+        }
+    }
+
+    private void notifyFailures(List<PendingAction> actions, String reason) {
+        failedDocs.add(actions.size());
+        for (PendingAction action : actions) {
+            for (FailureListener listener : failureListeners) {
+                try {
+                    listener.onFailure(action.index, action.id, reason);
+                } catch (Exception e) {
+                    logger.warn("写入失败回调执行出错: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private List<PendingAction> withoutSuperseded(List<PendingAction> actions) {
+        List<PendingAction> result = new ArrayList<>(actions.size());
+        synchronized (lock) {
+            for (PendingAction action : actions) {
+                if (pending.containsKey(action.key())) {
+                    coalesced.increment();
+                } else {
+                    result.add(action);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void requestFlush() {
+        if (scheduler != null && !scheduler.isShutdown() && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Elasticsearch批量写入时发生错误: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 文档最终写入失败的回调
+     */
+    public interface FailureListener {
+        void onFailure(String index, String id, String reason);
+    }
+
+    /**
+     * 待写入的操作，document 为 null 表示删除
+     */
+    private static final class PendingAction {
+        private final String index;
+        private final String id;
+        private final Object document;
+
+        private PendingAction(String index, String id, Object document) {
+            this.index = index;
+            this.id = id;
+            this.document = document;
+        }
+
+        private String key() {
+            return index + "/" + id;
+        }
+    }
+}
@@ -1,29 +1,62 @@
 package com.se_07.backend.service.impl;
 
 import com.se_07.backend.service.EmbeddingService;
+import com.se_07.backend.util.LruTtlCache;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
 
 @Service
 @Slf4j
 public class EmbeddingServiceImpl implements EmbeddingService {
 
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
     private final RestTemplate restTemplate;
 
     @Value("${embedding.service.url:http://localhost:8000/embed}")
     private String embeddingServiceUrl;
 
+    // 查询向量缓存配置
+    @Value("${embedding.cache.max-size:2000}")
+    private int cacheMaxSize = 2000;
+
+    @Value("${embedding.cache.ttl-seconds:600}")
+    private long cacheTtlSeconds = 600;
+
+    // 微批处理配置：窗口期内的并发请求合并为一次 HTTP 调用，窗口为0时关闭合并
+    @Value("${embedding.batch.window-ms:5}")
+    private long batchWindowMs = 5;
+
+    @Value("${embedding.batch.max-size:32}")
+    private int batchMaxSize = 32;
+
+    private LruTtlCache<String, float[]> queryCache = new LruTtlCache<>(cacheMaxSize, cacheTtlSeconds * 1000);
+
+    private final Object batchLock = new Object();
+    private PendingBatch currentBatch;
+
+    private final LongAdder httpRequests = new LongAdder();
+    private final LongAdder coalescedTexts = new LongAdder();
+
     public EmbeddingServiceImpl() {
         // 配置RestTemplate以处理连接问题
         this.restTemplate = new RestTemplate();
-        
+
         // 设置连接超时和读取超时
         SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
         factory.setConnectTimeout(10000); // 10秒连接超时
@@ -31,48 +64,243 @@ public class EmbeddingServiceImpl implements EmbeddingService {
         this.restTemplate.setRequestFactory(factory);
     }
 
+    @PostConstruct
+    void initQueryCache() {
+        // 按注入后的配置重建缓存
+        this.queryCache = new LruTtlCache<>(cacheMaxSize, cacheTtlSeconds * 1000);
+    }
+
     @Override
     public float[] embed(String text) {
+        if (text == null) {
+            // 无法归一化的输入不走缓存
+            return requestSingle(null);
+        }
+
+        // 归一化文本只用作缓存键，发送给模型的仍是原始文本
+        String key = normalize(text);
+        float[] cached = queryCache.get(key);
+        if (cached != null) {
+            log.debug("Query vector cache hit for text: {}", key);
+            return cached.clone();
+        }
+
+        float[] vector = batchWindowMs > 0 ? embedCoalesced(key, text) : requestSingle(text);
+        if (vector.length > 0) {
+            queryCache.put(key, vector);
+        }
+        return vector.clone();
+    }
+
+    @Override
+    public List<float[]> embedBatch(List<String> texts) {
+        if (texts == null || texts.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<float[]> results = new ArrayList<>(Collections.nCopies(texts.size(), (float[]) null));
+
+        // 先查缓存，未命中的文本按归一化结果去重，请求时发送每组第一次出现的原始文本
+        Map<String, List<Integer>> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String key = texts.get(i) != null ? normalize(texts.get(i)) : "";
+            float[] cached = queryCache.get(key);
+            if (cached != null) {
+                results.set(i, cached.clone());
+            } else {
+                missing.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        List<String> keys = new ArrayList<>(missing.keySet());
+        for (int from = 0; from < keys.size(); from += Math.max(1, batchMaxSize)) {
+            List<String> chunk = keys.subList(from, Math.min(keys.size(), from + Math.max(1, batchMaxSize)));
+            List<String> chunkTexts = new ArrayList<>(chunk.size());
+            for (String key : chunk) {
+                String text = texts.get(missing.get(key).get(0));
+                chunkTexts.add(text != null ? text : "");
+            }
+            float[][] res = requestEmbeddings(chunkTexts);
+            for (int j = 0; j < chunk.size(); j++) {
+                float[] vector = vectorAt(res, j);
+                if (vector.length > 0) {
+                    queryCache.put(chunk.get(j), vector);
+                }
+                for (Integer index : missing.get(chunk.get(j))) {
+                    results.set(index, vector.clone());
+                }
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * 获取缓存与批处理统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>(queryCache.getStats());
+        stats.put("httpRequests", httpRequests.sum());
+        stats.put("coalescedTexts", coalescedTexts.sum());
+        return stats;
+    }
+
+    /**
+     * 将请求加入当前批次。第一个进入批次的线程作为发起者，
+     * 等待窗口期结束（或批次已满）后统一发送请求并唤醒其他等待者
+     */
+    private float[] embedCoalesced(String key, String text) {
+        PendingBatch batch;
+        CompletableFuture<float[]> future;
+        boolean leader;
+
+        synchronized (batchLock) {
+            leader = currentBatch == null;
+            if (leader) {
+                currentBatch = new PendingBatch();
+            }
+            batch = currentBatch;
+            future = batch.futures.computeIfAbsent(key, k -> new PendingText(text)).future;
+            if (batch.futures.size() >= batchMaxSize) {
+                // 批次已满，后续请求开启新批次，并提前唤醒发起者
+                currentBatch = null;
+                batchLock.notifyAll();
+            }
+        }
+
+        if (leader) {
+            flushAfterWindow(batch);
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new float[0];
+        } catch (ExecutionException e) {
+            log.error("Coalesced embedding request failed", e);
+            return new float[0];
+        }
+    }
+
+    private void flushAfterWindow(PendingBatch batch) {
+        List<PendingText> pending;
+        synchronized (batchLock) {
+            long deadline = System.currentTimeMillis() + batchWindowMs;
+            long remaining = batchWindowMs;
+            try {
+                while (currentBatch == batch && remaining > 0) {
+                    batchLock.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (currentBatch == batch) {
+                currentBatch = null;
+            }
+            pending = new ArrayList<>(batch.futures.values());
+        }
+
+        coalescedTexts.add(pending.size());
+        List<String> texts = new ArrayList<>(pending.size());
+        for (PendingText item : pending) {
+            texts.add(item.text);
+        }
+        float[][] res = null;
+        try {
+            res = requestEmbeddings(texts);
+        } finally {
+            for (int j = 0; j < pending.size(); j++) {
+                pending.get(j).future.complete(vectorAt(res, j));
+            }
+        }
+    }
+
+    private float[] requestSingle(String text) {
+        return vectorAt(requestEmbeddings(Collections.singletonList(text)), 0);
+    }
+
+    /**
+     * 调用嵌入服务，连接失败时按递增间隔重试
+     * @return 向量数组，失败时返回null
+     */
+    private float[][] requestEmbeddings(List<String> texts) {
         int maxRetries = 3;
         int retryCount = 0;
-        
+
         while (retryCount < maxRetries) {
             try {
                 Map<String, Object> payload = new HashMap<>();
-                payload.put("texts", Collections.singletonList(text));
-                
-                log.debug("Calling embedding service for text: {}", text);
+                payload.put("texts", texts);
+
+                log.debug("Calling embedding service for {} text(s): {}", texts.size(), texts);
+                httpRequests.increment();
                 float[][] res = restTemplate.postForObject(embeddingServiceUrl, payload, float[][].class);
-                
+
                 if (res != null && res.length > 0) {
-                    log.debug("Successfully got embedding vector of length: {}", res[0].length);
-                    return res[0];
+                    log.debug("Successfully got {} embedding vector(s) of length: {}", res.length, res[0] != null ? res[0].length : 0);
+                    return res;
                 } else {
                     log.warn("Embedding service returned null or empty result");
-                    return new float[0];
+                    return null;
                 }
             } catch (org.springframework.web.client.ResourceAccessException e) {
                 retryCount++;
                 log.warn("Connection error on attempt {}: {}", retryCount, e.getMessage());
-                
+
                 if (retryCount >= maxRetries) {
                     log.error("Failed to call embedding service after {} attempts", maxRetries, e);
-                    return new float[0];
+                    return null;
                 }
-                
+
                 // 等待一段时间后重试
                 try {
                     Thread.sleep(1000 * retryCount); // 递增等待时间
                 } catch (InterruptedException ie) {
                     Thread.currentThread().interrupt();
-                    return new float[0];
+                    return null;
                 }
             } catch (Exception e) {
                 log.error("Unexpected error calling embedding service", e);
-                return new float[0];
+                return null;
             }
         }
-        
-        return new float[0];
+
+        return null;
+    }
+
+    private static float[] vectorAt(float[][] res, int index) {
+        if (res == null || index >= res.length || res[index] == null) {
+            return new float[0];
+        }
+        return res[index];
+    }
+
+    /**
+     * 归一化查询文本作为缓存键：去除首尾空白并合并连续空白。
+     * 大小写对模型有意义，不同大小写的文本分别缓存
+     */
+    static String normalize(String text) {
+        return WHITESPACE.matcher(text.trim()).replaceAll(" ");
+    }
+
+    /**
+     * 等待合并发送的一批请求，按归一化文本去重
+     */
+    private static final class PendingBatch {
+        private final Map<String, PendingText> futures = new LinkedHashMap<>();
+    }
+
+    /**
+     * 批次中的一条文本：发送给模型的原始文本及等待结果的 future
+     */
+    private static final class PendingText {
+        private final String text;
+        private final CompletableFuture<float[]> future = new CompletableFuture<>();
+
+        private PendingText(String text) {
+            this.text = text;
+        }
     }
-} 
\ No newline at end of file
+}
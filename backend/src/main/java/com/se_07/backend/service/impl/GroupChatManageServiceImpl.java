@@ -3,15 +3,15 @@ package com.se_07.backend.service.impl;
 import com.se_07.backend.dto.UserProfileResponse;
 import com.se_07.backend.entity.GroupChatInformation;
 import com.se_07.backend.entity.GroupChatMember;
-import com.se_07.backend.entity.User;
 import com.se_07.backend.repository.GroupChatInformationRepository;
 import com.se_07.backend.repository.GroupChatMemberRepository;
-import com.se_07.backend.repository.UserRepository;
 import com.se_07.backend.service.GroupChatManageService;
+import com.se_07.backend.service.impl.UserSummaryCache.UserSummary;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,10 +21,11 @@ public class GroupChatManageServiceImpl implements GroupChatManageService {
     @Autowired
     private GroupChatMemberRepository groupChatMemberRepository;
     @Autowired
-    private UserRepository userRepository;
-    
+    private UserSummaryCache userSummaryCache;
     @Autowired
-    private com.se_07.backend.repository.UserProfileRepository userProfileRepository;
+    private GroupMembershipIndex groupMembershipIndex;
+    @Autowired
+    private PresenceRegistry presenceRegistry;
 
     @Override
     public Long createGroup(String groupName, Long creatorUserId) {
@@ -36,6 +37,7 @@ public class GroupChatManageServiceImpl implements GroupChatManageService {
         member.setGroupId(group.getGroupId());
         member.setUserId(creatorUserId);
         groupChatMemberRepository.save(member);
+        groupMembershipIndex.addMember(group.getGroupId(), creatorUserId);
         return group.getGroupId();
     }
 
@@ -52,6 +54,7 @@ public class GroupChatManageServiceImpl implements GroupChatManageService {
         member.setGroupId(groupId);
         member.setUserId(userId);
         groupChatMemberRepository.save(member);
+        groupMembershipIndex.addMember(groupId, userId);
     }
 
     @Override
@@ -65,17 +68,19 @@ public class GroupChatManageServiceImpl implements GroupChatManageService {
     @Override
     public List<UserProfileResponse> getGroupMembers(Long groupId) {
         List<GroupChatMember> members = groupChatMemberRepository.findByGroupId(groupId);
+        // 成员的用户名和头像（来自UserProfile）从用户摘要缓存批量读取
+        Map<Long, UserSummary> summaries = userSummaryCache.getAll(
+            members.stream().map(GroupChatMember::getUserId).collect(Collectors.toSet()));
         return members.stream()
             .map(member -> {
-                User user = userRepository.findById(member.getUserId()).orElse(null);
+                UserSummary summary = summaries.get(member.getUserId());
                 UserProfileResponse resp = new UserProfileResponse();
-                if (user != null) {
-                    resp.setId(user.getId());
-                    resp.setUsername(user.getUsername());
-                    // 从UserProfile中获取头像URL
-                    userProfileRepository.findByUserId(user.getId())
-                        .ifPresent(profile -> resp.setAvatarUrl(profile.getAvatarUrl()));
+                if (summary != null) {
+                    resp.setId(summary.getId());
+                    resp.setUsername(summary.getUsername());
+                    resp.setAvatarUrl(summary.getAvatarUrl());
                 }
+                resp.setOnline(presenceRegistry.isOnline(member.getUserId()));
                 return resp;
             })
             .collect(Collectors.toList());
@@ -86,6 +91,7 @@ public class GroupChatManageServiceImpl implements GroupChatManageService {
         GroupChatMember member = groupChatMemberRepository.findByGroupIdAndUserId(groupId, userId);
         if (member != null) {
             groupChatMemberRepository.delete(member);
+            groupMembershipIndex.removeMember(groupId, userId);
         }
     }
 
@@ -94,6 +100,7 @@ public class GroupChatManageServiceImpl implements GroupChatManageService {
         GroupChatMember member = groupChatMemberRepository.findByGroupIdAndUserId(groupId, userId);
         if (member != null) {
             groupChatMemberRepository.delete(member);
+            groupMembershipIndex.removeMember(groupId, userId);
         }
     }
 
@@ -107,6 +114,7 @@ public class GroupChatManageServiceImpl implements GroupChatManageService {
         creator.setGroupId(group.getGroupId());
         creator.setUserId(creatorUserId);
         groupChatMemberRepository.save(creator);
+        groupMembershipIndex.addMember(group.getGroupId(), creatorUserId);
         // 其他成员入群（去重，排除创建者）
         // 使用Set去重，避免memberIds中有重复值导致主键冲突
         java.util.Set<Long> uniqueMemberIds = new java.util.HashSet<>(memberIds);
@@ -116,6 +124,7 @@ public class GroupChatManageServiceImpl implements GroupChatManageService {
                 member.setGroupId(group.getGroupId());
                 member.setUserId(userId);
                 groupChatMemberRepository.save(member);
+                groupMembershipIndex.addMember(group.getGroupId(), userId);
             }
         }
         return group.getGroupId();
@@ -4,12 +4,14 @@ import com.se_07.backend.dto.GroupChatMessageDTO;
 import com.se_07.backend.entity.GroupChatMessage;
 import com.se_07.backend.repository.GroupChatMessageRepository;
 import com.se_07.backend.service.GroupChatService;
-import com.se_07.backend.repository.UserRepository;
-import com.se_07.backend.entity.User;
+import com.se_07.backend.service.impl.UserSummaryCache.UserSummary;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,39 +19,70 @@ public class GroupChatServiceImpl implements GroupChatService {
     @Autowired
     private GroupChatMessageRepository groupChatMessageRepository;
     @Autowired
-    private UserRepository userRepository;
+    private UserSummaryCache userSummaryCache;
+    @Autowired
+    private ChatMessageWriteBehind chatMessageWriteBehind;
 
     @Override
     public GroupChatMessageDTO sendGroupMessage(GroupChatMessageDTO dto) {
+        GroupChatMessage msg = toEntity(dto);
+        chatMessageWriteBehind.acknowledge(chatMessageWriteBehind.enqueue(msg), null).join();
+        dto.setMessageId(msg.getMessageId());
+        dto.setMessageTime(msg.getMessageTime());
+        return dto;
+    }
+
+    /**
+     * 消息分配ID后立即返回可推送的DTO（含发送者用户名），不等待数据库写入；
+     * FLUSH 确认模式下返回的 Future 在消息写入数据库后才完成
+     */
+    @Override
+    public CompletableFuture<GroupChatMessageDTO> ingestGroupMessage(GroupChatMessageDTO dto) {
+        GroupChatMessage msg = toEntity(dto);
+        CompletableFuture<Void> persisted = chatMessageWriteBehind.enqueue(msg);
+        return chatMessageWriteBehind.acknowledge(persisted, toDTO(msg));
+    }
+
+    private GroupChatMessage toEntity(GroupChatMessageDTO dto) {
+        if (dto.getContent() == null) {
+            throw new RuntimeException("消息内容不能为空");
+        }
+        if (dto.getContent().length() > ChatMessageWriteBehind.MAX_CONTENT_LENGTH) {
+            throw new RuntimeException("消息内容不能超过" + ChatMessageWriteBehind.MAX_CONTENT_LENGTH + "字");
+        }
         GroupChatMessage msg = new GroupChatMessage();
         msg.setGroupId(dto.getGroupId());
         msg.setUserId(dto.getUserId());
         msg.setContent(dto.getContent());
-        msg.setMessageTime(dto.getMessageTime() != null ? dto.getMessageTime() : LocalDateTime.now());
-        GroupChatMessage saved = groupChatMessageRepository.save(msg);
-        dto.setMessageId(saved.getMessageId());
-        dto.setMessageTime(saved.getMessageTime());
-        return dto;
+        msg.setMessageTime(dto.getMessageTime());
+        return msg;
     }
 
     @Override
     public List<GroupChatMessageDTO> getGroupMessages(Long groupId) {
-        return groupChatMessageRepository.findByGroupIdOrderByMessageTimeAsc(groupId)
-                .stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        List<GroupChatMessage> messages = groupChatMessageRepository.findByGroupIdOrderByMessageTimeAsc(groupId);
+        // 发送者用户名从用户摘要缓存批量读取
+        Set<Long> senderIds = messages.stream().map(GroupChatMessage::getUserId).collect(Collectors.toSet());
+        Map<Long, UserSummary> senders = userSummaryCache.getAll(senderIds);
+        List<GroupChatMessageDTO> result = new ArrayList<>(messages.size());
+        for (GroupChatMessage msg : messages) {
+            result.add(toDTO(msg, senders.get(msg.getUserId())));
+        }
+        return result;
     }
 
     public GroupChatMessageDTO toDTO(GroupChatMessage msg) {
+        return toDTO(msg, userSummaryCache.get(msg.getUserId()));
+    }
+
+    static GroupChatMessageDTO toDTO(GroupChatMessage msg, UserSummary sender) {
         GroupChatMessageDTO dto = new GroupChatMessageDTO();
         dto.setMessageId(msg.getMessageId());
         dto.setGroupId(msg.getGroupId());
         dto.setUserId(msg.getUserId());
         dto.setContent(msg.getContent());
         dto.setMessageTime(msg.getMessageTime());
-        // 查询发送者用户名
-        User user = userRepository.findById(msg.getUserId()).orElse(null);
-        dto.setUserName(user != null ? user.getUsername() : null);
+        dto.setUserName(sender != null ? sender.getUsername() : null);
         return dto;
     }
 } 
\ No newline at end of file
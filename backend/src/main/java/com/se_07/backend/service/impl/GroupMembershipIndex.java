@@ -0,0 +1,191 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.repository.GroupChatMemberRepository;
+import com.se_07.backend.util.LruTtlCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 群成员索引（群ID -> 成员用户ID集合）
+ * WebSocket 订阅和发送鉴权每条消息都要判断成员关系，索引按群惰性加载，之后的判断为 O(1) 内存查找。
+ * 成员变更由 GroupChatManageServiceImpl 写库后调用 {@link #addMember} / {@link #removeMember} 同步到已加载的群，
+ * 在事务中调用时提交后才生效，回滚的变更不会进入索引
+ */
+@Component
+public class GroupMembershipIndex {
+
+    @Autowired
+    private GroupChatMemberRepository groupChatMemberRepository;
+
+    @Value("${group-membership.cache.max-size:20000}")
+    private int cacheMaxSize = 20000;
+
+    // 兜底过期时间，防止绕过管理服务的成员变更长期不可见
+    @Value("${group-membership.cache.ttl-seconds:1800}")
+    private long cacheTtlSeconds = 1800;
+
+    private LruTtlCache<Long, MemberSet> cache = new LruTtlCache<>(cacheMaxSize, cacheTtlSeconds * 1000);
+
+    // 成员变更计数，加载期间发生变更时不缓存加载结果，避免旧数据覆盖刚同步的变更
+    private final Object lock = new Object();
+    private long version;
+
+    @PostConstruct
+    void initCache() {
+        // 按注入后的配置重建缓存
+        this.cache = new LruTtlCache<>(cacheMaxSize, cacheTtlSeconds * 1000);
+    }
+
+    /**
+     * 判断用户是否为群成员
+     */
+    public boolean isMember(Long groupId, Long userId) {
+        if (groupId == null || userId == null) {
+            return false;
+        }
+        return members(groupId).contains(userId);
+    }
+
+    /**
+     * 成员入群后同步索引
+     */
+    public void addMember(Long groupId, Long userId) {
+        afterCommit(() -> {
+            synchronized (lock) {
+                version++;
+                MemberSet members = cache.get(groupId);
+                if (members != null) {
+                    cache.put(groupId, members.with(userId));
+                }
+            }
+        });
+    }
+
+    /**
+     * 成员退群或被移除后同步索引
+     */
+    public void removeMember(Long groupId, Long userId) {
+        afterCommit(() -> {
+            synchronized (lock) {
+                version++;
+                MemberSet members = cache.get(groupId);
+                if (members != null) {
+                    cache.put(groupId, members.without(userId));
+                }
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable apply) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        return cache.getStats();
+    }
+
+    private MemberSet members(Long groupId) {
+        MemberSet members = cache.get(groupId);
+        if (members != null) {
+            return members;
+        }
+        long loadVersion;
+        synchronized (lock) {
+            loadVersion = version;
+        }
+        List<Long> userIds = groupChatMemberRepository.findUserIdsByGroupId(groupId);
+        members = MemberSet.of(userIds.stream().mapToLong(Long::longValue).toArray());
+        synchronized (lock) {
+            if (version == loadVersion) {
+                cache.put(groupId, members);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * 不可变的 long 集合，开放寻址哈希表，避免 Set<Long> 的装箱开销
+     * 成员变更远少于查询，变更时复制生成新集合
+     */
+    static final class MemberSet {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private final long[] table;
+        private final int size;
+
+        private MemberSet(long[] table, int size) {
+            this.table = table;
+            this.size = size;
+        }
+
+        static MemberSet of(long[] values) {
+            // 容量取不小于 2 倍元素数的 2 的幂，保证探测链较短
+            int capacity = Integer.highestOneBit(Math.max(4, values.length * 2 - 1)) << 1;
+            long[] table = new long[capacity];
+            Arrays.fill(table, EMPTY);
+            int size = 0;
+            for (long value : values) {
+                int slot = slot(table, value);
+                if (table[slot] == EMPTY) {
+                    table[slot] = value;
+                    size++;
+                }
+            }
+            return new MemberSet(table, size);
+        }
+
+        boolean contains(long value) {
+            return value != EMPTY && table[slot(table, value)] == value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        MemberSet with(long value) {
+            if (contains(value)) {
+                return this;
+            }
+            long[] values = Arrays.copyOf(toArray(), size + 1);
+            values[size] = value;
+            return of(values);
+        }
+
+        MemberSet without(long value) {
+            if (!contains(value)) {
+                return this;
+            }
+            return of(Arrays.stream(toArray()).filter(v -> v != value).toArray());
+        }
+
+        long[] toArray() {
+            return Arrays.stream(table).filter(v -> v != EMPTY).toArray();
+        }
+
+        private static int slot(long[] table, long value) {
+            int mask = table.length - 1;
+            int slot = Long.hashCode(value * 0x9E3779B97F4A7C15L) & mask;
+            while (table[slot] != EMPTY && table[slot] != value) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.se_07.backend.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.se_07.backend.entity.TravelGroup;
+import com.se_07.backend.entity.TravelGroupTag;
+import com.se_07.backend.repository.TravelGroupRepository;
+import com.se_07.backend.repository.TravelGroupTagRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 组团推荐索引
+ * 每个公开、招募中且未满员的组团在内存中保存一份特征：标签ID/权重数组、创建者、目的地、出发日期和人数。
+ * 推荐时逐个组团按四项加权打分，用大小为K的最小堆取前K个，耗时与组团数线性相关且不查库：
+ *   - 标签匹配：组团标签权重中属于用户偏好标签的比例
+ *   - 目的地匹配：目的地 tag_scores 正权重中属于用户偏好标签的比例（见 {@link TagScoreIndex}）
+ *   - 出发日期：越近越高，已出发的为0
+ *   - 剩余名额：剩余名额占人数上限的比例
+ *
+ * 组团创建、成员变化和状态变化后由 TravelGroupServiceImpl 调用 {@link #update} 在事务提交后更新单个组团；
+ * 启动时异步全量加载，之后按固定间隔全量刷新兜底；重建期间单独更新过的组团以更新后的状态为准，
+ * 不会被重建开始前读到的旧快照覆盖
+ */
+@Component
+public class GroupRecommendationIndex {
+    private static final Logger logger = LoggerFactory.getLogger(GroupRecommendationIndex.class);
+
+    // 出发日期得分减半所需的天数
+    private static final float DATE_HALF_LIFE_DAYS = 30f;
+
+    @Autowired
+    private TravelGroupRepository travelGroupRepository;
+
+    @Autowired
+    private TravelGroupTagRepository travelGroupTagRepository;
+
+    @Autowired
+    private TagScoreIndex tagScoreIndex;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${group-recommendation.refresh-interval-ms:600000}")
+    private long refreshIntervalMs = 600000;
+
+    @Value("${group-recommendation.limit:20}")
+    private int limit = 20;
+
+    @Value("${group-recommendation.weight.tag:0.4}")
+    private float tagWeight = 0.4f;
+
+    @Value("${group-recommendation.weight.destination:0.3}")
+    private float destinationWeight = 0.3f;
+
+    @Value("${group-recommendation.weight.date:0.2}")
+    private float dateWeight = 0.2f;
+
+    @Value("${group-recommendation.weight.capacity:0.1}")
+    private float capacityWeight = 0.1f;
+
+    private final ConcurrentMap<Long, GroupFeatures> features = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+
+    // 单个组团更新的序号：重建开始后被更新过的组团，合并时保留更新后的状态
+    private final Object applyLock = new Object();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, Long> updatedAt = new HashMap<>();
+
+    private ScheduledExecutorService refreshExecutor;
+
+    @PostConstruct
+    void start() {
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "group-recommendation-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutor.scheduleWithFixedDelay(this::rebuildSafely, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    private void rebuildSafely() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.error("组团推荐索引刷新失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 全量重建：两次查询取出所有可推荐组团的特征和标签权重
+     */
+    synchronized void rebuild() {
+        long startTime = System.currentTimeMillis();
+        long loadSequence = sequence.get();
+        Map<Long, List<Object[]>> tagsByGroup = new HashMap<>();
+        for (Object[] row : travelGroupTagRepository.findWeightsByGroupStatus(TravelGroup.GroupStatus.招募中)) {
+            tagsByGroup.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add(row);
+        }
+
+        Map<Long, GroupFeatures> fresh = new HashMap<>();
+        for (Object[] row : travelGroupRepository.findRecommendationFeatures(TravelGroup.GroupStatus.招募中)) {
+            Long groupId = (Long) row[0];
+            List<Object[]> tags = tagsByGroup.getOrDefault(groupId, Collections.emptyList());
+            int[] tagIds = new int[tags.size()];
+            float[] weights = new float[tags.size()];
+            for (int i = 0; i < tags.size(); i++) {
+                tagIds[i] = ((Long) tags.get(i)[1]).intValue();
+                weights[i] = weightOf((BigDecimal) tags.get(i)[2]);
+            }
+            fresh.put(groupId, new GroupFeatures(groupId, (Long) row[1], (Long) row[2], (LocalDate) row[3],
+                    (Integer) row[4], (Integer) row[5], tagIds, weights));
+        }
+
+        synchronized (applyLock) {
+            updatedAt.forEach((groupId, updateSequence) -> {
+                if (updateSequence > loadSequence) {
+                    GroupFeatures current = features.get(groupId);
+                    if (current != null) {
+                        fresh.put(groupId, current);
+                    } else {
+                        fresh.remove(groupId);
+                    }
+                }
+            });
+            updatedAt.values().removeIf(updateSequence -> updateSequence <= loadSequence);
+            features.keySet().retainAll(fresh.keySet());
+            features.putAll(fresh);
+        }
+        loaded = true;
+        logger.info("组团推荐索引已重建: {} 个组团, 耗时 {}ms", fresh.size(), System.currentTimeMillis() - startTime);
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    rebuild();
+                }
+            }
+        }
+    }
+
+    /**
+     * 组团创建或人数、状态、标签变化后更新索引，不再可推荐的组团从索引移除
+     * 在事务中调用时提交后才生效，回滚的修改不会进入索引
+     */
+    public void update(TravelGroup group) {
+        if (group == null || group.getId() == null) {
+            return;
+        }
+        Long groupId = group.getId();
+        GroupFeatures updated = isRecommendable(group) ? featuresOf(group) : null;
+        Runnable apply = () -> {
+            synchronized (applyLock) {
+                updatedAt.put(groupId, sequence.incrementAndGet());
+                if (updated == null) {
+                    features.remove(groupId);
+                } else {
+                    features.put(groupId, updated);
+                }
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    private static boolean isRecommendable(TravelGroup group) {
+        return Boolean.TRUE.equals(group.getIsPublic())
+                && TravelGroup.GroupStatus.招募中.equals(group.getStatus())
+                && group.getCurrentMembers() != null && group.getMaxMembers() != null
+                && group.getCurrentMembers() < group.getMaxMembers();
+    }
+
+    private GroupFeatures featuresOf(TravelGroup group) {
+        int[] tagIds;
+        float[] weights;
+        List<TravelGroupTag> tags = group.getTravelTags();
+        GroupFeatures existing = features.get(group.getId());
+        if (tags == null && existing != null) {
+            // 标签未加载时沿用索引中的标签
+            tagIds = existing.tagIds;
+            weights = existing.tagWeights;
+        } else {
+            List<TravelGroupTag> list = tags != null ? tags : Collections.emptyList();
+            tagIds = new int[list.size()];
+            weights = new float[list.size()];
+            for (int i = 0; i < list.size(); i++) {
+                tagIds[i] = list.get(i).getTag().getId().intValue();
+                weights[i] = weightOf(list.get(i).getWeight());
+            }
+        }
+        return new GroupFeatures(group.getId(),
+                group.getCreator() != null ? group.getCreator().getId() : null,
+                group.getDestination() != null ? group.getDestination().getId() : null,
+                group.getStartDate(), group.getCurrentMembers(), group.getMaxMembers(), tagIds, weights);
+    }
+
+    private static float weightOf(BigDecimal weight) {
+        return weight != null ? weight.floatValue() : 1f;
+    }
+
+    /**
+     * 解析用户偏好JSON {"标签ID": 1, ...}，返回值大于0且在标签表中存在的标签ID
+     */
+    public int[] preferredTagIds(String travelPreferences) {
+        if (travelPreferences == null || travelPreferences.trim().isEmpty()) {
+            return new int[0];
+        }
+        List<Integer> tagIds = new ArrayList<>();
+        try {
+            JsonNode root = objectMapper.readTree(travelPreferences);
+            if (root != null && root.isObject()) {
+                root.fields().forEachRemaining(field -> {
+                    if (field.getValue().isNumber() && field.getValue().asDouble() > 0) {
+                        try {
+                            tagIds.add(Integer.valueOf(field.getKey()));
+                        } catch (NumberFormatException ignored) {
+                            // 非数字的key不是标签ID
+                        }
+                    }
+                });
+            }
+        } catch (Exception e) {
+            logger.warn("解析用户偏好JSON失败: {}", e.getMessage());
+        }
+        return tagScoreIndex.knownTagIds(tagIds.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * 标签名称转为标签ID，忽略不存在的标签
+     */
+    public int[] resolveTagIds(Collection<String> tagNames) {
+        return tagScoreIndex.resolveTagIds(tagNames).stream().mapToInt(Long::intValue).toArray();
+    }
+
+    /**
+     * 按得分降序返回推荐的组团ID（同分按ID升序），最多 group-recommendation.limit 个
+     * 不推荐用户自己创建的组团和 excludedGroupIds 中的组团
+     */
+    public List<Long> recommend(Long userId, int[] preferredTagIds, Collection<Long> excludedGroupIds) {
+        ensureLoaded();
+        // 偏好标签通常只有几个，排序后二分查找，不按标签ID分配数组
+        int[] preferred = Arrays.stream(preferredTagIds).distinct().sorted().toArray();
+        Set<Long> excluded = excludedGroupIds != null ? new HashSet<>(excludedGroupIds) : Collections.emptySet();
+        long today = LocalDate.now().toEpochDay();
+
+        // 同一目的地只计算一次目的地匹配度
+        Map<Long, Float> destinationScores = new HashMap<>();
+        TopK top = new TopK(limit);
+        for (GroupFeatures group : features.values()) {
+            if ((userId != null && userId.equals(group.creatorId)) || excluded.contains(group.groupId)) {
+                continue;
+            }
+            float destinationScore = group.destinationId == null || preferredTagIds.length == 0 ? 0f
+                    : destinationScores.computeIfAbsent(group.destinationId,
+                            id -> tagScoreIndex.destinationTagShare(id, preferredTagIds));
+            float score = tagWeight * group.tagShare(preferred)
+                    + destinationWeight * destinationScore
+                    + dateWeight * group.dateScore(today)
+                    + capacityWeight * group.capacityScore();
+            top.offer(group.groupId, score);
+        }
+        return top.toRankedList();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loaded", loaded);
+        stats.put("groups", features.size());
+        stats.put("limit", limit);
+        return stats;
+    }
+
+    /**
+     * 单个组团的推荐特征
+     */
+    static final class GroupFeatures {
+        final long groupId;
+        final Long creatorId;
+        final Long destinationId;
+        // 出发日期（epoch day），未设置时为 Long.MIN_VALUE
+        final long startEpochDay;
+        final int currentMembers;
+        final int maxMembers;
+        final int[] tagIds;
+        final float[] tagWeights;
+        final float totalTagWeight;
+
+        GroupFeatures(long groupId, Long creatorId, Long destinationId, LocalDate startDate,
+                      int currentMembers, int maxMembers, int[] tagIds, float[] tagWeights) {
+            this.groupId = groupId;
+            this.creatorId = creatorId;
+            this.destinationId = destinationId;
+            this.startEpochDay = startDate != null ? startDate.toEpochDay() : Long.MIN_VALUE;
+            this.currentMembers = currentMembers;
+            this.maxMembers = maxMembers;
+            this.tagIds = tagIds;
+            this.tagWeights = tagWeights;
+            float total = 0;
+            for (float weight : tagWeights) {
+                if (weight > 0) {
+                    total += weight;
+                }
+            }
+            this.totalTagWeight = total;
+        }
+
+        /**
+         * 组团标签正权重中属于偏好标签的比例，preferred 为升序排列的标签ID
+         */
+        float tagShare(int[] preferred) {
+            if (totalTagWeight <= 0) {
+                return 0f;
+            }
+            float matched = 0;
+            for (int i = 0; i < tagIds.length; i++) {
+                if (tagWeights[i] > 0 && Arrays.binarySearch(preferred, tagIds[i]) >= 0) {
+                    matched += tagWeights[i];
+                }
+            }
+            return matched / totalTagWeight;
+        }
+
+        float dateScore(long today) {
+            if (startEpochDay == Long.MIN_VALUE || startEpochDay < today) {
+                return 0f;
+            }
+            return 1f / (1f + (startEpochDay - today) / DATE_HALF_LIFE_DAYS);
+        }
+
+        float capacityScore() {
+            return maxMembers > 0 ? Math.max(0, maxMembers - currentMembers) / (float) maxMembers : 0f;
+        }
+    }
+
+    /**
+     * 保留得分最高的K个组团：以最差者为堆顶的二叉堆，组团ID与得分存在并行的基本类型数组中
+     */
+    static final class TopK {
+        private final long[] ids;
+        private final float[] scores;
+        private int size;
+
+        TopK(int k) {
+            ids = new long[Math.max(0, k)];
+            scores = new float[Math.max(0, k)];
+        }
+
+        void offer(long id, float score) {
+            if (ids.length == 0) {
+                return;
+            }
+            if (size < ids.length) {
+                ids[size] = id;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (worse(ids[0], scores[0], id, score)) {
+                ids[0] = id;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * 得分降序（同分按ID升序）的组团ID，调用后堆被清空
+         */
+        List<Long> toRankedList() {
+            Long[] ranked = new Long[size];
+            for (int i = size - 1; i >= 0; i--) {
+                ranked[i] = ids[0];
+                size--;
+                ids[0] = ids[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return Arrays.asList(ranked);
+        }
+
+        // a 是否排在 b 之后
+        private static boolean worse(long aId, float aScore, long bId, float bScore) {
+            int cmp = Float.compare(aScore, bScore);
+            return cmp != 0 ? cmp < 0 : aId > bId;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!worse(ids[i], scores[i], ids[parent], scores[parent])) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                int right = left + 1;
+                int worst = i;
+                if (left < size && worse(ids[left], scores[left], ids[worst], scores[worst])) {
+                    worst = left;
+                }
+                if (right < size && worse(ids[right], scores[right], ids[worst], scores[worst])) {
+                    worst = right;
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
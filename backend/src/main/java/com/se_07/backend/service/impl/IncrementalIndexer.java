@@ -0,0 +1,672 @@
+package com.se_07.backend.service.impl;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.indices.CreateIndexResponse;
+import com.se_07.backend.dto.CommunityEntryDocument;
+import com.se_07.backend.entity.SearchIndexRetry;
+import com.se_07.backend.entity.SearchIndexRetry.EntityType;
+import com.se_07.backend.repository.SearchIndexRetryRepository;
+import com.se_07.backend.service.EmbeddingService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 增量搜索索引器
+ * 在 JVM 内构建与 index_single_community_entry.py / index_authors.py 相同的文档，
+ * 待索引的实体按类型合并成批，一次调用嵌入服务批量接口生成向量，再交给批量索引管道写入ES。
+ * 实体变更由 SearchIndexOutboxRelay 从发件箱读取后按批交给本类；
+ * 失败的实体写入 search_index_retries 表，按指数退避重新索引
+ */
+@Service
+public class IncrementalIndexer {
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalIndexer.class);
+
+    private static final int VECTOR_DIMENSIONS = 768;
+    private static final long MAX_RETRY_BACKOFF_MS = TimeUnit.HOURS.toMillis(1);
+
+    // 与 index_single_community_entry.py 相同的查询，按ID批量读取
+    private static final String COMMUNITY_ENTRY_SQL = """
+            SELECT
+                ce.id,
+                ce.share_code,
+                ce.description,
+                ce.view_count,
+                ce.created_at,
+                ce.updated_at,
+                i.title as itinerary_title,
+                i.start_date,
+                i.end_date,
+                GROUP_CONCAT(DISTINCT d.name SEPARATOR ', ') as destinations,
+                u.username as author_username,
+                u.id as author_id,
+                GROUP_CONCAT(DISTINCT t.tag SEPARATOR ', ') as tags
+            FROM community_entries ce
+            JOIN itineraries i ON ce.itinerary_id = i.id
+            JOIN user u ON i.user_id = u.id
+            LEFT JOIN itinerary_days iday ON i.id = iday.itinerary_id
+            LEFT JOIN itinerary_activities ia ON iday.id = ia.itinerary_day_id
+            LEFT JOIN attractions a ON ia.attraction_id = a.id
+            LEFT JOIN destinations d ON a.destination_id = d.id
+            LEFT JOIN community_entry_tags cet ON ce.id = cet.share_entry_id
+            LEFT JOIN tags t ON cet.tag_id = t.id
+            WHERE ce.id IN (%s) AND i.permission_status = '所有人可见'
+            GROUP BY ce.id, ce.share_code, ce.description, ce.view_count, ce.created_at, ce.updated_at,
+                     i.title, i.start_date, i.end_date, u.username, u.id
+            """;
+
+    // 与 index_authors.py 相同的查询，按ID批量读取（新注册的用户也会被索引）
+    private static final String AUTHOR_SQL = """
+            SELECT
+                u.id,
+                u.username,
+                u.email,
+                u.created_at,
+                u.updated_at,
+                COUNT(DISTINCT i.id) as itinerary_count,
+                COUNT(DISTINCT ce.id) as community_entry_count,
+                SUM(ce.view_count) as total_views,
+                GROUP_CONCAT(DISTINCT d.name SEPARATOR ', ') as visited_destinations
+            FROM user u
+            LEFT JOIN itineraries i ON u.id = i.user_id
+            LEFT JOIN community_entries ce ON i.id = ce.itinerary_id
+            LEFT JOIN itinerary_days iday ON i.id = iday.itinerary_id
+            LEFT JOIN itinerary_activities ia ON iday.id = ia.itinerary_day_id
+            LEFT JOIN attractions a ON ia.attraction_id = a.id
+            LEFT JOIN destinations d ON a.destination_id = d.id
+            WHERE u.id IN (%s)
+            GROUP BY u.id, u.username, u.email, u.created_at, u.updated_at
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Autowired
+    private ElasticsearchBulkIndexer bulkIndexer;
+
+    @Autowired
+    private ElasticsearchClient esClient;
+
+    @Autowired
+    private SearchIndexRetryRepository retryRepository;
+
+    @Value("${elasticsearch.index.community:community_entries}")
+    private String communityEntriesIndex = "community_entries";
+
+    @Value("${semantic.author.index.name:authors}")
+    private String authorsIndex = "authors";
+
+    // 索引工作线程数
+    @Value("${indexer.worker-threads:2}")
+    private int workerThreads = 2;
+
+    // 每批处理的实体数，同时也是一次嵌入请求的文本数
+    @Value("${indexer.batch-size:32}")
+    private int batchSize = 32;
+
+    // 每种实体在内存中等待索引的最大数量，超出后直接写入重试队列
+    @Value("${indexer.pending-capacity:5000}")
+    private int pendingCapacity = 5000;
+
+    // 重试队列轮询间隔
+    @Value("${indexer.retry.poll-interval-ms:30000}")
+    private long retryPollIntervalMs = 30000;
+
+    // 重试的初始等待时间，之后按指数递增（最长1小时）
+    @Value("${indexer.retry.backoff-ms:10000}")
+    private long retryBackoffMs = 10000;
+
+    // 超过该次数的记录不再重试，保留在表中供排查
+    @Value("${indexer.retry.max-attempts:10}")
+    private int retryMaxAttempts = 10;
+
+    private final Map<EntityType, PendingQueue> pending = new EnumMap<>(EntityType.class);
+    private final AtomicBoolean authorsIndexReady = new AtomicBoolean(false);
+
+    private ThreadPoolExecutor workers;
+    private ScheduledExecutorService retryPoller;
+
+    private final LongAdder indexedDocs = new LongAdder();
+    private final LongAdder deletedDocs = new LongAdder();
+    private final LongAdder failedDocs = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public IncrementalIndexer() {
+        for (EntityType type : EntityType.values()) {
+            pending.put(type, new PendingQueue());
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        // 每种实体同一时刻最多一个处理任务，队列容量足够容纳所有类型
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(EntityType.values().length * 2),
+                r -> {
+                    Thread thread = new Thread(r, "search-indexer-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        retryPoller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "search-indexer-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        retryPoller.scheduleWithFixedDelay(this::pollRetries, retryPollIntervalMs, retryPollIntervalMs, TimeUnit.MILLISECONDS);
+        bulkIndexer.addFailureListener(this::onBulkFailure);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (retryPoller != null) {
+            retryPoller.shutdownNow();
+        }
+        if (workers != null) {
+            workers.shutdown();
+            try {
+                workers.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 尚未处理的实体写入重试队列，重启后继续索引
+        for (EntityType type : EntityType.values()) {
+            List<Long> remaining = pending.get(type).takeAll();
+            if (!remaining.isEmpty()) {
+                recordFailures(type, remaining, "应用关闭时尚未索引");
+            }
+        }
+    }
+
+    /**
+     * 同步索引一批社区条目
+     * @return 需要重试的条目ID
+     */
+    public List<Long> indexCommunityEntries(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Map<String, Object>> rows = loadRows(COMMUNITY_ENTRY_SQL, ids);
+
+        List<Long> embedIds = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (Long id : ids) {
+            Map<String, Object> row = rows.get(id);
+            if (row == null) {
+                // 条目已删除或不再公开
+                bulkIndexer.delete(communityEntriesIndex, String.valueOf(id));
+                deletedDocs.increment();
+                continue;
+            }
+            String invalidReason = validateCommunityEntry(row);
+            if (invalidReason != null) {
+                logger.warn("社区条目 {} 数据质量检查失败: {}", id, invalidReason);
+                continue;
+            }
+            embedIds.add(id);
+            texts.add(prepareCommunityEntryText(row));
+        }
+
+        List<Long> failed = new ArrayList<>();
+        List<float[]> vectors = embeddingService.embedBatch(texts);
+        for (int i = 0; i < embedIds.size(); i++) {
+            Long id = embedIds.get(i);
+            float[] vector = i < vectors.size() ? vectors.get(i) : null;
+            if (vector == null || vector.length == 0) {
+                logger.error("社区条目 {} 向量生成失败", id);
+                failed.add(id);
+                continue;
+            }
+            CommunityEntryDocument document = toCommunityEntryDocument(rows.get(id), vector);
+            if (bulkIndexer.index(communityEntriesIndex, String.valueOf(id), document)) {
+                indexedDocs.increment();
+            } else {
+                failed.add(id);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * 同步索引一批用户（作者）
+     * @return 需要重试的用户ID
+     */
+    public List<Long> indexAuthors(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (!ensureAuthorsIndexExists()) {
+            return new ArrayList<>(ids);
+        }
+        Map<Long, Map<String, Object>> rows = loadRows(AUTHOR_SQL, ids);
+
+        List<Long> embedIds = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (Long id : ids) {
+            Map<String, Object> row = rows.get(id);
+            if (row == null) {
+                // 用户已删除
+                bulkIndexer.delete(authorsIndex, String.valueOf(id));
+                deletedDocs.increment();
+                continue;
+            }
+            String username = (String) row.get("username");
+            if (username == null || username.trim().isEmpty() || containsControlChars(username)) {
+                logger.warn("用户 {} 数据质量检查失败: 用户名为空或包含控制字符", id);
+                continue;
+            }
+            embedIds.add(id);
+            texts.add(prepareAuthorText(row));
+        }
+
+        List<Long> failed = new ArrayList<>();
+        List<float[]> vectors = embeddingService.embedBatch(texts);
+        for (int i = 0; i < embedIds.size(); i++) {
+            Long id = embedIds.get(i);
+            float[] vector = i < vectors.size() ? vectors.get(i) : null;
+            if (vector == null || vector.length == 0) {
+                logger.error("用户 {} 向量生成失败", id);
+                failed.add(id);
+                continue;
+            }
+            if (bulkIndexer.index(authorsIndex, String.valueOf(id), toAuthorDocument(rows.get(id), vector))) {
+                indexedDocs.increment();
+            } else {
+                failed.add(id);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * 获取索引统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pendingCommunityEntries", pending.get(EntityType.COMMUNITY_ENTRY).size());
+        stats.put("pendingAuthors", pending.get(EntityType.AUTHOR).size());
+        stats.put("indexedDocs", indexedDocs.sum());
+        stats.put("deletedDocs", deletedDocs.sum());
+        stats.put("failedDocs", failedDocs.sum());
+        stats.put("batches", batches.sum());
+        return stats;
+    }
+
+    void submit(EntityType type, Long id) {
+        if (!pending.get(type).offer(id, pendingCapacity)) {
+            logger.warn("待索引队列已满，{} {} 写入重试队列", type, id);
+            recordFailures(type, List.of(id), "待索引队列已满");
+            return;
+        }
+        scheduleDrain(type);
+    }
+
+    private void scheduleDrain(EntityType type) {
+        PendingQueue queue = pending.get(type);
+        if (workers == null || !queue.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            workers.execute(() -> drain(type));
+        } catch (RejectedExecutionException e) {
+            queue.draining.set(false);
+            logger.warn("索引线程池拒绝任务，{} 等待下次调度", type);
+        }
+    }
+
+    private void drain(EntityType type) {
+        PendingQueue queue = pending.get(type);
+        while (true) {
+            List<Long> batch = queue.take(batchSize);
+            if (batch.isEmpty()) {
+                queue.draining.set(false);
+                // 释放标记后重新检查，避免遗漏并发加入的实体
+                if (queue.size() == 0 || !queue.draining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            processBatch(type, batch);
+        }
+    }
+
+    /**
+     * 索引一批实体，成功的实体从重试队列移除，失败的写入重试队列
+     */
+    void processBatch(EntityType type, List<Long> batch) {
+        batches.increment();
+        List<Long> failed;
+        String reason = "向量生成或写入失败";
+        try {
+            failed = type == EntityType.COMMUNITY_ENTRY ? indexCommunityEntries(batch) : indexAuthors(batch);
+        } catch (Exception e) {
+            logger.error("批量索引 {} 失败: {}", type, e.getMessage(), e);
+            failed = batch;
+            reason = e.getMessage();
+        }
+
+        List<Long> succeeded = new ArrayList<>(batch);
+        succeeded.removeAll(failed);
+        if (!succeeded.isEmpty()) {
+            try {
+                retryRepository.deleteByEntityTypeAndEntityIdIn(type, succeeded);
+            } catch (Exception e) {
+                logger.warn("清理重试记录失败: {}", e.getMessage());
+            }
+        }
+        if (!failed.isEmpty()) {
+            recordFailures(type, failed, reason);
+        }
+    }
+
+    /**
+     * 记录失败的实体，按已失败次数计算下次重试时间
+     */
+    void recordFailures(EntityType type, List<Long> ids, String reason) {
+        failedDocs.add(ids.size());
+        String error = reason != null && reason.length() > 500 ? reason.substring(0, 500) : reason;
+        for (Long id : ids) {
+            try {
+                SearchIndexRetry retry = retryRepository.findByEntityTypeAndEntityId(type, id).orElseGet(() -> {
+                    SearchIndexRetry created = new SearchIndexRetry();
+                    created.setEntityType(type);
+                    created.setEntityId(id);
+                    return created;
+                });
+                retry.setAttempts(retry.getAttempts() + 1);
+                retry.setLastError(error);
+                retry.setNextAttemptAt(LocalDateTime.now().plusNanos(backoffMillis(retry.getAttempts()) * 1_000_000));
+                retryRepository.save(retry);
+                if (retry.getAttempts() >= retryMaxAttempts) {
+                    logger.error("{} {} 已失败 {} 次，不再重试: {}", type, id, retry.getAttempts(), error);
+                }
+            } catch (Exception e) {
+                logger.error("写入重试队列失败 {} {}: {}", type, id, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 读取到期的重试记录并重新入队，同时推迟其下次重试时间，避免处理期间被重复读取
+     */
+    void pollRetries() {
+        try {
+            List<SearchIndexRetry> due = retryRepository.findDue(LocalDateTime.now(), retryMaxAttempts,
+                    PageRequest.of(0, batchSize * 4));
+            if (due.isEmpty()) {
+                return;
+            }
+            for (SearchIndexRetry retry : due) {
+                retry.setNextAttemptAt(LocalDateTime.now().plusNanos(backoffMillis(retry.getAttempts() + 1) * 1_000_000));
+            }
+            retryRepository.saveAll(due);
+            logger.info("重新索引 {} 个失败的实体", due.size());
+            for (SearchIndexRetry retry : due) {
+                submit(retry.getEntityType(), retry.getEntityId());
+            }
+        } catch (Exception e) {
+            logger.error("读取索引重试队列失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private long backoffMillis(int attempts) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 20);
+        return Math.min(retryBackoffMs << shift, MAX_RETRY_BACKOFF_MS);
+    }
+
+    /**
+     * 批量索引管道最终写入失败时，将对应实体写入重试队列
+     */
+    private void onBulkFailure(String index, String id, String reason) {
+        EntityType type;
+        if (communityEntriesIndex.equals(index)) {
+            type = EntityType.COMMUNITY_ENTRY;
+        } else if (authorsIndex.equals(index)) {
+            type = EntityType.AUTHOR;
+        } else {
+            return;
+        }
+        try {
+            recordFailures(type, List.of(Long.parseLong(id)), reason);
+        } catch (NumberFormatException e) {
+            logger.warn("无法解析文档ID: {}/{}", index, id);
+        }
+    }
+
+    private Map<Long, Map<String, Object>> loadRows(String sqlTemplate, List<Long> ids) {
+        String placeholders = ids.stream().map(id -> "?").collect(Collectors.joining(", "));
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(String.format(sqlTemplate, placeholders), ids.toArray());
+        Map<Long, Map<String, Object>> result = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            result.put(toLong(row.get("id")), row);
+        }
+        return result;
+    }
+
+    /**
+     * 准备社区条目的向量化文本：行程名称 + 描述 + 作者名称 + 目的地 + 标签
+     */
+    static String prepareCommunityEntryText(Map<String, Object> row) {
+        List<String> textParts = new ArrayList<>();
+        addIfPresent(textParts, "", row.get("itinerary_title"));
+        addIfPresent(textParts, "", row.get("description"));
+        addIfPresent(textParts, "作者: ", row.get("author_username"));
+        addIfPresent(textParts, "目的地: ", row.get("destinations"));
+        addIfPresent(textParts, "标签: ", row.get("tags"));
+        return String.join(" ", textParts);
+    }
+
+    /**
+     * 准备作者的向量化文本：用户名 + 访问过的目的地 + 行程数量信息
+     */
+    static String prepareAuthorText(Map<String, Object> row) {
+        List<String> textParts = new ArrayList<>();
+        addIfPresent(textParts, "作者: ", row.get("username"));
+        addIfPresent(textParts, "去过的地方: ", row.get("visited_destinations"));
+        long itineraryCount = toLong(row.get("itinerary_count"));
+        if (itineraryCount > 0) {
+            textParts.add("创建了" + itineraryCount + "个行程");
+        }
+        long communityEntryCount = toLong(row.get("community_entry_count"));
+        if (communityEntryCount > 0) {
+            textParts.add("分享了" + communityEntryCount + "个行程");
+        }
+        return String.join(" ", textParts);
+    }
+
+    private static void addIfPresent(List<String> textParts, String prefix, Object value) {
+        if (value != null && !value.toString().trim().isEmpty()) {
+            textParts.add(prefix + value);
+        }
+    }
+
+    private static String validateCommunityEntry(Map<String, Object> row) {
+        String title = (String) row.get("itinerary_title");
+        if (title == null || title.trim().isEmpty()) {
+            return "行程名称为空";
+        }
+        String description = (String) row.get("description");
+        if (containsControlChars(title) || (description != null && containsControlChars(description))) {
+            return "包含控制字符";
+        }
+        return null;
+    }
+
+    private static boolean containsControlChars(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x20 && c != '\t' && c != '\n' && c != '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static CommunityEntryDocument toCommunityEntryDocument(Map<String, Object> row, float[] vector) {
+        CommunityEntryDocument document = new CommunityEntryDocument();
+        document.setId(toLong(row.get("id")));
+        document.setShareCode((String) row.get("share_code"));
+        document.setDescription(row.get("description") != null ? (String) row.get("description") : "");
+        document.setViewCount((int) toLong(row.get("view_count")));
+        document.setCreatedAt(formatDate(row.get("created_at")));
+        document.setUpdatedAt(formatDate(row.get("updated_at")));
+        document.setItineraryTitle((String) row.get("itinerary_title"));
+        document.setStartDate(formatDate(row.get("start_date")));
+        document.setEndDate(formatDate(row.get("end_date")));
+        document.setDestinations(row.get("destinations") != null ? (String) row.get("destinations") : "");
+        document.setAuthorUsername((String) row.get("author_username"));
+        document.setAuthorId(toLong(row.get("author_id")));
+        String tags = row.get("tags") != null ? (String) row.get("tags") : "";
+        document.setTags(tags);
+        document.setTagNames(Arrays.stream(tags.split(", ")).filter(t -> !t.isEmpty()).collect(Collectors.toList()));
+        document.setVector(toList(vector));
+        return document;
+    }
+
+    private static Map<String, Object> toAuthorDocument(Map<String, Object> row, float[] vector) {
+        Map<String, Object> document = new HashMap<>();
+        document.put("id", toLong(row.get("id")));
+        document.put("username", row.get("username"));
+        document.put("email", row.get("email") != null ? row.get("email") : "");
+        document.put("created_at", formatDate(row.get("created_at")));
+        document.put("updated_at", formatDate(row.get("updated_at")));
+        document.put("itinerary_count", toLong(row.get("itinerary_count")));
+        document.put("community_entry_count", toLong(row.get("community_entry_count")));
+        document.put("total_views", toLong(row.get("total_views")));
+        document.put("visited_destinations", row.get("visited_destinations") != null ? row.get("visited_destinations") : "");
+        document.put("vector", toList(vector));
+        return document;
+    }
+
+    private static List<Float> toList(float[] vector) {
+        List<Float> vectorList = new ArrayList<>(vector.length);
+        for (float f : vector) {
+            vectorList.add(f);
+        }
+        return vectorList;
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * 日期转为ES可解析的ISO格式
+     */
+    private static String formatDate(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime().toString();
+        }
+        if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate().toString();
+        }
+        return value.toString();
+    }
+
+    /**
+     * 确保authors索引存在（映射与 index_authors.py 一致），确认后不再重复检查
+     */
+    private boolean ensureAuthorsIndexExists() {
+        if (authorsIndexReady.get()) {
+            return true;
+        }
+        try {
+            if (esClient.indices().exists(r -> r.index(authorsIndex)).value()) {
+                authorsIndexReady.set(true);
+                return true;
+            }
+
+            logger.info("索引 '{}' 不存在，开始创建...", authorsIndex);
+            String mappingJson = "{\n" +
+                    "  \"properties\": {\n" +
+                    "    \"id\": { \"type\": \"long\" },\n" +
+                    "    \"username\": { \"type\": \"text\" },\n" +
+                    "    \"email\": { \"type\": \"keyword\" },\n" +
+                    "    \"created_at\": { \"type\": \"date\" },\n" +
+                    "    \"updated_at\": { \"type\": \"date\" },\n" +
+                    "    \"itinerary_count\": { \"type\": \"integer\" },\n" +
+                    "    \"community_entry_count\": { \"type\": \"integer\" },\n" +
+                    "    \"total_views\": { \"type\": \"long\" },\n" +
+                    "    \"visited_destinations\": { \"type\": \"text\" },\n" +
+                    "    \"vector\": { \n" +
+                    "      \"type\": \"dense_vector\",\n" +
+                    "      \"dims\": " + VECTOR_DIMENSIONS + ",\n" +
+                    "      \"index\": true,\n" +
+                    "      \"similarity\": \"cosine\"\n" +
+                    "    }\n" +
+                    "  }\n" +
+                    "}";
+            CreateIndexResponse response = esClient.indices().create(c -> c
+                    .index(authorsIndex)
+                    .mappings(m -> m.withJson(new java.io.StringReader(mappingJson)))
+            );
+            logger.info("索引 '{}' 创建结果: {}", authorsIndex, response.acknowledged());
+            authorsIndexReady.set(response.acknowledged());
+            return response.acknowledged();
+        } catch (Exception e) {
+            logger.error("创建索引 '{}' 失败: {}", authorsIndex, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 某类实体的待索引ID集合，重复提交的ID只处理一次
+     */
+    private static final class PendingQueue {
+        private final LinkedHashSet<Long> ids = new LinkedHashSet<>();
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+
+        synchronized boolean offer(Long id, int capacity) {
+            if (ids.size() >= capacity && !ids.contains(id)) {
+                return false;
+            }
+            ids.add(id);
+            return true;
+        }
+
+        synchronized List<Long> take(int max) {
+            List<Long> batch = new ArrayList<>(Math.min(max, ids.size()));
+            Iterator<Long> iterator = ids.iterator();
+            while (iterator.hasNext() && batch.size() < max) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            return batch;
+        }
+
+        synchronized List<Long> takeAll() {
+            return take(Integer.MAX_VALUE);
+        }
+
+        synchronized int size() {
+            return ids.size();
+        }
+    }
+}
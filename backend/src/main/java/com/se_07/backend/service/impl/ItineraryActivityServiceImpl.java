@@ -2,6 +2,7 @@ package com.se_07.backend.service.impl;
 
 import com.se_07.backend.dto.ActivityCreateRequest;
 import com.se_07.backend.dto.AmapActivityCreateRequest;
+import com.se_07.backend.dto.DayPlanBatchRequest;
 import com.se_07.backend.dto.ItineraryActivityDTO;
 import com.se_07.backend.dto.converter.ItineraryActivityConverter;
 import com.se_07.backend.entity.*;
@@ -9,6 +10,8 @@ import com.se_07.backend.repository.*;
 import com.se_07.backend.service.ItineraryActivityService;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -28,6 +31,11 @@ public class ItineraryActivityServiceImpl implements ItineraryActivityService {
     private ItineraryActivityConverter activityConverter;
     @Autowired
     private TravelGroupMemberRepository travelGroupMemberRepository;
+    @Autowired
+    private ActivityOrdering activityOrdering;
+
+    @Value("${itinerary.day-plan.max-operations:200}")
+    private int maxDayPlanOperations = 200;
 
     /**
      * 检查用户是否可以编辑指定行程
@@ -95,149 +103,11 @@ public class ItineraryActivityServiceImpl implements ItineraryActivityService {
         //activity.setTransportNotes(req.getTransportNotes());
         activity.setAttractionNotes(req.getAttractionNotes());
 
-        // 根据传参决定插入方式
-        Long effectivePrevId = req.getPrevId();
-
-        // 如果指定了 nextId，则计算 prevId
-        if (req.getNextId() != null) {
-            if (req.getPrevId() != null) {
-                throw new RuntimeException("prevId 和 nextId 只能传一个");
-            }
-            Long nextId = req.getNextId();
-            ItineraryActivity nextActivity = activityRepository.findById(nextId)
-                    .orElseThrow(() -> new RuntimeException("nextId 不存在"));
-            if (!nextActivity.getItineraryDay().getId().equals(day.getId())) {
-                throw new RuntimeException("nextId 不属于同一天程");
-            }
-            effectivePrevId = nextActivity.getPrevId(); // 可能为 null
-        }
-
-        // 先保存活动以获得ID
+        // 根据传参决定插入位置，只写入新活动一行
+        activity.setPosition(activityOrdering.positionFor(day, req.getPrevId(), req.getNextId()));
         ItineraryActivity saved = activityRepository.save(activity);
-        
-        // 然后处理链表逻辑
-        insertActivityIntoLinkedList(day, saved, req.getNextId(), effectivePrevId);
-        
-        return activityConverter.toDTO(saved);
-    }
-
-    /**
-     * 从链表中移除活动并维护链表结构
-     */
-    private void removeActivityFromLinkedList(ItineraryDay day, ItineraryActivity activity) {
-        Long activityId = activity.getId();
-        Long prevId = activity.getPrevId();
-        Long nextId = activity.getNextId();
-        
-        // 更新前一个活动的nextId
-        if (prevId != null) {
-            ItineraryActivity prevActivity = activityRepository.findById(prevId)
-                    .orElseThrow(() -> new RuntimeException("前一个活动不存在"));
-            prevActivity.setNextId(nextId);
-            activityRepository.save(prevActivity);
-        } else {
-            // 如果被删除的活动是第一个活动，更新日程的firstActivityId
-            day.setFirstActivityId(nextId);
-            dayRepository.save(day);
-        }
-        
-        // 更新后一个活动的prevId
-        if (nextId != null) {
-            ItineraryActivity nextActivity = activityRepository.findById(nextId)
-                    .orElseThrow(() -> new RuntimeException("后一个活动不存在"));
-            nextActivity.setPrevId(prevId);
-            activityRepository.save(nextActivity);
-        } else {
-            // 如果被删除的活动是最后一个活动，更新日程的lastActivityId
-            day.setLastActivityId(prevId);
-            dayRepository.save(day);
-        }
-    }
 
-    /**
-     * 将新活动插入到链表中的正确位置
-     */
-    private void insertActivityIntoLinkedList(ItineraryDay day, ItineraryActivity newActivity, Long nextId, Long prevId) {
-        Long newId = newActivity.getId();
-        
-        if (day.getFirstActivityId() == null) {
-            // 情况1：这是第一个活动  
-            newActivity.setPrevId(null);
-            newActivity.setNextId(null);
-            activityRepository.save(newActivity);
-            
-            day.setFirstActivityId(newId);
-            day.setLastActivityId(newId);
-            dayRepository.save(day);
-            
-        } else if (nextId != null) {
-            // 情况2：插入到指定活动之前
-            ItineraryActivity nextActivity = activityRepository.findById(nextId)
-                    .orElseThrow(() -> new RuntimeException("指定的后续活动不存在"));
-            
-            Long nextPrevId = nextActivity.getPrevId();
-            
-            newActivity.setPrevId(nextPrevId);
-            newActivity.setNextId(nextId);
-            activityRepository.save(newActivity);
-            
-            nextActivity.setPrevId(newId);
-            activityRepository.save(nextActivity);
-            
-            if (nextPrevId != null) {
-                activityRepository.findById(nextPrevId).ifPresent(prev -> {
-                    prev.setNextId(newId);
-                    activityRepository.save(prev);
-                });
-            } else {
-                // 插入到头部
-                day.setFirstActivityId(newId);
-                dayRepository.save(day);
-            }
-            
-        } else if (prevId != null) {
-            // 情况3：插入到指定活动之后
-            ItineraryActivity prevActivity = activityRepository.findById(prevId)
-                    .orElseThrow(() -> new RuntimeException("指定的前序活动不存在"));
-            
-            Long prevNextId = prevActivity.getNextId();
-            
-            newActivity.setPrevId(prevId);
-            newActivity.setNextId(prevNextId);
-            activityRepository.save(newActivity);
-            
-            prevActivity.setNextId(newId);
-            activityRepository.save(prevActivity);
-            
-            if (prevNextId != null) {
-                activityRepository.findById(prevNextId).ifPresent(next -> {
-                    next.setPrevId(newId);
-                    activityRepository.save(next);
-                });
-            } else {
-                // 插入到尾部
-                day.setLastActivityId(newId);
-                dayRepository.save(day);
-            }
-            
-        } else {
-            // 情况4：追加到末尾
-            Long lastId = day.getLastActivityId();
-            
-            newActivity.setPrevId(lastId);
-            newActivity.setNextId(null);
-            activityRepository.save(newActivity);
-            
-            if (lastId != null) {
-                activityRepository.findById(lastId).ifPresent(last -> {
-                    last.setNextId(newId);
-                    activityRepository.save(last);
-                });
-            }
-            
-            day.setLastActivityId(newId);
-            dayRepository.save(day);
-        }
+        return activityConverter.toDTO(saved);
     }
 
     @Override
@@ -265,31 +135,167 @@ public class ItineraryActivityServiceImpl implements ItineraryActivityService {
             }
         }
 
-        // 获取所有活动并按链表顺序排序
-        java.util.List<ItineraryActivity> allActivities = activityRepository.findByItineraryDayId(itineraryDayId);
-        
-        // 如果没有活动，直接返回空列表
-        if (allActivities.isEmpty()) {
-            return new java.util.ArrayList<>();
+        // 按位置排序的单条查询
+        return toOrderedDTOs(activityRepository.findByItineraryDayIdOrderByPositionAscIdAsc(itineraryDayId));
+    }
+
+    /**
+     * 转换有序活动列表，前后活动ID由相邻位置得出
+     */
+    private java.util.List<ItineraryActivityDTO> toOrderedDTOs(java.util.List<ItineraryActivity> orderedActivities) {
+        java.util.List<ItineraryActivityDTO> result = new java.util.ArrayList<>(orderedActivities.size());
+        for (int i = 0; i < orderedActivities.size(); i++) {
+            ItineraryActivityDTO dto = activityConverter.toDTO(orderedActivities.get(i));
+            dto.setPrevId(i > 0 ? orderedActivities.get(i - 1).getId() : null);
+            dto.setNextId(i + 1 < orderedActivities.size() ? orderedActivities.get(i + 1).getId() : null);
+            result.add(dto);
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public java.util.List<ItineraryActivityDTO> applyDayPlan(Long userId, Long itineraryDayId, DayPlanBatchRequest request) {
+        java.util.List<DayPlanBatchRequest.Operation> operations = request == null ? null : request.getOperations();
+        if (operations == null || operations.isEmpty()) {
+            throw new RuntimeException("操作列表不能为空");
         }
-        
-        // 创建活动映射
-        java.util.Map<Long, ItineraryActivity> activityMap = new java.util.HashMap<>();
-        for (ItineraryActivity activity : allActivities) {
-            activityMap.put(activity.getId(), activity);
+        if (operations.size() > maxDayPlanOperations) {
+            throw new RuntimeException("单次最多提交 " + maxDayPlanOperations + " 个操作");
         }
-        
-        // 按链表顺序构建有序列表
-        java.util.List<ItineraryActivity> orderedActivities = new java.util.ArrayList<>();
-        Long currentId = day.getFirstActivityId();
-        
-        while (currentId != null && activityMap.containsKey(currentId)) {
-            ItineraryActivity currentActivity = activityMap.get(currentId);
-            orderedActivities.add(currentActivity);
-            currentId = currentActivity.getNextId();
+
+        ItineraryDay day = dayRepository.findById(itineraryDayId)
+                .orElseThrow(() -> new RuntimeException("日程不存在"));
+        Itinerary itinerary = day.getItinerary();
+        if (itinerary == null) {
+            throw new RuntimeException("日程数据异常，缺少行程");
+        }
+        // 整批只鉴权一次
+        checkEditPermission(itinerary, userId);
+
+        // 当天活动和涉及的景点各查询一次，之后的操作都在内存中进行
+        java.util.List<ItineraryActivity> ordered =
+                new java.util.ArrayList<>(activityRepository.findByItineraryDayIdOrderByPositionAscIdAsc(itineraryDayId));
+        java.util.Map<Long, ItineraryActivity> byId = new java.util.HashMap<>();
+        ordered.forEach(a -> byId.put(a.getId(), a));
+        java.util.Set<Long> attractionIds = new java.util.HashSet<>();
+        operations.forEach(op -> {
+            if (op.getAttractionId() != null) {
+                attractionIds.add(op.getAttractionId());
+            }
+        });
+        java.util.Map<Long, Attraction> attractions = new java.util.HashMap<>();
+        if (!attractionIds.isEmpty()) {
+            attractionRepository.findAllById(attractionIds).forEach(a -> attractions.put(a.getId(), a));
+        }
+
+        java.util.List<ItineraryActivity> created = new java.util.ArrayList<>();
+        java.util.List<ItineraryActivity> deleted = new java.util.ArrayList<>();
+        for (DayPlanBatchRequest.Operation op : operations) {
+            String type = op.getType() == null ? "" : op.getType().trim().toLowerCase();
+            switch (type) {
+                case "create": {
+                    if (op.getAttractionId() == null) {
+                        throw new RuntimeException("创建活动时 attractionId 为必填");
+                    }
+                    ItineraryActivity activity = new ItineraryActivity();
+                    activity.setItineraryDay(day);
+                    activity.setTransportMode("步行");
+                    applyFields(activity, op, attractions);
+                    if (activity.getTitle() == null) {
+                        activity.setTitle(activity.getAttraction().getName());
+                    }
+                    ActivityOrdering.place(ordered, insertIndex(ordered, byId, op), activity);
+                    created.add(activity);
+                    break;
+                }
+                case "update":
+                    applyFields(existingActivity(byId, op), op, attractions);
+                    break;
+                case "move": {
+                    ItineraryActivity activity = existingActivity(byId, op);
+                    ordered.remove(activity);
+                    ActivityOrdering.place(ordered, insertIndex(ordered, byId, op), activity);
+                    break;
+                }
+                case "delete": {
+                    ItineraryActivity activity = existingActivity(byId, op);
+                    ordered.remove(activity);
+                    byId.remove(activity.getId());
+                    deleted.add(activity);
+                    break;
+                }
+                default:
+                    throw new RuntimeException("不支持的操作类型: " + op.getType());
+            }
+        }
+
+        // 修改和删除在一次 flush 中按批写入，版本号不一致时抛出乐观锁异常并回滚
+        activityRepository.deleteAll(deleted);
+        activityRepository.saveAll(created);
+        activityRepository.flush();
+        return toOrderedDTOs(ordered);
+    }
+
+    /**
+     * 批量操作中引用的已有活动，校验归属和版本号
+     */
+    private ItineraryActivity existingActivity(java.util.Map<Long, ItineraryActivity> byId, DayPlanBatchRequest.Operation op) {
+        ItineraryActivity activity = op.getActivityId() == null ? null : byId.get(op.getActivityId());
+        if (activity == null) {
+            throw new RuntimeException("活动不存在或不属于该日程: " + op.getActivityId());
+        }
+        if (op.getVersion() != null && !op.getVersion().equals(activity.getVersion())) {
+            throw new OptimisticLockingFailureException("活动 " + activity.getId() + " 已被其他人修改，请刷新后重试");
+        }
+        return activity;
+    }
+
+    /**
+     * 操作指定的插入下标：prevId 之后、nextId 之前，都为空时放到末尾
+     */
+    private int insertIndex(java.util.List<ItineraryActivity> ordered, java.util.Map<Long, ItineraryActivity> byId,
+                            DayPlanBatchRequest.Operation op) {
+        if (op.getPrevId() != null && op.getNextId() != null) {
+            throw new RuntimeException("prevId 和 nextId 只能传一个");
         }
+        Long anchorId = op.getPrevId() != null ? op.getPrevId() : op.getNextId();
+        if (anchorId == null) {
+            return ordered.size();
+        }
+        int index = ordered.indexOf(byId.get(anchorId));
+        if (index < 0) {
+            throw new RuntimeException("指定的相邻活动不存在或不属于该日程: " + anchorId);
+        }
+        return op.getPrevId() != null ? index + 1 : index;
+    }
 
-        return orderedActivities.stream().map(activityConverter::toDTO).collect(java.util.stream.Collectors.toList());
+    /**
+     * 把操作中非空的字段写入活动；时间传空字符串表示清除
+     */
+    private void applyFields(ItineraryActivity activity, DayPlanBatchRequest.Operation op, java.util.Map<Long, Attraction> attractions) {
+        if (op.getAttractionId() != null) {
+            Attraction attraction = attractions.get(op.getAttractionId());
+            if (attraction == null) {
+                throw new RuntimeException("景点不存在: " + op.getAttractionId());
+            }
+            activity.setAttraction(attraction);
+        }
+        if (op.getTitle() != null) {
+            activity.setTitle(op.getTitle());
+        }
+        if (op.getTransportMode() != null) {
+            activity.setTransportMode(op.getTransportMode());
+        }
+        if (op.getStartTime() != null) {
+            activity.setStartTime(op.getStartTime().trim().isEmpty() ? null : java.time.LocalTime.parse(op.getStartTime()));
+        }
+        if (op.getEndTime() != null) {
+            activity.setEndTime(op.getEndTime().trim().isEmpty() ? null : java.time.LocalTime.parse(op.getEndTime()));
+        }
+        if (op.getAttractionNotes() != null) {
+            activity.setAttractionNotes(op.getAttractionNotes());
+        }
     }
 
     @Override
@@ -450,13 +456,7 @@ public class ItineraryActivityServiceImpl implements ItineraryActivityService {
             }
         }
         
-        // 获取日程信息
-        ItineraryDay day = activity.getItineraryDay();
-        
-        // 维护链表结构
-        removeActivityFromLinkedList(day, activity);
-        
-        // 删除活动
+        // 删除活动，其余活动的位置不受影响
         activityRepository.delete(activity);
     }
 
@@ -534,26 +534,10 @@ public class ItineraryActivityServiceImpl implements ItineraryActivityService {
         activity.setStartTime(req.getStartTime());
         activity.setEndTime(req.getEndTime());
 
-        // 根据传参决定插入方式
-        Long effectivePrevId = null;
-
-        // 如果指定了 nextId，则计算 prevId
-        if (req.getNextId() != null) {
-            Long nextId = req.getNextId();
-            ItineraryActivity nextActivity = activityRepository.findById(nextId)
-                    .orElseThrow(() -> new RuntimeException("nextId 不存在"));
-            if (!nextActivity.getItineraryDay().getId().equals(day.getId())) {
-                throw new RuntimeException("nextId 不属于同一天程");
-            }
-            effectivePrevId = nextActivity.getPrevId(); // 可能为 null
-        }
-
-        // 先保存活动以获得ID
+        // 根据传参决定插入位置，只写入新活动一行
+        activity.setPosition(activityOrdering.positionFor(day, null, req.getNextId()));
         ItineraryActivity saved = activityRepository.save(activity);
-        
-        // 然后处理链表逻辑
-        insertActivityIntoLinkedList(day, saved, req.getNextId(), effectivePrevId);
-        
+
         return activityConverter.toDTO(saved);
     }
 
@@ -0,0 +1,46 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.entity.Itinerary;
+import com.se_07.backend.repository.ItineraryDayRepository;
+import com.se_07.backend.repository.ItineraryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 行程聚合加载器
+ * 行程转换为 DTO 时要遍历 日程 -> 活动 -> 景点 -> 目的地，逐个懒加载时每个集合一条查询。
+ * 这里用两条实体图查询把整棵对象树装入当前持久化上下文：
+ *   1. 行程 + 用户 + 日程
+ *   2. 这些行程的全部日程 + 活动 + 景点 + 目的地
+ * 查询次数只与批次数有关，与行程天数和活动数量无关。需要在事务内调用
+ */
+@Component
+public class ItineraryAggregateLoader {
+
+    // 每批行程数，限制 IN 列表长度
+    static final int BATCH_SIZE = 200;
+
+    @Autowired
+    private ItineraryRepository itineraryRepository;
+
+    @Autowired
+    private ItineraryDayRepository itineraryDayRepository;
+
+    /**
+     * 为已查出的行程加载日程、活动、景点和目的地
+     */
+    public void loadDetails(Collection<Itinerary> itineraries) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(itineraries.stream()
+                .filter(Objects::nonNull)
+                .map(Itinerary::getId)
+                .filter(Objects::nonNull)
+                .toList()));
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            itineraryRepository.findWithDaysByIdIn(batch);
+            itineraryDayRepository.findWithActivitiesByItineraryIdIn(batch);
+        }
+    }
+}
@@ -1,27 +1,14 @@
 package com.se_07.backend.service.impl;
 
-import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import co.elastic.clients.elasticsearch._types.Result;
-import co.elastic.clients.elasticsearch.core.DeleteRequest;
-import co.elastic.clients.elasticsearch.core.DeleteResponse;
-import co.elastic.clients.elasticsearch.core.IndexRequest;
-import co.elastic.clients.elasticsearch.core.IndexResponse;
-import co.elastic.clients.json.jackson.JacksonJsonpMapper;
-import co.elastic.clients.transport.ElasticsearchTransport;
-import co.elastic.clients.transport.rest_client.RestClientTransport;
 import com.se_07.backend.dto.*;
 import com.se_07.backend.dto.converter.ItineraryConverter;
 import com.se_07.backend.entity.*;
 import com.se_07.backend.repository.*;
-import com.se_07.backend.service.EmbeddingService;
 import com.se_07.backend.service.ItineraryService;
 import com.se_07.backend.service.UserService;
-import org.apache.http.HttpHost;
-import org.elasticsearch.client.RestClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -40,8 +27,6 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -74,7 +59,7 @@ public class ItineraryServiceImpl implements ItineraryService {
     private CommunityEntryTagRepository communityEntryTagRepository;
 
     @Autowired
-    private EmbeddingService embeddingService;
+    private SearchIndexOutboxRelay searchIndexOutbox;
 
     @Autowired
     private JdbcTemplate jdbcTemplate;
@@ -82,14 +67,11 @@ public class ItineraryServiceImpl implements ItineraryService {
     @Autowired
     private ItineraryActivityRepository itineraryActivityRepository;
 
-    @Value("${elasticsearch.host:localhost}")
-    private String elasticsearchHost;
-
-    @Value("${elasticsearch.port:9200}")
-    private int elasticsearchPort;
+    @Autowired
+    private ItineraryAggregateLoader itineraryAggregateLoader;
 
-    @Value("${elasticsearch.index.community:community_entries}")
-    private String communityEntriesIndex;
+    @Autowired
+    private UserTravelStatsAggregator userTravelStatsAggregator;
 
     @Autowired
     private TravelGroupRepository travelGroupRepository;
@@ -178,6 +160,9 @@ public class ItineraryServiceImpl implements ItineraryService {
         Itinerary savedItinerary = itineraryRepository.save(itinerary);
         
         logger.info("行程保存成功 - ID: {}, 出行人数: {}", savedItinerary.getId(), savedItinerary.getTravelerCount());
+        if (itinerary.getTravelStatus() == Itinerary.TravelStatus.已出行) {
+            travelStatusChanged(itinerary);
+        }
         
         // 根据起始和结束日期创建日程
         createItineraryDays(savedItinerary);
@@ -210,8 +195,6 @@ public class ItineraryServiceImpl implements ItineraryService {
             day.setDayNumber(i + 1);
             day.setDate(currentDate);
             day.setTitle("待规划");
-            day.setFirstActivityId(null);  // 使用 null 而不是 -1
-            day.setLastActivityId(null);   // 使用 null 而不是 -1
             
             // 这里可以根据需要设置其他默认值
             // day.setAccommodation("{}");
@@ -232,6 +215,7 @@ public class ItineraryServiceImpl implements ItineraryService {
 
         // 获取用户的行程列表
         Page<Itinerary> itinerariesPage = itineraryRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
+        itineraryAggregateLoader.loadDetails(itinerariesPage.getContent());
 
         // 转换为DTO
         return itinerariesPage.getContent().stream()
@@ -264,10 +248,8 @@ public class ItineraryServiceImpl implements ItineraryService {
             }
         }
         
-        // 触发懒加载，确保日程数据被加载
-        if (itinerary.getItineraryDays() != null) {
-            itinerary.getItineraryDays().size(); // 触发懒加载
-        }
+        // 一次性加载日程、活动、景点和目的地
+        itineraryAggregateLoader.loadDetails(List.of(itinerary));
         
         return itineraryConverter.toDTO(itinerary);
     }
@@ -305,8 +287,9 @@ public class ItineraryServiceImpl implements ItineraryService {
             }
         }
 
-        // 保存旧的权限状态
+        // 保存旧的权限状态和出行状态
         Itinerary.PermissionStatus oldPermissionStatus = itinerary.getPermissionStatus();
+        Itinerary.TravelStatus oldTravelStatus = itinerary.getTravelStatus();
 
         // 更新行程信息
         if (request.getTitle() != null) {
@@ -346,13 +329,29 @@ public class ItineraryServiceImpl implements ItineraryService {
         if (oldPermissionStatus != updatedItinerary.getPermissionStatus()) {
             handlePermissionStatusChange(updatedItinerary, oldPermissionStatus);
         }
+        if (oldTravelStatus != itinerary.getTravelStatus()) {
+            travelStatusChanged(itinerary);
+        }
 
         return itineraryConverter.toDTO(updatedItinerary);
     }
 
+    /**
+     * 行程出行状态变化（含删除已出行的行程）后，行程所属用户的旅行统计需要重新计算
+     */
+    private void travelStatusChanged(Itinerary itinerary) {
+        if (itinerary.getUser() != null) {
+            userTravelStatsAggregator.markChanged(itinerary.getUser().getId());
+        }
+    }
+
     private void handlePermissionStatusChange(Itinerary itinerary, Itinerary.PermissionStatus oldStatus) {
         Itinerary.PermissionStatus newStatus = itinerary.getPermissionStatus();
-        
+
+        // 已分享的行程权限变化后需要同步社区条目索引（变为非公开时由中继删除文档）
+        communityEntryRepository.findByItineraryId(itinerary.getId())
+                .ifPresent(entry -> searchIndexOutbox.enqueueCommunityEntry(entry.getId()));
+
         if (newStatus == Itinerary.PermissionStatus.私人) {
             // 变为私人：删除社区条目
             communityEntryRepository.deleteByItineraryId(itinerary.getId());
@@ -389,13 +388,19 @@ public class ItineraryServiceImpl implements ItineraryService {
         // 删除行程时，若行程状态为已出行，删除历史目的地中的该行程自动添加的目的地
         if (itinerary.getTravelStatus() == Itinerary.TravelStatus.已出行) {
             userService.removeAutoAddedHistoryDestinationsFromItinerary(userId, itineraryId);
+            travelStatusChanged(itinerary);
         }
         
+        // 社区条目随行程删除，同步删除其索引文档
+        communityEntryRepository.findByItineraryId(itineraryId)
+                .ifPresent(entry -> searchIndexOutbox.enqueueCommunityEntry(entry.getId()));
+
         // 删除相关的日程和活动（由于设置了CASCADE，会自动删除）
         itineraryRepository.delete(itinerary);
     }
 
     @Override
+    @Transactional
     public ItineraryDTO lockItinerary(Long itineraryId, Long userId) {
         // TODO: 实现锁定行程逻辑
         Itinerary itinerary = itineraryRepository.findById(itineraryId)
@@ -418,32 +423,41 @@ public class ItineraryServiceImpl implements ItineraryService {
             }
         }
         
+        boolean statusChanged = itinerary.getTravelStatus() != Itinerary.TravelStatus.已出行;
         itinerary.setTravelStatus(Itinerary.TravelStatus.已出行);
         Itinerary savedItinerary = itineraryRepository.save(itinerary);
+        if (statusChanged) {
+            travelStatusChanged(itinerary);
+        }
         return itineraryConverter.toDTO(savedItinerary);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<ItineraryDTO> getPendingItineraries(Long userId) {
         // 实现获取待出行行程逻辑
         System.out.println("--------------------------------start getPendingItineraries--------------------------------");
         List<Itinerary> itineraries = itineraryRepository.findByUserIdAndTravelStatus(userId, Itinerary.TravelStatus.待出行);
+        itineraryAggregateLoader.loadDetails(itineraries);
         return itineraries.stream()
                 .map(itineraryConverter::toDTO)
                 .collect(Collectors.toList());
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<ItineraryDTO> getCompletedItineraries(Long userId) {
         // 实现获取已出行行程逻辑
         System.out.println("--------------------------------start getCompletedItineraries--------------------------------");
         List<Itinerary> itineraries = itineraryRepository.findByUserIdAndTravelStatus(userId, Itinerary.TravelStatus.已出行);
+        itineraryAggregateLoader.loadDetails(itineraries);
         return itineraries.stream()
                 .map(itineraryConverter::toDTO)
                 .collect(Collectors.toList());
     }
 
     @Override
+    @Transactional
     public ItineraryDTO setItineraryPermission(Long itineraryId, Long userId, String permissionStatus) {
         // 实现设置行程权限逻辑
         System.out.println("--------------------------------start setItineraryPermission--------------------------------");
@@ -467,8 +481,13 @@ public class ItineraryServiceImpl implements ItineraryService {
             }
         }
 
+        Itinerary.PermissionStatus oldPermissionStatus = itinerary.getPermissionStatus();
         itinerary.setPermissionStatus(Itinerary.PermissionStatus.valueOf(permissionStatus));
         Itinerary savedItinerary = itineraryRepository.save(itinerary);
+        if (oldPermissionStatus != savedItinerary.getPermissionStatus()) {
+            communityEntryRepository.findByItineraryId(itineraryId)
+                    .ifPresent(entry -> searchIndexOutbox.enqueueCommunityEntry(entry.getId()));
+        }
         return itineraryConverter.toDTO(savedItinerary);
     }
 
@@ -561,6 +580,7 @@ public class ItineraryServiceImpl implements ItineraryService {
             
             // 处理目的地同步
             if (originalStatus != newStatus) {
+                travelStatusChanged(itinerary);
                 if (newStatus == Itinerary.TravelStatus.已出行 && originalStatus == Itinerary.TravelStatus.待出行) {
                     // 从待出行变为已出行：自动添加历史目的地
                     userService.addHistoryDestinationsFromCompletedItineraries(userId);
@@ -784,10 +804,15 @@ public class ItineraryServiceImpl implements ItineraryService {
         }
 
         Itinerary saved = itineraryRepository.save(itinerary);
+        // 已出行行程的日程日期参与旅行统计（时间线、天数），重新排期后统计需要重新计算
+        if (saved.getTravelStatus() == Itinerary.TravelStatus.已出行) {
+            travelStatusChanged(saved);
+        }
         return itineraryConverter.toDTO(saved);
     }
 
     @Override
+    @Transactional
     public PermissionStatusResponse updatePermissionStatus(Long itineraryId, Long userId, String permissionStatus) {
         Itinerary itinerary = itineraryRepository.findById(itineraryId)
                 .orElseThrow(() -> new RuntimeException("行程不存在"));
@@ -843,6 +868,7 @@ public class ItineraryServiceImpl implements ItineraryService {
     }
 
     @Override
+    @Transactional
     public String generateShareCode(Long itineraryId, Long userId, ShareCodeRequest request) {
         logger.debug("生成分享码 - 用户ID: {}, 行程ID: {}, 请求: {}", userId, itineraryId, request);
         
@@ -952,408 +978,11 @@ public class ItineraryServiceImpl implements ItineraryService {
             }
         }
 
-        // 确保所有数据库操作完成后再进行Elasticsearch操作
-        // 异步索引到 Elasticsearch（仅当权限为"所有人可见"时）
+        // 在同一事务中写入发件箱，提交后由中继同步索引：
+        // "所有人可见"时索引文档，"仅获得链接者可见"时删除文档
         final Long entryId = communityEntry.getId();
-        final Itinerary.PermissionStatus currentStatus = itinerary.getPermissionStatus();
-        
-        logger.info("社区条目 {} 创建完成，当前权限状态: {}", entryId, currentStatus);
-        
-        if (currentStatus == Itinerary.PermissionStatus.所有人可见) {
-            // 延迟一点时间确保数据库事务完全提交
-            logger.info("权限为所有人可见，准备索引社区条目 {} 到 Elasticsearch", entryId);
-            CompletableFuture.delayedExecutor(1, TimeUnit.SECONDS).execute(() -> {
-                indexCommunityEntryToElasticsearch(entryId);
-            });
-        } else if (currentStatus == Itinerary.PermissionStatus.仅获得链接者可见) {
-            // 如果权限是"仅获得链接者可见"，确保从Elasticsearch中删除
-            logger.info("权限为仅获得链接者可见，准备从 Elasticsearch 删除社区条目 {}", entryId);
-            deleteCommunityEntryFromElasticsearch(entryId);
-        }
-    }
-
-    /**
-     * 异步索引社区条目到 Elasticsearch
-     * @param communityEntryId 社区条目ID
-     */
-    private void indexCommunityEntryToElasticsearch(Long communityEntryId) {
-        // 使用异步线程池执行索引操作
-        CompletableFuture.runAsync(() -> {
-            ElasticsearchClient client = null;
-            try {
-                logger.info("开始索引社区条目 {} 到 Elasticsearch", communityEntryId);
-
-                // 3. 创建Elasticsearch客户端
-                client = createElasticsearchClient();
-
-                // 检查Elasticsearch连接
-                logger.info("检查Elasticsearch连接...");
-                try {
-                    boolean isConnected = client.ping().value();
-                    logger.info("Elasticsearch连接状态: {}", isConnected ? "成功" : "失败");
-                    if (!isConnected) {
-                        logger.error("无法连接到Elasticsearch");
-                        return;
-                    }
-                } catch (Exception e) {
-                    logger.error("Elasticsearch连接检查失败: {}", e.getMessage());
-                    return;
-                }
-
-                // 检查索引是否存在
-                logger.info("检查索引 '{}' 是否存在...", communityEntriesIndex);
-                try {
-                    boolean indexExists = client.indices().exists(r -> r.index(communityEntriesIndex)).value();
-                    logger.info("索引 '{}' 存在状态: {}", communityEntriesIndex, indexExists ? "存在" : "不存在");
-                    if (!indexExists) {
-                        logger.warn("索引 '{}' 不存在，索引操作可能失败", communityEntriesIndex);
-                    }
-                } catch (Exception e) {
-                    logger.error("检查索引存在性失败: {}", e.getMessage());
-                }
-
-                // 1. 获取社区条目详细信息
-                Map<String, Object> entryDetails = getCommunityEntryDetails(communityEntryId);
-                if (entryDetails == null) {
-                    logger.error("未找到社区条目 ID: {}", communityEntryId);
-                    return;
-                }
-
-                // 2. 准备文本并生成向量
-                String text = prepareTextForEmbedding(entryDetails);
-                if (text.trim().isEmpty()) {
-                    logger.error("社区条目 {} 的文本为空，无法生成向量", communityEntryId);
-                    return;
-                }
-
-                logger.info("准备向量化文本: {}", text.length() > 100 ? text.substring(0, 100) + "..." : text);
-
-                float[] vector = embeddingService.embed(text);
-                if (vector.length == 0) {
-                    logger.error("社区条目 {} 向量生成失败", communityEntryId);
-                    return;
-                }
-
-                logger.info("成功生成向量，维度: {}", vector.length);
-
-                // 输出向量的前10个元素用于调试
-                if (vector.length > 0) {
-                    StringBuilder vectorSample = new StringBuilder();
-                    int sampleSize = Math.min(10, vector.length);
-                    for (int i = 0; i < sampleSize; i++) {
-                        if (i > 0) vectorSample.append(", ");
-                        vectorSample.append(String.format("%.6f", vector[i]));
-                    }
-                    logger.info("向量样本（前{}个元素）: [{}]", sampleSize, vectorSample.toString());
-                }
-
-                // 4. 准备索引文档
-                CommunityEntryDocument document = new CommunityEntryDocument();
-                document.setId((Long) entryDetails.get("id"));
-                document.setShareCode((String) entryDetails.get("share_code"));
-                document.setDescription((String) entryDetails.get("description"));
-                document.setViewCount((Integer) entryDetails.get("view_count"));
-
-                // 处理日期字段
-                Object createdAt = entryDetails.get("created_at");
-                if (createdAt != null) {
-                    document.setCreatedAt(createdAt.toString());
-                }
-
-                Object updatedAt = entryDetails.get("updated_at");
-                if (updatedAt != null) {
-                    document.setUpdatedAt(updatedAt.toString());
-                }
-
-                document.setItineraryTitle((String) entryDetails.get("itinerary_title"));
-
-                Object startDate = entryDetails.get("start_date");
-                if (startDate != null) {
-                    document.setStartDate(startDate.toString());
-                }
-
-                Object endDate = entryDetails.get("end_date");
-                if (endDate != null) {
-                    document.setEndDate(endDate.toString());
-                }
-
-                document.setDestinations((String) entryDetails.get("destinations"));
-                document.setAuthorUsername((String) entryDetails.get("author_username"));
-                document.setAuthorId((Long) entryDetails.get("author_id"));
-                document.setTags((String) entryDetails.get("tags"));
-
-                // 将float[]转换为List<Float>
-                List<Float> vectorList = new ArrayList<>();
-                for (float f : vector) {
-                    vectorList.add(f);
-                }
-                document.setVector(vectorList);
-
-                logger.info("准备索引文档: {}", document.getItineraryTitle());
-
-                // 5. 索引到Elasticsearch
-                IndexRequest<CommunityEntryDocument> request = IndexRequest.of(i -> i
-                        .index(communityEntriesIndex)
-                        .id(String.valueOf(communityEntryId))
-                        .document(document)
-                );
-
-                logger.info("准备发送索引请求到索引 '{}', 文档ID: {}", communityEntriesIndex, communityEntryId);
-
-                IndexResponse response = client.index(request);
-
-                logger.info("索引响应 - 结果: {}, 索引: {}, ID: {}, 版本: {}",
-                        response.result(), response.index(), response.id(), response.version());
-
-                if (response.result() == Result.Created ||
-                    response.result() == Result.Updated) {
-                    logger.info("社区条目 {} 成功索引到 Elasticsearch", communityEntryId);
-
-                    // 验证文档是否真的存在
-                    try {
-                        Thread.sleep(1000); // 等待1秒确保索引完成
-                        boolean docExists = client.exists(e -> e.index(communityEntriesIndex).id(String.valueOf(communityEntryId))).value();
-                        logger.info("验证文档存在性: {}", docExists ? "文档存在" : "文档不存在");
-                    } catch (Exception e) {
-                        logger.warn("验证文档存在性失败: {}", e.getMessage());
-                    }
-                } else {
-                    logger.error("社区条目 {} 索引失败，响应: {}", communityEntryId, response.result());
-                }
-                
-            } catch (Exception e) {
-                logger.error("索引社区条目 {} 到 Elasticsearch 时发生错误: {}", communityEntryId, e.getMessage(), e);
-            } finally {
-                // 关闭客户端
-                if (client != null) {
-                    try {
-                        client._transport().close();
-                    } catch (Exception e) {
-                        logger.warn("关闭Elasticsearch客户端时发生错误: {}", e.getMessage());
-                    }
-                }
-            }
-        });
-    }
-
-    /**
-     * 异步删除社区条目从 Elasticsearch
-     * @param communityEntryId 社区条目ID
-     */
-    private void deleteCommunityEntryFromElasticsearch(Long communityEntryId) {
-        // 使用异步线程池执行删除操作
-        CompletableFuture.runAsync(() -> {
-            ElasticsearchClient client = null;
-            try {
-                logger.info("开始从 Elasticsearch 删除社区条目 {}", communityEntryId);
-
-                // 创建Elasticsearch客户端
-                client = createElasticsearchClient();
-
-                // 删除文档
-                DeleteRequest request = DeleteRequest.of(d -> d
-                        .index(communityEntriesIndex)
-                        .id(String.valueOf(communityEntryId))
-                );
-
-                DeleteResponse response = client.delete(request);
-
-                if (response.result() == Result.Deleted) {
-                    logger.info("社区条目 {} 成功从 Elasticsearch 删除", communityEntryId);
-                } else if (response.result() == Result.NotFound) {
-                    logger.info("社区条目 {} 在 Elasticsearch 中不存在", communityEntryId);
-                } else {
-                    logger.error("社区条目 {} 从 Elasticsearch 删除失败，响应: {}", communityEntryId, response.result());
-                }
-
-            } catch (Exception e) {
-                logger.error("删除社区条目 {} 从 Elasticsearch 时发生错误: {}", communityEntryId, e.getMessage(), e);
-            } finally {
-                // 关闭客户端
-                if (client != null) {
-                    try {
-                        client._transport().close();
-                    } catch (Exception e) {
-                        logger.warn("关闭Elasticsearch客户端时发生错误: {}", e.getMessage());
-                    }
-                }
-            }
-        });
-    }
-
-    /**
-     * 获取社区条目的详细信息用于索引
-     * @param communityEntryId 社区条目ID
-     * @return 社区条目详细信息的Map
-     */
-    private Map<String, Object> getCommunityEntryDetails(Long communityEntryId) {
-        // 使用原生SQL查询获取完整的社区条目信息
-        String sql = """
-            SELECT 
-                ce.id,
-                ce.share_code,
-                ce.description,
-                ce.view_count,
-                ce.created_at,
-                ce.updated_at,
-                i.title as itinerary_title,
-                i.start_date,
-                i.end_date,
-                GROUP_CONCAT(DISTINCT d.name SEPARATOR ', ') as destinations,
-                u.username as author_username,
-                u.id as author_id,
-                GROUP_CONCAT(DISTINCT t.tag SEPARATOR ', ') as tags
-            FROM community_entries ce
-            JOIN itineraries i ON ce.itinerary_id = i.id
-            JOIN user u ON i.user_id = u.id
-            LEFT JOIN itinerary_days iday ON i.id = iday.itinerary_id
-            LEFT JOIN itinerary_activities ia ON iday.id = ia.itinerary_day_id
-            LEFT JOIN attractions a ON ia.attraction_id = a.id
-            LEFT JOIN destinations d ON a.destination_id = d.id
-            LEFT JOIN community_entry_tags cet ON ce.id = cet.share_entry_id
-            LEFT JOIN tags t ON cet.tag_id = t.id
-            WHERE ce.id = ? AND i.permission_status = '所有人可见'
-            GROUP BY ce.id, ce.share_code, ce.description, ce.view_count, ce.created_at, ce.updated_at,
-                     i.title, i.start_date, i.end_date, u.username, u.id
-            """;
-
-        try {
-            // 这里需要使用JdbcTemplate来执行原生SQL
-            // 暂时返回基本信息，后续可以优化
-            Optional<CommunityEntry> entry = communityEntryRepository.findById(communityEntryId);
-            if (entry.isEmpty()) {
-                return null;
-            }
-
-            CommunityEntry communityEntry = entry.get();
-            Itinerary itinerary = communityEntry.getItinerary();
-
-            // 检查权限状态
-            logger.info("社区条目 {} 对应的行程权限状态: {}", communityEntryId, itinerary.getPermissionStatus());
-
-            // 如果权限状态不是"所有人可见"，不应该索引
-            if (itinerary.getPermissionStatus() != Itinerary.PermissionStatus.所有人可见) {
-                logger.warn("社区条目 {} 对应的行程权限状态不是'所有人可见'，跳过索引", communityEntryId);
-                return null;
-            }
-
-            Map<String, Object> result = new HashMap<>();
-            result.put("id", communityEntry.getId());
-            result.put("share_code", communityEntry.getShareCode());
-            result.put("description", communityEntry.getDescription() != null ? communityEntry.getDescription() : "");
-            result.put("view_count", communityEntry.getViewCount() != null ? communityEntry.getViewCount() : 0);
-            result.put("created_at", communityEntry.getCreatedAt());
-            result.put("updated_at", communityEntry.getUpdatedAt());
-            result.put("itinerary_title", itinerary.getTitle());
-            result.put("start_date", itinerary.getStartDate());
-            result.put("end_date", itinerary.getEndDate());
-            result.put("author_username", itinerary.getUser().getUsername());
-            result.put("author_id", itinerary.getUser().getId());
-
-            // 获取标签信息
-            List<CommunityEntryTag> entryTags = communityEntryTagRepository.findByCommunityEntry(communityEntry);
-            String tags = entryTags.stream()
-                    .map(tag -> tag.getTag().getTag())
-                    .collect(Collectors.joining(", "));
-            result.put("tags", tags);
-
-            // 获取目的地信息 - 通过行程-日程-活动-景点-目的地链获取
-            String destinations = getDestinationsForItinerary(itinerary.getId());
-            result.put("destinations", destinations);
-
-            return result;
-            } catch (Exception e) {
-            logger.error("获取社区条目详细信息失败: {}", e.getMessage(), e);
-            return null;
-        }
-    }
-
-    /**
-     * 准备用于向量化的文本
-     * @param entryDetails 社区条目详细信息
-     * @return 组合后的文本
-     */
-    private String prepareTextForEmbedding(Map<String, Object> entryDetails) {
-        List<String> textParts = new ArrayList<>();
-
-        // 行程名称
-        String title = (String) entryDetails.get("itinerary_title");
-        if (title != null && !title.trim().isEmpty()) {
-            textParts.add(title);
-        }
-
-        // 描述
-        String description = (String) entryDetails.get("description");
-        if (description != null && !description.trim().isEmpty()) {
-            textParts.add(description);
-        }
-
-        // 作者名称
-        String authorUsername = (String) entryDetails.get("author_username");
-        if (authorUsername != null && !authorUsername.trim().isEmpty()) {
-            textParts.add("作者: " + authorUsername);
-        }
-
-        // 目的地
-        String destinations = (String) entryDetails.get("destinations");
-        if (destinations != null && !destinations.trim().isEmpty()) {
-            textParts.add("目的地: " + destinations);
-        }
-
-        // 标签
-        String tags = (String) entryDetails.get("tags");
-        if (tags != null && !tags.trim().isEmpty()) {
-            textParts.add("标签: " + tags);
-        }
-
-        return String.join(" ", textParts);
-            }
-
-    /**
-     * 获取行程的目的地信息
-     * @param itineraryId 行程ID
-     * @return 目的地名称列表，用逗号分隔
-     */
-    private String getDestinationsForItinerary(Long itineraryId) {
-        try {
-            // 通过行程-日程-活动-景点-目的地链获取目的地
-            List<ItineraryDay> days = itineraryDayRepository.findByItineraryIdOrderByDayNumber(itineraryId);
-            Set<String> destinationNames = new HashSet<>();
-
-            for (ItineraryDay day : days) {
-                // 获取每天的活动
-                List<ItineraryActivity> activities = itineraryActivityRepository.findByItineraryDayId(day.getId());
-
-                for (ItineraryActivity activity : activities) {
-                    // 获取活动的景点，然后获取目的地
-                    if (activity.getAttraction() != null &&
-                        activity.getAttraction().getDestination() != null) {
-                        destinationNames.add(activity.getAttraction().getDestination().getName());
-                    }
-                }
-            }
-
-            return String.join(", ", destinationNames);
-        } catch (Exception e) {
-            logger.error("获取行程目的地信息失败: {}", e.getMessage(), e);
-            return "";
-            }
-        }
-
-    /**
-     * 创建Elasticsearch客户端
-     * @return ElasticsearchClient
-     */
-    private ElasticsearchClient createElasticsearchClient() {
-        RestClient restClient = RestClient.builder(
-                new HttpHost(elasticsearchHost, elasticsearchPort, "http")
-        ).build();
-
-        ElasticsearchTransport transport = new RestClientTransport(
-                restClient, new JacksonJsonpMapper()
-        );
-
-        return new ElasticsearchClient(transport);
+        logger.info("社区条目 {} 创建完成，当前权限状态: {}", entryId, itinerary.getPermissionStatus());
+        searchIndexOutbox.enqueueCommunityEntry(entryId);
     }
 
     // 生成随机分享码
@@ -1369,96 +998,6 @@ public class ItineraryServiceImpl implements ItineraryService {
         return sb.toString();
     }
 
-    /**
-     * 检查所有社区条目的索引状态（用于调试）
-     */
-    public void checkAllCommunityEntriesIndexStatus() {
-        logger.info("=== 开始检查所有社区条目的索引状态 ===");
-
-        List<CommunityEntry> allEntries = communityEntryRepository.findAll();
-        logger.info("数据库中总共有 {} 个社区条目", allEntries.size());
-
-        int publicCount = 0;
-        int linkOnlyCount = 0;
-        int privateCount = 0;
-
-        for (CommunityEntry entry : allEntries) {
-            Itinerary itinerary = entry.getItinerary();
-            Itinerary.PermissionStatus status = itinerary.getPermissionStatus();
-
-            logger.info("社区条目 {} (分享码: {}) - 行程: '{}' - 权限状态: {}",
-                    entry.getId(), entry.getShareCode(), itinerary.getTitle(), status);
-
-            switch (status) {
-                case 所有人可见:
-                    publicCount++;
-                    break;
-                case 仅获得链接者可见:
-                    linkOnlyCount++;
-                    break;
-                case 私人:
-                    privateCount++;
-                    break;
-            }
-        }
-
-        logger.info("权限状态统计: 所有人可见={}, 仅获得链接者可见={}, 私人={}",
-                publicCount, linkOnlyCount, privateCount);
-        logger.info("应该在Elasticsearch中索引的社区条目数量: {}", publicCount);
-        logger.info("=== 社区条目索引状态检查完成 ===");
-    }
-
-    /**
-     * 检查Elasticsearch中的文档数量
-     */
-    public void checkElasticsearchDocumentCount() {
-        ElasticsearchClient client = null;
-        try {
-            logger.info("=== 开始检查Elasticsearch中的文档数量 ===");
-
-            client = createElasticsearchClient();
-
-            // 检查连接
-            boolean isConnected = client.ping().value();
-            logger.info("Elasticsearch连接状态: {}", isConnected ? "成功" : "失败");
-
-            if (!isConnected) {
-                logger.error("无法连接到Elasticsearch");
-                return;
-            }
-
-            // 检查索引是否存在
-            boolean indexExists = client.indices().exists(r -> r.index(communityEntriesIndex)).value();
-            logger.info("索引 '{}' 存在状态: {}", communityEntriesIndex, indexExists ? "存在" : "不存在");
-
-            if (!indexExists) {
-                logger.warn("索引 '{}' 不存在", communityEntriesIndex);
-                return;
-            }
-
-            // 查询文档数量
-            var countResponse = client.count(c -> c.index(communityEntriesIndex));
-            logger.info("Elasticsearch中索引 '{}' 的文档数量: {}", communityEntriesIndex, countResponse.count());
-
-            // 获取索引的基本信息
-            var statsResponse = client.indices().stats(s -> s.index(communityEntriesIndex));
-            logger.info("索引统计信息: {}", statsResponse.toString());
-
-        } catch (Exception e) {
-            logger.error("检查Elasticsearch文档数量失败: {}", e.getMessage(), e);
-        } finally {
-            if (client != null) {
-                try {
-                    client._transport().close();
-                } catch (Exception e) {
-                    logger.warn("关闭Elasticsearch客户端失败: {}", e.getMessage());
-                }
-            }
-        }
-
-        logger.info("=== Elasticsearch文档数量检查完成 ===");
-    }
-
     @Override
     @Transactional
     public ItineraryDTO createGroupItinerary(Long userId, Long groupId, ItineraryCreateRequest request, boolean isTemplate) {
@@ -1524,6 +1063,9 @@ public class ItineraryServiceImpl implements ItineraryService {
         }
 
         // 转换为DTO
+        itineraryAggregateLoader.loadDetails(groupItineraries.stream()
+            .map(GroupItinerary::getItinerary)
+            .collect(Collectors.toList()));
         return groupItineraries.stream()
             .map(gi -> itineraryConverter.toDTO(gi.getItinerary()))
             .collect(Collectors.toList());
@@ -1557,6 +1099,7 @@ public class ItineraryServiceImpl implements ItineraryService {
 
         // 获取用户的个人行程列表
         Page<Itinerary> itinerariesPage = itineraryRepository.findPersonalItineraries(userId, pageable);
+        itineraryAggregateLoader.loadDetails(itinerariesPage.getContent());
 
         // 转换为DTO
         return itinerariesPage.getContent().stream()
@@ -1575,96 +1118,25 @@ public class ItineraryServiceImpl implements ItineraryService {
                 throw new RuntimeException("用户不存在");
             }
 
-            // 获取用户参与的所有团队成员记录
-            List<TravelGroupMember> memberships = travelGroupMemberRepository.findByUserId(userId);
-            logger.info("用户 {} 参与的团队成员记录数: {}", userId, memberships.size());
-
-            // 获取所有团队ID（只包括已加入的团队）
-            List<Long> groupIds = memberships.stream()
-                    .filter(member -> member.getJoinStatus() == TravelGroupMember.JoinStatus.已加入)
-                    .map(member -> member.getGroup().getId())
+            // 一条查询取出已加入团队的行程，连同团队名称、创建者和用户角色，排序分页在数据库中完成
+            Page<Object[]> rows = groupItineraryRepository.findTeamItineraryRows(
+                    userId, TravelGroupMember.JoinStatus.已加入, pageable);
+            List<Itinerary> itineraries = rows.getContent().stream()
+                    .map(row -> (Itinerary) row[0])
                     .collect(java.util.stream.Collectors.toList());
-
-            logger.info("用户 {} 已加入的团队ID列表: {}", userId, groupIds);
-
-            if (groupIds.isEmpty()) {
-                logger.info("用户 {} 没有加入任何团队", userId);
-                return new java.util.ArrayList<>();
-            }
-
-            // 查询这些团队的所有行程
-            List<Itinerary> teamItineraries = new java.util.ArrayList<>();
-            for (Long groupId : groupIds) {
-                try {
-                    logger.debug("查询团队 {} 的行程", groupId);
-                    // 查询该团队的行程
-                    List<GroupItinerary> groupItineraries = groupItineraryRepository.findByGroupId(groupId);
-                    logger.debug("团队 {} 的行程数量: {}", groupId, groupItineraries.size());
-
-                    for (GroupItinerary groupItinerary : groupItineraries) {
-                        Itinerary itinerary = groupItinerary.getItinerary();
-                        if (itinerary != null) {
-                            teamItineraries.add(itinerary);
-                            logger.debug("添加行程: ID={}, 标题={}", itinerary.getId(), itinerary.getTitle());
-                        }
-                    }
-                } catch (Exception e) {
-                    logger.warn("获取团队 {} 的行程时出错: {}", groupId, e.getMessage());
-                    // 继续处理其他团队
-                }
-            }
-
-            logger.info("总共找到 {} 个团队行程", teamItineraries.size());
-
-            // 按创建时间倒序排序
-            teamItineraries.sort((a, b) -> {
-                LocalDateTime aTime = a.getCreatedAt() != null ? a.getCreatedAt() : LocalDateTime.MIN;
-                LocalDateTime bTime = b.getCreatedAt() != null ? b.getCreatedAt() : LocalDateTime.MIN;
-                return bTime.compareTo(aTime);
-            });
-
-            // 应用分页逻辑
-            int start = (int) pageable.getOffset();
-            int end = Math.min(start + pageable.getPageSize(), teamItineraries.size());
-
-            if (start >= teamItineraries.size()) {
-                return new java.util.ArrayList<>();
-            }
-
-            List<Itinerary> pagedItineraries = teamItineraries.subList(start, end);
+            itineraryAggregateLoader.loadDetails(itineraries);
+            logger.info("用户 {} 的团队行程共 {} 个，本页 {} 个", userId, rows.getTotalElements(), itineraries.size());
 
             // 转换为DTO并添加团队信息
-            return pagedItineraries.stream()
-                .map(itinerary -> {
-                    ItineraryDTO dto = itineraryConverter.toDTO(itinerary);
-
-                    // 获取团队信息
-                    if (itinerary.getGroupId() != null) {
-                        try {
-                            TravelGroup group = travelGroupRepository.findById(itinerary.getGroupId()).orElse(null);
-                            if (group != null) {
-                                dto.setGroupTitle(group.getTitle());
-
-                                // 检查当前用户是否为团队创建者
-                                boolean isCreator = group.getCreator().getId().equals(userId);
-                                dto.setIsGroupCreator(isCreator);
-
-                                // 获取用户在团队中的角色
-                                TravelGroupMember member = travelGroupMemberRepository
-                                    .findByGroupIdAndUserId(itinerary.getGroupId(), userId)
-                                    .orElse(null);
-                                if (member != null) {
-                                    dto.setUserRole(member.getRole().toString());
-                                }
-                            }
-                        } catch (Exception e) {
-                            logger.warn("获取团队信息失败: {}", e.getMessage());
-                        }
-                    }
-
-                    return dto;
-                })
-                .collect(java.util.stream.Collectors.toList());
+            List<ItineraryDTO> result = new java.util.ArrayList<>(itineraries.size());
+            for (Object[] row : rows.getContent()) {
+                ItineraryDTO dto = itineraryConverter.toDTO((Itinerary) row[0]);
+                dto.setGroupTitle((String) row[1]);
+                dto.setIsGroupCreator(userId.equals(row[2]));
+                dto.setUserRole(row[3] != null ? row[3].toString() : null);
+                result.add(dto);
+            }
+            return result;
 
         } catch (Exception e) {
             logger.error("获取团队行程失败 - 用户ID: {}, 错误: {}", userId, e.getMessage(), e);
@@ -1747,8 +1219,6 @@ public class ItineraryServiceImpl implements ItineraryService {
             day.setDayNumber(dayPlan.getDay());
             day.setDate(startDate.plusDays(dayPlan.getDay() - 1));
             day.setTitle("第" + dayPlan.getDay() + "天");
-            day.setFirstActivityId(null);
-            day.setLastActivityId(null);
 
             // 保存日程
             ItineraryDay savedDay = itineraryDayRepository.save(day);
@@ -1756,7 +1226,6 @@ public class ItineraryServiceImpl implements ItineraryService {
 
             // 创建活动
             List<ItineraryActivity> dayActivities = new ArrayList<>();
-            ItineraryActivity prevActivity = null;
 
             for (com.se_07.backend.dto.AIItineraryImportRequest.ActivityPlan activityPlan : dayPlan.getActivities()) {
                 // 搜索景点
@@ -1791,36 +1260,15 @@ public class ItineraryServiceImpl implements ItineraryService {
                     logger.warn("解析时间失败: {} - {}, 跳过时间设置", activityPlan.getStartTime(), activityPlan.getEndTime());
                 }
 
-                // 设置链表关系
-                if (prevActivity != null) {
-                    prevActivity.setNextId(null); // 先设置为null，保存后再更新
-                    activity.setPrevId(null);
-                }
-
-                // 保存活动
-                ItineraryActivity savedActivity = itineraryActivityRepository.save(activity);
-                logger.info("创建活动 - 活动ID: {}, 景点: {}", savedActivity.getId(), attraction.getName());
-
-                // 更新链表关系
-                if (prevActivity != null) {
-                    prevActivity.setNextId(savedActivity.getId());
-                    itineraryActivityRepository.save(prevActivity);
-
-                    savedActivity.setPrevId(prevActivity.getId());
-                    itineraryActivityRepository.save(savedActivity);
-                }
-
-                dayActivities.add(savedActivity);
-                prevActivity = savedActivity;
+                // 按导入顺序分配位置
+                activity.setPosition(ActivityOrdering.initialPosition(dayActivities.size()));
+                dayActivities.add(activity);
             }
 
-            // 更新日程的首末活动ID
+            // 一次批量保存当天的活动
             if (!dayActivities.isEmpty()) {
-                savedDay.setFirstActivityId(dayActivities.get(0).getId());
-                savedDay.setLastActivityId(dayActivities.get(dayActivities.size() - 1).getId());
-                itineraryDayRepository.save(savedDay);
-                logger.info("更新日程首末活动 - 日程ID: {}, 首活动ID: {}, 末活动ID: {}",
-                    savedDay.getId(), savedDay.getFirstActivityId(), savedDay.getLastActivityId());
+                itineraryActivityRepository.saveAll(dayActivities);
+                logger.info("创建活动 - 日程ID: {}, 活动数: {}", savedDay.getId(), dayActivities.size());
             }
         }
     }
@@ -0,0 +1,277 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.repository.FriendRepository;
+import com.se_07.backend.repository.GroupChatMemberRepository;
+import com.se_07.backend.util.LruTtlCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在线状态与正在输入
+ * 在线状态由 STOMP 连接/断开事件维护（同一用户可有多个连接，全部断开才算离线）。
+ * 上下线和正在输入事件先记入待发送集合，后台线程每个广播周期合并发送一次：
+ *   - 群聊正在输入：每个群每周期最多一条 /topic/group.typing.{groupId}
+ *   - 私聊正在输入：每个接收者每周期最多一条 /user/queue/typing
+ *   - 上下线：每个在线好友每周期最多一条 /user/queue/presence，每个群每周期最多一条 /topic/group.presence.{groupId}
+ * 同一周期内先下线又上线的用户不会产生广播
+ */
+@Component
+public class PresenceRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(PresenceRegistry.class);
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+    @Autowired
+    private FriendRepository friendRepository;
+    @Autowired
+    private GroupChatMemberRepository groupChatMemberRepository;
+
+    @Value("${chat.presence.broadcast-interval-ms:500}")
+    private long broadcastIntervalMs = 500;
+
+    // 私聊正在输入只推送给好友，好友关系查询结果短暂缓存，避免每次输入都查库
+    @Value("${chat.presence.friend-cache.max-size:10000}")
+    private int friendCacheMaxSize = 10000;
+
+    @Value("${chat.presence.friend-cache.ttl-seconds:60}")
+    private long friendCacheTtlSeconds = 60;
+
+    private LruTtlCache<String, Boolean> friendCache = new LruTtlCache<>(friendCacheMaxSize, friendCacheTtlSeconds * 1000);
+
+    // 连接ID -> 用户ID，用户ID -> 在线连接数
+    private final Map<String, Long> sessionUsers = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> userSessionCounts = new ConcurrentHashMap<>();
+
+    // 本周期待广播的上下线（用户ID -> 最新状态）及上次广播的状态
+    private final Map<Long, Boolean> pendingPresence = new ConcurrentHashMap<>();
+    private final Map<Long, Boolean> broadcastPresence = new ConcurrentHashMap<>();
+
+    // 本周期正在输入的用户：群ID -> 用户ID集合，接收者ID -> 发送者ID集合
+    private final Map<Long, Set<Long>> pendingGroupTyping = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> pendingDirectTyping = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService broadcastExecutor;
+
+    @PostConstruct
+    void start() {
+        friendCache = new LruTtlCache<>(friendCacheMaxSize, friendCacheTtlSeconds * 1000);
+        broadcastExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-presence-broadcast");
+            thread.setDaemon(true);
+            return thread;
+        });
+        broadcastExecutor.scheduleWithFixedDelay(this::flushSafely, broadcastIntervalMs, broadcastIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (broadcastExecutor != null) {
+            broadcastExecutor.shutdownNow();
+        }
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Long userId = userIdOf(event.getUser());
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (userId == null || sessionId == null || sessionUsers.putIfAbsent(sessionId, userId) != null) {
+            return;
+        }
+        // 计数变化和待广播状态在同一个 compute 中完成，与同一用户的断开事件串行
+        userSessionCounts.compute(userId, (id, count) -> {
+            if (count == null) {
+                pendingPresence.put(id, true);
+                return 1;
+            }
+            return count + 1;
+        });
+    }
+
+    @EventListener
+    public void onDisconnected(SessionDisconnectEvent event) {
+        // 同一连接可能收到多次断开事件，只处理第一次
+        Long userId = event.getSessionId() == null ? null : sessionUsers.remove(event.getSessionId());
+        if (userId == null) {
+            return;
+        }
+        userSessionCounts.compute(userId, (id, count) -> {
+            if (count == null) {
+                return null;
+            }
+            if (count <= 1) {
+                pendingPresence.put(id, false);
+                return null;
+            }
+            return count - 1;
+        });
+    }
+
+    public boolean isOnline(Long userId) {
+        return userId != null && userSessionCounts.containsKey(userId);
+    }
+
+    /**
+     * 返回给定用户中当前在线的用户ID
+     */
+    public Set<Long> onlineAmong(Collection<Long> userIds) {
+        Set<Long> online = new HashSet<>();
+        for (Long userId : userIds) {
+            if (isOnline(userId)) {
+                online.add(userId);
+            }
+        }
+        return online;
+    }
+
+    public int onlineUserCount() {
+        return userSessionCounts.size();
+    }
+
+    /**
+     * 记录群聊中的正在输入，本周期内合并为一次广播
+     */
+    public void groupTyping(Long groupId, Long userId) {
+        pendingGroupTyping.computeIfAbsent(groupId, id -> ConcurrentHashMap.newKeySet()).add(userId);
+    }
+
+    /**
+     * 记录私聊中的正在输入，本周期内合并为一次推送；不是好友时忽略
+     */
+    public void directTyping(Long toId, Long fromId) {
+        if (!isFriend(fromId, toId)) {
+            return;
+        }
+        pendingDirectTyping.computeIfAbsent(toId, id -> ConcurrentHashMap.newKeySet()).add(fromId);
+    }
+
+    private boolean isFriend(Long userId, Long friendId) {
+        String key = userId + ":" + friendId;
+        Boolean friend = friendCache.get(key);
+        if (friend == null) {
+            friend = friendRepository.existsByIdAndFriendId(userId, friendId);
+            friendCache.put(key, friend);
+        }
+        return friend;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("onlineUsers", userSessionCounts.size());
+        stats.put("sessions", sessionUsers.size());
+        stats.put("pendingPresence", pendingPresence.size());
+        stats.put("pendingGroupTyping", pendingGroupTyping.size());
+        stats.put("pendingDirectTyping", pendingDirectTyping.size());
+        return stats;
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("在线状态广播失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 广播本周期累积的正在输入和上下线事件
+     */
+    synchronized void flush() {
+        for (Long groupId : new ArrayList<>(pendingGroupTyping.keySet())) {
+            Set<Long> userIds = pendingGroupTyping.remove(groupId);
+            Map<String, Object> msg = new HashMap<>();
+            msg.put("type", "typing");
+            msg.put("groupId", groupId);
+            msg.put("userIds", userIds);
+            messagingTemplate.convertAndSend("/topic/group.typing." + groupId, msg);
+        }
+        for (Long toId : new ArrayList<>(pendingDirectTyping.keySet())) {
+            Set<Long> fromIds = pendingDirectTyping.remove(toId);
+            Map<String, Object> msg = new HashMap<>();
+            msg.put("type", "typing");
+            msg.put("fromIds", fromIds);
+            messagingTemplate.convertAndSendToUser(String.valueOf(toId), "/queue/typing", msg);
+        }
+        flushPresence();
+    }
+
+    private void flushPresence() {
+        Map<Long, Boolean> changes = new HashMap<>();
+        for (Long userId : new ArrayList<>(pendingPresence.keySet())) {
+            Boolean online = pendingPresence.remove(userId);
+            // 与上次广播的状态相同（周期内先下线又上线）时不广播
+            Boolean previous = online ? broadcastPresence.put(userId, true) : broadcastPresence.remove(userId);
+            if (!online.equals(previous != null)) {
+                changes.put(userId, online);
+            }
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        // 两次批量查询找出受影响的好友和群，再按接收方合并
+        Map<Long, List<Map<String, Object>>> byFriend = new HashMap<>();
+        for (Object[] pair : friendRepository.findPairsByIdIn(changes.keySet())) {
+            Long userId = (Long) pair[0];
+            Long friendId = (Long) pair[1];
+            if (isOnline(friendId)) {
+                byFriend.computeIfAbsent(friendId, id -> new ArrayList<>()).add(change(userId, changes.get(userId)));
+            }
+        }
+        Map<Long, List<Map<String, Object>>> byGroup = new HashMap<>();
+        for (Object[] pair : groupChatMemberRepository.findGroupPairsByUserIdIn(changes.keySet())) {
+            Long userId = (Long) pair[0];
+            Long groupId = (Long) pair[1];
+            byGroup.computeIfAbsent(groupId, id -> new ArrayList<>()).add(change(userId, changes.get(userId)));
+        }
+
+        byFriend.forEach((friendId, list) ->
+                messagingTemplate.convertAndSendToUser(String.valueOf(friendId), "/queue/presence", presenceMessage(null, list)));
+        byGroup.forEach((groupId, list) ->
+                messagingTemplate.convertAndSend("/topic/group.presence." + groupId, presenceMessage(groupId, list)));
+    }
+
+    private static Map<String, Object> change(Long userId, Boolean online) {
+        Map<String, Object> change = new HashMap<>();
+        change.put("userId", userId);
+        change.put("online", online);
+        return change;
+    }
+
+    private static Map<String, Object> presenceMessage(Long groupId, List<Map<String, Object>> changes) {
+        Map<String, Object> msg = new HashMap<>();
+        msg.put("type", "presence");
+        if (groupId != null) {
+            msg.put("groupId", groupId);
+        }
+        msg.put("changes", changes);
+        return msg;
+    }
+
+    private static Long userIdOf(Principal user) {
+        if (user == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(user.getName());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.entity.SearchIndexOutbox;
+import com.se_07.backend.entity.SearchIndexRetry.EntityType;
+import com.se_07.backend.repository.SearchIndexOutboxRepository;
+import com.se_07.backend.repository.SearchIndexRetryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 搜索索引发件箱中继
+ * 业务代码在自己的事务中写入发件箱记录，事务提交后唤醒中继；中继也会定时轮询，
+ * 保证应用重启前未处理的记录不会丢失。
+ * 每批记录交给增量索引器重建文档，批量索引管道刷新后才删除记录（至少一次），
+ * 文档按实体最新状态重建并以实体ID为文档ID写入，重复处理是幂等的
+ */
+@Service
+public class SearchIndexOutboxRelay {
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndexOutboxRelay.class);
+
+    @Autowired
+    private SearchIndexOutboxRepository outboxRepository;
+
+    @Autowired
+    private SearchIndexRetryRepository retryRepository;
+
+    @Autowired
+    private IncrementalIndexer incrementalIndexer;
+
+    @Autowired
+    private ElasticsearchBulkIndexer bulkIndexer;
+
+    // 轮询间隔，正常情况下记录在事务提交后立即处理，轮询用于补偿
+    @Value("${indexer.outbox.poll-interval-ms:5000}")
+    private long pollIntervalMs = 5000;
+
+    // 每批读取的发件箱记录数
+    @Value("${indexer.outbox.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${indexer.retry.max-attempts:10}")
+    private int retryMaxAttempts = 10;
+
+    private ScheduledExecutorService relayExecutor;
+    private final AtomicBoolean wakeUpScheduled = new AtomicBoolean(false);
+
+    private final LongAdder relayedRows = new LongAdder();
+    private final LongAdder relayBatches = new LongAdder();
+    private final LongAdder relayErrors = new LongAdder();
+    private volatile LocalDateTime lastRelayAt;
+
+    @PostConstruct
+    void start() {
+        relayExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "search-index-outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        relayExecutor.scheduleWithFixedDelay(this::relaySafely, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (relayExecutor != null) {
+            relayExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 记录社区条目需要同步（新建、修改、权限变化或删除）
+     * 必须在修改社区条目或行程的同一事务中调用
+     */
+    public void enqueueCommunityEntry(Long communityEntryId) {
+        enqueue(EntityType.COMMUNITY_ENTRY, communityEntryId);
+    }
+
+    /**
+     * 记录用户（作者）需要同步
+     * 必须在修改用户的同一事务中调用
+     */
+    public void enqueueAuthor(Long userId) {
+        enqueue(EntityType.AUTHOR, userId);
+    }
+
+    private void enqueue(EntityType type, Long entityId) {
+        SearchIndexOutbox record = new SearchIndexOutbox();
+        record.setEntityType(type);
+        record.setEntityId(entityId);
+        outboxRepository.save(record);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+            });
+        } else {
+            wakeUp();
+        }
+    }
+
+    /**
+     * 立即安排一次中继，已有待执行的唤醒时不重复提交
+     */
+    private void wakeUp() {
+        if (relayExecutor == null || !wakeUpScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            relayExecutor.execute(() -> {
+                wakeUpScheduled.set(false);
+                relaySafely();
+            });
+        } catch (RejectedExecutionException e) {
+            wakeUpScheduled.set(false);
+        }
+    }
+
+    private void relaySafely() {
+        try {
+            while (relayOnce() == batchSize) {
+                // 发件箱中还有积压，继续处理下一批
+            }
+        } catch (Exception e) {
+            relayErrors.increment();
+            logger.error("搜索索引发件箱中继失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 处理一批发件箱记录
+     * @return 本批读取的记录数
+     */
+    int relayOnce() {
+        List<SearchIndexOutbox> records = outboxRepository.findAllByOrderByIdAsc(PageRequest.of(0, batchSize));
+        if (records.isEmpty()) {
+            return 0;
+        }
+
+        // 同一实体的多条记录只需同步一次
+        Map<EntityType, LinkedHashSet<Long>> entityIds = new EnumMap<>(EntityType.class);
+        List<Long> recordIds = new ArrayList<>(records.size());
+        for (SearchIndexOutbox record : records) {
+            entityIds.computeIfAbsent(record.getEntityType(), t -> new LinkedHashSet<>()).add(record.getEntityId());
+            recordIds.add(record.getId());
+        }
+
+        // 暂时失败的实体由增量索引器写入重试队列
+        entityIds.forEach((type, ids) -> incrementalIndexer.processBatch(type, new ArrayList<>(ids)));
+        // 文档写入ES（或失败记录进入重试队列）后才删除发件箱记录
+        bulkIndexer.flush();
+        outboxRepository.deleteByIdIn(recordIds);
+
+        relayedRows.add(records.size());
+        relayBatches.increment();
+        lastRelayAt = LocalDateTime.now();
+        return records.size();
+    }
+
+    /**
+     * 获取索引同步延迟：发件箱积压、重试队列和批量索引管道的状态
+     */
+    public Map<String, Object> getLag() {
+        Map<String, Object> lag = new LinkedHashMap<>();
+        LocalDateTime oldest = outboxRepository.findOldestCreatedAt();
+        lag.put("outboxPending", outboxRepository.count());
+        lag.put("oldestPendingAt", oldest);
+        lag.put("lagSeconds", oldest == null ? 0L : Math.max(0L, Duration.between(oldest, LocalDateTime.now()).getSeconds()));
+        lag.put("retryPending", retryRepository.count());
+        lag.put("retryExhausted", retryRepository.countByAttemptsGreaterThanEqual(retryMaxAttempts));
+        lag.put("relayedRows", relayedRows.sum());
+        lag.put("relayBatches", relayBatches.sum());
+        lag.put("relayErrors", relayErrors.sum());
+        lag.put("lastRelayAt", lastRelayAt);
+        lag.put("indexer", incrementalIndexer.getStats());
+        lag.put("bulk", bulkIndexer.getStats());
+        return lag;
+    }
+}
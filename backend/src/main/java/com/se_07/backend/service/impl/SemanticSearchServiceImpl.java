@@ -1,9 +1,10 @@
 package com.se_07.backend.service.impl;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.Script;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
-import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.json.JsonData;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.se_07.backend.entity.Attraction;
@@ -13,13 +14,16 @@ import com.se_07.backend.entity.Destination;
 import com.se_07.backend.repository.*;
 import com.se_07.backend.service.*;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
+@Slf4j
 @RequiredArgsConstructor
 public class SemanticSearchServiceImpl implements SemanticSearchService {
 
@@ -35,6 +39,10 @@ public class SemanticSearchServiceImpl implements SemanticSearchService {
     private final AttractionService attractionService;
     private final CommunityService communityService;
 
+    // 索引文档中冗余存储的标签字段（keyword），用于在ES中执行标签过滤
+    private static final String TOP_TAGS_FIELD = "top_tags";
+    private static final String COMMUNITY_TAG_NAMES_FIELD = "tag_names";
+
     @Value("${semantic.index.name:destinations}")
     private String indexName;
     
@@ -44,6 +52,25 @@ public class SemanticSearchServiceImpl implements SemanticSearchService {
     @Value("${semantic.community.index.name:community_entries}")
     private String communityIndexName;
 
+    @Value("${semantic.author.index.name:authors}")
+    private String authorIndexName = "authors";
+
+    // 检索模式：knn 使用 HNSW 近似检索，script 使用 script_score 逐文档精确计算
+    @Value("${semantic.search.mode:knn}")
+    private String searchMode = "knn";
+
+    // kNN 返回的最大结果数（k）上限，ES 要求 k <= num_candidates <= 10000；需要更多结果时改用 script_score
+    @Value("${semantic.search.knn.max-k:1000}")
+    private int knnMaxK = 1000;
+
+    // 每个分片的候选数 = k * 倍数，越大召回越高、耗时越长
+    @Value("${semantic.search.knn.num-candidates-factor:2}")
+    private int knnNumCandidatesFactor = 2;
+
+    // 混合排序（语义 + 热度）时取回的候选结果数
+    @Value("${semantic.search.rerank-pool-size:400}")
+    private int rerankPoolSize = 400;
+
     @Override
     public List<Destination> semanticSearch(String query, int size) {
         // 1. 调用嵌入服务获取向量
@@ -52,34 +79,12 @@ public class SemanticSearchServiceImpl implements SemanticSearchService {
             return Collections.emptyList();
         }
 
-        // 2. 构造 KNN 查询
-        List<Double> vecList = new ArrayList<>(vector.length);
-        for (float v : vector) vecList.add((double) v);
-
-        Script script = Script.of(s -> s.inline(i -> i
-                .lang("painless")
-                .source("cosineSimilarity(params.q,'vector')+1.0")
-                .params("q", JsonData.of(vecList))
-        ));
-
         try {
-            SearchResponse<Void> response = esClient.search(s -> s
-                    .index(indexName)
-                    .size(size)
-                    .query(q -> q.scriptScore(ss -> ss
-                            .script(script)
-                            .query(m -> m.matchAll(ma -> ma))
-                    )) , Void.class);
-
-            List<Long> ids = response.hits().hits().stream()
-                    .map(Hit::id)
-                    .map(Long::parseLong)
+            // 2. 向量检索
+            List<Long> ids = vectorSearch(indexName, vector, size, Collections.emptyList()).stream()
+                    .map(SearchResult::getId)
                     .collect(Collectors.toList());
-            // 按顺序取回对象
-            List<Destination> destinations = destinationRepository.findAllById(ids);
-            // 保持原排序
-            Map<Long, Destination> id2Dest = destinations.stream().collect(Collectors.toMap(Destination::getId, d -> d));
-            return ids.stream().map(id2Dest::get).filter(Objects::nonNull).collect(Collectors.toList());
+            return loadDestinationsInOrder(ids);
         } catch (Exception e) {
             e.printStackTrace();
             return Collections.emptyList();
@@ -88,39 +93,40 @@ public class SemanticSearchServiceImpl implements SemanticSearchService {
 
     @Override
     public List<Destination> semanticSearchByTags(String query, List<String> tags, int size) {
-        // 1. 先获取所有目的地的语义搜索结果
-        List<Destination> allSemanticResults = semanticSearch(query, 1000); // 获取大量结果用于标签过滤
-        
-        if (allSemanticResults.isEmpty()) {
+        if (tags == null || tags.isEmpty()) {
+            // 没有标签要求，直接返回语义搜索结果
+            return semanticSearch(query, size);
+        }
+
+        // 1. 调用嵌入服务获取向量
+        float[] vector = embeddingService.embed(query);
+        if (vector == null || vector.length == 0) {
             return Collections.emptyList();
         }
 
-        
-        // 2. 按标签过滤结果
-        List<Destination> filteredResults = allSemanticResults.stream()
-                .filter(destination -> {
-                    // 检查目的地是否包含至少一个搜索标签
-                    if (tags.isEmpty()) {
-                        System.out.println("--------没有标签要求，返回所有结果----------");
-                        return true; // 如果没有标签要求，返回所有结果
-                    }
-                    
-                    // 获取目的地的前6个标签
-                    List<String> destinationTopTags = destinationService.getTopNTags(destination, 6);
-                    System.out.println("目的地: " + destination.getName() + ", 前6个标签: " + destinationTopTags);
-                    
-                    // 检查前6个标签中是否包含至少一个搜索标签
-                    boolean hasMatchingTag = destinationTopTags.stream()
-                            .anyMatch(destinationTag -> tags.contains(destinationTag));
-                    
-                    System.out.println("搜索标签: " + tags + ", 是否匹配: " + hasMatchingTag);
-                    
-                    return hasMatchingTag;
-                })
-                .limit(size)
-                .collect(Collectors.toList());
+        try {
+            // 2. 标签过滤在ES中执行：目的地的前6个标签（top_tags）中包含至少一个搜索标签
+            List<Long> ids = vectorSearch(indexName, vector, size, List.of(anyTagFilter(TOP_TAGS_FIELD, tags))).stream()
+                    .map(SearchResult::getId)
+                    .collect(Collectors.toList());
+            return loadDestinationsInOrder(ids);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Collections.emptyList();
+        }
+    }
 
-        return filteredResults;
+    /**
+     * 按检索结果的顺序取回目的地
+     */
+    private List<Destination> loadDestinationsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Destination> destinations = destinationRepository.findAllById(ids);
+        // 保持原排序
+        Map<Long, Destination> id2Dest = destinations.stream().collect(Collectors.toMap(Destination::getId, d -> d));
+        return ids.stream().map(id2Dest::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     @Override
@@ -131,7 +137,125 @@ public class SemanticSearchServiceImpl implements SemanticSearchService {
             return org.springframework.data.domain.Page.empty(org.springframework.data.domain.PageRequest.of(page, size));
         }
 
-        // 2. 构造 KNN 查询
+        String attractionIndexName = attractionIndexPrefix + String.valueOf(destinationId);
+        System.out.println("---------景点索引名称: " + attractionIndexName + "---------");
+
+        try {
+            // 2. 获取足够多的语义搜索结果用于混合排序
+            List<SearchResult> searchResults = vectorSearch(attractionIndexName, vector, candidatePoolSize(page, size), Collections.emptyList());
+            return rankAttractionsByHybridScore(searchResults, page, size);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return org.springframework.data.domain.Page.empty(org.springframework.data.domain.PageRequest.of(page, size));
+        }
+    }
+
+    /**
+     * 按混合评分（语义相似度 + 热度）对景点检索结果排序并分页
+     * 排序只需要热度，先批量查询 join_count，最后只加载当前页的景点实体
+     */
+    private org.springframework.data.domain.Page<Attraction> rankAttractionsByHybridScore(List<SearchResult> searchResults, int page, int size) {
+        org.springframework.data.domain.PageRequest pageRequest = org.springframework.data.domain.PageRequest.of(page, size);
+        if (searchResults.isEmpty()) {
+            return org.springframework.data.domain.Page.empty(pageRequest);
+        }
+
+        List<Long> allIds = searchResults.stream()
+                .map(SearchResult::getId)
+                .collect(Collectors.toList());
+        Map<Long, Integer> joinCounts = new HashMap<>();
+        for (Object[] row : attractionRepository.findJoinCountsByIdIn(allIds)) {
+            joinCounts.put((Long) row[0], row[1] != null ? ((Number) row[1]).intValue() : 0);
+        }
+
+        // 计算混合评分并排序，数据库中已不存在的景点被忽略
+        List<SearchResult> ranked = searchResults.stream()
+                .filter(result -> joinCounts.containsKey(result.getId()))
+                .map(result -> new SearchResult(result.getId(), calculateHybridScore(
+                        result.getScore(),
+                        calculatePopularityScore(joinCounts.get(result.getId())),
+                        searchResults.size())))
+                .sorted((a, b) -> Double.compare(b.getScore(), a.getScore())) // 降序排序
+                .collect(Collectors.toList());
+
+        // 手动分页，只加载当前页的景点
+        int totalElements = ranked.size();
+        int start = page * size;
+        int end = Math.min(start + size, totalElements);
+        if (start >= totalElements) {
+            return new org.springframework.data.domain.PageImpl<>(Collections.emptyList(), pageRequest, totalElements);
+        }
+
+        List<Long> pageIds = ranked.subList(start, end).stream()
+                .map(SearchResult::getId)
+                .collect(Collectors.toList());
+        Map<Long, Attraction> id2Attraction = attractionRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(Attraction::getId, a -> a));
+        List<Attraction> pageContent = pageIds.stream()
+                .map(id2Attraction::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        return new org.springframework.data.domain.PageImpl<>(pageContent, pageRequest, totalElements);
+    }
+
+    /**
+     * 向量检索，返回文档ID与相似度分数（按相似度降序）
+     * knn 模式使用 HNSW 近似检索，检索失败或配置为 script 模式时回退到 script_score 精确计算；
+     * 需要的结果数超过 kNN 的 k 上限时也使用 script_score，避免结果被 k 上限截断。
+     * 两种模式的分数统一为 1 + cosine，便于与热度评分混合
+     * @param index 索引名称
+     * @param vector 查询向量
+     * @param size 需要的结果数
+     * @param filters 过滤条件，在检索阶段执行
+     */
+    /**
+     * 分页检索取回的候选数：至少覆盖到当前页末尾，且不少于混合排序的候选池，
+     * 不超过 kNN 的 k 上限，因此分页检索始终走 kNN；总数按候选池计算，超出上限的页为空
+     */
+    private int candidatePoolSize(int page, int size) {
+        long needed = ((long) Math.max(0, page) + 1) * Math.max(1, size);
+        return (int) Math.min(knnMaxK, Math.max(rerankPoolSize, needed));
+    }
+
+    private List<SearchResult> vectorSearch(String index, float[] vector, int size, List<Query> filters) throws IOException {
+        if (!"script".equalsIgnoreCase(searchMode) && size <= knnMaxK) {
+            try {
+                return knnSearch(index, vector, size, filters);
+            } catch (Exception e) {
+                log.warn("kNN检索索引 {} 失败，回退到script_score精确检索: {}", index, e.getMessage());
+            }
+        }
+        return scriptScoreSearch(index, vector, size, filters);
+    }
+
+    private List<SearchResult> knnSearch(String index, float[] vector, int size, List<Query> filters) throws IOException {
+        List<Float> queryVector = new ArrayList<>(vector.length);
+        for (float v : vector) queryVector.add(v);
+
+        int k = Math.max(1, Math.min(size, knnMaxK));
+        int numCandidates = Math.min(10000, Math.max(k, k * knnNumCandidatesFactor));
+
+        SearchResponse<Void> response = esClient.search(s -> s
+                .index(index)
+                .size(k)
+                .source(src -> src.fetch(false))
+                .knn(kq -> {
+                    kq.field("vector")
+                            .queryVector(queryVector)
+                            .k(k)
+                            .numCandidates(numCandidates);
+                    if (!filters.isEmpty()) {
+                        kq.filter(filters);
+                    }
+                    return kq;
+                }), Void.class);
+
+        // cosine 相似度下 kNN 分数为 (1 + cosine) / 2，换算为与 script_score 一致的 1 + cosine
+        return toSearchResults(response, 2.0);
+    }
+
+    private List<SearchResult> scriptScoreSearch(String index, float[] vector, int size, List<Query> filters) throws IOException {
         List<Double> vecList = new ArrayList<>(vector.length);
         for (float v : vector) vecList.add((double) v);
 
@@ -141,75 +265,49 @@ public class SemanticSearchServiceImpl implements SemanticSearchService {
                 .params("q", JsonData.of(vecList))
         ));
 
-        String attractionIndexName = attractionIndexPrefix + String.valueOf(destinationId);
-        System.out.println("---------景点索引名称: " + attractionIndexName + "---------");
+        Query baseQuery = filters.isEmpty()
+                ? Query.of(q -> q.matchAll(ma -> ma))
+                : Query.of(q -> q.bool(b -> b.filter(filters)));
 
-        try {
-            // 获取所有语义搜索结果用于混合排序
-            SearchResponse<Void> allResultsResponse = esClient.search(s -> s
-                    .index(attractionIndexName)
-                    .size(400) // 获取足够多的结果用于混合排序
-                    .query(q -> q.scriptScore(ss -> ss
-                            .script(script)
-                            .query(m -> m.matchAll(ma -> ma))
-                    )) , Void.class);
-
-            // 提取ID和相似度分数
-            List<SearchResult> searchResults = allResultsResponse.hits().hits().stream()
-                    .map(hit -> new SearchResult(
-                            Long.parseLong(hit.id()),
-                            hit.score() != null ? hit.score() : 0.0
-                    ))
-                    .collect(Collectors.toList());
-
-            if (searchResults.isEmpty()) {
-                return org.springframework.data.domain.Page.empty(org.springframework.data.domain.PageRequest.of(page, size));
-            }
-
-            // 获取所有景点数据
-            List<Long> allIds = searchResults.stream()
-                    .map(SearchResult::getId)
-                    .collect(Collectors.toList());
-            
-            List<Attraction> allAttractions = attractionRepository.findAllById(allIds);
-            Map<Long, Attraction> id2Attraction = allAttractions.stream()
-                    .collect(Collectors.toMap(Attraction::getId, a -> a));
+        SearchResponse<Void> response = esClient.search(s -> s
+                .index(index)
+                .size(size)
+                .source(src -> src.fetch(false))
+                .query(q -> q.scriptScore(ss -> ss
+                        .script(script)
+                        .query(baseQuery)
+                )), Void.class);
 
-            // 计算混合评分并排序
-            List<AttractionWithScore> attractionsWithScores = searchResults.stream()
-                    .map(result -> {
-                        Attraction attraction = id2Attraction.get(result.getId());
-                        if (attraction != null) {
-                            double semanticScore = result.getScore();
-                            double popularityScore = calculatePopularityScore(attraction.getJoinCount());
-                            double hybridScore = calculateHybridScore(semanticScore, popularityScore, searchResults.size());
-                            
-                            return new AttractionWithScore(attraction, hybridScore, semanticScore, popularityScore);
-                        }
-                        return null;
-                    })
-                    .filter(Objects::nonNull)
-                    .sorted((a, b) -> Double.compare(b.getHybridScore(), a.getHybridScore())) // 降序排序
-                    .collect(Collectors.toList());
+        return toSearchResults(response, 1.0);
+    }
 
-            // 手动分页
-            int totalElements = attractionsWithScores.size();
-            int start = page * size;
-            int end = Math.min(start + size, totalElements);
-            
-            List<Attraction> pageContent = start >= totalElements ? 
-                    Collections.emptyList() : 
-                    attractionsWithScores.subList(start, end).stream()
-                            .map(AttractionWithScore::getAttraction)
-                            .collect(Collectors.toList());
+    private List<SearchResult> toSearchResults(SearchResponse<Void> response, double scoreScale) {
+        return response.hits().hits().stream()
+                .map(hit -> new SearchResult(
+                        Long.parseLong(hit.id()),
+                        hit.score() != null ? hit.score() * scoreScale : 0.0
+                ))
+                .collect(Collectors.toList());
+    }
 
-            // 创建分页结果
-            org.springframework.data.domain.PageRequest pageRequest = org.springframework.data.domain.PageRequest.of(page, size);
-            return new org.springframework.data.domain.PageImpl<>(pageContent, pageRequest, totalElements);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return org.springframework.data.domain.Page.empty(org.springframework.data.domain.PageRequest.of(page, size));
+    /**
+     * 社区条目的标签过滤条件：每个标签都必须出现在 tag_names 字段中
+     */
+    private List<Query> buildCommunityTagFilters(List<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return Collections.emptyList();
         }
+        return tags.stream()
+                .map(tag -> Query.of(q -> q.term(t -> t.field(COMMUNITY_TAG_NAMES_FIELD).value(tag))))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 标签过滤条件：字段中包含至少一个指定标签
+     */
+    private Query anyTagFilter(String field, List<String> tags) {
+        List<FieldValue> values = tags.stream().map(FieldValue::of).collect(Collectors.toList());
+        return Query.of(q -> q.terms(t -> t.field(field).terms(tv -> tv.value(values))));
     }
 
     /**
@@ -275,27 +373,6 @@ public class SemanticSearchServiceImpl implements SemanticSearchService {
         public double getScore() { return score; }
     }
 
-    /**
-     * 带评分的景点内部类
-     */
-    private static class AttractionWithScore {
-        private final Attraction attraction;
-        private final double hybridScore;
-        private final double semanticScore;
-        private final double popularityScore;
-
-        public AttractionWithScore(Attraction attraction, double hybridScore, double semanticScore, double popularityScore) {
-            this.attraction = attraction;
-            this.hybridScore = hybridScore;
-            this.semanticScore = semanticScore;
-            this.popularityScore = popularityScore;
-        }
-
-        public Attraction getAttraction() { return attraction; }
-        public double getHybridScore() { return hybridScore; }
-        public double getSemanticScore() { return semanticScore; }
-        public double getPopularityScore() { return popularityScore; }
-    }
 
     @Override
     public org.springframework.data.domain.Page<Attraction> semanticSearchAttractionsByTags(Long destinationId, String query, List<String> tags, int page, int size) {
@@ -307,105 +384,16 @@ public class SemanticSearchServiceImpl implements SemanticSearchService {
             return org.springframework.data.domain.Page.empty(org.springframework.data.domain.PageRequest.of(page, size));
         }
 
-        // 构造 KNN 查询
-        List<Double> vecList = new ArrayList<>(vector.length);
-        for (float v : vector) vecList.add((double) v);
-
-        Script script = Script.of(s -> s.inline(i -> i
-                .lang("painless")
-                .source("cosineSimilarity(params.q,'vector')+1.0")
-                .params("q", JsonData.of(vecList))
-        ));
-
         String attractionIndexName = attractionIndexPrefix + String.valueOf(destinationId);
         System.out.println("---------景点索引名称: " + attractionIndexName + "---------");
 
         try {
-            // 获取所有语义搜索结果用于标签过滤
-            SearchResponse<Void> allResultsResponse = esClient.search(s -> s
-                    .index(attractionIndexName)
-                    .size(10000) // 获取大量结果用于标签过滤
-                    .query(q -> q.scriptScore(ss -> ss
-                            .script(script)
-                            .query(m -> m.matchAll(ma -> ma))
-                    )) , Void.class);
-
-            // 提取ID和相似度分数
-            List<SearchResult> searchResults = allResultsResponse.hits().hits().stream()
-                    .map(hit -> new SearchResult(
-                            Long.parseLong(hit.id()),
-                            hit.score() != null ? hit.score() : 0.0
-                    ))
-                    .collect(Collectors.toList());
-
-            if (searchResults.isEmpty()) {
-                return org.springframework.data.domain.Page.empty(org.springframework.data.domain.PageRequest.of(page, size));
-            }
-
-            // 获取所有景点数据
-            List<Long> allIds = searchResults.stream()
-                    .map(SearchResult::getId)
-                    .collect(Collectors.toList());
-            
-            List<Attraction> allAttractions = attractionRepository.findAllById(allIds);
-            Map<Long, Attraction> id2Attraction = allAttractions.stream()
-                    .collect(Collectors.toMap(Attraction::getId, a -> a));
-
-            // 2. 按标签过滤结果并计算混合评分
-            List<AttractionWithScore> filteredResultsWithScores = searchResults.stream()
-                    .map(result -> {
-                        Attraction attraction = id2Attraction.get(result.getId());
-                        if (attraction != null) {
-                            // 检查景点是否包含至少一个搜索标签
-                            if (tags.isEmpty()) {
-                                System.out.println("--------没有标签要求，返回所有结果----------");
-                                // 计算混合评分
-                                double semanticScore = result.getScore();
-                                double popularityScore = calculatePopularityScore(attraction.getJoinCount());
-                                double hybridScore = calculateHybridScore(semanticScore, popularityScore, searchResults.size());
-                                
-                                return new AttractionWithScore(attraction, hybridScore, semanticScore, popularityScore);
-                            }
-                            
-                            // 获取景点的前6个标签
-                            List<String> attractionTopTags = attractionService.getTopNTags(attraction, 6);
-                            System.out.println("景点: " + attraction.getName() + ", 前6个标签: " + attractionTopTags);
-                            
-                            // 检查前6个标签中是否包含至少一个搜索标签
-                            boolean hasMatchingTag = attractionTopTags.stream()
-                                    .anyMatch(attractionTag -> tags.contains(attractionTag));
-                            
-                            System.out.println("搜索标签: " + tags + ", 是否匹配: " + hasMatchingTag);
-                            
-                            if (hasMatchingTag) {
-                                // 计算混合评分
-                                double semanticScore = result.getScore();
-                                double popularityScore = calculatePopularityScore(attraction.getJoinCount());
-                                double hybridScore = calculateHybridScore(semanticScore, popularityScore, searchResults.size());
-                                
-                                return new AttractionWithScore(attraction, hybridScore, semanticScore, popularityScore);
-                            }
-                        }
-                        return null;
-                    })
-                    .filter(Objects::nonNull)
-                    .sorted((a, b) -> Double.compare(b.getHybridScore(), a.getHybridScore())) // 降序排序
-                    .collect(Collectors.toList());
-            
-            // 3. 手动分页
-            int totalElements = filteredResultsWithScores.size();
-            int start = page * size;
-            int end = Math.min(start + size, totalElements);
-            
-            List<Attraction> pageContent = start >= totalElements ? 
-                    Collections.emptyList() : 
-                    filteredResultsWithScores.subList(start, end).stream()
-                            .map(AttractionWithScore::getAttraction)
-                            .collect(Collectors.toList());
-            
-            // 4. 创建分页结果
-            org.springframework.data.domain.PageRequest pageRequest = org.springframework.data.domain.PageRequest.of(page, size);
-            return new org.springframework.data.domain.PageImpl<>(pageContent, pageRequest, totalElements);
+            // 标签过滤在ES中执行：景点的前6个标签（top_tags）中包含至少一个搜索标签
+            List<Query> filters = tags == null || tags.isEmpty() ?
+                    Collections.emptyList() :
+                    List.of(anyTagFilter(TOP_TAGS_FIELD, tags));
+            List<SearchResult> searchResults = vectorSearch(attractionIndexName, vector, candidatePoolSize(page, size), filters);
+            return rankAttractionsByHybridScore(searchResults, page, size);
         } catch (Exception e) {
             e.printStackTrace();
             return org.springframework.data.domain.Page.empty(org.springframework.data.domain.PageRequest.of(page, size));
@@ -524,101 +512,33 @@ public class SemanticSearchServiceImpl implements SemanticSearchService {
             return org.springframework.data.domain.Page.empty(org.springframework.data.domain.PageRequest.of(page, size));
         }
 
-        // 构造 KNN 查询
-        List<Double> vecList = new ArrayList<>(vector.length);
-        for (float v : vector) vecList.add((double) v);
-
-        Script script = Script.of(s -> s.inline(i -> i
-                .lang("painless")
-                .source("cosineSimilarity(params.q,'vector')+1.0")
-                .params("q", JsonData.of(vecList))
-        ));
-
         try {
-            // 获取所有语义搜索结果用于标签过滤
-            SearchResponse<Void> allResultsResponse = esClient.search(s -> s
-                    .index(communityIndexName)
-                    .size(10000) // 获取大量结果用于标签过滤
-                    .query(q -> q.scriptScore(ss -> ss
-                            .script(script)
-                            .query(m -> m.matchAll(ma -> ma))
-                    )) , Void.class);
+            // 标签过滤在ES中执行：条目必须包含所有搜索标签，结果保持语义搜索的原始顺序
+            List<SearchResult> searchResults = vectorSearch(communityIndexName, vector, candidatePoolSize(page, size), buildCommunityTagFilters(tags));
 
-            // 提取ID和相似度分数，保持语义搜索的原始顺序
-            List<SearchResult> searchResults = allResultsResponse.hits().hits().stream()
-                    .map(hit -> new SearchResult(
-                            Long.parseLong(hit.id()),
-                            hit.score() != null ? hit.score() : 0.0
-                    ))
-                    .collect(Collectors.toList());
-
-            if (searchResults.isEmpty()) {
-                return org.springframework.data.domain.Page.empty(org.springframework.data.domain.PageRequest.of(page, size));
-            }
-
-            // 获取所有社区条目数据
-            List<Long> allIds = searchResults.stream()
-                    .map(SearchResult::getId)
-                    .collect(Collectors.toList());
-            
-            List<CommunityEntry> allEntries = communityEntryRepository.findAllById(allIds);
-            Map<Long, CommunityEntry> id2Entry = allEntries.stream()
-                    .collect(Collectors.toMap(CommunityEntry::getId, e -> e));
-
-            // 2. 按标签过滤结果，保持语义搜索的原始顺序
-            List<CommunityEntryWithScore> filteredResultsWithScores = searchResults.stream()
-                    .map(result -> {
-                        CommunityEntry entry = id2Entry.get(result.getId());
-                        if (entry != null) {
-                            // 检查社区条目是否包含所有搜索标签
-                            if (tags.isEmpty()) {
-                                System.out.println("--------没有标签要求，返回所有结果----------");
-                                // 计算混合评分
-                                double semanticScore = result.getScore();
-                                double popularityScore = calculatePopularityScore(entry.getViewCount());
-                                double hybridScore = calculateHybridScore(semanticScore, popularityScore, searchResults.size(), "community");
-                                
-                                return new CommunityEntryWithScore(entry, hybridScore, semanticScore, popularityScore);
-                            }
-                            
-                            // 获取社区条目的标签
-                            List<String> entryTags = getCommunityEntryTags(entry);
-                            System.out.println("社区条目: " + entry.getShareCode() + ", 标签: " + entryTags);
-                            
-                            // 检查标签中是否包含所有搜索标签（而不是至少一个）
-                            boolean hasAllMatchingTags = tags.stream()
-                                    .allMatch(searchTag -> entryTags.contains(searchTag));
-                            
-                            System.out.println("搜索标签: " + tags + ", 是否包含所有标签: " + hasAllMatchingTags);
-                            
-                            if (hasAllMatchingTags) {
-                                // 计算混合评分
-                                double semanticScore = result.getScore();
-                                double popularityScore = calculatePopularityScore(entry.getViewCount());
-                                double hybridScore = calculateHybridScore(semanticScore, popularityScore, searchResults.size(), "community");
-                                
-                                return new CommunityEntryWithScore(entry, hybridScore, semanticScore, popularityScore);
-                            }
-                        }
-                        return null;
-                    })
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList()); // 保持语义搜索的原始顺序，不重新排序
-            
-            // 3. 手动分页
-            int totalElements = filteredResultsWithScores.size();
+            // 手动分页，只加载当前页的社区条目
+            int totalElements = searchResults.size();
             int start = page * size;
             int end = Math.min(start + size, totalElements);
-            
-            List<CommunityEntry> pageContent = start >= totalElements ? 
-                    Collections.emptyList() : 
-                    filteredResultsWithScores.subList(start, end).stream()
-                            .map(CommunityEntryWithScore::getEntry)
+
+            List<Long> pageIds = start >= totalElements ?
+                    Collections.emptyList() :
+                    searchResults.subList(start, end).stream()
+                            .map(SearchResult::getId)
                             .collect(Collectors.toList());
-            
-            // 4. 转换为Map格式
+
+            Map<Long, CommunityEntry> id2Entry = pageIds.isEmpty() ?
+                    Collections.emptyMap() :
+                    communityEntryRepository.findAllById(pageIds).stream()
+                            .collect(Collectors.toMap(CommunityEntry::getId, e -> e));
+
+            // 转换为Map格式
             List<Map<String, Object>> resultMaps = new ArrayList<>();
-            for (CommunityEntry entry : pageContent) {
+            for (Long id : pageIds) {
+                CommunityEntry entry = id2Entry.get(id);
+                if (entry == null) {
+                    continue;
+                }
                 try {
                     Map<String, Object> entryMap = communityService.getCommunityEntryByShareCode(entry.getShareCode());
                     if (entryMap != null) {
@@ -628,16 +548,14 @@ public class SemanticSearchServiceImpl implements SemanticSearchService {
                     System.err.println("转换社区条目失败: " + e.getMessage());
                 }
             }
-            
-            // 5. 创建分页结果
+
+            // 创建分页结果
             org.springframework.data.domain.PageRequest pageRequest = org.springframework.data.domain.PageRequest.of(page, size);
             return new org.springframework.data.domain.PageImpl<>(resultMaps, pageRequest, totalElements);
         } catch (Exception e) {
             e.printStackTrace();
             return org.springframework.data.domain.Page.empty(org.springframework.data.domain.PageRequest.of(page, size));
         }
-
-
     }
 
     /**
@@ -691,39 +609,11 @@ public class SemanticSearchServiceImpl implements SemanticSearchService {
             return org.springframework.data.domain.Page.empty(org.springframework.data.domain.PageRequest.of(page, size));
         }
 
-        // 2. 构造 KNN 查询
-        List<Double> vecList = new ArrayList<>(vector.length);
-        for (float v : vector) vecList.add((double) v);
-
-        Script script = Script.of(s -> s.inline(i -> i
-                .lang("painless")
-                .source("cosineSimilarity(params.q,'vector')+1.0")
-                .params("q", JsonData.of(vecList))
-        ));
-
         try {
-            // 获取所有语义搜索结果用于混合排序
-            SearchResponse<Map> allResultsResponse = esClient.search(s -> s
-                    .index("authors")
-                    .size(400) // 获取足够多的结果用于混合排序
-                    .query(q -> q.scriptScore(ss -> ss
-                            .script(script)
-                            .query(m -> m.matchAll(ma -> ma))
-                    )) , Map.class);
-
-            // 提取作者ID和相似度分数，按搜索顺序排序
+            // 2. 获取足够多的语义搜索结果用于混合排序，提取作者ID和相似度分数，按搜索顺序排序
             List<AuthorSearchResult> authorSearchResults = new ArrayList<>();
-            for (var hit : allResultsResponse.hits().hits()) {
-                try {
-                    var source = hit.source();
-                    if (source != null) {
-                        Long authorId = Long.parseLong(hit.id());
-                        double semanticScore = hit.score() != null ? hit.score() : 0.0;
-                        authorSearchResults.add(new AuthorSearchResult(authorId, semanticScore));
-                    }
-                } catch (Exception e) {
-                    System.err.println("处理作者信息失败: " + e.getMessage());
-                }
+            for (SearchResult result : vectorSearch(authorIndexName, vector, rerankPoolSize, Collections.emptyList())) {
+                authorSearchResults.add(new AuthorSearchResult(result.getId(), result.getScore()));
             }
 
             if (authorSearchResults.isEmpty()) {
@@ -0,0 +1,468 @@
+package com.se_07.backend.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.se_07.backend.entity.Attraction;
+import com.se_07.backend.entity.Destination;
+import com.se_07.backend.entity.Tag;
+import com.se_07.backend.repository.AttractionRepository;
+import com.se_07.backend.repository.DestinationRepository;
+import com.se_07.backend.repository.TagRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 目的地 / 景点标签权重索引
+ * tag_scores JSON 只在加载或变化时解析一次，解析结果是以标签ID为下标的 float 数组，
+ * 同时预先按权重排好标签ID顺序；标签名称与ID的对照表常驻内存。
+ * 标签排名和按标签筛选目的地因此不再解析JSON，也不再逐条查询标签表。
+ *
+ * 启动时异步全量加载，之后按固定间隔全量刷新（tag_scores 由离线脚本直接写库）；
+ * 读取单个实体时若其 tag_scores 与索引中的不同，会立即重新解析并替换。
+ *
+ * 每次刷新时把有变化的实体同步到规范化表 entity_tag_scores，分页的标签排名查询直接在数据库中完成
+ */
+@Component
+public class TagScoreIndex {
+    private static final Logger logger = LoggerFactory.getLogger(TagScoreIndex.class);
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private DestinationRepository destinationRepository;
+
+    @Autowired
+    private AttractionRepository attractionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 全量刷新间隔
+    @Value("${tag-index.refresh-interval-ms:600000}")
+    private long refreshIntervalMs = 600000;
+
+    private volatile TagDictionary dictionary = new TagDictionary(Collections.emptyList());
+    private final ConcurrentMap<Long, TagVector> destinationVectors = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, TagVector> attractionVectors = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+
+    private static final String INSERT_ROW_SQL =
+            "INSERT INTO entity_tag_scores (entity_type, entity_id, tag_id, score, tag_rank) VALUES (?, ?, ?, ?, ?)";
+    private static final int DELETE_CHUNK_SIZE = 500;
+
+    private ScheduledExecutorService refreshExecutor;
+
+    @PostConstruct
+    void start() {
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tag-score-index-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutor.scheduleWithFixedDelay(this::rebuildSafely, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    private void rebuildSafely() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.error("标签权重索引刷新失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 全量重建：标签字典、所有目的地和景点的权重
+     */
+    synchronized void rebuild() {
+        long startTime = System.currentTimeMillis();
+        dictionary = new TagDictionary(tagRepository.findAll());
+        // 首次加载时内存中没有同步状态，整体重写规范化表
+        replaceAll(destinationVectors, destinationRepository.findAllTagScores(), Kind.DESTINATION, !loaded);
+        replaceAll(attractionVectors, attractionRepository.findAllTagScores(), Kind.ATTRACTION, !loaded);
+        loaded = true;
+        logger.info("标签权重索引已重建: {} 个标签, {} 个目的地, {} 个景点, 耗时 {}ms",
+                dictionary.size(), destinationVectors.size(), attractionVectors.size(),
+                System.currentTimeMillis() - startTime);
+    }
+
+    private void replaceAll(ConcurrentMap<Long, TagVector> vectors, List<Object[]> rows, Kind kind, boolean fullSync) {
+        Map<Long, TagVector> fresh = new HashMap<>(rows.size() * 2);
+        Map<Long, TagVector> changed = new HashMap<>();
+        for (Object[] row : rows) {
+            Long id = (Long) row[0];
+            String source = (String) row[1];
+            TagVector existing = vectors.get(id);
+            // tag_scores 未变化的沿用已解析的结果
+            TagVector vector = existing != null && existing.source.equals(source) ? existing : parse(source, kind);
+            fresh.put(id, vector);
+            if (fullSync || !vector.synced) {
+                changed.put(id, vector);
+            }
+        }
+        Set<Long> removed = new HashSet<>(vectors.keySet());
+        removed.removeAll(fresh.keySet());
+
+        // 先同步数据库：失败时内存保持原状，下次刷新重新计算变化和删除的实体
+        syncRows(kind, changed, removed, fullSync);
+        vectors.keySet().retainAll(fresh.keySet());
+        vectors.putAll(fresh);
+    }
+
+    /**
+     * 把变化的实体写入 entity_tag_scores：先删除旧行再批量插入。
+     * 删除和插入在同一事务中，首次整体重写时查询不会看到空表或只写了一部分的表
+     */
+    private void syncRows(Kind kind, Map<Long, TagVector> changed, Set<Long> removed, boolean fullSync) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> writeRows(kind, changed, removed, fullSync));
+        changed.values().forEach(vector -> vector.synced = true);
+    }
+
+    private void writeRows(Kind kind, Map<Long, TagVector> changed, Set<Long> removed, boolean fullSync) {
+        if (fullSync) {
+            jdbcTemplate.update("DELETE FROM entity_tag_scores WHERE entity_type = ?", kind.name());
+        } else {
+            List<Long> stale = new ArrayList<>(changed.keySet());
+            stale.addAll(removed);
+            for (int from = 0; from < stale.size(); from += DELETE_CHUNK_SIZE) {
+                List<Long> chunk = stale.subList(from, Math.min(from + DELETE_CHUNK_SIZE, stale.size()));
+                List<Object> args = new ArrayList<>(chunk.size() + 1);
+                args.add(kind.name());
+                args.addAll(chunk);
+                jdbcTemplate.update("DELETE FROM entity_tag_scores WHERE entity_type = ? AND entity_id IN ("
+                        + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")", args.toArray());
+            }
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>();
+        changed.forEach((id, vector) -> vector.forEachTag((tagId, score, rank) ->
+                batchArgs.add(new Object[]{kind.name(), id, (long) tagId, score, rank})));
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ROW_SQL, batchArgs);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    rebuild();
+                }
+            }
+        }
+    }
+
+    /**
+     * 目的地权重最高的N个标签名称（只包含非负权重）
+     */
+    public List<String> topTags(Destination destination, int n) {
+        if (destination == null || destination.getTagScores() == null || destination.getTagScores().isEmpty()) {
+            return Collections.emptyList();
+        }
+        ensureLoaded();
+        return topTags(vectorFor(destinationVectors, destination.getId(), destination.getTagScores(), Kind.DESTINATION), n);
+    }
+
+    /**
+     * 景点权重最高的N个标签名称
+     */
+    public List<String> topTags(Attraction attraction, int n) {
+        if (attraction == null || attraction.getTagScores() == null || attraction.getTagScores().isEmpty()) {
+            return Collections.emptyList();
+        }
+        ensureLoaded();
+        return topTags(vectorFor(attractionVectors, attraction.getId(), attraction.getTagScores(), Kind.ATTRACTION), n);
+    }
+
+    /**
+     * 标签名称转为标签ID，忽略不存在的标签，重复的名称只保留一个
+     */
+    public List<Long> resolveTagIds(Collection<String> tagNames) {
+        if (tagNames == null || tagNames.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ensureLoaded();
+        return Arrays.stream(dictionary.resolve(tagNames)).mapToObj(id -> (long) id).toList();
+    }
+
+    /**
+     * 保留标签表中存在的标签ID，去掉重复
+     */
+    public int[] knownTagIds(int[] tagIds) {
+        if (tagIds == null || tagIds.length == 0) {
+            return new int[0];
+        }
+        ensureLoaded();
+        TagDictionary current = dictionary;
+        return Arrays.stream(tagIds).filter(id -> current.name(id) != null).distinct().toArray();
+    }
+
+    /**
+     * 按指定标签的权重总和（负权重按0计）降序返回目的地ID，总和为0的目的地不返回
+     */
+    public List<Long> rankDestinations(Collection<String> tagNames) {
+        if (tagNames == null || tagNames.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ensureLoaded();
+
+        int[] tagIds = dictionary.resolve(tagNames);
+        if (tagIds.length == 0) {
+            return Collections.emptyList();
+        }
+
+        List<Long> ids = new ArrayList<>();
+        List<Float> scores = new ArrayList<>();
+        for (Map.Entry<Long, TagVector> entry : destinationVectors.entrySet()) {
+            float total = entry.getValue().sumNonNegative(tagIds);
+            if (total > 0) {
+                ids.add(entry.getKey());
+                scores.add(total);
+            }
+        }
+
+        Integer[] order = new Integer[ids.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int cmp = Float.compare(scores.get(b), scores.get(a));
+            return cmp != 0 ? cmp : Long.compare(ids.get(a), ids.get(b));
+        });
+
+        List<Long> ranked = new ArrayList<>(order.length);
+        for (Integer i : order) {
+            ranked.add(ids.get(i));
+        }
+        return ranked;
+    }
+
+    /**
+     * 目的地正权重总和中属于指定标签的比例（0~1），目的地不在索引中或没有正权重时为0
+     */
+    public float destinationTagShare(Long destinationId, int[] tagIds) {
+        if (destinationId == null || tagIds == null || tagIds.length == 0) {
+            return 0f;
+        }
+        ensureLoaded();
+        TagVector vector = destinationVectors.get(destinationId);
+        if (vector == null || vector.positiveTotal <= 0) {
+            return 0f;
+        }
+        return vector.sumNonNegative(tagIds) / vector.positiveTotal;
+    }
+
+    /**
+     * 取实体的权重向量，tag_scores 与索引中的不同（或尚未索引）时重新解析并更新索引
+     */
+    private TagVector vectorFor(ConcurrentMap<Long, TagVector> vectors, Long id, String source, Kind kind) {
+        if (id == null) {
+            return parse(source, kind);
+        }
+        TagVector vector = vectors.get(id);
+        if (vector == null || !vector.source.equals(source)) {
+            vector = parse(source, kind);
+            vectors.put(id, vector);
+        }
+        return vector;
+    }
+
+    private List<String> topTags(TagVector vector, int n) {
+        TagDictionary dict = dictionary;
+        List<String> result = new ArrayList<>(Math.max(0, Math.min(n, vector.rankedTagIds.length)));
+        for (int i = 0; i < vector.rankedTagIds.length && i < n; i++) {
+            // 标签表中不存在的ID直接跳过
+            String name = dict.name(vector.rankedTagIds[i]);
+            if (name != null) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 解析 tag_scores：
+     * 对象格式 {"7":37, "12":10}，key 为标签ID；
+     * 数组格式 [0,0,0,37]，下标+1 为标签ID，只保留正权重
+     */
+    TagVector parse(String source, Kind kind) {
+        Map<Integer, Float> scores = new HashMap<>();
+        try {
+            JsonNode root = objectMapper.readTree(source);
+            if (root != null && root.isObject()) {
+                root.fields().forEachRemaining(field -> {
+                    if (field.getValue().isNumber()) {
+                        try {
+                            scores.put(Integer.valueOf(field.getKey()), (float) field.getValue().asDouble());
+                        } catch (NumberFormatException ignored) {
+                            // 非数字的key不是标签ID
+                        }
+                    }
+                });
+            } else if (root != null && root.isArray()) {
+                int idx = 0;
+                for (JsonNode node : root) {
+                    if (node.isNumber() && node.asDouble() > 0) {
+                        scores.put(idx + 1, (float) node.asDouble());
+                    }
+                    idx++;
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("解析标签权重JSON失败: {}", e.getMessage());
+        }
+        return new TagVector(source, scores, kind.minRankedScore);
+    }
+
+    enum Kind {
+        // 目的地只对非负权重排名，景点对全部权重排名
+        DESTINATION(0f),
+        ATTRACTION(Float.NEGATIVE_INFINITY);
+
+        private final float minRankedScore;
+
+        Kind(float minRankedScore) {
+            this.minRankedScore = minRankedScore;
+        }
+    }
+
+    /**
+     * 单个实体的标签权重
+     */
+    static final class TagVector {
+        final String source;
+        // 下标为标签ID，NaN 表示没有该标签
+        final float[] scores;
+        // 按权重降序（同分按标签ID升序）排列的标签ID
+        final int[] rankedTagIds;
+        // 全部正权重之和
+        final float positiveTotal;
+        // 是否已写入 entity_tag_scores
+        volatile boolean synced = false;
+
+        TagVector(String source, Map<Integer, Float> sparse, float minRankedScore) {
+            this.source = source;
+            int maxId = -1;
+            for (Integer id : sparse.keySet()) {
+                if (id >= 0) {
+                    maxId = Math.max(maxId, id);
+                }
+            }
+            scores = new float[maxId + 1];
+            Arrays.fill(scores, Float.NaN);
+            List<Integer> ranked = new ArrayList<>();
+            float total = 0;
+            for (Map.Entry<Integer, Float> entry : sparse.entrySet()) {
+                if (entry.getKey() >= 0 && entry.getValue() > 0) {
+                    total += entry.getValue();
+                }
+            }
+            positiveTotal = total;
+            sparse.forEach((id, score) -> {
+                if (id >= 0) {
+                    scores[id] = score;
+                    if (score >= minRankedScore) {
+                        ranked.add(id);
+                    }
+                }
+            });
+            ranked.sort((a, b) -> {
+                int cmp = Float.compare(scores[b], scores[a]);
+                return cmp != 0 ? cmp : Integer.compare(a, b);
+            });
+            rankedTagIds = ranked.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        void forEachTag(TagScoreConsumer consumer) {
+            Map<Integer, Integer> ranks = new HashMap<>();
+            for (int i = 0; i < rankedTagIds.length; i++) {
+                ranks.put(rankedTagIds[i], i);
+            }
+            for (int tagId = 0; tagId < scores.length; tagId++) {
+                if (!Float.isNaN(scores[tagId])) {
+                    consumer.accept(tagId, scores[tagId], ranks.get(tagId));
+                }
+            }
+        }
+
+        float sumNonNegative(int[] tagIds) {
+            float total = 0;
+            for (int tagId : tagIds) {
+                if (tagId < scores.length && scores[tagId] > 0) {
+                    total += scores[tagId];
+                }
+            }
+            return total;
+        }
+    }
+
+    @FunctionalInterface
+    interface TagScoreConsumer {
+        void accept(int tagId, float score, Integer rank);
+    }
+
+    /**
+     * 标签名称与ID对照表
+     */
+    static final class TagDictionary {
+        private final Map<String, Integer> idsByName = new HashMap<>();
+        private final String[] namesById;
+
+        TagDictionary(List<Tag> tags) {
+            int maxId = -1;
+            for (Tag tag : tags) {
+                maxId = Math.max(maxId, tag.getId().intValue());
+            }
+            namesById = new String[maxId + 1];
+            for (Tag tag : tags) {
+                namesById[tag.getId().intValue()] = tag.getTag();
+                idsByName.put(tag.getTag(), tag.getId().intValue());
+            }
+        }
+
+        String name(int tagId) {
+            return tagId >= 0 && tagId < namesById.length ? namesById[tagId] : null;
+        }
+
+        int[] resolve(Collection<String> tagNames) {
+            return tagNames.stream()
+                    .map(idsByName::get)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+
+        int size() {
+            return idsByName.size();
+        }
+    }
+}
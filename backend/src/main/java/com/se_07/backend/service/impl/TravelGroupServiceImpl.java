@@ -6,9 +6,17 @@ import com.se_07.backend.entity.*;
 import com.se_07.backend.repository.*;
 import com.se_07.backend.service.GroupChatManageService;
 import com.se_07.backend.service.TravelGroupService;
+import com.se_07.backend.util.SqlLikeUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -41,6 +49,15 @@ public class TravelGroupServiceImpl implements TravelGroupService {
     @Autowired
     private GroupChatManageService groupChatManageService;
 
+    @Autowired
+    private UserPreferencesRepository userPreferencesRepository;
+
+    @Autowired
+    private GroupRecommendationIndex groupRecommendationIndex;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Override
     @Transactional
     public TravelGroupDTO createTravelGroup(CreateTravelGroupRequest request, Long userId) {
@@ -116,6 +133,8 @@ public class TravelGroupServiceImpl implements TravelGroupService {
                 group = travelGroupRepository.save(group);
             }
             
+            groupRecommendationIndex.update(group);
+
             // 返回DTO
             List<TravelGroupMember> members = memberRepository.findByGroupId(group.getId());
             return TravelGroupDTO.fromEntity(group, members);
@@ -125,93 +144,55 @@ public class TravelGroupServiceImpl implements TravelGroupService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<TravelGroupDTO> getPublicRecruitingGroups(Long currentUserId) {
-        List<TravelGroup> groups = travelGroupRepository.findAll();
-        return groups.stream()
-                .filter(group -> {
-                    // 检查是否为公开组团且状态为招募中
-                    if (!Boolean.TRUE.equals(group.getIsPublic()) || !TravelGroup.GroupStatus.招募中.equals(group.getStatus())) {
-                        return false;
-                    }
-                    
-                    // 检查是否已满员（即使状态还是招募中）
-                    long memberCount = memberRepository.countByGroupAndJoinStatus(group, TravelGroupMember.JoinStatus.已加入);
-                    return memberCount < group.getMaxMembers();
-                })
-                .map(group -> {
-                    List<TravelGroupMember> members = memberRepository.findByGroupId(group.getId());
-                    return TravelGroupDTO.fromEntity(group, members);
-                })
-                .collect(Collectors.toList());
+        return searchRecruitingGroups(null, null, null, null, Pageable.unpaged()).getContent();
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<TravelGroupDTO> getPublicRecruitingGroupsWithSearch(Long currentUserId, String searchText, String searchType, String startDate, String endDate) {
-        List<TravelGroup> groups = travelGroupRepository.findAll();
-        return groups.stream()
-                .filter(group -> {
-                    // 检查是否为公开组团且状态为招募中
-                    if (!Boolean.TRUE.equals(group.getIsPublic()) || !TravelGroup.GroupStatus.招募中.equals(group.getStatus())) {
-                        return false;
-                    }
-                    
-                    // 检查是否已满员（即使状态还是招募中）
-                    long memberCount = memberRepository.countByGroupAndJoinStatus(group, TravelGroupMember.JoinStatus.已加入);
-                    if (memberCount >= group.getMaxMembers()) {
-                        return false;
-                    }
-                    
-                    // 搜索过滤
-                    if (searchText != null && !searchText.trim().isEmpty()) {
-                        String searchLower = searchText.toLowerCase().trim();
-                        
-                        switch (searchType) {
-                            case "groupName":
-                                if (!group.getTitle().toLowerCase().contains(searchLower)) {
-                                    return false;
-                                }
-                                break;
-                            case "creator":
-                                if (group.getCreator() == null || !group.getCreator().getUsername().toLowerCase().contains(searchLower)) {
-                                    return false;
-                                }
-                                break;
-                            case "destination":
-                                if (group.getDestination() == null || !group.getDestination().getName().toLowerCase().contains(searchLower)) {
-                                    return false;
-                                }
-                                break;
-                            default:
-                                // 默认搜索团名
-                                if (!group.getTitle().toLowerCase().contains(searchLower)) {
-                                    return false;
-                                }
-                                break;
-                        }
-                    }
-                    
-                    // 日期范围过滤
-                    if (startDate != null && !startDate.trim().isEmpty()) {
-                        LocalDate start = LocalDate.parse(startDate);
-                        if (group.getStartDate().isBefore(start)) {
-                            return false;
-                        }
-                    }
-                    
-                    if (endDate != null && !endDate.trim().isEmpty()) {
-                        LocalDate end = LocalDate.parse(endDate);
-                        if (group.getEndDate().isAfter(end)) {
-                            return false;
-                        }
-                    }
-                    
-                    return true;
-                })
-                .map(group -> {
-                    List<TravelGroupMember> members = memberRepository.findByGroupId(group.getId());
-                    return TravelGroupDTO.fromEntity(group, members);
-                })
-                .collect(Collectors.toList());
+        return searchRecruitingGroups(searchText, searchType, startDate, endDate, Pageable.unpaged()).getContent();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<TravelGroupDTO> searchRecruitingGroups(String searchText, String searchType, String startDate, String endDate, Pageable pageable) {
+        // 搜索词按类型落到团名、创建者或目的地之一，默认搜索团名
+        String pattern = searchText != null && !searchText.trim().isEmpty()
+                ? "%" + SqlLikeUtils.escapeLike(searchText.toLowerCase().trim()) + "%" : null;
+        String type = pattern == null ? null : (searchType != null ? searchType : "groupName");
+        LocalDate start = startDate != null && !startDate.trim().isEmpty() ? LocalDate.parse(startDate) : null;
+        LocalDate end = endDate != null && !endDate.trim().isEmpty() ? LocalDate.parse(endDate) : null;
+
+        Page<TravelGroup> groups = travelGroupRepository.searchRecruiting(
+                TravelGroup.GroupStatus.招募中,
+                "creator".equals(type) || "destination".equals(type) ? null : pattern,
+                "creator".equals(type) ? pattern : null,
+                "destination".equals(type) ? pattern : null,
+                start, end, pageable);
+        Map<Long, TravelGroupDTO> dtos = toDTOsWithMembers(groups.getContent());
+        return groups.map(group -> dtos.get(group.getId()));
+    }
+
+    /**
+     * 组装组团DTO，所有组团的成员一次查询取出
+     */
+    private Map<Long, TravelGroupDTO> toDTOsWithMembers(List<TravelGroup> groups) {
+        Map<Long, TravelGroupDTO> dtos = new LinkedHashMap<>();
+        if (groups.isEmpty()) {
+            return dtos;
+        }
+        Map<Long, List<TravelGroupMember>> membersByGroup = new HashMap<>();
+        List<Long> groupIds = groups.stream().map(TravelGroup::getId).collect(Collectors.toList());
+        for (TravelGroupMember member : memberRepository.findWithUserByGroupIdIn(groupIds)) {
+            membersByGroup.computeIfAbsent(member.getGroup().getId(), id -> new ArrayList<>()).add(member);
+        }
+        for (TravelGroup group : groups) {
+            dtos.put(group.getId(), TravelGroupDTO.fromEntity(group,
+                    membersByGroup.getOrDefault(group.getId(), new ArrayList<>())));
+        }
+        return dtos;
     }
 
     @Override
@@ -298,35 +279,21 @@ public class TravelGroupServiceImpl implements TravelGroupService {
                 throw new RuntimeException("组团已满员");
             }
             
-            // 创建成员记录
-            TravelGroupMember member = new TravelGroupMember();
-            member.setGroup(group);
-            member.setUser(application.getApplicant());
-            member.setRole(TravelGroupMember.MemberRole.成员);
-            member.setJoinStatus(TravelGroupMember.JoinStatus.已加入);
-            member.setJoinDate(LocalDateTime.now());
-            memberRepository.save(member);
-            
-            // 更新组团当前成员数
-            group.setCurrentMembers(group.getCurrentMembers() + 1);
-            
-            // 如果组团已满，更新状态
-            if (group.getCurrentMembers().equals(group.getMaxMembers())) {
-                group.setStatus(TravelGroup.GroupStatus.已满员);
-            }
-            
-            travelGroupRepository.save(group);
-
-            // 2. 通过审核后加入群聊
-            if (group.getGroupChatId() != null && groupChatManageService != null) {
-                try {
-                    groupChatManageService.addUserToGroup(group.getGroupChatId(), application.getApplicant().getId());
-                } catch (Exception e) {
-                    // 记录错误但不中断流程
-                    System.err.println("加入群聊失败: " + e.getMessage());
-                    e.printStackTrace();
-                    // 不抛出异常，继续处理申请
-                }
+            group = admitMember(groupId, application.getApplicant());
+
+            // 2. 通过审核后加入群聊，在提交后进行，不延长组团行锁的持有时间
+            Long groupChatId = group.getGroupChatId();
+            Long applicantId = application.getApplicant().getId();
+            if (groupChatId != null && groupChatManageService != null) {
+                afterCommit(() -> {
+                    try {
+                        groupChatManageService.addUserToGroup(groupChatId, applicantId);
+                    } catch (Exception e) {
+                        // 记录错误但不中断流程
+                        System.err.println("加入群聊失败: " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                });
             }
         }
         
@@ -340,6 +307,51 @@ public class TravelGroupServiceImpl implements TravelGroupService {
         applicationRepository.save(application);
     }
 
+    /**
+     * 原子占用一个名额并创建成员记录，名额已满时抛出异常，返回更新后的组团
+     * 人数和满员状态由一条条件 UPDATE 修改，不读改写组团实体，并发审批不会超员
+     */
+    private TravelGroup admitMember(Long groupId, User applicant) {
+        int admitted = travelGroupRepository.admitMember(groupId, TravelGroup.GroupStatus.招募中,
+                TravelGroup.GroupStatus.已满员, LocalDateTime.now());
+        if (admitted == 0) {
+            throw new RuntimeException("组团已满员");
+        }
+        TravelGroup group = travelGroupRepository.findById(groupId)
+                .orElseThrow(() -> new RuntimeException("组团不存在"));
+
+        // 创建成员记录
+        TravelGroupMember member = new TravelGroupMember();
+        member.setGroup(group);
+        member.setUser(applicant);
+        member.setRole(TravelGroupMember.MemberRole.成员);
+        member.setJoinStatus(TravelGroupMember.JoinStatus.已加入);
+        member.setJoinDate(LocalDateTime.now());
+        memberRepository.save(member);
+
+        groupRecommendationIndex.update(group);
+        return group;
+    }
+
+    /**
+     * 在当前事务提交后执行，没有事务时立即执行
+     * 提交回调中原事务的资源仍绑定在线程上，写库操作放在新事务中
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                TransactionTemplate template = new TransactionTemplate(transactionManager);
+                template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+                template.executeWithoutResult(status -> action.run());
+            }
+        });
+    }
+
     @Override
     public void withdrawApplication(Long groupId, Long userId) {
         // 检查申请是否存在
@@ -374,14 +386,11 @@ public class TravelGroupServiceImpl implements TravelGroupService {
         }
 
         memberRepository.delete(member);
-        group.setCurrentMembers(group.getCurrentMembers() - 1);
-
-        // 如果之前是满员状态，现在变回招募中
-        if (TravelGroup.GroupStatus.已满员.equals(group.getStatus())) {
-            group.setStatus(TravelGroup.GroupStatus.招募中);
-        }
 
-        travelGroupRepository.save(group);
+        // 人数减一，如果之前是满员状态，现在变回招募中
+        travelGroupRepository.releaseMember(groupId, TravelGroup.GroupStatus.招募中,
+                TravelGroup.GroupStatus.已满员, LocalDateTime.now());
+        groupRecommendationIndex.update(travelGroupRepository.findById(groupId).orElse(group));
     }
 
     @Override
@@ -399,6 +408,7 @@ public class TravelGroupServiceImpl implements TravelGroupService {
 
         group.setStatus(TravelGroup.GroupStatus.已取消);
         travelGroupRepository.save(group);
+        groupRecommendationIndex.update(group);
     }
 
     @Override
@@ -420,6 +430,7 @@ public class TravelGroupServiceImpl implements TravelGroupService {
         }
 
         group = travelGroupRepository.save(group);
+        groupRecommendationIndex.update(group);
         return TravelGroupDTO.fromEntity(group, userRepository.findById(userId).orElse(null));
     }
 
@@ -501,23 +512,7 @@ public class TravelGroupServiceImpl implements TravelGroupService {
                 throw new RuntimeException("组团已满员");
             }
             
-            // 创建成员记录
-            TravelGroupMember member = new TravelGroupMember();
-            member.setGroup(group);
-            member.setUser(application.getApplicant());
-            member.setRole(TravelGroupMember.MemberRole.成员);
-            member.setJoinDate(LocalDateTime.now());
-            memberRepository.save(member);
-            
-            // 更新组团当前成员数
-            group.setCurrentMembers(group.getCurrentMembers() + 1);
-            
-            // 如果组团已满，更新状态
-            if (group.getCurrentMembers().equals(group.getMaxMembers())) {
-                group.setStatus(TravelGroup.GroupStatus.已满员);
-            }
-            
-            travelGroupRepository.save(group);
+            admitMember(groupId, application.getApplicant());
             
             // 更新申请状态为已通过
             application.setStatus(TravelGroupApplication.ApplicationStatus.已同意);
@@ -558,39 +553,51 @@ public class TravelGroupServiceImpl implements TravelGroupService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<TravelGroupDTO> getRecommendedGroups(Long userId) {
-        // 获取用户偏好
-        User user = userRepository.findById(userId)
+        // 检查用户是否存在
+        userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("用户不存在"));
-        
-        // 获取所有公开招募中的组团
-        List<TravelGroup> allGroups = travelGroupRepository.findAll();
-        
-        // 根据用户偏好过滤和排序
-        return allGroups.stream()
-                .filter(group -> Boolean.TRUE.equals(group.getIsPublic()) && 
-                               TravelGroup.GroupStatus.招募中.equals(group.getStatus()))
-                .map(group -> {
-                    List<TravelGroupMember> members = memberRepository.findByGroupId(group.getId());
-                    return TravelGroupDTO.fromEntity(group, members);
-                })
-                .collect(Collectors.toList());
+        return recommend(userId, storedPreferenceTagIds(userId));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<TravelGroupDTO> getRecommendationsByPreferences(Long userId, List<String> preferences) {
-        // 获取所有公开招募中的组团
-        List<TravelGroup> allGroups = travelGroupRepository.findAll();
-        
-        // 根据偏好过滤和排序
-        return allGroups.stream()
-                .filter(group -> Boolean.TRUE.equals(group.getIsPublic()) && 
-                               TravelGroup.GroupStatus.招募中.equals(group.getStatus()))
-                .map(group -> {
-                    List<TravelGroupMember> members = memberRepository.findByGroupId(group.getId());
-                    return TravelGroupDTO.fromEntity(group, members);
-                })
+        // 传入的偏好标签优先，未传时使用用户保存的偏好
+        int[] tagIds = preferences != null && !preferences.isEmpty()
+                ? groupRecommendationIndex.resolveTagIds(preferences)
+                : storedPreferenceTagIds(userId);
+        return recommend(userId, tagIds);
+    }
+
+    private int[] storedPreferenceTagIds(Long userId) {
+        String travelPreferences = userPreferencesRepository.findByUserId(userId)
+                .map(UserPreferences::getTravelPreferences)
+                .orElse(null);
+        return groupRecommendationIndex.preferredTagIds(travelPreferences);
+    }
+
+    /**
+     * 按推荐索引的排名取组团，已加入或申请中的组团不再推荐；
+     * 索引更新之后才变为不公开、非招募中或已满员的组团在取出时过滤掉
+     */
+    private List<TravelGroupDTO> recommend(Long userId, int[] preferredTagIds) {
+        List<Long> groupIds = groupRecommendationIndex.recommend(
+                userId, preferredTagIds, memberRepository.findGroupIdsByUserId(userId));
+        if (groupIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, TravelGroup> groupsById = new HashMap<>();
+        for (TravelGroup group : travelGroupRepository.findRecommendableWithCreatorAndDestinationByIdIn(
+                groupIds, TravelGroup.GroupStatus.招募中)) {
+            groupsById.put(group.getId(), group);
+        }
+        List<TravelGroup> ranked = groupIds.stream()
+                .map(groupsById::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
+        return new ArrayList<>(toDTOsWithMembers(ranked).values());
     }
 
     @Override
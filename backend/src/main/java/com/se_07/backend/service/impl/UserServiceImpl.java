@@ -54,6 +54,15 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private ItineraryRepository itineraryRepository;
 
+    @Autowired
+    private ElasticsearchIndexService elasticsearchIndexService;
+
+    @Autowired
+    private UserSummaryCache userSummaryCache;
+
+    @Autowired
+    private UserTravelStatsAggregator userTravelStatsAggregator;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
@@ -120,6 +129,8 @@ public class UserServiceImpl implements UserService {
             }
             user.setUsername(request.getUsername().trim());
             userRepository.save(user);
+            // 用户名变化需要同步作者索引
+            elasticsearchIndexService.updateUserInElasticsearch(user);
         }
 
         // 更新档案信息
@@ -137,6 +148,8 @@ public class UserServiceImpl implements UserService {
         }
 
         userProfileRepository.save(profile);
+        // 用户名或头像可能变化，失效聊天等列表使用的用户摘要
+        userSummaryCache.evict(userId);
 
         return getUserProfile(userId);
     }
@@ -245,6 +258,7 @@ public class UserServiceImpl implements UserService {
         userDestination.setEndDate(request.getEndDate());
 
         userDestinationRepository.save(userDestination);
+        userTravelStatsAggregator.markChanged(userId);
     }
 
     @Override
@@ -283,6 +297,7 @@ public class UserServiceImpl implements UserService {
         destinations.stream()
                 .filter(dest -> dest.getDestinationId().equals(destinationId))
                 .forEach(userDestinationRepository::delete);
+        userTravelStatsAggregator.markChanged(userId);
     }
 
     @Override
@@ -448,6 +463,9 @@ public class UserServiceImpl implements UserService {
             }
         }
         
+        if (addedCount > 0) {
+            userTravelStatsAggregator.markChanged(userId);
+        }
         return addedCount;
     }
     
@@ -475,6 +493,7 @@ public class UserServiceImpl implements UserService {
         // 删除这些记录
         if (!historyDestinationsToRemove.isEmpty()) {
             userDestinationRepository.deleteAll(historyDestinationsToRemove);
+            userTravelStatsAggregator.markChanged(userId);
         }
         
         return removedCount;
@@ -531,6 +550,7 @@ public class UserServiceImpl implements UserService {
             }
             profile.setAvatarUrl(avatarUrl);
             userProfileRepository.save(profile);
+            userSummaryCache.evict(userId);
 
             return avatarUrl;
         } catch (IOException e) {
@@ -554,11 +574,12 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public TravelStatsResponse getTravelStats(Long userId) {
-        TravelStatsResponse response = new TravelStatsResponse();
-        
         // 获取用户基本信息
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("用户不存在"));
+
+        // 目的地、行程、时间轴、地理和城市统计读取物化的统计行
+        TravelStatsResponse response = userTravelStatsAggregator.load(userId);
         response.setUsername(user.getUsername());
         
         // 计算陪伴天数（从注册到现在）
@@ -567,348 +588,8 @@ public class UserServiceImpl implements UserService {
         long companionDays = ChronoUnit.DAYS.between(registrationDate, LocalDate.now()) + 1;
         response.setCompanionDays((int) companionDays);
         
-        // 获取历史目的地数据
-        List<UserProfileResponse.HistoryDestinationDto> historyDestinations = getHistoryDestinations(userId);
-        response.setTotalDestinations(historyDestinations.size());
-        
-        // 计算总旅行天数
-        int totalDays = historyDestinations.stream()
-                .mapToInt(dest -> dest.getDays() != null ? dest.getDays() : 0)
-                .sum();
-        response.setTotalDays(totalDays);
-        
-        // 获取已完成行程数量
-        List<Itinerary> completedItineraries = itineraryRepository
-                .findByUserIdAndTravelStatus(userId, Itinerary.TravelStatus.已出行);
-        response.setTotalItineraries(completedItineraries.size());
-        
-        // 构建时间轴数据
-        List<TravelStatsResponse.TimelineItem> timeline = buildTimeline(userId, historyDestinations, completedItineraries);
-        response.setTimeline(timeline);
-        
-        // 构建地理统计（改进版本）
-        TravelStatsResponse.GeographyStats geography = buildGeographyStats(historyDestinations);
-        response.setGeography(geography);
-        
-        // 构建城市统计
-        List<TravelStatsResponse.CityStats> topCities = buildCityStats(historyDestinations);
-        response.setTopCities(topCities);
-        
         return response;
     }
-    
-    private List<TravelStatsResponse.TimelineItem> buildTimeline(Long userId, 
-            List<UserProfileResponse.HistoryDestinationDto> historyDestinations,
-            List<Itinerary> completedItineraries) {
-        
-        List<TravelStatsResponse.TimelineItem> timeline = new ArrayList<>();
-        
-        // 创建行程到目的地列表的映射，以及行程的基本信息
-        Map<Long, ItineraryInfo> itineraryInfoMap = new HashMap<>();
-        Map<String, Long> destinationToItineraryMap = new HashMap<>();
-        
-        for (Itinerary itinerary : completedItineraries) {
-            Set<String> destinationsInItinerary = new HashSet<>();
-            LocalDate startDate = null;
-            LocalDate endDate = null;
-            int totalDays = 0;
-            
-            if (itinerary.getItineraryDays() != null) {
-                for (ItineraryDay day : itinerary.getItineraryDays()) {
-                    if (day.getActivities() != null) {
-                        for (ItineraryActivity activity : day.getActivities()) {
-                            if (activity.getAttraction() != null && 
-                                activity.getAttraction().getDestination() != null) {
-                                String destName = activity.getAttraction().getDestination().getName();
-                                destinationsInItinerary.add(destName);
-                                destinationToItineraryMap.put(destName, itinerary.getId());
-                            }
-                        }
-                    }
-                    
-                    // 计算开始和结束日期
-                    if (startDate == null || day.getDate().isBefore(startDate)) {
-                        startDate = day.getDate();
-                    }
-                    if (endDate == null || day.getDate().isAfter(endDate)) {
-                        endDate = day.getDate();
-                    }
-                    totalDays++;
-                }
-            }
-            
-            ItineraryInfo info = new ItineraryInfo();
-            info.id = itinerary.getId();
-            info.title = itinerary.getTitle();
-            info.destinations = new ArrayList<>(destinationsInItinerary);
-            info.startDate = startDate;
-            info.endDate = endDate;
-            info.totalDays = totalDays;
-            itineraryInfoMap.put(itinerary.getId(), info);
-        }
-        
-        // 分离自动添加和手动添加的目的地
-        List<UserProfileResponse.HistoryDestinationDto> autoAddedDestinations = new ArrayList<>();
-        List<UserProfileResponse.HistoryDestinationDto> manualDestinations = new ArrayList<>();
-        
-        for (UserProfileResponse.HistoryDestinationDto dest : historyDestinations) {
-            if (dest.isAutoAdded()) { // 使用新的方法判断是否为自动添加
-                autoAddedDestinations.add(dest);
-            } else {
-                manualDestinations.add(dest);
-            }
-        }
-        
-        // 处理自动添加的目的地（按行程合并）
-        Map<Long, List<UserProfileResponse.HistoryDestinationDto>> itineraryDestinationsMap = new HashMap<>();
-        for (UserProfileResponse.HistoryDestinationDto dest : autoAddedDestinations) {
-            Long itineraryId = dest.getItineraryId(); // 直接使用itineraryId字段
-            if (itineraryId != null && itineraryId > 0) {
-                itineraryDestinationsMap.computeIfAbsent(itineraryId, k -> new ArrayList<>()).add(dest);
-            }
-        }
-        
-        // 为每个行程创建合并的时间轴项目
-        for (Map.Entry<Long, List<UserProfileResponse.HistoryDestinationDto>> entry : itineraryDestinationsMap.entrySet()) {
-            Long itineraryId = entry.getKey();
-            List<UserProfileResponse.HistoryDestinationDto> destinations = entry.getValue();
-            ItineraryInfo itineraryInfo = itineraryInfoMap.get(itineraryId);
-            
-            if (itineraryInfo != null && !destinations.isEmpty()) {
-                TravelStatsResponse.TimelineItem item = new TravelStatsResponse.TimelineItem();
-                
-                // 合并目的地名称（用逗号分隔）
-                String combinedName = destinations.stream()
-                    .map(UserProfileResponse.HistoryDestinationDto::getName)
-                    .collect(Collectors.joining("、"));
-                item.setName(combinedName);
-                
-                // 使用行程的时间信息
-                UserProfileResponse.HistoryDestinationDto firstDest = destinations.get(0);
-                item.setVisitYearMonth(firstDest.getVisitYearMonth());
-                item.setStartDate(itineraryInfo.startDate);
-                item.setEndDate(itineraryInfo.endDate);
-                item.setDays(itineraryInfo.totalDays);
-                
-                // 使用行程标题作为备注
-                item.setNotes("行程：" + itineraryInfo.title);
-                
-                item.setHasItinerary(true);
-                item.setItineraryId(itineraryId);
-                
-                timeline.add(item);
-            }
-        }
-        
-        // 处理手动添加的目的地（保持单独显示）
-        for (UserProfileResponse.HistoryDestinationDto dest : manualDestinations) {
-            TravelStatsResponse.TimelineItem item = new TravelStatsResponse.TimelineItem();
-            item.setName(dest.getName());
-            item.setVisitYearMonth(dest.getVisitYearMonth());
-            item.setDays(dest.getDays());
-            item.setNotes(dest.getNotes());
-            item.setStartDate(dest.getStartDate());
-            item.setEndDate(dest.getEndDate());
-            item.setHasItinerary(false);
-            item.setItineraryId(null);
-            
-            timeline.add(item);
-        }
-        
-        // 按时间排序（按出行日期先后顺序）- 优先使用startDate，如果没有则使用visitYearMonth
-        timeline.sort((a, b) -> {
-            // 如果都有startDate，使用startDate排序（正序，早的在前）
-            if (a.getStartDate() != null && b.getStartDate() != null) {
-                return a.getStartDate().compareTo(b.getStartDate());
-            }
-            // 如果只有一个有startDate，有startDate的排在前面
-            if (a.getStartDate() != null && b.getStartDate() == null) {
-                return -1;
-            }
-            if (a.getStartDate() == null && b.getStartDate() != null) {
-                return 1;
-            }
-            // 如果都没有startDate，使用visitYearMonth排序（正序，早的在前）
-            return a.getVisitYearMonth().compareTo(b.getVisitYearMonth());
-        });
-        
-        return timeline;
-    }
-    
-    // 辅助类：存储行程信息
-    private static class ItineraryInfo {
-        Long id;
-        String title;
-        List<String> destinations;
-        LocalDate startDate;
-        LocalDate endDate;
-        int totalDays;
-    }
-    
-    private TravelStatsResponse.GeographyStats buildGeographyStats(
-            List<UserProfileResponse.HistoryDestinationDto> historyDestinations) {
-        
-        TravelStatsResponse.GeographyStats geography = new TravelStatsResponse.GeographyStats();
-        
-        if (historyDestinations.isEmpty()) {
-            return geography;
-        }
-        
-        // 从数据库获取目的地的真实信息
-        List<String> destinationNames = historyDestinations.stream()
-                .map(UserProfileResponse.HistoryDestinationDto::getName)
-                .collect(Collectors.toList());
-        
-        List<Destination> destinations = destinationRepository.findByNameIn(destinationNames);
-        
-        // 基于目的地名称进行地理位置判断（改进版本）
-        // 使用列表来收集所有匹配的城市，可以让一个城市出现在多个方向
-        List<String> easternCities = new ArrayList<>();
-        List<String> southernCities = new ArrayList<>();
-        List<String> westernCities = new ArrayList<>();
-        List<String> northernCities = new ArrayList<>();
-        
-        for (Destination dest : destinations) {
-            String name = dest.getName();
-            String description = dest.getDescription();
-            
-            // 更全面的地理位置判断逻辑
-            if (isEasternCity(name, description)) {
-                easternCities.add(name);
-            }
-            if (isSouthernCity(name, description)) {
-                southernCities.add(name);
-            }
-            if (isWesternCity(name, description)) {
-                westernCities.add(name);
-            }
-            if (isNorthernCity(name, description)) {
-                northernCities.add(name);
-            }
-        }
-        
-        // 选择每个方向的代表城市（优先选择第一个，以后可以改为选择访问次数最多的）
-        geography.setEasternmost(easternCities.isEmpty() ? null : easternCities.get(0));
-        geography.setSouthernmost(southernCities.isEmpty() ? null : southernCities.get(0));
-        geography.setWesternmost(westernCities.isEmpty() ? null : westernCities.get(0));
-        geography.setNorthernmost(northernCities.isEmpty() ? null : northernCities.get(0));
-        
-        // 统计最爱出行月份
-        Map<String, Integer> monthCount = new HashMap<>();
-        for (UserProfileResponse.HistoryDestinationDto dest : historyDestinations) {
-            // 优先使用startDate，如果没有则使用visitYearMonth（兼容性）
-            if (dest.getStartDate() != null) {
-                String month = String.format("%02d", dest.getStartDate().getMonthValue());
-                monthCount.put(month, monthCount.getOrDefault(month, 0) + 1);
-            } else if (dest.getVisitYearMonth() != null && dest.getVisitYearMonth().length() >= 7 && !dest.getVisitYearMonth().equals("未知")) {
-                String month = dest.getVisitYearMonth().substring(5, 7); // 提取月份
-                monthCount.put(month, monthCount.getOrDefault(month, 0) + 1);
-            }
-        }
-        
-        String favoriteMonth = monthCount.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(entry -> getMonthName(entry.getKey()))
-                .orElse(null);
-        geography.setFavoriteMonth(favoriteMonth);
-        
-        // 统计旅行次数最多的年份
-        Map<String, Integer> yearCount = new HashMap<>();
-        for (UserProfileResponse.HistoryDestinationDto dest : historyDestinations) {
-            // 优先使用startDate，如果没有则使用visitYearMonth（兼容性）
-            if (dest.getStartDate() != null) {
-                String year = String.valueOf(dest.getStartDate().getYear());
-                yearCount.put(year, yearCount.getOrDefault(year, 0) + 1);
-            } else if (dest.getVisitYearMonth() != null && dest.getVisitYearMonth().length() >= 4 && !dest.getVisitYearMonth().equals("未知")) {
-                String year = dest.getVisitYearMonth().substring(0, 4); // 提取年份
-                yearCount.put(year, yearCount.getOrDefault(year, 0) + 1);
-            }
-        }
-        
-        String mostTravelYear = yearCount.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(null);
-        geography.setMostTravelYear(mostTravelYear);
-        
-        return geography;
-    }
-    
-    // 地理位置判断辅助方法
-    private boolean isEasternCity(String name, String description) {
-        return name.contains("上海") || name.contains("杭州") || name.contains("南京") || 
-               name.contains("苏州") || name.contains("福州") || name.contains("厦门") ||
-               name.contains("青岛") || name.contains("大连") || name.contains("宁波") ||
-               (description != null && (description.contains("华东") || description.contains("东部")));
-    }
-    
-    private boolean isSouthernCity(String name, String description) {
-        return name.contains("三亚") || name.contains("海南") || name.contains("广州") ||
-               name.contains("深圳") || name.contains("珠海") || name.contains("桂林") ||
-               name.contains("昆明") || name.contains("南宁") || name.contains("湛江") ||
-               (description != null && (description.contains("华南") || description.contains("南部")));
-    }
-    
-    private boolean isWesternCity(String name, String description) {
-        return name.contains("西藏") || name.contains("新疆") || name.contains("拉萨") ||
-               name.contains("乌鲁木齐") || name.contains("成都") || name.contains("重庆") ||
-               name.contains("西安") || name.contains("兰州") || name.contains("银川") ||
-               (description != null && (description.contains("西部") || description.contains("西北") || description.contains("西南")));
-    }
-    
-    private boolean isNorthernCity(String name, String description) {
-        return name.contains("哈尔滨") || name.contains("长春") || name.contains("沈阳") ||
-               name.contains("北京") || name.contains("天津") || name.contains("太原") ||
-               name.contains("呼和浩特") || name.contains("大同") || name.contains("包头") ||
-               (description != null && (description.contains("华北") || description.contains("东北") || description.contains("北部")));
-    }
-    
-    // 月份名称转换
-    private String getMonthName(String month) {
-        switch (month) {
-            case "01": return "1月";
-            case "02": return "2月";
-            case "03": return "3月";
-            case "04": return "4月";
-            case "05": return "5月";
-            case "06": return "6月";
-            case "07": return "7月";
-            case "08": return "8月";
-            case "09": return "9月";
-            case "10": return "10月";
-            case "11": return "11月";
-            case "12": return "12月";
-            default: return month + "月";
-        }
-    }
-    
-    private List<TravelStatsResponse.CityStats> buildCityStats(
-            List<UserProfileResponse.HistoryDestinationDto> historyDestinations) {
-        
-        Map<String, TravelStatsResponse.CityStats> cityStatsMap = new HashMap<>();
-        
-        for (UserProfileResponse.HistoryDestinationDto dest : historyDestinations) {
-            String cityName = dest.getName();
-            TravelStatsResponse.CityStats stats = cityStatsMap.get(cityName);
-            
-            if (stats == null) {
-                stats = new TravelStatsResponse.CityStats();
-                stats.setName(cityName);
-                stats.setVisitCount(0);
-                stats.setTotalDays(0);
-                cityStatsMap.put(cityName, stats);
-            }
-            
-            stats.setVisitCount(stats.getVisitCount() + 1);
-            stats.setTotalDays(stats.getTotalDays() + (dest.getDays() != null ? dest.getDays() : 0));
-        }
-        
-        // 按访问次数排序，取前5名
-        return cityStatsMap.values().stream()
-                .sorted((a, b) -> b.getVisitCount().compareTo(a.getVisitCount()))
-                .limit(5)
-                .collect(Collectors.toList());
-    }
 
     @Override
     public UserHomepageResponse getUserHomepage(Long userId, String requestIp) {
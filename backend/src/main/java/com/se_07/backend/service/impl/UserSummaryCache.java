@@ -0,0 +1,118 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.repository.UserRepository;
+import com.se_07.backend.util.LruTtlCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+/**
+ * 用户摘要缓存（用户ID -> 用户名、头像）
+ * 聊天消息等列表只需要发送者的展示信息，一页消息的未命中用户用一次 IN 查询批量读取，
+ * 用户名或头像修改时调用 {@link #evict(Long)} 失效
+ */
+@Component
+public class UserSummaryCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${user-summary.cache.max-size:10000}")
+    private int cacheMaxSize = 10000;
+
+    @Value("${user-summary.cache.ttl-seconds:600}")
+    private long cacheTtlSeconds = 600;
+
+    private LruTtlCache<Long, UserSummary> cache = new LruTtlCache<>(cacheMaxSize, cacheTtlSeconds * 1000);
+
+    @PostConstruct
+    void initCache() {
+        // 按注入后的配置重建缓存
+        this.cache = new LruTtlCache<>(cacheMaxSize, cacheTtlSeconds * 1000);
+    }
+
+    /**
+     * 获取单个用户的摘要，用户不存在时返回 null
+     */
+    public UserSummary get(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        return getAll(Collections.singleton(userId)).get(userId);
+    }
+
+    /**
+     * 批量获取用户摘要，不存在的用户不出现在结果中
+     */
+    public Map<Long, UserSummary> getAll(Collection<Long> userIds) {
+        Map<Long, UserSummary> result = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        for (Long userId : userIds) {
+            if (userId == null) {
+                continue;
+            }
+            UserSummary summary = cache.get(userId);
+            if (summary != null) {
+                result.put(userId, summary);
+            } else {
+                missing.add(userId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        for (Object[] row : userRepository.findSummariesByIdIn(missing)) {
+            UserSummary summary = new UserSummary((Long) row[0], (String) row[1], (String) row[2]);
+            cache.put(summary.getId(), summary);
+            result.put(summary.getId(), summary);
+        }
+        return result;
+    }
+
+    /**
+     * 用户名或头像修改后失效缓存
+     * 在事务中调用时提交后再失效一次，避免提交前被并发请求以旧值重新加载
+     */
+    public void evict(Long userId) {
+        cache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(userId);
+                }
+            });
+        }
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        return cache.getStats();
+    }
+
+    public static final class UserSummary {
+        private final Long id;
+        private final String username;
+        private final String avatarUrl;
+
+        public UserSummary(Long id, String username, String avatarUrl) {
+            this.id = id;
+            this.username = username;
+            this.avatarUrl = avatarUrl;
+        }
+
+        public Long getId() { return id; }
+
+        public String getUsername() { return username; }
+
+        public String getAvatarUrl() { return avatarUrl; }
+    }
+}
@@ -0,0 +1,388 @@
+package com.se_07.backend.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.se_07.backend.dto.TravelStatsResponse;
+import com.se_07.backend.entity.Itinerary;
+import com.se_07.backend.entity.UserDestination;
+import com.se_07.backend.entity.UserTravelStats;
+import com.se_07.backend.repository.ItineraryRepository;
+import com.se_07.backend.repository.UserDestinationRepository;
+import com.se_07.backend.repository.UserTravelStatsRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * 用户旅行统计的物化与增量更新
+ * 统计页读取 user_travel_stats 中预先计算好的一行，不再每次加载已出行行程的日程、活动和景点：
+ *   - 历史目的地增删、行程出行状态变化、已出行行程重新排期时调用 {@link #markChanged(Long)}，在同一事务中标记该用户的统计过期，
+ *     事务提交后由后台线程重新计算该用户的一行（两条投影查询）
+ *   - 读取时行不存在、已过期或超过最长有效期时同步重新计算；
+ *     目的地名称、经纬度的修改不会标记过期，由最长有效期兜底
+ * 最东、最西、最南、最北的目的地按目的地经纬度比较，没有经纬度的目的地不参与
+ */
+@Component
+public class UserTravelStatsAggregator {
+    private static final Logger logger = LoggerFactory.getLogger(UserTravelStatsAggregator.class);
+
+    private static final int TOP_CITY_LIMIT = 5;
+    private static final DateTimeFormatter YEAR_MONTH = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    @Autowired
+    private UserTravelStatsRepository statsRepository;
+
+    @Autowired
+    private UserDestinationRepository userDestinationRepository;
+
+    @Autowired
+    private ItineraryRepository itineraryRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${user-travel-stats.max-age-ms:86400000}")
+    private long maxAgeMs = 86400000;
+
+    // 已提交后台刷新、尚未开始计算的用户，同一用户只排队一次
+    private final Set<Long> pendingRefresh = ConcurrentHashMap.newKeySet();
+    private ExecutorService refreshExecutor;
+
+    @PostConstruct
+    void start() {
+        refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "user-travel-stats-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 读取用户的旅行统计（不含用户名和陪伴天数），需要时先重新计算
+     */
+    public TravelStatsResponse load(Long userId) {
+        UserTravelStats stats = statsRepository.findById(userId).orElse(null);
+        if (stats == null || isStale(stats)) {
+            stats = refresh(userId);
+        }
+        return toResponse(stats);
+    }
+
+    /**
+     * 用户的历史目的地或已出行行程发生变化
+     * 必须在修改数据的同一事务中调用，提交后在后台重新计算
+     */
+    public void markChanged(Long userId) {
+        if (userId == null || statsRepository.markStale(userId) == 0) {
+            // 还没有统计行，首次读取时计算
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    scheduleRefresh(userId);
+                }
+            });
+        } else {
+            scheduleRefresh(userId);
+        }
+    }
+
+    boolean isStale(UserTravelStats stats) {
+        return stats.getComputedVersion() < stats.getDataVersion()
+                || stats.getComputedAt() == null
+                || stats.getComputedAt().isBefore(LocalDateTime.now().minus(maxAgeMs, ChronoUnit.MILLIS));
+    }
+
+    /**
+     * 在独立事务中重新计算并保存用户的统计
+     */
+    UserTravelStats refresh(Long userId) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            return template.execute(status -> recompute(userId));
+        } catch (DataIntegrityViolationException e) {
+            // 并发的首次计算已插入该用户的行，再计算一次（此时为更新）
+            return template.execute(status -> recompute(userId));
+        }
+    }
+
+    private UserTravelStats recompute(Long userId) {
+        UserTravelStats stats = statsRepository.findById(userId).orElseGet(() -> {
+            UserTravelStats created = new UserTravelStats();
+            created.setUserId(userId);
+            return created;
+        });
+        // 先读版本再读数据：计算期间提交的修改会使 dataVersion 大于这里记录的版本，下次读取时重新计算
+        long version = stats.getDataVersion();
+        List<Object[]> destinations = userDestinationRepository
+                .findStatsRowsByUserIdAndType(userId, UserDestination.Type.历史目的地);
+        List<Object[]> itineraries = itineraryRepository
+                .findDaySummariesByUserIdAndTravelStatus(userId, Itinerary.TravelStatus.已出行);
+        fill(stats, destinations, itineraries);
+        stats.setComputedVersion(version);
+        stats.setComputedAt(LocalDateTime.now());
+        return statsRepository.saveAndFlush(stats);
+    }
+
+    /**
+     * 由历史目的地行和已出行行程行计算统计
+     * 目的地行：行程ID、天数、开始日期、结束日期、备注、目的地名称、纬度、经度
+     * 行程行：行程ID、标题、日程最早日期、日程最晚日期、日程天数
+     */
+    void fill(UserTravelStats stats, List<Object[]> destinations, List<Object[]> itineraries) {
+        Map<Long, Object[]> itineraryById = new HashMap<>();
+        for (Object[] row : itineraries) {
+            itineraryById.put((Long) row[0], row);
+        }
+
+        int totalDays = 0;
+        Map<String, TravelStatsResponse.CityStats> cities = new LinkedHashMap<>();
+        Map<Integer, Integer> monthCounts = new TreeMap<>();
+        Map<Integer, Integer> yearCounts = new TreeMap<>();
+        String easternmost = null, westernmost = null, southernmost = null, northernmost = null;
+        BigDecimal maxLongitude = null, minLongitude = null, maxLatitude = null, minLatitude = null;
+        Map<Long, List<Object[]>> byItinerary = new LinkedHashMap<>();
+        List<TravelStatsResponse.TimelineItem> timeline = new ArrayList<>();
+
+        for (Object[] row : destinations) {
+            Long itineraryId = (Long) row[0];
+            Integer days = (Integer) row[1];
+            LocalDate startDate = (LocalDate) row[2];
+            String name = (String) row[5];
+            BigDecimal latitude = (BigDecimal) row[6];
+            BigDecimal longitude = (BigDecimal) row[7];
+            int dayCount = days != null ? days : 0;
+            totalDays += dayCount;
+
+            TravelStatsResponse.CityStats city = cities.computeIfAbsent(name, key -> {
+                TravelStatsResponse.CityStats created = new TravelStatsResponse.CityStats();
+                created.setName(key);
+                created.setVisitCount(0);
+                created.setTotalDays(0);
+                return created;
+            });
+            city.setVisitCount(city.getVisitCount() + 1);
+            city.setTotalDays(city.getTotalDays() + dayCount);
+
+            if (startDate != null) {
+                monthCounts.merge(startDate.getMonthValue(), 1, Integer::sum);
+                yearCounts.merge(startDate.getYear(), 1, Integer::sum);
+            }
+
+            if (longitude != null) {
+                if (maxLongitude == null || longitude.compareTo(maxLongitude) > 0) {
+                    maxLongitude = longitude;
+                    easternmost = name;
+                }
+                if (minLongitude == null || longitude.compareTo(minLongitude) < 0) {
+                    minLongitude = longitude;
+                    westernmost = name;
+                }
+            }
+            if (latitude != null) {
+                if (maxLatitude == null || latitude.compareTo(maxLatitude) > 0) {
+                    maxLatitude = latitude;
+                    northernmost = name;
+                }
+                if (minLatitude == null || latitude.compareTo(minLatitude) < 0) {
+                    minLatitude = latitude;
+                    southernmost = name;
+                }
+            }
+
+            if (itineraryId != null && itineraryId > 0) {
+                byItinerary.computeIfAbsent(itineraryId, id -> new ArrayList<>()).add(row);
+            } else {
+                timeline.add(manualItem(row));
+            }
+        }
+
+        // 自动添加的目的地按行程合并为一项，行程已不是已出行状态时不显示
+        for (Map.Entry<Long, List<Object[]>> entry : byItinerary.entrySet()) {
+            Object[] itinerary = itineraryById.get(entry.getKey());
+            if (itinerary != null) {
+                timeline.add(itineraryItem(entry.getKey(), entry.getValue(), itinerary));
+            }
+        }
+        timeline.sort(UserTravelStatsAggregator::compareTimeline);
+
+        List<TravelStatsResponse.CityStats> topCities = cities.values().stream()
+                .sorted((a, b) -> b.getVisitCount().compareTo(a.getVisitCount()))
+                .limit(TOP_CITY_LIMIT)
+                .collect(Collectors.toList());
+
+        stats.setTotalDestinations(destinations.size());
+        stats.setTotalDays(totalDays);
+        stats.setTotalItineraries(itineraries.size());
+        stats.setEasternmost(easternmost);
+        stats.setWesternmost(westernmost);
+        stats.setSouthernmost(southernmost);
+        stats.setNorthernmost(northernmost);
+        Integer favoriteMonth = mostFrequent(monthCounts);
+        stats.setFavoriteMonth(favoriteMonth == null ? null : favoriteMonth + "月");
+        Integer mostTravelYear = mostFrequent(yearCounts);
+        stats.setMostTravelYear(mostTravelYear == null ? null : String.valueOf(mostTravelYear));
+        stats.setTimeline(toJson(timeline));
+        stats.setTopCities(toJson(topCities));
+    }
+
+    TravelStatsResponse toResponse(UserTravelStats stats) {
+        TravelStatsResponse response = new TravelStatsResponse();
+        response.setTotalDestinations(stats.getTotalDestinations());
+        response.setTotalDays(stats.getTotalDays());
+        response.setTotalItineraries(stats.getTotalItineraries());
+        response.setTimeline(fromJson(stats.getTimeline(), new TypeReference<List<TravelStatsResponse.TimelineItem>>() {}));
+        response.setTopCities(fromJson(stats.getTopCities(), new TypeReference<List<TravelStatsResponse.CityStats>>() {}));
+
+        TravelStatsResponse.GeographyStats geography = new TravelStatsResponse.GeographyStats();
+        geography.setEasternmost(stats.getEasternmost());
+        geography.setWesternmost(stats.getWesternmost());
+        geography.setSouthernmost(stats.getSouthernmost());
+        geography.setNorthernmost(stats.getNorthernmost());
+        geography.setFavoriteMonth(stats.getFavoriteMonth());
+        geography.setMostTravelYear(stats.getMostTravelYear());
+        response.setGeography(geography);
+        return response;
+    }
+
+    private static TravelStatsResponse.TimelineItem manualItem(Object[] row) {
+        TravelStatsResponse.TimelineItem item = new TravelStatsResponse.TimelineItem();
+        item.setName((String) row[5]);
+        item.setVisitYearMonth(visitYearMonth((LocalDate) row[2]));
+        item.setDays((Integer) row[1]);
+        item.setNotes((String) row[4]);
+        item.setStartDate((LocalDate) row[2]);
+        item.setEndDate((LocalDate) row[3]);
+        item.setHasItinerary(false);
+        item.setItineraryId(null);
+        return item;
+    }
+
+    private static TravelStatsResponse.TimelineItem itineraryItem(Long itineraryId, List<Object[]> rows, Object[] itinerary) {
+        TravelStatsResponse.TimelineItem item = new TravelStatsResponse.TimelineItem();
+        item.setName(rows.stream().map(row -> (String) row[5]).collect(Collectors.joining("、")));
+        item.setVisitYearMonth(visitYearMonth((LocalDate) rows.get(0)[2]));
+        // 时间和天数取自行程的日程
+        item.setStartDate((LocalDate) itinerary[2]);
+        item.setEndDate((LocalDate) itinerary[3]);
+        item.setDays(((Number) itinerary[4]).intValue());
+        item.setNotes("行程：" + itinerary[1]);
+        item.setHasItinerary(true);
+        item.setItineraryId(itineraryId);
+        return item;
+    }
+
+    private static String visitYearMonth(LocalDate startDate) {
+        return startDate != null ? startDate.format(YEAR_MONTH) : "未知";
+    }
+
+    /**
+     * 按出行日期先后排序，没有开始日期的排在后面并按年月排序
+     */
+    private static int compareTimeline(TravelStatsResponse.TimelineItem a, TravelStatsResponse.TimelineItem b) {
+        if (a.getStartDate() != null && b.getStartDate() != null) {
+            return a.getStartDate().compareTo(b.getStartDate());
+        }
+        if (a.getStartDate() != null) {
+            return -1;
+        }
+        if (b.getStartDate() != null) {
+            return 1;
+        }
+        return a.getVisitYearMonth().compareTo(b.getVisitYearMonth());
+    }
+
+    /**
+     * 次数最多的键，次数相同时取较小的键
+     */
+    private static Integer mostFrequent(Map<Integer, Integer> counts) {
+        Integer best = null;
+        int bestCount = 0;
+        for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > bestCount) {
+                best = entry.getKey();
+                bestCount = entry.getValue();
+            }
+        }
+        return best;
+    }
+
+    private void scheduleRefresh(Long userId) {
+        if (refreshExecutor == null || !pendingRefresh.add(userId)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                pendingRefresh.remove(userId);
+                refreshSafely(userId);
+            });
+        } catch (RejectedExecutionException e) {
+            pendingRefresh.remove(userId);
+        }
+    }
+
+    private void refreshSafely(Long userId) {
+        try {
+            refresh(userId);
+        } catch (Exception e) {
+            // 统计行仍为过期状态，下次读取时重新计算
+            logger.error("用户旅行统计刷新失败 userId={}: {}", userId, e.getMessage(), e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("旅行统计序列化失败", e);
+        }
+    }
+
+    private <T> List<T> fromJson(String json, TypeReference<List<T>> type) {
+        if (json == null || json.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            logger.warn("旅行统计解析失败: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+}
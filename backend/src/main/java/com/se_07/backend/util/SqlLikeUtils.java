@@ -0,0 +1,18 @@
+package com.se_07.backend.util;
+
+/**
+ * LIKE 查询的用户输入处理
+ * MySQL 和 H2 的 LIKE 默认以反斜杠作为转义符，转义后输入中的 % 和 _ 按字面匹配
+ */
+public final class SqlLikeUtils {
+
+    private SqlLikeUtils() {
+    }
+
+    /**
+     * 转义 LIKE 通配符，结果可直接拼接 % 作为包含匹配模式
+     */
+    public static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -12,8 +12,11 @@ import com.se_07.backend.repository.GroupChatMemberRepository;
 import com.se_07.backend.repository.GroupChatMessageRepository;
 import com.se_07.backend.repository.UserRepository;
 import com.se_07.backend.repository.ChatMessageRepository;
+import com.se_07.backend.service.impl.ChatMessageIdAllocator;
+import com.se_07.backend.service.impl.ChatMessageWriteBehind;
 import com.se_07.backend.service.impl.GroupChatManageServiceImpl;
 import com.se_07.backend.service.impl.GroupChatServiceImpl;
+import com.se_07.backend.service.impl.UserSummaryCache;
 import com.se_07.backend.service.ChatMessageService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -22,11 +25,16 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -48,6 +56,10 @@ public class ServiceTest {
     private ChatMessageRepository chatMessageRepository;
     @Mock
     private com.se_07.backend.repository.UserProfileRepository userProfileRepository;
+    @Mock
+    private com.se_07.backend.service.impl.GroupMembershipIndex groupMembershipIndex;
+    @Mock
+    private com.se_07.backend.service.impl.PresenceRegistry presenceRegistry;
     @InjectMocks
     private GroupChatServiceImpl groupChatService;
     @InjectMocks
@@ -64,6 +76,12 @@ public class ServiceTest {
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        // 使用真实的用户摘要缓存，底层查询由 userRepository mock 提供
+        UserSummaryCache userSummaryCache = new UserSummaryCache();
+        ReflectionTestUtils.setField(userSummaryCache, "userRepository", userRepository);
+        ReflectionTestUtils.setField(groupChatService, "userSummaryCache", userSummaryCache);
+        ReflectionTestUtils.setField(groupChatManageService, "userSummaryCache", userSummaryCache);
+        ReflectionTestUtils.setField(chatMessageServiceMock, "userSummaryCache", userSummaryCache);
     }
 
     // GroupChatServiceImpl Mock测试
@@ -75,13 +93,17 @@ public class ServiceTest {
         dto.setContent("hello");
         LocalDateTime now = LocalDateTime.now();
         dto.setMessageTime(now);
-        GroupChatMessage saved = new GroupChatMessage();
-        saved.setMessageId(10L);
-        saved.setGroupId(1L);
-        saved.setUserId(2L);
-        saved.setContent("hello");
-        saved.setMessageTime(now);
-        when(groupChatMessageRepository.save(any(GroupChatMessage.class))).thenReturn(saved);
+        // 消息ID接着群聊表内最大ID分配
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(9L);
+        ChatMessageWriteBehind chatMessageWriteBehind = new ChatMessageWriteBehind();
+        ReflectionTestUtils.setField(chatMessageWriteBehind, "jdbcTemplate", jdbcTemplate);
+        ChatMessageIdAllocator idAllocator = new ChatMessageIdAllocator();
+        ReflectionTestUtils.setField(idAllocator, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(idAllocator, "source", ChatMessageIdAllocator.Source.LOCAL);
+        ReflectionTestUtils.setField(chatMessageWriteBehind, "idAllocator", idAllocator);
+        ReflectionTestUtils.setField(chatMessageWriteBehind, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(groupChatService, "chatMessageWriteBehind", chatMessageWriteBehind);
         GroupChatMessageDTO result = groupChatService.sendGroupMessage(dto);
         assertEquals(10L, result.getMessageId());
         assertEquals(now, result.getMessageTime());
@@ -108,8 +130,8 @@ public class ServiceTest {
         User user3 = new User();
         user3.setId(3L);
         user3.setUsername("李四");
-        when(userRepository.findById(2L)).thenReturn(Optional.of(user2));
-        when(userRepository.findById(3L)).thenReturn(Optional.of(user3));
+        when(userRepository.findSummariesByIdIn(Set.of(2L, 3L))).thenReturn(Arrays.asList(
+                new Object[]{2L, user2.getUsername(), null}, new Object[]{3L, user3.getUsername(), null}));
         List<GroupChatMessageDTO> list = groupChatService.getGroupMessages(1L);
         assertEquals(2, list.size());
         assertEquals("张三", list.get(0).getUserName());
@@ -127,7 +149,8 @@ public class ServiceTest {
         User user = new User();
         user.setId(2L);
         user.setUsername("王五");
-        when(userRepository.findById(2L)).thenReturn(Optional.of(user));
+        when(userRepository.findSummariesByIdIn(Set.of(2L))).thenReturn(
+                Collections.singletonList(new Object[]{2L, user.getUsername(), null}));
         GroupChatMessageDTO dto = groupChatService.toDTO(msg);
         assertEquals(5L, dto.getMessageId());
         assertEquals("test", dto.getContent());
@@ -164,10 +187,8 @@ public class ServiceTest {
         user2.setId(2L);
         user2.setUsername("李四");
         user2.setAvatarUrl("avatar2.png");
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user1));
-        when(userRepository.findById(2L)).thenReturn(Optional.of(user2));
-        // Mock userProfileRepository to return empty Optional
-        when(userProfileRepository.findByUserId(anyLong())).thenReturn(Optional.empty());
+        when(userRepository.findSummariesByIdIn(Set.of(1L, 2L))).thenReturn(Arrays.asList(
+                new Object[]{1L, user1.getUsername(), null}, new Object[]{2L, user2.getUsername(), null}));
         List<UserProfileResponse> members = groupChatManageService.getGroupMembers(100L);
         assertEquals(2, members.size());
         assertEquals("张三", members.get(0).getUsername());
@@ -0,0 +1,25 @@
+package com.se_07.backend.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdminAccessTest {
+
+    @Test
+    void notConfigured_nobodyIsAdmin() {
+        AdminAccess access = new AdminAccess();
+        assertFalse(access.isAdmin(1L));
+        assertFalse(access.isAdmin(null));
+    }
+
+    @Test
+    void configuredIds_areAdmins() {
+        AdminAccess access = new AdminAccess();
+        ReflectionTestUtils.setField(access, "adminUserIds", "1, 7");
+        assertTrue(access.isAdmin(1L));
+        assertTrue(access.isAdmin(7L));
+        assertFalse(access.isAdmin(17L));
+    }
+}
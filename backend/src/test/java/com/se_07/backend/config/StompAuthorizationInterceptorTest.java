@@ -0,0 +1,106 @@
+package com.se_07.backend.config;
+
+import com.se_07.backend.service.impl.GroupMembershipIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StompAuthorizationInterceptorTest {
+
+    @Mock
+    private GroupMembershipIndex groupMembershipIndex;
+
+    @Mock
+    private MessageChannel channel;
+
+    private StompAuthorizationInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        interceptor = new StompAuthorizationInterceptor();
+        ReflectionTestUtils.setField(interceptor, "groupMembershipIndex", groupMembershipIndex);
+    }
+
+    @Test
+    void testSubscribeGroupTopic_RequiresMembership() {
+        when(groupMembershipIndex.isMember(1L, 2L)).thenReturn(true);
+        when(groupMembershipIndex.isMember(3L, 2L)).thenReturn(false);
+
+        assertNotNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/group.1", 2L), channel));
+        assertNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/group.3", 2L), channel));
+        assertNotNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/group.typing.1", 2L), channel));
+        assertNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/group.presence.3", 2L), channel));
+        assertEquals(2L, interceptor.getStats().get("rejectedSubscribes"));
+    }
+
+    @Test
+    void testSubscribePersonalTopics_OnlyOwn() {
+        assertNotNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/group.member.2", 2L), channel));
+        assertNotNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/friend.2", 2L), channel));
+        assertNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/group.member.3", 2L), channel));
+        assertNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/chat.3", 2L), channel));
+        assertNotNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/user/queue/chat", 2L), channel));
+        // 个人 topic 不查成员索引
+        verifyNoInteractions(groupMembershipIndex);
+    }
+
+    @Test
+    void testSubscribeWildcardsAndUnknownTopics_Rejected() {
+        lenient().when(groupMembershipIndex.isMember(any(), any())).thenReturn(true);
+
+        assertNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/**", 2L), channel));
+        assertNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/*", 2L), channel));
+        assertNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/group.?", 2L), channel));
+        assertNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/group.{id}", 2L), channel));
+        assertNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/user/queue/*", 2L), channel));
+        // 未登记的 topic、代理内部 topic 和直接订阅 /queue 都拒绝
+        assertNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/simp-user-registry", 2L), channel));
+        assertNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/other", 2L), channel));
+        assertNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/queue/chat-user1", 2L), channel));
+        assertEquals(8L, interceptor.getStats().get("rejectedSubscribes"));
+    }
+
+    @Test
+    void testAnonymousSession_CannotSubscribeOrSend() {
+        assertNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/user/queue/chat", null), channel));
+        assertNull(interceptor.preSend(frame(StompCommand.SEND, "/app/chat", null), channel));
+        assertNotNull(interceptor.preSend(frame(StompCommand.SEND, "/app/chat", 2L), channel));
+        // CONNECT 等其他帧不拦截
+        assertNotNull(interceptor.preSend(frame(StompCommand.CONNECT, null, null), channel));
+    }
+
+    @Test
+    void testDisabled_PassesEverything() {
+        ReflectionTestUtils.setField(interceptor, "enabled", false);
+        assertNotNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/group.3", null), channel));
+    }
+
+    private Message<byte[]> frame(StompCommand command, String destination, Long userId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setDestination(destination);
+        Map<String, Object> attributes = new HashMap<>();
+        if (userId != null) {
+            accessor.setUser(userId::toString);
+            attributes.put("userId", userId);
+        }
+        accessor.setSessionAttributes(attributes);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,47 @@
+package com.se_07.backend.config;
+
+import com.se_07.backend.service.impl.ChatMessageIdAllocator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebSocketConfigTest {
+
+    @Mock
+    private ChatMessageIdAllocator chatMessageIdAllocator;
+
+    @Mock
+    private MessageBrokerRegistry registry;
+
+    private WebSocketConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new WebSocketConfig();
+        ReflectionTestUtils.setField(config, "chatMessageIdAllocator", chatMessageIdAllocator);
+        ReflectionTestUtils.setField(config, "brokerMode", "relay");
+    }
+
+    @Test
+    void testRelayMode_LocalMessageIdsFailFast() {
+        when(chatMessageIdAllocator.getSource()).thenReturn(ChatMessageIdAllocator.Source.LOCAL);
+
+        assertThrows(IllegalStateException.class, () -> config.configureMessageBroker(registry));
+        verifyNoInteractions(registry);
+    }
+
+    @Test
+    void testRelayMode_DatabaseMessageIdsAccepted() {
+        when(chatMessageIdAllocator.getSource()).thenReturn(ChatMessageIdAllocator.Source.DATABASE);
+
+        assertDoesNotThrow(() -> config.checkSharedMessageIds());
+    }
+}
@@ -7,6 +7,7 @@ import com.se_07.backend.dto.RegisterRequest;
 import com.se_07.backend.service.AuthService;
 import com.se_07.backend.service.ChatMessageService;
 import com.se_07.backend.service.FriendService;
+import com.se_07.backend.service.impl.PresenceRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -22,6 +23,7 @@ import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -38,6 +40,9 @@ public class AuthControllerTest {
     
     @Mock
     private ChatMessageService chatMessageService;
+
+    @Mock
+    private PresenceRegistry presenceRegistry;
     
     @InjectMocks
     private AuthController authController;
@@ -313,6 +318,7 @@ public class AuthControllerTest {
         Long userId = 1L;
         List<Long> expectedFriends = Arrays.asList(2L, 3L, 4L);
         when(friendService.getAllFriends(userId)).thenReturn(expectedFriends);
+        when(presenceRegistry.onlineAmong(expectedFriends)).thenReturn(Set.of(2L));
         
         // Act
         ResponseEntity<Map<String, Object>> response = authController.getAllFriends(userId);
@@ -322,6 +328,7 @@ public class AuthControllerTest {
         assertNotNull(response.getBody());
         assertTrue((Boolean) response.getBody().get("success"));
         assertEquals(expectedFriends, response.getBody().get("friends"));
+        assertEquals(Set.of(2L), response.getBody().get("onlineFriends"));
         
         verify(friendService, times(1)).getAllFriends(userId);
     }
@@ -0,0 +1,92 @@
+package com.se_07.backend.controller;
+
+import com.se_07.backend.config.AdminAccess;
+import com.se_07.backend.config.StompAuthorizationInterceptor;
+import com.se_07.backend.service.impl.ChatMessageWriteBehind;
+import com.se_07.backend.service.impl.GroupMembershipIndex;
+import com.se_07.backend.service.impl.PresenceRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatAdminControllerTest {
+    @Mock
+    private ChatMessageWriteBehind chatMessageWriteBehind;
+    @Mock
+    private GroupMembershipIndex groupMembershipIndex;
+    @Mock
+    private StompAuthorizationInterceptor stompAuthorizationInterceptor;
+    @Mock
+    private PresenceRegistry presenceRegistry;
+    @Mock
+    private AdminAccess adminAccess;
+    @InjectMocks
+    private ChatAdminController controller;
+
+    private MockHttpSession session(Long userId) {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("userId", userId);
+        return session;
+    }
+
+    @Test
+    void getWriteBehindStats_admin() {
+        when(adminAccess.isAdmin(1L)).thenReturn(true);
+        when(chatMessageWriteBehind.getStats()).thenReturn(Map.of("queued", 2));
+        ResponseEntity<Map<String, Object>> resp = controller.getWriteBehindStats(session(1L));
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        assertEquals(Map.of("queued", 2), resp.getBody().get("data"));
+    }
+
+    @Test
+    void getWriteBehindStats_notLoggedIn() {
+        ResponseEntity<Map<String, Object>> resp = controller.getWriteBehindStats(new MockHttpSession());
+        assertEquals(HttpStatus.UNAUTHORIZED, resp.getStatusCode());
+        verifyNoInteractions(chatMessageWriteBehind, adminAccess);
+    }
+
+    @Test
+    void getWriteBehindStats_notAdmin() {
+        ResponseEntity<Map<String, Object>> resp = controller.getWriteBehindStats(session(2L));
+        assertEquals(HttpStatus.FORBIDDEN, resp.getStatusCode());
+        verifyNoInteractions(chatMessageWriteBehind);
+    }
+
+    @Test
+    void getAuthorizationStats_admin() {
+        when(adminAccess.isAdmin(1L)).thenReturn(true);
+        when(stompAuthorizationInterceptor.getStats()).thenReturn(Map.of("rejectedSubscribes", 0L));
+        when(groupMembershipIndex.getStats()).thenReturn(Map.of("groups", 3));
+        ResponseEntity<Map<String, Object>> resp = controller.getAuthorizationStats(session(1L));
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> data = (Map<String, Object>) resp.getBody().get("data");
+        assertEquals(0L, data.get("rejectedSubscribes"));
+        assertEquals(Map.of("groups", 3), data.get("membershipIndex"));
+    }
+
+    @Test
+    void getAuthorizationStats_notAdmin() {
+        ResponseEntity<Map<String, Object>> resp = controller.getAuthorizationStats(session(2L));
+        assertEquals(HttpStatus.FORBIDDEN, resp.getStatusCode());
+        verifyNoInteractions(stompAuthorizationInterceptor, groupMembershipIndex);
+    }
+
+    @Test
+    void getPresenceStats_notAdmin() {
+        ResponseEntity<Map<String, Object>> resp = controller.getPresenceStats(session(2L));
+        assertEquals(HttpStatus.FORBIDDEN, resp.getStatusCode());
+        verifyNoInteractions(presenceRegistry);
+    }
+}
@@ -9,6 +9,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpSession;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import java.util.Arrays;
@@ -17,6 +18,7 @@ import java.util.List;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -34,9 +36,13 @@ public class ChatControllerTest {
     private MockMvc mockMvc;
     private ObjectMapper objectMapper = new ObjectMapper();
 
+    private MockHttpSession session;
+
     @BeforeEach
     void setup() {
         mockMvc = MockMvcBuilders.standaloneSetup(chatController).build();
+        session = new MockHttpSession();
+        session.setAttribute("userId", 1L);
     }
 
     @Test
@@ -59,24 +65,74 @@ public class ChatControllerTest {
     void testGetMessagesBetween() throws Exception {
         ChatMessageDTO msg = new ChatMessageDTO();
         msg.setMessageId(1L); msg.setFromId(1L); msg.setToId(2L); msg.setContent("hello");
-        when(chatMessageService.getMessagesBetweenUsers(1L, 2L)).thenReturn(Arrays.asList(msg));
+        when(chatMessageService.getConversationPage(1L, 2L, null, null, null)).thenReturn(Arrays.asList(msg));
         mockMvc.perform(post("/chat/history")
+                .session(session)
                 .param("userId1", "1")
                 .param("userId2", "2"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].content").value("hello"));
-        verify(chatMessageService, times(1)).getMessagesBetweenUsers(1L, 2L);
+        verify(chatMessageService, times(1)).getConversationPage(1L, 2L, null, null, null);
+    }
+
+    @Test
+    void testGetMessagesBetween_WithCursor() throws Exception {
+        ChatMessageDTO msg = new ChatMessageDTO();
+        msg.setMessageId(5L); msg.setFromId(2L); msg.setToId(1L); msg.setContent("older");
+        when(chatMessageService.getConversationPage(1L, 2L, 20L, null, 10)).thenReturn(Arrays.asList(msg));
+        mockMvc.perform(post("/chat/history")
+                .session(session)
+                .param("userId1", "1")
+                .param("userId2", "2")
+                .param("beforeId", "20")
+                .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].messageId").value(5L));
     }
 
     @Test
     void testGetAllMessagesForUser() throws Exception {
         ChatMessageDTO msg = new ChatMessageDTO();
         msg.setMessageId(2L); msg.setFromId(1L); msg.setToId(3L); msg.setContent("all");
-        when(chatMessageService.getAllMessagesForUser(1L)).thenReturn(Collections.singletonList(msg));
+        when(chatMessageService.getUserMessagesPage(1L, null, 7L, null)).thenReturn(Collections.singletonList(msg));
         mockMvc.perform(get("/chat/all")
-                .param("userId", "1"))
+                .session(session)
+                .param("afterId", "7"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].content").value("all"));
-        verify(chatMessageService, times(1)).getAllMessagesForUser(1L);
+        verify(chatMessageService, times(1)).getUserMessagesPage(1L, null, 7L, null);
+    }
+
+    @Test
+    void testGetRecentConversations() throws Exception {
+        ChatMessageDTO msg = new ChatMessageDTO();
+        msg.setMessageId(9L); msg.setFromId(3L); msg.setToId(1L); msg.setContent("latest");
+        when(chatMessageService.getRecentConversations(1L, 20)).thenReturn(Collections.singletonList(msg));
+        mockMvc.perform(get("/chat/conversations")
+                .session(session)
+                .param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].content").value("latest"));
+    }
+
+    @Test
+    void testHistory_OtherUsersConversationForbidden() throws Exception {
+        mockMvc.perform(post("/chat/history")
+                .session(session)
+                .param("userId1", "2")
+                .param("userId2", "3"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(chatMessageService);
+    }
+
+    @Test
+    void testReads_RequireLogin() throws Exception {
+        mockMvc.perform(post("/chat/history").param("userId1", "1").param("userId2", "2"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/chat/all"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/chat/conversations").param("userId", "1"))
+                .andExpect(status().isUnauthorized());
+        verifyNoInteractions(chatMessageService);
     }
 }
\ No newline at end of file
@@ -2,7 +2,6 @@ package com.se_07.backend.chat.Controller;
 
 import com.se_07.backend.controller.ChatWebSocketController;
 import com.se_07.backend.dto.ChatMessageDTO;
-import com.se_07.backend.entity.ChatMessage;
 import com.se_07.backend.service.ChatMessageService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,7 +11,10 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 
-import static org.mockito.ArgumentMatchers.any;
+import java.security.Principal;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -36,16 +38,32 @@ public class ChatWebSocketControllerTest {
     @Test
     void testProcessMessage() {
         ChatMessageDTO input = buildDTO();
-        ChatMessage saved = new ChatMessage();
-        saved.setFromId(1L); saved.setToId(2L); saved.setContent("hello");
         ChatMessageDTO output = new ChatMessageDTO();
-        output.setFromId(1L); output.setToId(2L); output.setContent("hello");
-        when(chatMessageService.sendMessageDTO(any(ChatMessageDTO.class))).thenReturn(saved);
-        when(chatMessageService.toDTO(saved)).thenReturn(output);
-        chatWebSocketController.processMessage(input);
-        verify(chatMessageService, times(1)).sendMessageDTO(input);
-        verify(chatMessageService, times(1)).toDTO(saved);
-        verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/chat.2"), eq(output));
-        verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/chat.1"), eq(output));
+        output.setMessageId(10L); output.setFromId(1L); output.setToId(2L); output.setContent("hello");
+        when(chatMessageService.ingestMessage(input)).thenReturn(CompletableFuture.completedFuture(output));
+        chatWebSocketController.processMessage(input, null);
+        verify(chatMessageService, times(1)).ingestMessage(input);
+        verify(messagingTemplate, times(1)).convertAndSendToUser(eq("2"), eq("/queue/chat"), eq(output));
+        verify(messagingTemplate, times(1)).convertAndSendToUser(eq("1"), eq("/queue/chat"), eq(output));
+    }
+
+    @Test
+    void testProcessMessage_senderTakenFromPrincipal() {
+        ChatMessageDTO input = buildDTO();
+        input.setFromId(99L);
+        Principal principal = () -> "1";
+        when(chatMessageService.ingestMessage(input)).thenReturn(CompletableFuture.completedFuture(input));
+        chatWebSocketController.processMessage(input, principal);
+        assertEquals(1L, input.getFromId());
+        verify(messagingTemplate, times(1)).convertAndSendToUser(eq("1"), eq("/queue/chat"), eq(input));
+    }
+
+    @Test
+    void testProcessMessage_persistFailedNotBroadcast() {
+        ChatMessageDTO input = buildDTO();
+        when(chatMessageService.ingestMessage(input))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("db down")));
+        chatWebSocketController.processMessage(input, null);
+        verifyNoInteractions(messagingTemplate);
     }
-}
\ No newline at end of file
+}
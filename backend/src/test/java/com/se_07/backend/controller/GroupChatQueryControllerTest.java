@@ -1,9 +1,11 @@
 package com.se_07.backend.chat.Controller;
 
 import com.se_07.backend.controller.GroupChatQueryController;
+import com.se_07.backend.dto.GroupChatHistoryPage;
 import com.se_07.backend.dto.GroupChatMessageDTO;
 import com.se_07.backend.entity.GroupChatInformation;
 import com.se_07.backend.service.GroupChatQueryService;
+import com.se_07.backend.service.impl.GroupMembershipIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -22,6 +24,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 public class GroupChatQueryControllerTest {
     @Mock
     private GroupChatQueryService groupChatQueryService;
+    @Mock
+    private GroupMembershipIndex groupMembershipIndex;
     @InjectMocks
     private GroupChatQueryController controller;
     private MockMvc mockMvc;
@@ -82,4 +86,104 @@ public class GroupChatQueryControllerTest {
         mockMvc.perform(post("/group/listByUser"))
                 .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetGroupUpdatesByUser() throws Exception {
+        GroupChatMessageDTO msg = new GroupChatMessageDTO();
+        msg.setMessageId(41L); msg.setContent("new");
+        GroupChatHistoryPage history = new GroupChatHistoryPage();
+        history.setGroupId(1L);
+        history.setMessages(Collections.singletonList(msg));
+        history.setUnreadCount(1);
+        history.setLastReadMessageId(40L);
+        when(groupChatQueryService.getGroupUpdatesByUserId(1L, 40L, null)).thenReturn(Map.of(1L, history));
+        mockMvc.perform(get("/group/updatesByUser")
+                .sessionAttr("userId", 1L)
+                .param("sinceId", "40"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['1'].messages[0].messageId").value(41L))
+                .andExpect(jsonPath("$['1'].unreadCount").value(1))
+                .andExpect(jsonPath("$['1'].hasMore").value(false));
+    }
+
+    @Test
+    void testGetGroupUpdatesByUser_usesSessionUser() throws Exception {
+        // 请求中的 userId 被忽略，未登录时不能读取任何用户的群聊
+        mockMvc.perform(get("/group/updatesByUser")
+                .param("userId", "1"))
+                .andExpect(status().isUnauthorized());
+        verifyNoInteractions(groupChatQueryService);
+
+        when(groupChatQueryService.getGroupUpdatesByUserId(2L, null, null)).thenReturn(Map.of());
+        mockMvc.perform(get("/group/updatesByUser")
+                .sessionAttr("userId", 2L)
+                .param("userId", "1"))
+                .andExpect(status().isOk());
+        verify(groupChatQueryService).getGroupUpdatesByUserId(2L, null, null);
+    }
+
+    @Test
+    void testGetGroupMessages() throws Exception {
+        GroupChatMessageDTO msg = new GroupChatMessageDTO();
+        msg.setMessageId(5L); msg.setContent("older");
+        when(groupMembershipIndex.isMember(1L, 2L)).thenReturn(true);
+        when(groupChatQueryService.getGroupMessagesPage(1L, 10L, 20)).thenReturn(Collections.singletonList(msg));
+        mockMvc.perform(get("/group/messages")
+                .sessionAttr("userId", 2L)
+                .param("groupId", "1")
+                .param("beforeId", "10")
+                .param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].messageId").value(5L));
+    }
+
+    @Test
+    void testGetGroupMessages_notLoggedIn() throws Exception {
+        mockMvc.perform(get("/group/messages")
+                .param("groupId", "1"))
+                .andExpect(status().isUnauthorized());
+        verifyNoInteractions(groupChatQueryService);
+    }
+
+    @Test
+    void testGetGroupMessages_notMember() throws Exception {
+        when(groupMembershipIndex.isMember(1L, 3L)).thenReturn(false);
+        mockMvc.perform(get("/group/messages")
+                .sessionAttr("userId", 3L)
+                .param("groupId", "1"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(groupChatQueryService);
+    }
+
+    @Test
+    void testMarkGroupRead() throws Exception {
+        when(groupMembershipIndex.isMember(1L, 2L)).thenReturn(true);
+        mockMvc.perform(post("/group/read")
+                .sessionAttr("userId", 2L)
+                .param("groupId", "1")
+                .param("messageId", "41"))
+                .andExpect(status().isOk());
+        verify(groupChatQueryService).markGroupRead(1L, 2L, 41L);
+    }
+
+    @Test
+    void testMarkGroupRead_ignoresUserIdParameter() throws Exception {
+        when(groupMembershipIndex.isMember(1L, 3L)).thenReturn(false);
+        mockMvc.perform(post("/group/read")
+                .sessionAttr("userId", 3L)
+                .param("groupId", "1")
+                .param("userId", "2")
+                .param("messageId", "41"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(groupChatQueryService);
+    }
+
+    @Test
+    void testMarkGroupRead_notLoggedIn() throws Exception {
+        mockMvc.perform(post("/group/read")
+                .param("groupId", "1")
+                .param("messageId", "41"))
+                .andExpect(status().isUnauthorized());
+        verifyNoInteractions(groupChatQueryService);
+    }
+}
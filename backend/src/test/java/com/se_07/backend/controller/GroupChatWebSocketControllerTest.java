@@ -2,9 +2,8 @@ package com.se_07.backend.chat.Controller;
 
 import com.se_07.backend.controller.GroupChatWebSocketController;
 import com.se_07.backend.dto.GroupChatMessageDTO;
-import com.se_07.backend.entity.GroupChatMessage;
-import com.se_07.backend.repository.GroupChatMessageRepository;
 import com.se_07.backend.service.GroupChatService;
+import com.se_07.backend.service.impl.GroupMembershipIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,8 +11,8 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import java.util.Optional;
-import static org.mockito.ArgumentMatchers.any;
+import java.util.concurrent.CompletableFuture;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -24,7 +23,7 @@ public class GroupChatWebSocketControllerTest {
     @Mock
     private GroupChatService groupChatService;
     @Mock
-    private GroupChatMessageRepository groupChatMessageRepository;
+    private GroupMembershipIndex groupMembershipIndex;
     @InjectMocks
     private GroupChatWebSocketController controller;
 
@@ -37,34 +36,35 @@ public class GroupChatWebSocketControllerTest {
     }
 
     @Test
-    void testProcessGroupMessage_entityFound() {
+    void testProcessGroupMessage() {
         GroupChatMessageDTO input = buildDTO();
-        GroupChatMessageDTO saved = new GroupChatMessageDTO();
-        saved.setMessageId(10L); saved.setGroupId(1L); saved.setUserId(2L); saved.setContent("hello");
-        GroupChatMessage entity = new GroupChatMessage();
-        entity.setMessageId(10L); entity.setGroupId(1L); entity.setUserId(2L); entity.setContent("hello");
         GroupChatMessageDTO dto = new GroupChatMessageDTO();
         dto.setMessageId(10L); dto.setGroupId(1L); dto.setUserId(2L); dto.setContent("hello"); dto.setUserName("张三");
-        when(groupChatService.sendGroupMessage(input)).thenReturn(saved);
-        when(groupChatMessageRepository.findById(10L)).thenReturn(Optional.of(entity));
-        when(groupChatService.toDTO(entity)).thenReturn(dto);
-        controller.processGroupMessage(input);
-        verify(groupChatService, times(1)).sendGroupMessage(input);
-        verify(groupChatMessageRepository, times(1)).findById(10L);
-        verify(groupChatService, times(1)).toDTO(entity);
+        when(groupMembershipIndex.isMember(1L, 2L)).thenReturn(true);
+        when(groupChatService.ingestGroupMessage(input)).thenReturn(CompletableFuture.completedFuture(dto));
+        controller.processGroupMessage(input, null);
+        verify(groupChatService, times(1)).ingestGroupMessage(input);
         verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/group.1"), eq(dto));
     }
 
     @Test
-    void testProcessGroupMessage_entityNotFound() {
+    void testProcessGroupMessage_nonMemberRejected() {
         GroupChatMessageDTO input = buildDTO();
-        GroupChatMessageDTO saved = new GroupChatMessageDTO();
-        saved.setMessageId(11L); saved.setGroupId(1L); saved.setUserId(2L); saved.setContent("hello");
-        when(groupChatService.sendGroupMessage(input)).thenReturn(saved);
-        when(groupChatMessageRepository.findById(11L)).thenReturn(Optional.empty());
-        controller.processGroupMessage(input);
-        verify(groupChatService, times(1)).sendGroupMessage(input);
-        verify(groupChatMessageRepository, times(1)).findById(11L);
-        verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/group.1"), eq(saved));
+        // 消息体声称的发送者是成员，但连接的登录用户不是
+        when(groupMembershipIndex.isMember(1L, 5L)).thenReturn(false);
+        controller.processGroupMessage(input, () -> "5");
+        assertEquals(5L, input.getUserId());
+        verifyNoInteractions(groupChatService, messagingTemplate);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testProcessGroupMessage_persistFailedNotBroadcast() {
+        GroupChatMessageDTO input = buildDTO();
+        when(groupMembershipIndex.isMember(1L, 2L)).thenReturn(true);
+        when(groupChatService.ingestGroupMessage(input))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("db down")));
+        controller.processGroupMessage(input, null);
+        verify(groupChatService, times(1)).ingestGroupMessage(input);
+        verifyNoInteractions(messagingTemplate);
+    }
+}
@@ -2,6 +2,7 @@ package com.se_07.backend.controller;
 
 import com.se_07.backend.dto.ActivityCreateRequest;
 import com.se_07.backend.dto.AmapActivityCreateRequest;
+import com.se_07.backend.dto.DayPlanBatchRequest;
 import com.se_07.backend.dto.ItineraryActivityDTO;
 import com.se_07.backend.dto.TransportModeUpdateRequest;
 import com.se_07.backend.service.ItineraryActivityService;
@@ -11,6 +12,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -229,4 +231,30 @@ class ItineraryActivityControllerTest {
         ResponseEntity<ItineraryActivityDTO> resp = controller.updateActivityAmapAttraction(activityId, req, session);
         assertEquals(HttpStatus.BAD_REQUEST, resp.getStatusCode());
     }
-}
\ No newline at end of file
+
+    @Test
+    void applyDayPlan_success() {
+        DayPlanBatchRequest req = new DayPlanBatchRequest();
+        List<ItineraryActivityDTO> list = Collections.singletonList(new ItineraryActivityDTO());
+        when(activityService.applyDayPlan(userId, dayId, req)).thenReturn(list);
+        ResponseEntity<List<ItineraryActivityDTO>> resp = controller.applyDayPlan(dayId, req, session);
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        assertEquals(list, resp.getBody());
+    }
+
+    @Test
+    void applyDayPlan_unauthorized() {
+        when(session.getAttribute("userId")).thenReturn(null);
+        ResponseEntity<List<ItineraryActivityDTO>> resp = controller.applyDayPlan(dayId, new DayPlanBatchRequest(), session);
+        assertEquals(HttpStatus.UNAUTHORIZED, resp.getStatusCode());
+        verifyNoInteractions(activityService);
+    }
+
+    @Test
+    void applyDayPlan_versionConflict() {
+        DayPlanBatchRequest req = new DayPlanBatchRequest();
+        when(activityService.applyDayPlan(userId, dayId, req)).thenThrow(new OptimisticLockingFailureException("stale"));
+        ResponseEntity<List<ItineraryActivityDTO>> resp = controller.applyDayPlan(dayId, req, session);
+        assertEquals(HttpStatus.CONFLICT, resp.getStatusCode());
+    }
+}
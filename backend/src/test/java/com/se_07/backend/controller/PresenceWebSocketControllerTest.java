@@ -0,0 +1,56 @@
+package com.se_07.backend.controller;
+
+import com.se_07.backend.dto.TypingEventDTO;
+import com.se_07.backend.service.impl.GroupMembershipIndex;
+import com.se_07.backend.service.impl.PresenceRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PresenceWebSocketControllerTest {
+    @Mock
+    private PresenceRegistry presenceRegistry;
+    @Mock
+    private GroupMembershipIndex groupMembershipIndex;
+    @InjectMocks
+    private PresenceWebSocketController controller;
+
+    @Test
+    void testTyping_GroupMember() {
+        TypingEventDTO event = new TypingEventDTO();
+        event.setGroupId(10L);
+        when(groupMembershipIndex.isMember(10L, 1L)).thenReturn(true);
+        controller.typing(event, () -> "1");
+        verify(presenceRegistry).groupTyping(10L, 1L);
+    }
+
+    @Test
+    void testTyping_NonMemberIgnored() {
+        TypingEventDTO event = new TypingEventDTO();
+        event.setGroupId(10L);
+        when(groupMembershipIndex.isMember(10L, 1L)).thenReturn(false);
+        controller.typing(event, () -> "1");
+        verifyNoInteractions(presenceRegistry);
+    }
+
+    @Test
+    void testTyping_Direct() {
+        TypingEventDTO event = new TypingEventDTO();
+        event.setToId(2L);
+        controller.typing(event, () -> "1");
+        verify(presenceRegistry).directTyping(2L, 1L);
+    }
+
+    @Test
+    void testTyping_AnonymousIgnored() {
+        TypingEventDTO event = new TypingEventDTO();
+        event.setToId(2L);
+        controller.typing(event, null);
+        verifyNoInteractions(presenceRegistry, groupMembershipIndex);
+    }
+}
@@ -0,0 +1,66 @@
+package com.se_07.backend.controller;
+
+import com.se_07.backend.config.AdminAccess;
+import com.se_07.backend.service.impl.SearchIndexOutboxRelay;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SearchIndexAdminControllerTest {
+    @Mock
+    private SearchIndexOutboxRelay searchIndexOutbox;
+    @Mock
+    private AdminAccess adminAccess;
+    @InjectMocks
+    private SearchIndexAdminController controller;
+
+    @Test
+    void getLag_normal() {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("userId", 1L);
+        when(adminAccess.isAdmin(1L)).thenReturn(true);
+        when(searchIndexOutbox.getLag()).thenReturn(Map.of("outboxPending", 3L));
+        ResponseEntity<Map<String, Object>> resp = controller.getLag(session);
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        assertTrue((Boolean) resp.getBody().get("success"));
+        assertEquals(Map.of("outboxPending", 3L), resp.getBody().get("data"));
+    }
+
+    @Test
+    void getLag_notLoggedIn() {
+        ResponseEntity<Map<String, Object>> resp = controller.getLag(new MockHttpSession());
+        assertEquals(HttpStatus.UNAUTHORIZED, resp.getStatusCode());
+        verifyNoInteractions(searchIndexOutbox);
+    }
+
+    @Test
+    void getLag_notAdmin() {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("userId", 2L);
+        ResponseEntity<Map<String, Object>> resp = controller.getLag(session);
+        assertEquals(HttpStatus.FORBIDDEN, resp.getStatusCode());
+        verifyNoInteractions(searchIndexOutbox);
+    }
+
+    @Test
+    void getLag_exception() {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("userId", 1L);
+        when(adminAccess.isAdmin(1L)).thenReturn(true);
+        when(searchIndexOutbox.getLag()).thenThrow(new RuntimeException("db error"));
+        ResponseEntity<Map<String, Object>> resp = controller.getLag(session);
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, resp.getStatusCode());
+        assertFalse((Boolean) resp.getBody().get("success"));
+    }
+}
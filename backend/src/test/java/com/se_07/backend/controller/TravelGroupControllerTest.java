@@ -12,6 +12,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpSession;
@@ -95,7 +97,7 @@ public class TravelGroupControllerTest {
         when(travelGroupService.getPublicRecruitingGroups(1L)).thenReturn(groups);
         
         // Act
-        ResponseEntity<Map<String, Object>> response = travelGroupController.getPublicGroups(mockSession);
+        ResponseEntity<Map<String, Object>> response = travelGroupController.getPublicGroups(null, 20, mockSession);
         
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -112,7 +114,7 @@ public class TravelGroupControllerTest {
         when(travelGroupService.getPublicRecruitingGroups(1L)).thenThrow(new RuntimeException("Database error"));
         
         // Act
-        ResponseEntity<Map<String, Object>> response = travelGroupController.getPublicGroups(mockSession);
+        ResponseEntity<Map<String, Object>> response = travelGroupController.getPublicGroups(null, 20, mockSession);
         
         // Assert
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
@@ -132,7 +134,7 @@ public class TravelGroupControllerTest {
         
         // Act
         ResponseEntity<Map<String, Object>> response = travelGroupController.searchPublicGroups(
-                "北京", "title", "2024-01-01", "2024-12-31", mockSession);
+                "北京", "title", "2024-01-01", "2024-12-31", null, 20, mockSession);
         
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -152,7 +154,7 @@ public class TravelGroupControllerTest {
         
         // Act
         ResponseEntity<Map<String, Object>> response = travelGroupController.searchPublicGroups(
-                null, null, null, null, mockSession);
+                null, null, null, null, null, 20, mockSession);
         
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -163,6 +165,25 @@ public class TravelGroupControllerTest {
         verify(travelGroupService, times(1)).getPublicRecruitingGroupsWithSearch(1L, null, null, null, null);
     }
 
+    @Test
+    void testSearchPublicGroups_Paged() {
+        // Arrange
+        List<TravelGroupDTO> groups = Arrays.asList(travelGroupDTO);
+        when(travelGroupService.searchRecruitingGroups("北京", "title", null, null, PageRequest.of(2, 10)))
+                .thenReturn(new PageImpl<>(groups, PageRequest.of(2, 10), 21));
+        
+        // Act
+        ResponseEntity<Map<String, Object>> response = travelGroupController.searchPublicGroups(
+                "北京", "title", null, null, 2, 10, mockSession);
+        
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(groups, response.getBody().get("data"));
+        assertEquals(21L, response.getBody().get("total"));
+        assertEquals(2, response.getBody().get("page"));
+        verify(travelGroupService, never()).getPublicRecruitingGroupsWithSearch(any(), any(), any(), any(), any());
+    }
+
     @Test
     void testSearchPublicGroups_Exception() {
         // Arrange
@@ -171,7 +192,7 @@ public class TravelGroupControllerTest {
         
         // Act
         ResponseEntity<Map<String, Object>> response = travelGroupController.searchPublicGroups(
-                "北京", "title", "2024-01-01", "2024-12-31", mockSession);
+                "北京", "title", "2024-01-01", "2024-12-31", null, 20, mockSession);
         
         // Assert
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
@@ -22,8 +22,6 @@ class ItineraryDayDTOTest {
         Integer dayNumber = 3;
         LocalDate date = LocalDate.of(2024, 6, 1);
         String title = "日程标题";
-        Long firstActivityId = 4L;
-        Long lastActivityId = 5L;
         String accommodation = "酒店";
         String notes = "备注";
         String weatherInfo = "晴";
@@ -45,8 +43,6 @@ class ItineraryDayDTOTest {
         dto1.setDayNumber(dayNumber);
         dto1.setDate(date);
         dto1.setTitle(title);
-        dto1.setFirstActivityId(firstActivityId);
-        dto1.setLastActivityId(lastActivityId);
         dto1.setAccommodation(accommodation);
         dto1.setNotes(notes);
         dto1.setWeatherInfo(weatherInfo);
@@ -66,8 +62,6 @@ class ItineraryDayDTOTest {
         assertEquals(dayNumber, dto1.getDayNumber());
         assertEquals(date, dto1.getDate());
         assertEquals(title, dto1.getTitle());
-        assertEquals(firstActivityId, dto1.getFirstActivityId());
-        assertEquals(lastActivityId, dto1.getLastActivityId());
         assertEquals(accommodation, dto1.getAccommodation());
         assertEquals(notes, dto1.getNotes());
         assertEquals(weatherInfo, dto1.getWeatherInfo());
@@ -87,8 +81,6 @@ class ItineraryDayDTOTest {
         dto2.setDayNumber(dayNumber);
         dto2.setDate(date);
         dto2.setTitle(title);
-        dto2.setFirstActivityId(firstActivityId);
-        dto2.setLastActivityId(lastActivityId);
         dto2.setAccommodation(accommodation);
         dto2.setNotes(notes);
         dto2.setWeatherInfo(weatherInfo);
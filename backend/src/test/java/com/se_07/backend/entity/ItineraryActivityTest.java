@@ -15,8 +15,7 @@ class ItineraryActivityTest {
         a1.setEndTime(LocalTime.of(9,0));
         a1.setTransportMode("bus");
         a1.setAttractionNotes("note");
-        a1.setPrevId(2L);
-        a1.setNextId(3L);
+        a1.setPosition(2048L);
         assertEquals(1L, a1.getId());
         assertNotNull(a1.getItineraryDay());
         assertEquals("a", a1.getTitle());
@@ -25,8 +24,7 @@ class ItineraryActivityTest {
         assertEquals(LocalTime.of(9,0), a1.getEndTime());
         assertEquals("bus", a1.getTransportMode());
         assertEquals("note", a1.getAttractionNotes());
-        assertEquals(2L, a1.getPrevId());
-        assertEquals(3L, a1.getNextId());
+        assertEquals(2048L, a1.getPosition());
         // equals/hashCode
         ItineraryActivity a2 = new ItineraryActivity();
         a2.setId(1L);
@@ -68,7 +66,7 @@ class ItineraryActivityTest {
         ItineraryActivity a = new ItineraryActivity();
         a.setId(1L); a.setItineraryDay(new ItineraryDay()); a.setTitle("a");
         a.setAttraction(new Attraction()); a.setStartTime(LocalTime.of(8,0)); a.setEndTime(LocalTime.of(9,0));
-        a.setTransportMode("bus"); a.setAttractionNotes("note"); a.setPrevId(2L); a.setNextId(3L);
+        a.setTransportMode("bus"); a.setAttractionNotes("note"); a.setPosition(2048L);
         String s = a.toString();
         assertTrue(s.contains("a"));
         assertTrue(s.contains("bus") || s.contains("note"));
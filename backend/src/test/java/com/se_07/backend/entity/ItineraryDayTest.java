@@ -12,15 +12,11 @@ class ItineraryDayTest {
         d1.setDayNumber(2);
         d1.setDate(LocalDate.now());
         d1.setTitle("day");
-        d1.setFirstActivityId(10L);
-        d1.setLastActivityId(20L);
         assertEquals(1L, d1.getId());
         assertNotNull(d1.getItinerary());
         assertEquals(2, d1.getDayNumber());
         assertEquals(LocalDate.now(), d1.getDate());
         assertEquals("day", d1.getTitle());
-        assertEquals(10L, d1.getFirstActivityId());
-        assertEquals(20L, d1.getLastActivityId());
         // equals/hashCode
         ItineraryDay d2 = new ItineraryDay();
         d2.setId(1L);
@@ -61,7 +57,7 @@ class ItineraryDayTest {
     @Test void testToStringAllFields() {
         ItineraryDay d = new ItineraryDay();
         d.setId(1L); d.setItinerary(new Itinerary()); d.setDayNumber(2);
-        d.setDate(LocalDate.now()); d.setTitle("day"); d.setFirstActivityId(10L); d.setLastActivityId(20L);
+        d.setDate(LocalDate.now()); d.setTitle("day"); d.setNotes("n10");
         String s = d.toString();
         assertTrue(s.contains("day"));
         assertTrue(s.contains("10") || s.contains("20"));
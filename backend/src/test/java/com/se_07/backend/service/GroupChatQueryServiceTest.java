@@ -1,20 +1,24 @@
 package com.se_07.backend.chat.Service;
 
+import com.se_07.backend.dto.GroupChatHistoryPage;
 import com.se_07.backend.dto.GroupChatMessageDTO;
 import com.se_07.backend.entity.GroupChatInformation;
+import com.se_07.backend.entity.GroupChatMember;
 import com.se_07.backend.entity.GroupChatMessage;
-import com.se_07.backend.entity.User;
 import com.se_07.backend.repository.GroupChatInformationRepository;
 import com.se_07.backend.repository.GroupChatMemberRepository;
 import com.se_07.backend.repository.GroupChatMessageRepository;
 import com.se_07.backend.repository.UserRepository;
 import com.se_07.backend.service.GroupChatQueryService;
+import com.se_07.backend.service.impl.UserSummaryCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
 import java.time.LocalDateTime;
 import java.util.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -35,7 +39,10 @@ public class GroupChatQueryServiceTest {
 
     @BeforeEach
     public void setUp() {
-        // MockitoExtension自动处理
+        // 使用真实的用户摘要缓存，底层查询由 userRepository mock 提供
+        UserSummaryCache userSummaryCache = new UserSummaryCache();
+        ReflectionTestUtils.setField(userSummaryCache, "userRepository", userRepository);
+        ReflectionTestUtils.setField(groupChatQueryService, "userSummaryCache", userSummaryCache);
     }
 
     // getGroupsByUserId 测试
@@ -74,11 +81,9 @@ public class GroupChatQueryServiceTest {
         // group 20 无消息
         when(groupChatMessageRepository.findByGroupIdOrderByMessageTimeAsc(10L)).thenReturn(Arrays.asList(msg1, msg2));
         when(groupChatMessageRepository.findByGroupIdOrderByMessageTimeAsc(20L)).thenReturn(Collections.emptyList());
-        // 用户名查找
-        User user100 = new User(); user100.setId(100L); user100.setUsername("张三");
-        User user101 = new User(); user101.setId(101L); user101.setUsername("李四");
-        when(userRepository.findById(100L)).thenReturn(Optional.of(user100));
-        when(userRepository.findById(101L)).thenReturn(Optional.of(user101));
+        // 用户名一次批量查找
+        when(userRepository.findSummariesByIdIn(Set.of(100L, 101L))).thenReturn(Arrays.asList(
+                new Object[]{100L, "张三", null}, new Object[]{101L, "李四", null}));
         Map<Long, List<GroupChatMessageDTO>> result = groupChatQueryService.getGroupHistoriesByUserId(userId);
         assertEquals(2, result.size());
         assertEquals(2, result.get(10L).size());
@@ -103,10 +108,88 @@ public class GroupChatQueryServiceTest {
         GroupChatMessage msg = new GroupChatMessage();
         msg.setMessageId(3L); msg.setGroupId(30L); msg.setUserId(999L); msg.setContent("test"); msg.setMessageTime(LocalDateTime.now());
         when(groupChatMessageRepository.findByGroupIdOrderByMessageTimeAsc(30L)).thenReturn(Arrays.asList(msg));
-        when(userRepository.findById(999L)).thenReturn(Optional.empty());
+        when(userRepository.findSummariesByIdIn(Set.of(999L))).thenReturn(Collections.emptyList());
         Map<Long, List<GroupChatMessageDTO>> result = groupChatQueryService.getGroupHistoriesByUserId(userId);
         assertEquals(1, result.size());
         assertEquals(1, result.get(30L).size());
         assertNull(result.get(30L).get(0).getUserName());
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testGetGroupUpdatesByUserId_usesReadCursorAndCapsPerGroup() {
+        Long userId = 1L;
+        // 群10 已读到 40，水位之后有 3 条但只取 2 条；群20 从未读过，返回最近消息
+        when(groupChatMemberRepository.findByUserId(userId)).thenReturn(Arrays.asList(member(10L, userId, 40L), member(20L, userId, null)));
+        when(groupChatMessageRepository.countUnreadByUserId(userId)).thenReturn(Arrays.asList(
+                new Object[]{10L, 3L}, new Object[]{20L, 1L}));
+        when(groupChatMessageRepository.findLatestAfter(10L, 40L, PageRequest.of(0, 3)))
+                .thenReturn(Arrays.asList(message(43L, 10L, 100L), message(42L, 10L, 101L), message(41L, 10L, 100L)));
+        when(groupChatMessageRepository.findLatestAfter(20L, 0L, PageRequest.of(0, 3)))
+                .thenReturn(Arrays.asList(message(7L, 20L, 101L)));
+        when(userRepository.findSummariesByIdIn(Set.of(100L, 101L))).thenReturn(Arrays.asList(
+                new Object[]{100L, "张三", null}, new Object[]{101L, "李四", null}));
+
+        Map<Long, GroupChatHistoryPage> result = groupChatQueryService.getGroupUpdatesByUserId(userId, null, 2);
+
+        GroupChatHistoryPage group10 = result.get(10L);
+        assertTrue(group10.isHasMore());
+        assertEquals(3L, group10.getUnreadCount());
+        assertEquals(40L, group10.getLastReadMessageId());
+        assertEquals(Arrays.asList(42L, 43L), group10.getMessages().stream().map(GroupChatMessageDTO::getMessageId).toList());
+        assertEquals("李四", group10.getMessages().get(0).getUserName());
+        GroupChatHistoryPage group20 = result.get(20L);
+        assertFalse(group20.isHasMore());
+        assertEquals(1, group20.getMessages().size());
+    }
+
+    @Test
+    public void testGetGroupUpdatesByUserId_clientWatermarkOverridesReadCursor() {
+        Long userId = 1L;
+        when(groupChatMemberRepository.findByUserId(userId)).thenReturn(Collections.singletonList(member(10L, userId, 40L)));
+        when(groupChatMessageRepository.countUnreadByUserId(userId)).thenReturn(Collections.emptyList());
+        when(groupChatMessageRepository.findLatestAfter(10L, 45L, PageRequest.of(0, 51))).thenReturn(Collections.emptyList());
+
+        Map<Long, GroupChatHistoryPage> result = groupChatQueryService.getGroupUpdatesByUserId(userId, 45L, null);
+
+        assertTrue(result.get(10L).getMessages().isEmpty());
+        assertEquals(0L, result.get(10L).getUnreadCount());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    public void testGetGroupMessagesPage_returnsOlderMessagesAscending() {
+        when(groupChatMessageRepository.findBefore(10L, 42L, PageRequest.of(0, 200)))
+                .thenReturn(Arrays.asList(message(41L, 10L, 100L), message(30L, 10L, 100L)));
+        when(userRepository.findSummariesByIdIn(Set.of(100L))).thenReturn(
+                Collections.singletonList(new Object[]{100L, "张三", null}));
+
+        List<GroupChatMessageDTO> result = groupChatQueryService.getGroupMessagesPage(10L, 42L, 1000);
+
+        assertEquals(Arrays.asList(30L, 41L), result.stream().map(GroupChatMessageDTO::getMessageId).toList());
+    }
+
+    @Test
+    public void testMarkGroupRead_advancesCursor() {
+        when(groupChatMemberRepository.advanceReadCursor(10L, 1L, 43L)).thenReturn(1);
+        groupChatQueryService.markGroupRead(10L, 1L, 43L);
+        verify(groupChatMemberRepository).advanceReadCursor(10L, 1L, 43L);
+    }
+
+    private GroupChatMember member(Long groupId, Long userId, Long lastReadMessageId) {
+        GroupChatMember member = new GroupChatMember();
+        member.setGroupId(groupId);
+        member.setUserId(userId);
+        member.setLastReadMessageId(lastReadMessageId);
+        return member;
+    }
+
+    private GroupChatMessage message(Long messageId, Long groupId, Long userId) {
+        GroupChatMessage msg = new GroupChatMessage();
+        msg.setMessageId(messageId);
+        msg.setGroupId(groupId);
+        msg.setUserId(userId);
+        msg.setContent("m" + messageId);
+        msg.setMessageTime(LocalDateTime.now());
+        return msg;
+    }
+}
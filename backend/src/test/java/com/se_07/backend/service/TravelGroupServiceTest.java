@@ -4,6 +4,7 @@ import com.se_07.backend.dto.CreateTravelGroupRequest;
 import com.se_07.backend.dto.TravelGroupDTO;
 import com.se_07.backend.entity.*;
 import com.se_07.backend.repository.*;
+import com.se_07.backend.service.impl.GroupRecommendationIndex;
 import com.se_07.backend.service.impl.TravelGroupServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +12,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -18,6 +23,7 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -45,6 +51,12 @@ class TravelGroupServiceTest {
     @Mock
     private GroupChatManageService groupChatManageService;
 
+    @Mock
+    private UserPreferencesRepository userPreferencesRepository;
+
+    @Mock
+    private GroupRecommendationIndex groupRecommendationIndex;
+
     @InjectMocks
     private TravelGroupServiceImpl travelGroupService;
 
@@ -239,11 +251,9 @@ class TravelGroupServiceTest {
     @Test
     void testGetPublicRecruitingGroups() {
         // 准备
-        List<TravelGroup> groups = Arrays.asList(testGroup);
-        when(travelGroupRepository.findAll()).thenReturn(groups);
-        when(memberRepository.countByGroupAndJoinStatus(any(TravelGroup.class), any(TravelGroupMember.JoinStatus.class)))
-                .thenReturn(1L);
-        when(memberRepository.findByGroupId(1L)).thenReturn(Arrays.asList(testMember));
+        when(travelGroupRepository.searchRecruiting(TravelGroup.GroupStatus.招募中, null, null, null, null, null, Pageable.unpaged()))
+                .thenReturn(new PageImpl<>(Arrays.asList(testGroup)));
+        when(memberRepository.findWithUserByGroupIdIn(Arrays.asList(1L))).thenReturn(Arrays.asList(testMember));
 
         // 执行
         List<TravelGroupDTO> result = travelGroupService.getPublicRecruitingGroups(1L);
@@ -252,65 +262,80 @@ class TravelGroupServiceTest {
         assertNotNull(result);
         assertEquals(1, result.size());
         assertEquals("测试组团", result.get(0).getTitle());
+        assertEquals(1, result.get(0).getMembers().size());
+        verify(travelGroupRepository, never()).findAll();
+        verify(memberRepository, never()).findByGroupId(anyLong());
+        verify(memberRepository, never()).countByGroupAndJoinStatus(any(), any());
     }
 
     @Test
-    void testGetPublicRecruitingGroups_NotPublic() {
-        // 准备
-        testGroup.setIsPublic(false);
-        List<TravelGroup> groups = Arrays.asList(testGroup);
-        when(travelGroupRepository.findAll()).thenReturn(groups);
+    void testGetPublicRecruitingGroups_Empty() {
+        // 准备：公开、招募中、未满员的过滤都在查询中完成
+        when(travelGroupRepository.searchRecruiting(any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(new PageImpl<>(Collections.emptyList()));
 
         // 执行
         List<TravelGroupDTO> result = travelGroupService.getPublicRecruitingGroups(1L);
 
         // 验证
-        assertNotNull(result);
-        assertEquals(0, result.size());
+        assertTrue(result.isEmpty());
+        verify(memberRepository, never()).findWithUserByGroupIdIn(any());
     }
 
     @Test
-    void testGetPublicRecruitingGroups_NotRecruiting() {
+    void testGetPublicRecruitingGroups_MembersGroupedByGroup() {
         // 准备
-        testGroup.setStatus(TravelGroup.GroupStatus.已满员);
-        List<TravelGroup> groups = Arrays.asList(testGroup);
-        when(travelGroupRepository.findAll()).thenReturn(groups);
+        TravelGroup other = new TravelGroup();
+        other.setId(2L);
+        other.setTitle("另一个组团");
+        other.setMaxMembers(4);
+        other.setCurrentMembers(1);
+        other.setCreator(testUser);
+        other.setDestination(testDestination);
+        other.setTravelTags(new ArrayList<>());
+        TravelGroupMember otherMember = new TravelGroupMember();
+        otherMember.setGroup(other);
+        otherMember.setUser(testUser);
+        when(travelGroupRepository.searchRecruiting(any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(new PageImpl<>(Arrays.asList(other, testGroup)));
+        when(memberRepository.findWithUserByGroupIdIn(Arrays.asList(2L, 1L)))
+                .thenReturn(Arrays.asList(testMember, otherMember, otherMember));
 
         // 执行
         List<TravelGroupDTO> result = travelGroupService.getPublicRecruitingGroups(1L);
 
-        // 验证
-        assertNotNull(result);
-        assertEquals(0, result.size());
+        // 验证：保持查询顺序，成员按组团归属
+        assertEquals(2, result.size());
+        assertEquals(2L, result.get(0).getId());
+        assertEquals(2, result.get(0).getMembers().size());
+        assertEquals(1, result.get(1).getMembers().size());
+        verify(memberRepository, times(1)).findWithUserByGroupIdIn(any());
     }
 
     @Test
-    void testGetPublicRecruitingGroups_Full() {
+    void testGetPublicRecruitingGroupsWithSearch() {
         // 准备
-        List<TravelGroup> groups = Arrays.asList(testGroup);
-        when(travelGroupRepository.findAll()).thenReturn(groups);
-        when(memberRepository.countByGroupAndJoinStatus(any(TravelGroup.class), any(TravelGroupMember.JoinStatus.class)))
-                .thenReturn(6L); // 已满员
+        when(travelGroupRepository.searchRecruiting(TravelGroup.GroupStatus.招募中, "%测试%", null, null, null, null, Pageable.unpaged()))
+                .thenReturn(new PageImpl<>(Arrays.asList(testGroup)));
+        when(memberRepository.findWithUserByGroupIdIn(any())).thenReturn(Arrays.asList(testMember));
 
         // 执行
-        List<TravelGroupDTO> result = travelGroupService.getPublicRecruitingGroups(1L);
+        List<TravelGroupDTO> result = travelGroupService.getPublicRecruitingGroupsWithSearch(1L, "测试", "groupName", null, null);
 
         // 验证
         assertNotNull(result);
-        assertEquals(0, result.size());
+        assertEquals(1, result.size());
     }
 
     @Test
-    void testGetPublicRecruitingGroupsWithSearch() {
+    void testGetPublicRecruitingGroupsWithSearch_ByCreator() {
         // 准备
-        List<TravelGroup> groups = Arrays.asList(testGroup);
-        when(travelGroupRepository.findAll()).thenReturn(groups);
-        when(memberRepository.countByGroupAndJoinStatus(any(TravelGroup.class), any(TravelGroupMember.JoinStatus.class)))
-                .thenReturn(1L);
-        when(memberRepository.findByGroupId(1L)).thenReturn(Arrays.asList(testMember));
+        when(travelGroupRepository.searchRecruiting(TravelGroup.GroupStatus.招募中, null, "%testuser%", null, null, null, Pageable.unpaged()))
+                .thenReturn(new PageImpl<>(Arrays.asList(testGroup)));
+        when(memberRepository.findWithUserByGroupIdIn(any())).thenReturn(Arrays.asList(testMember));
 
         // 执行
-        List<TravelGroupDTO> result = travelGroupService.getPublicRecruitingGroupsWithSearch(1L, "测试", "groupName", null, null);
+        List<TravelGroupDTO> result = travelGroupService.getPublicRecruitingGroupsWithSearch(1L, "TestUser ", "creator", null, null);
 
         // 验证
         assertNotNull(result);
@@ -318,16 +343,14 @@ class TravelGroupServiceTest {
     }
 
     @Test
-    void testGetPublicRecruitingGroupsWithSearch_ByCreator() {
+    void testGetPublicRecruitingGroupsWithSearch_ByDestination() {
         // 准备
-        List<TravelGroup> groups = Arrays.asList(testGroup);
-        when(travelGroupRepository.findAll()).thenReturn(groups);
-        when(memberRepository.countByGroupAndJoinStatus(any(TravelGroup.class), any(TravelGroupMember.JoinStatus.class)))
-                .thenReturn(1L);
-        when(memberRepository.findByGroupId(1L)).thenReturn(Arrays.asList(testMember));
+        when(travelGroupRepository.searchRecruiting(TravelGroup.GroupStatus.招募中, null, null, "%上海%", null, null, Pageable.unpaged()))
+                .thenReturn(new PageImpl<>(Arrays.asList(testGroup)));
+        when(memberRepository.findWithUserByGroupIdIn(any())).thenReturn(Arrays.asList(testMember));
 
         // 执行
-        List<TravelGroupDTO> result = travelGroupService.getPublicRecruitingGroupsWithSearch(1L, "testuser", "creator", null, null);
+        List<TravelGroupDTO> result = travelGroupService.getPublicRecruitingGroupsWithSearch(1L, "上海", "destination", null, null);
 
         // 验证
         assertNotNull(result);
@@ -335,40 +358,53 @@ class TravelGroupServiceTest {
     }
 
     @Test
-    void testGetPublicRecruitingGroupsWithSearch_ByDestination() {
+    void testGetPublicRecruitingGroupsWithSearch_EscapesLikeWildcards() {
         // 准备
-        List<TravelGroup> groups = Arrays.asList(testGroup);
-        when(travelGroupRepository.findAll()).thenReturn(groups);
-        when(memberRepository.countByGroupAndJoinStatus(any(TravelGroup.class), any(TravelGroupMember.JoinStatus.class)))
-                .thenReturn(1L);
-        when(memberRepository.findByGroupId(1L)).thenReturn(Arrays.asList(testMember));
+        when(travelGroupRepository.searchRecruiting(TravelGroup.GroupStatus.招募中, "%50\\%\\_off%", null, null, null, null, Pageable.unpaged()))
+                .thenReturn(new PageImpl<>(Collections.emptyList()));
 
         // 执行
-        List<TravelGroupDTO> result = travelGroupService.getPublicRecruitingGroupsWithSearch(1L, "上海", "destination", null, null);
+        List<TravelGroupDTO> result = travelGroupService.getPublicRecruitingGroupsWithSearch(1L, "50%_OFF", null, null, null);
 
         // 验证
-        assertNotNull(result);
-        assertEquals(1, result.size());
+        assertTrue(result.isEmpty());
     }
 
     @Test
     void testGetPublicRecruitingGroupsWithSearch_DateFilter() {
         // 准备
-        List<TravelGroup> groups = Arrays.asList(testGroup);
-        when(travelGroupRepository.findAll()).thenReturn(groups);
-        when(memberRepository.countByGroupAndJoinStatus(any(TravelGroup.class), any(TravelGroupMember.JoinStatus.class)))
-                .thenReturn(1L);
-        when(memberRepository.findByGroupId(1L)).thenReturn(Arrays.asList(testMember));
+        LocalDate start = LocalDate.now().plusDays(5);
+        LocalDate end = LocalDate.now().plusDays(15);
+        when(travelGroupRepository.searchRecruiting(TravelGroup.GroupStatus.招募中, null, null, null, start, end, Pageable.unpaged()))
+                .thenReturn(new PageImpl<>(Arrays.asList(testGroup)));
+        when(memberRepository.findWithUserByGroupIdIn(any())).thenReturn(Arrays.asList(testMember));
 
         // 执行
-        List<TravelGroupDTO> result = travelGroupService.getPublicRecruitingGroupsWithSearch(1L, null, null, 
-                LocalDate.now().plusDays(5).toString(), LocalDate.now().plusDays(15).toString());
+        List<TravelGroupDTO> result = travelGroupService.getPublicRecruitingGroupsWithSearch(1L, null, null,
+                start.toString(), end.toString());
 
         // 验证
         assertNotNull(result);
         assertEquals(1, result.size());
     }
 
+    @Test
+    void testSearchRecruitingGroups_Paged() {
+        // 准备
+        Pageable pageable = PageRequest.of(1, 1);
+        when(travelGroupRepository.searchRecruiting(TravelGroup.GroupStatus.招募中, "%测试%", null, null, null, null, pageable))
+                .thenReturn(new PageImpl<>(Arrays.asList(testGroup), pageable, 5));
+        when(memberRepository.findWithUserByGroupIdIn(Arrays.asList(1L))).thenReturn(Arrays.asList(testMember));
+
+        // 执行
+        Page<TravelGroupDTO> result = travelGroupService.searchRecruitingGroups("测试", null, null, null, pageable);
+
+        // 验证
+        assertEquals(5, result.getTotalElements());
+        assertEquals(1, result.getContent().size());
+        assertEquals("测试组团", result.getContent().get(0).getTitle());
+    }
+
     @Test
     void testGetGroupsByDestination() {
         // 准备
@@ -460,15 +496,35 @@ class TravelGroupServiceTest {
         when(travelGroupRepository.findById(1L)).thenReturn(Optional.of(testGroup));
         when(applicationRepository.findById(1L)).thenReturn(Optional.of(testApplication));
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(travelGroupRepository.admitMember(eq(1L), eq(TravelGroup.GroupStatus.招募中), eq(TravelGroup.GroupStatus.已满员), any()))
+                .thenReturn(1);
         when(memberRepository.save(any(TravelGroupMember.class))).thenReturn(testMember);
 
         // 执行
         travelGroupService.processApplication(1L, 1L, 1L, true);
 
-        // 验证
+        // 验证：人数由条件更新修改，不回写组团实体；没有事务时立即加入群聊
         verify(memberRepository).save(any(TravelGroupMember.class));
-        verify(travelGroupRepository).save(any(TravelGroup.class));
+        verify(travelGroupRepository, never()).save(any(TravelGroup.class));
         verify(applicationRepository).save(any(TravelGroupApplication.class));
+        verify(groupChatManageService).addUserToGroup(1L, 1L);
+        verify(groupRecommendationIndex).update(testGroup);
+    }
+
+    @Test
+    void testProcessApplication_LosesRaceForLastSlot() {
+        // 准备：读取时还有名额，条件更新时已被并发审批占满
+        when(travelGroupRepository.findById(1L)).thenReturn(Optional.of(testGroup));
+        when(applicationRepository.findById(1L)).thenReturn(Optional.of(testApplication));
+        when(travelGroupRepository.admitMember(eq(1L), any(), any(), any())).thenReturn(0);
+
+        // 执行和验证
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> travelGroupService.processApplication(1L, 1L, 1L, true));
+        assertTrue(exception.getMessage().contains("组团已满员"));
+        verify(memberRepository, never()).save(any(TravelGroupMember.class));
+        verify(applicationRepository, never()).save(any(TravelGroupApplication.class));
+        verify(groupChatManageService, never()).addUserToGroup(anyLong(), anyLong());
     }
 
     @Test
@@ -587,7 +643,9 @@ class TravelGroupServiceTest {
 
         // 验证
         verify(memberRepository).delete(testMember);
-        verify(travelGroupRepository).save(any(TravelGroup.class));
+        verify(travelGroupRepository).releaseMember(eq(1L), eq(TravelGroup.GroupStatus.招募中), eq(TravelGroup.GroupStatus.已满员), any());
+        verify(travelGroupRepository, never()).save(any(TravelGroup.class));
+        verify(groupRecommendationIndex).update(testGroup);
     }
 
     @Test
@@ -768,6 +826,8 @@ class TravelGroupServiceTest {
         // 准备
         when(travelGroupRepository.findById(1L)).thenReturn(Optional.of(testGroup));
         when(applicationRepository.findById(1L)).thenReturn(Optional.of(testApplication));
+        when(travelGroupRepository.admitMember(eq(1L), eq(TravelGroup.GroupStatus.招募中), eq(TravelGroup.GroupStatus.已满员), any()))
+                .thenReturn(1);
         when(memberRepository.save(any(TravelGroupMember.class))).thenReturn(testMember);
 
         // 执行
@@ -775,7 +835,7 @@ class TravelGroupServiceTest {
 
         // 验证
         verify(memberRepository).save(any(TravelGroupMember.class));
-        verify(travelGroupRepository).save(any(TravelGroup.class));
+        verify(travelGroupRepository, never()).save(any(TravelGroup.class));
         verify(applicationRepository).save(any(TravelGroupApplication.class));
     }
 
@@ -833,17 +893,51 @@ class TravelGroupServiceTest {
     @Test
     void testGetRecommendedGroups() {
         // 准备
-        List<TravelGroup> groups = Arrays.asList(testGroup);
+        TravelGroup other = new TravelGroup();
+        other.setId(2L);
+        other.setTitle("另一个组团");
+        other.setMaxMembers(4);
+        other.setCurrentMembers(1);
+        other.setCreator(testUser);
+        other.setDestination(testDestination);
+        other.setTravelTags(new ArrayList<>());
+        UserPreferences preferences = new UserPreferences();
+        preferences.setTravelPreferences("{\"1\": 1}");
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(travelGroupRepository.findAll()).thenReturn(groups);
-        when(memberRepository.findByGroupId(1L)).thenReturn(Arrays.asList(testMember));
+        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(preferences));
+        when(groupRecommendationIndex.preferredTagIds("{\"1\": 1}")).thenReturn(new int[]{1});
+        when(memberRepository.findGroupIdsByUserId(1L)).thenReturn(Arrays.asList(9L));
+        when(groupRecommendationIndex.recommend(eq(1L), aryEq(new int[]{1}), eq(Arrays.asList(9L))))
+                .thenReturn(Arrays.asList(2L, 1L));
+        when(travelGroupRepository.findRecommendableWithCreatorAndDestinationByIdIn(Arrays.asList(2L, 1L), TravelGroup.GroupStatus.招募中))
+                .thenReturn(Arrays.asList(testGroup, other));
+        when(memberRepository.findWithUserByGroupIdIn(Arrays.asList(2L, 1L))).thenReturn(Arrays.asList(testMember));
+
+        // 执行
+        List<TravelGroupDTO> result = travelGroupService.getRecommendedGroups(1L);
+
+        // 验证：保持推荐索引的排名顺序
+        assertEquals(2, result.size());
+        assertEquals(2L, result.get(0).getId());
+        assertEquals(1L, result.get(1).getId());
+        verify(travelGroupRepository, never()).findAll();
+    }
+
+    @Test
+    void testGetRecommendedGroups_NothingRecommended() {
+        // 准备
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.empty());
+        when(groupRecommendationIndex.preferredTagIds(null)).thenReturn(new int[0]);
+        when(memberRepository.findGroupIdsByUserId(1L)).thenReturn(Collections.emptyList());
+        when(groupRecommendationIndex.recommend(eq(1L), any(), any())).thenReturn(Collections.emptyList());
 
         // 执行
         List<TravelGroupDTO> result = travelGroupService.getRecommendedGroups(1L);
 
         // 验证
-        assertNotNull(result);
-        assertEquals(1, result.size());
+        assertTrue(result.isEmpty());
+        verify(travelGroupRepository, never()).findRecommendableWithCreatorAndDestinationByIdIn(any(), any());
     }
 
     @Test
@@ -860,16 +954,39 @@ class TravelGroupServiceTest {
     @Test
     void testGetRecommendationsByPreferences() {
         // 准备
-        List<TravelGroup> groups = Arrays.asList(testGroup);
-        when(travelGroupRepository.findAll()).thenReturn(groups);
-        when(memberRepository.findByGroupId(1L)).thenReturn(Arrays.asList(testMember));
+        List<String> names = Arrays.asList("美食", "文化");
+        when(groupRecommendationIndex.resolveTagIds(names)).thenReturn(new int[]{1, 2});
+        when(memberRepository.findGroupIdsByUserId(1L)).thenReturn(Collections.emptyList());
+        when(groupRecommendationIndex.recommend(eq(1L), aryEq(new int[]{1, 2}), any())).thenReturn(Arrays.asList(1L));
+        when(travelGroupRepository.findRecommendableWithCreatorAndDestinationByIdIn(Arrays.asList(1L), TravelGroup.GroupStatus.招募中))
+                .thenReturn(Arrays.asList(testGroup));
+        when(memberRepository.findWithUserByGroupIdIn(any())).thenReturn(Arrays.asList(testMember));
 
         // 执行
-        List<TravelGroupDTO> result = travelGroupService.getRecommendationsByPreferences(1L, Arrays.asList("美食", "文化"));
+        List<TravelGroupDTO> result = travelGroupService.getRecommendationsByPreferences(1L, names);
 
-        // 验证
+        // 验证：使用传入的偏好，不读取保存的偏好
         assertNotNull(result);
         assertEquals(1, result.size());
+        verify(userPreferencesRepository, never()).findByUserId(anyLong());
+    }
+
+    @Test
+    void testGetRecommendationsByPreferences_FallsBackToStoredPreferences() {
+        // 准备
+        UserPreferences preferences = new UserPreferences();
+        preferences.setTravelPreferences("{\"3\": 1}");
+        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(preferences));
+        when(groupRecommendationIndex.preferredTagIds("{\"3\": 1}")).thenReturn(new int[]{3});
+        when(memberRepository.findGroupIdsByUserId(1L)).thenReturn(Collections.emptyList());
+        when(groupRecommendationIndex.recommend(eq(1L), aryEq(new int[]{3}), any())).thenReturn(Collections.emptyList());
+
+        // 执行
+        List<TravelGroupDTO> result = travelGroupService.getRecommendationsByPreferences(1L, Collections.emptyList());
+
+        // 验证
+        assertTrue(result.isEmpty());
+        verify(groupRecommendationIndex, never()).resolveTagIds(any());
     }
 
     @Test
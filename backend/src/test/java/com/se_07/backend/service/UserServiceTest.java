@@ -3,7 +3,10 @@ package com.se_07.backend.service;
 import com.se_07.backend.dto.*;
 import com.se_07.backend.entity.*;
 import com.se_07.backend.repository.*;
+import com.se_07.backend.service.impl.ElasticsearchIndexService;
 import com.se_07.backend.service.impl.UserServiceImpl;
+import com.se_07.backend.service.impl.UserSummaryCache;
+import com.se_07.backend.service.impl.UserTravelStatsAggregator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -53,6 +56,15 @@ public class UserServiceTest {
     @Mock
     private TagRepository tagRepository;
 
+    @Mock
+    private ElasticsearchIndexService elasticsearchIndexService;
+
+    @Mock
+    private UserSummaryCache userSummaryCache;
+
+    @Mock
+    private UserTravelStatsAggregator userTravelStatsAggregator;
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -181,6 +193,7 @@ public class UserServiceTest {
         assertNotNull(response);
         verify(userRepository).save(any(User.class));
         verify(userProfileRepository).save(any(UserProfile.class));
+        verify(userSummaryCache).evict(1L);
     }
 
     @Test
@@ -204,6 +217,7 @@ public class UserServiceTest {
         assertNotNull(response);
         verify(userRepository).save(any(User.class));
         verify(userProfileRepository).save(any(UserProfile.class));
+        verify(elasticsearchIndexService).updateUserInElasticsearch(testUser);
     }
 
     @Test
@@ -393,6 +407,7 @@ public class UserServiceTest {
 
         // Assert
         verify(userDestinationRepository).save(any(UserDestination.class));
+        verify(userTravelStatsAggregator).markChanged(1L);
     }
 
     @Test
@@ -479,6 +494,7 @@ public class UserServiceTest {
 
         // Assert
         verify(userDestinationRepository).delete(historyDest);
+        verify(userTravelStatsAggregator).markChanged(1L);
     }
 
     @Test
@@ -498,6 +514,7 @@ public class UserServiceTest {
 
         // Assert
         verify(userDestinationRepository).delete(wishlistDest);
+        verify(userTravelStatsAggregator, never()).markChanged(any());
     }
 
     @Test
@@ -521,6 +538,54 @@ public class UserServiceTest {
         // Assert
         assertEquals(0, result); // 没有行程天数，所以返回0
         verify(userDestinationRepository, never()).save(any(UserDestination.class));
+        verify(userTravelStatsAggregator, never()).markChanged(any());
+    }
+
+    @Test
+    void testGetTravelStats() {
+        // Arrange
+        TravelStatsResponse stats = new TravelStatsResponse();
+        stats.setTotalDestinations(3);
+        stats.setTotalDays(10);
+        stats.setTotalItineraries(1);
+        testUser.setCreatedAt(LocalDateTime.now().minusDays(9));
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userTravelStatsAggregator.load(1L)).thenReturn(stats);
+
+        // Act
+        TravelStatsResponse result = userService.getTravelStats(1L);
+
+        // Assert - 汇总数据来自物化的统计行，不再加载行程
+        assertEquals("testuser", result.getUsername());
+        assertEquals(10, result.getCompanionDays());
+        assertEquals(3, result.getTotalDestinations());
+        assertEquals(10, result.getTotalDays());
+        assertEquals(1, result.getTotalItineraries());
+        verifyNoInteractions(itineraryRepository, destinationRepository, userDestinationRepository);
+    }
+
+    @Test
+    void testGetTravelStats_WithNullCreatedAt() {
+        // Arrange - 测试用户创建时间为null的情况
+        testUser.setCreatedAt(null);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userTravelStatsAggregator.load(1L)).thenReturn(new TravelStatsResponse());
+
+        // Act
+        TravelStatsResponse result = userService.getTravelStats(1L);
+
+        // Assert
+        assertEquals("testuser", result.getUsername());
+        assertEquals(1, result.getCompanionDays());
+    }
+
+    @Test
+    void testGetTravelStats_UserNotFound() {
+        when(userRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertThrows(RuntimeException.class, () -> userService.getTravelStats(1L));
+        verify(userTravelStatsAggregator, never()).load(any());
     }
 
 
@@ -585,64 +650,6 @@ public class UserServiceTest {
         assertThrows(RuntimeException.class, () -> userService.uploadAvatar(1L, emptyFile));
     }
 
-    @Test
-    void testGetTravelStats() {
-        // Arrange
-        UserDestination historyDest = new UserDestination();
-        historyDest.setDestination(testDestination);
-        historyDest.setStartDate(LocalDate.of(2023, 1, 1));
-        historyDest.setEndDate(LocalDate.of(2023, 1, 3));
-        historyDest.setDays(3);
-
-        Itinerary completedItinerary = new Itinerary();
-        completedItinerary.setId(1L);
-        completedItinerary.setTitle("北京之旅");
-        completedItinerary.setTravelStatus(Itinerary.TravelStatus.已出行);
-
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(Arrays.asList(historyDest));
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(Arrays.asList(completedItinerary));
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertEquals("testuser", result.getUsername());
-        assertEquals(1, result.getTotalDestinations());
-        assertEquals(3, result.getTotalDays());
-        assertEquals(1, result.getTotalItineraries());
-        assertNotNull(result.getTimeline());
-        assertNotNull(result.getGeography());
-    }
-
-    @Test
-    void testGetTravelStats_EmptyData() {
-        // Arrange
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(new ArrayList<>());
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(new ArrayList<>());
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertEquals("testuser", result.getUsername());
-        assertEquals(0, result.getTotalDestinations());
-        assertEquals(0, result.getTotalDays());
-        assertEquals(0, result.getTotalItineraries());
-        assertNotNull(result.getTimeline());
-        assertTrue(result.getTimeline().isEmpty());
-        assertNotNull(result.getGeography());
-    }
-
     @Test
     void testGetUserHomepage() {
         // Arrange
@@ -776,373 +783,6 @@ public class UserServiceTest {
         assertTrue(response.getSpecialRequirements().isEmpty());
     }
 
-    @Test
-    void testGetTravelStats_WithGeographyData() {
-        // Arrange - 创建包含地理位置信息的目的地
-        Destination easternDest = new Destination();
-        easternDest.setId(2L);
-        easternDest.setName("上海");
-        easternDest.setDescription("华东地区重要城市");
-
-        Destination southernDest = new Destination();
-        southernDest.setId(3L);
-        southernDest.setName("三亚");
-        southernDest.setDescription("华南地区海滨城市");
-
-        Destination westernDest = new Destination();
-        westernDest.setId(4L);
-        westernDest.setName("成都");
-        westernDest.setDescription("西南地区重要城市");
-
-        Destination northernDest = new Destination();
-        northernDest.setId(5L);
-        northernDest.setName("哈尔滨");
-        northernDest.setDescription("东北地区重要城市");
-
-        // 创建历史目的地记录
-        UserDestination historyDest1 = new UserDestination();
-        historyDest1.setDestination(easternDest);
-        historyDest1.setStartDate(LocalDate.of(2023, 3, 15)); // 3月
-        historyDest1.setEndDate(LocalDate.of(2023, 3, 17));
-        historyDest1.setDays(3);
-
-        UserDestination historyDest2 = new UserDestination();
-        historyDest2.setDestination(southernDest);
-        historyDest2.setStartDate(LocalDate.of(2023, 7, 10)); // 7月
-        historyDest2.setEndDate(LocalDate.of(2023, 7, 12));
-        historyDest2.setDays(3);
-
-        UserDestination historyDest3 = new UserDestination();
-        historyDest3.setDestination(westernDest);
-        historyDest3.setStartDate(LocalDate.of(2023, 10, 5)); // 10月
-        historyDest3.setEndDate(LocalDate.of(2023, 10, 7));
-        historyDest3.setDays(3);
-
-        UserDestination historyDest4 = new UserDestination();
-        historyDest4.setDestination(northernDest);
-        historyDest4.setStartDate(LocalDate.of(2023, 12, 20)); // 12月
-        historyDest4.setEndDate(LocalDate.of(2023, 12, 22));
-        historyDest4.setDays(3);
-
-        List<UserDestination> historyDests = Arrays.asList(historyDest1, historyDest2, historyDest3, historyDest4);
-        List<Destination> destinations = Arrays.asList(easternDest, southernDest, westernDest, northernDest);
-
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(historyDests);
-        when(destinationRepository.findByNameIn(any())).thenReturn(destinations);
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(new ArrayList<>());
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertNotNull(result.getGeography());
-        assertEquals("上海", result.getGeography().getEasternmost());
-        assertEquals("三亚", result.getGeography().getSouthernmost());
-        assertEquals("成都", result.getGeography().getWesternmost());
-        assertEquals("哈尔滨", result.getGeography().getNorthernmost());
-        // 由于有多个月份，应该返回访问次数最多的月份
-        assertNotNull(result.getGeography().getFavoriteMonth());
-        assertEquals("2023", result.getGeography().getMostTravelYear());
-    }
-
-    @Test
-    void testGetTravelStats_WithVisitYearMonth() {
-        // Arrange - 测试使用startDate的情况
-        UserDestination historyDest = new UserDestination();
-        historyDest.setDestination(testDestination);
-        historyDest.setStartDate(LocalDate.of(2023, 5, 15)); // 5月
-        historyDest.setEndDate(LocalDate.of(2023, 5, 17));
-        historyDest.setDays(3);
-
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(Arrays.asList(historyDest));
-        when(destinationRepository.findByNameIn(any())).thenReturn(Arrays.asList(testDestination));
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(new ArrayList<>());
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertNotNull(result.getGeography());
-        assertEquals("5月", result.getGeography().getFavoriteMonth());
-        assertEquals("2023", result.getGeography().getMostTravelYear());
-    }
-
-    @Test
-    void testGetTravelStats_WithNullStartDate() {
-        // Arrange - 测试startDate为null的情况
-        UserDestination historyDest = new UserDestination();
-        historyDest.setDestination(testDestination);
-        historyDest.setStartDate(null);
-        historyDest.setEndDate(null);
-        historyDest.setDays(3);
-
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(Arrays.asList(historyDest));
-        when(destinationRepository.findByNameIn(any())).thenReturn(Arrays.asList(testDestination));
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(new ArrayList<>());
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertNotNull(result.getGeography());
-        assertNull(result.getGeography().getFavoriteMonth());
-        assertNull(result.getGeography().getMostTravelYear());
-    }
-
-    @Test
-    void testGetTravelStats_WithMultipleCities() {
-        // Arrange - 测试多个城市的情况，验证城市统计
-        Destination city1 = new Destination();
-        city1.setId(2L);
-        city1.setName("北京");
-
-        Destination city2 = new Destination();
-        city2.setId(3L);
-        city2.setName("上海");
-
-        UserDestination historyDest1 = new UserDestination();
-        historyDest1.setDestination(city1);
-        historyDest1.setStartDate(LocalDate.of(2023, 1, 1));
-        historyDest1.setEndDate(LocalDate.of(2023, 1, 3));
-        historyDest1.setDays(3);
-
-        UserDestination historyDest2 = new UserDestination();
-        historyDest2.setDestination(city1); // 再次访问北京
-        historyDest2.setStartDate(LocalDate.of(2023, 6, 1));
-        historyDest2.setEndDate(LocalDate.of(2023, 6, 5));
-        historyDest2.setDays(5);
-
-        UserDestination historyDest3 = new UserDestination();
-        historyDest3.setDestination(city2);
-        historyDest3.setStartDate(LocalDate.of(2023, 9, 1));
-        historyDest3.setEndDate(LocalDate.of(2023, 9, 2));
-        historyDest3.setDays(2);
-
-        List<UserDestination> historyDests = Arrays.asList(historyDest1, historyDest2, historyDest3);
-        List<Destination> destinations = Arrays.asList(city1, city2);
-
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(historyDests);
-        when(destinationRepository.findByNameIn(any())).thenReturn(destinations);
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(new ArrayList<>());
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertEquals(3, result.getTotalDestinations());
-        assertEquals(10, result.getTotalDays()); // 3 + 5 + 2
-        assertNotNull(result.getTopCities());
-        assertEquals(2, result.getTopCities().size());
-        // 北京应该排在第一位（访问2次，共8天）
-        assertEquals("北京", result.getTopCities().get(0).getName());
-        assertEquals(2, result.getTopCities().get(0).getVisitCount());
-        assertEquals(8, result.getTopCities().get(0).getTotalDays());
-    }
-
-    @Test
-    void testGetTravelStats_WithCompletedItineraries() {
-        // Arrange - 测试包含已完成行程的情况
-        UserDestination historyDest = new UserDestination();
-        historyDest.setDestination(testDestination);
-        historyDest.setStartDate(LocalDate.of(2023, 1, 1));
-        historyDest.setEndDate(LocalDate.of(2023, 1, 3));
-        historyDest.setDays(3);
-
-        Itinerary completedItinerary = new Itinerary();
-        completedItinerary.setId(1L);
-        completedItinerary.setTitle("北京之旅");
-        completedItinerary.setTravelStatus(Itinerary.TravelStatus.已出行);
-        completedItinerary.setStartDate(LocalDate.of(2023, 1, 1));
-        completedItinerary.setEndDate(LocalDate.of(2023, 1, 3));
-
-        // 创建行程天数和活动
-        ItineraryDay day1 = new ItineraryDay();
-        day1.setId(1L);
-        day1.setItinerary(completedItinerary);
-        day1.setDayNumber(1);
-
-        ItineraryActivity activity1 = new ItineraryActivity();
-        activity1.setId(1L);
-        activity1.setItineraryDay(day1);
-
-        Attraction attraction1 = new Attraction();
-        attraction1.setId(1L);
-        attraction1.setDestination(testDestination);
-        activity1.setAttraction(attraction1);
-
-        day1.setActivities(Arrays.asList(activity1));
-        completedItinerary.setItineraryDays(Arrays.asList(day1));
-
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(Arrays.asList(historyDest));
-        when(destinationRepository.findByNameIn(any())).thenReturn(Arrays.asList(testDestination));
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(Arrays.asList(completedItinerary));
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertEquals(1, result.getTotalItineraries());
-        assertNotNull(result.getTimeline());
-        assertFalse(result.getTimeline().isEmpty());
-    }
-
-    @Test
-    void testGetTravelStats_WithNullDays() {
-        // Arrange - 测试days为null的情况
-        UserDestination historyDest = new UserDestination();
-        historyDest.setDestination(testDestination);
-        historyDest.setStartDate(LocalDate.of(2023, 1, 1));
-        historyDest.setEndDate(LocalDate.of(2023, 1, 3));
-        historyDest.setDays(null); // days为null
-
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(Arrays.asList(historyDest));
-        when(destinationRepository.findByNameIn(any())).thenReturn(Arrays.asList(testDestination));
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(new ArrayList<>());
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertEquals(1, result.getTotalDestinations());
-        assertEquals(0, result.getTotalDays()); // days为null时应该计算为0
-    }
-
-    @Test
-    void testGetTravelStats_WithShortStartDate() {
-        // Arrange - 测试startDate为null的情况
-        UserDestination historyDest = new UserDestination();
-        historyDest.setDestination(testDestination);
-        historyDest.setStartDate(null);
-        historyDest.setEndDate(null);
-        historyDest.setDays(3);
-
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(Arrays.asList(historyDest));
-        when(destinationRepository.findByNameIn(any())).thenReturn(Arrays.asList(testDestination));
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(new ArrayList<>());
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertNotNull(result.getGeography());
-        assertNull(result.getGeography().getFavoriteMonth());
-        assertNull(result.getGeography().getMostTravelYear());
-    }
-
-    @Test
-    void testGetTravelStats_WithDescriptionBasedGeography() {
-        // Arrange - 测试基于描述的地理位置判断
-        Destination easternDest = new Destination();
-        easternDest.setId(2L);
-        easternDest.setName("某个城市");
-        easternDest.setDescription("华东地区重要城市"); // 通过描述判断
-
-        Destination southernDest = new Destination();
-        southernDest.setId(3L);
-        southernDest.setName("另一个城市");
-        southernDest.setDescription("华南地区海滨城市"); // 通过描述判断
-
-        UserDestination historyDest1 = new UserDestination();
-        historyDest1.setDestination(easternDest);
-        historyDest1.setStartDate(LocalDate.of(2023, 1, 1));
-        historyDest1.setEndDate(LocalDate.of(2023, 1, 3));
-        historyDest1.setDays(3);
-
-        UserDestination historyDest2 = new UserDestination();
-        historyDest2.setDestination(southernDest);
-        historyDest2.setStartDate(LocalDate.of(2023, 6, 1));
-        historyDest2.setEndDate(LocalDate.of(2023, 6, 3));
-        historyDest2.setDays(3);
-
-        List<UserDestination> historyDests = Arrays.asList(historyDest1, historyDest2);
-        List<Destination> destinations = Arrays.asList(easternDest, southernDest);
-
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(historyDests);
-        when(destinationRepository.findByNameIn(any())).thenReturn(destinations);
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(new ArrayList<>());
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertNotNull(result.getGeography());
-        assertEquals("某个城市", result.getGeography().getEasternmost());
-        assertEquals("另一个城市", result.getGeography().getSouthernmost());
-        assertNull(result.getGeography().getWesternmost());
-        assertNull(result.getGeography().getNorthernmost());
-    }
-
-    @Test
-    void testGetTravelStats_WithNullDestinationDescription() {
-        // Arrange - 测试目的地描述为null的情况
-        Destination dest = new Destination();
-        dest.setId(2L);
-        dest.setName("上海");
-        dest.setDescription(null); // 描述为null
-
-        UserDestination historyDest = new UserDestination();
-        historyDest.setDestination(dest);
-        historyDest.setStartDate(LocalDate.of(2023, 1, 1));
-        historyDest.setEndDate(LocalDate.of(2023, 1, 3));
-        historyDest.setDays(3);
-
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(Arrays.asList(historyDest));
-        when(destinationRepository.findByNameIn(any())).thenReturn(Arrays.asList(dest));
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(new ArrayList<>());
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertNotNull(result.getGeography());
-        assertEquals("上海", result.getGeography().getEasternmost()); // 通过名称判断
-    }
-
     @Test
     void testUpdateUserProfile_WithNullUser() {
         // Arrange - 测试profile.getUser()为null的情况
@@ -1399,6 +1039,7 @@ public class UserServiceTest {
         // Assert
         assertEquals(1, result);
         verify(userDestinationRepository).save(any(UserDestination.class));
+        verify(userTravelStatsAggregator).markChanged(1L);
     }
 
     @Test
@@ -1423,6 +1064,7 @@ public class UserServiceTest {
         // Assert
         assertEquals(1, result);
         verify(userDestinationRepository).deleteAll(Arrays.asList(historyDest));
+        verify(userTravelStatsAggregator).markChanged(1L);
     }
 
     @Test
@@ -1520,147 +1162,6 @@ public class UserServiceTest {
         assertThrows(RuntimeException.class, () -> userService.uploadAvatar(1L, mockFile));
     }
 
-    @Test
-    void testGetTravelStats_WithNullCreatedAt() {
-        // Arrange - 测试用户创建时间为null的情况
-        testUser.setCreatedAt(null);
-
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(new ArrayList<>());
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(new ArrayList<>());
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertEquals("testuser", result.getUsername());
-        assertNotNull(result.getCompanionDays());
-        assertTrue(result.getCompanionDays() >= 1);
-    }
-
-    @Test
-    void testBuildTimeline_WithNullActivities() {
-        // Arrange - 测试活动为null的情况
-        Itinerary completedItinerary = new Itinerary();
-        completedItinerary.setId(1L);
-        completedItinerary.setTitle("北京之旅");
-        completedItinerary.setTravelStatus(Itinerary.TravelStatus.已出行);
-        completedItinerary.setStartDate(LocalDate.of(2023, 1, 1));
-        completedItinerary.setEndDate(LocalDate.of(2023, 1, 3));
-
-        ItineraryDay day1 = new ItineraryDay();
-        day1.setId(1L);
-        day1.setItinerary(completedItinerary);
-        day1.setDayNumber(1);
-        day1.setDate(LocalDate.of(2023, 1, 1));
-        day1.setActivities(null); // 活动为null
-
-        completedItinerary.setItineraryDays(Arrays.asList(day1));
-
-        UserDestination historyDest = new UserDestination();
-        historyDest.setDestination(testDestination);
-        historyDest.setStartDate(LocalDate.of(2023, 1, 1));
-        historyDest.setEndDate(LocalDate.of(2023, 1, 3));
-        historyDest.setDays(3);
-
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(Arrays.asList(historyDest));
-        when(destinationRepository.findByNameIn(any())).thenReturn(Arrays.asList(testDestination));
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(Arrays.asList(completedItinerary));
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertNotNull(result.getTimeline());
-    }
-
-    @Test
-    void testBuildTimeline_WithNullAttraction() {
-        // Arrange - 测试景点为null的情况
-        Itinerary completedItinerary = new Itinerary();
-        completedItinerary.setId(1L);
-        completedItinerary.setTitle("北京之旅");
-        completedItinerary.setTravelStatus(Itinerary.TravelStatus.已出行);
-        completedItinerary.setStartDate(LocalDate.of(2023, 1, 1));
-        completedItinerary.setEndDate(LocalDate.of(2023, 1, 3));
-
-        ItineraryDay day1 = new ItineraryDay();
-        day1.setId(1L);
-        day1.setItinerary(completedItinerary);
-        day1.setDayNumber(1);
-        day1.setDate(LocalDate.of(2023, 1, 1));
-
-        ItineraryActivity activity1 = new ItineraryActivity();
-        activity1.setId(1L);
-        activity1.setItineraryDay(day1);
-        activity1.setAttraction(null); // 景点为null
-
-        day1.setActivities(Arrays.asList(activity1));
-        completedItinerary.setItineraryDays(Arrays.asList(day1));
-
-        UserDestination historyDest = new UserDestination();
-        historyDest.setDestination(testDestination);
-        historyDest.setStartDate(LocalDate.of(2023, 1, 1));
-        historyDest.setEndDate(LocalDate.of(2023, 1, 3));
-        historyDest.setDays(3);
-
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(Arrays.asList(historyDest));
-        when(destinationRepository.findByNameIn(any())).thenReturn(Arrays.asList(testDestination));
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(Arrays.asList(completedItinerary));
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertNotNull(result.getTimeline());
-    }
-
-    @Test
-    void testGetMonthName_WithAllMonths() {
-        // Arrange - 测试所有月份的情况
-        UserDestination historyDest1 = new UserDestination();
-        historyDest1.setDestination(testDestination);
-        historyDest1.setStartDate(LocalDate.of(2023, 1, 1)); // 1月
-        historyDest1.setEndDate(LocalDate.of(2023, 1, 3));
-        historyDest1.setDays(3);
-
-        UserDestination historyDest2 = new UserDestination();
-        historyDest2.setDestination(testDestination);
-        historyDest2.setStartDate(LocalDate.of(2023, 12, 1)); // 12月
-        historyDest2.setEndDate(LocalDate.of(2023, 12, 3));
-        historyDest2.setDays(3);
-
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userPreferencesRepository.findByUserId(1L)).thenReturn(Optional.of(testPreferences));
-        when(userDestinationRepository.findByUserPreferencesIdAndTypeOrderByCreatedAtDesc(any(), eq(UserDestination.Type.历史目的地)))
-                .thenReturn(Arrays.asList(historyDest1, historyDest2));
-        when(destinationRepository.findByNameIn(any())).thenReturn(Arrays.asList(testDestination));
-        when(itineraryRepository.findByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
-                .thenReturn(new ArrayList<>());
-
-        // Act
-        TravelStatsResponse result = userService.getTravelStats(1L);
-
-        // Assert
-        assertNotNull(result);
-        assertNotNull(result.getGeography());
-        assertNotNull(result.getGeography().getFavoriteMonth());
-    }
-
     @Test
     void testUpdateUserPreferences_TravelPreferencesNull() {
         // Arrange
@@ -0,0 +1,172 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.entity.ItineraryActivity;
+import com.se_07.backend.entity.ItineraryDay;
+import com.se_07.backend.repository.ItineraryActivityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ActivityOrderingTest {
+
+    private static final long GAP = ActivityOrdering.GAP;
+
+    @Mock
+    private ItineraryActivityRepository activityRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ActivityOrdering ordering;
+    private ItineraryDay day;
+
+    @BeforeEach
+    void setUp() {
+        ordering = new ActivityOrdering();
+        ReflectionTestUtils.setField(ordering, "activityRepository", activityRepository);
+        ReflectionTestUtils.setField(ordering, "jdbcTemplate", jdbcTemplate);
+        day = new ItineraryDay();
+        day.setId(1L);
+    }
+
+    @Test
+    void testPositionFor_RepeatedInsertsAtSameSpotStayOrderedUntilRebalance() {
+        ItineraryActivity first = activity(10L, GAP);
+        ItineraryActivity last = activity(11L, 2 * GAP);
+        when(activityRepository.findById(10L)).thenReturn(Optional.of(first));
+
+        // 每次都插入到 first 之后，间隔逐次减半，约 20 次后用完
+        long upper = last.getPosition();
+        int inserts = 0;
+        while (upper - first.getPosition() > 1) {
+            ItineraryActivity after = activity(100L + inserts, upper);
+            when(activityRepository.findFirstByItineraryDayIdAndPositionGreaterThanOrderByPositionAsc(1L, GAP)).thenReturn(after);
+            long position = ordering.positionFor(day, 10L, null);
+            assertTrue(position > first.getPosition() && position < upper);
+            upper = position;
+            inserts++;
+        }
+        assertEquals(20, inserts);
+        verify(activityRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void testPositionFor_BothAnchorsRejected() {
+        assertThrows(RuntimeException.class, () -> ordering.positionFor(day, 1L, 2L));
+    }
+
+    @Test
+    void testPositionFor_UnpositionedAnchorRebalancesFirst() {
+        ItineraryActivity legacy = activity(10L, null);
+        ItineraryActivity other = activity(11L, 7L);
+        when(activityRepository.findById(10L)).thenReturn(Optional.of(legacy));
+        when(activityRepository.findByItineraryDayIdOrderByPositionAscIdAsc(1L)).thenReturn(Arrays.asList(legacy, other));
+
+        when(activityRepository.findFirstByItineraryDayIdAndPositionGreaterThanOrderByPositionAsc(1L, GAP)).thenReturn(other);
+
+        assertEquals(GAP + GAP / 2, ordering.positionFor(day, 10L, null));
+        assertEquals(GAP, legacy.getPosition());
+        assertEquals(2 * GAP, other.getPosition());
+    }
+
+    @Test
+    void testPlace_InMemoryMidpointAndRenumberWhenGapExhausted() {
+        List<ItineraryActivity> ordered = new ArrayList<>(Arrays.asList(activity(1L, GAP), activity(2L, GAP + 1)));
+
+        ItineraryActivity head = activity(3L, null);
+        ActivityOrdering.place(ordered, 0, head);
+        assertEquals(0L, head.getPosition());
+
+        ItineraryActivity tail = activity(4L, null);
+        ActivityOrdering.place(ordered, 3, tail);
+        assertEquals(2 * GAP + 1, tail.getPosition());
+
+        // 1 和 2 之间没有间隔，整体重新编号
+        ItineraryActivity squeezed = activity(5L, null);
+        ActivityOrdering.place(ordered, 2, squeezed);
+        for (int i = 0; i < ordered.size(); i++) {
+            assertEquals(ActivityOrdering.initialPosition(i), ordered.get(i).getPosition());
+        }
+        assertEquals(Arrays.asList(3L, 1L, 5L, 2L, 4L), ordered.stream().map(ItineraryActivity::getId).toList());
+        verifyNoInteractions(activityRepository);
+    }
+
+    @Test
+    void testLinkedOrder_FollowsChainThenAppendsBrokenTailById() {
+        List<Map<String, Object>> rows = Arrays.asList(
+                row(5L, 1L, 3L, 7L),
+                row(3L, 1L, 99L, 7L),   // 指向不存在的活动，链表断裂
+                row(7L, 1L, 5L, 7L),
+                row(4L, 1L, null, 7L));
+
+        assertEquals(Arrays.asList(7L, 5L, 3L, 4L), ActivityOrdering.linkedOrder(rows));
+    }
+
+    @Test
+    void testLinkedOrder_CycleStops() {
+        List<Map<String, Object>> rows = Arrays.asList(
+                row(1L, 1L, 2L, 1L),
+                row(2L, 1L, 1L, 1L));
+
+        assertEquals(Arrays.asList(1L, 2L), ActivityOrdering.linkedOrder(rows));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void testMigrateLinkedLists_BatchUpdatesPositionsPerDay() {
+        when(jdbcTemplate.queryForList(contains("first_activity_id"))).thenReturn(Arrays.asList(
+                row(2L, 1L, 1L, 2L),
+                row(1L, 1L, null, 2L),
+                row(9L, 2L, null, 9L)));
+
+        assertEquals(3, ordering.migrateLinkedLists());
+
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE itinerary_activities SET position"), captor.capture());
+        Map<Object, Object> positions = new HashMap<>();
+        captor.getValue().forEach(args -> positions.put(args[1], args[0]));
+        assertEquals(GAP, positions.get(2L));
+        assertEquals(2 * GAP, positions.get(1L));
+        assertEquals(GAP, positions.get(9L));
+    }
+
+    @Test
+    void testMigrateLinkedLists_WithoutLegacyColumnsFallsBackToIdOrder() {
+        when(jdbcTemplate.queryForList(contains("first_activity_id")))
+                .thenThrow(new BadSqlGrammarException("query", "sql", new SQLException("no column")));
+        when(jdbcTemplate.queryForList(startsWith("SELECT id, itinerary_day_id"))).thenReturn(Collections.emptyList());
+
+        assertEquals(0, ordering.migrateLinkedLists());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    private ItineraryActivity activity(Long id, Long position) {
+        ItineraryActivity activity = new ItineraryActivity();
+        activity.setId(id);
+        activity.setItineraryDay(day);
+        activity.setPosition(position);
+        return activity;
+    }
+
+    private static Map<String, Object> row(Long id, Long dayId, Long nextId, Long firstId) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("itinerary_day_id", dayId);
+        row.put("next_id", nextId);
+        row.put("first_activity_id", firstId);
+        return row;
+    }
+}
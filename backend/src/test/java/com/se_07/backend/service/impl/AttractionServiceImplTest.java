@@ -3,6 +3,8 @@ package com.se_07.backend.service.impl;
 import com.se_07.backend.entity.Attraction;
 import com.se_07.backend.entity.Tag;
 import com.se_07.backend.repository.AttractionRepository;
+import com.se_07.backend.repository.DestinationRepository;
+import com.se_07.backend.repository.EntityTagScoreRepository;
 import com.se_07.backend.repository.TagRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.AfterEach;
@@ -15,22 +17,35 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 import java.util.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 class AttractionServiceImplTest {
     @Mock AttractionRepository attractionRepository;
     @Mock TagRepository tagRepository;
+    @Mock DestinationRepository destinationRepository;
+    @Mock EntityTagScoreRepository entityTagScoreRepository;
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock CounterWriteBuffer counterWriteBuffer;
     ObjectMapper objectMapper = new ObjectMapper();
+    TagScoreIndex tagScoreIndex = new TagScoreIndex();
     @InjectMocks AttractionServiceImpl service;
 
     @BeforeEach
     void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
-        java.lang.reflect.Field field = AttractionServiceImpl.class.getDeclaredField("objectMapper");
-        field.setAccessible(true);
-        field.set(service, objectMapper);
+        ReflectionTestUtils.setField(tagScoreIndex, "tagRepository", tagRepository);
+        ReflectionTestUtils.setField(tagScoreIndex, "destinationRepository", destinationRepository);
+        ReflectionTestUtils.setField(tagScoreIndex, "attractionRepository", attractionRepository);
+        ReflectionTestUtils.setField(tagScoreIndex, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(tagScoreIndex, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(tagScoreIndex, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "tagScoreIndex", tagScoreIndex);
     }
 
     @AfterEach
@@ -70,9 +85,9 @@ class AttractionServiceImplTest {
         a.setTagScores("{\"7\":37,\"12\":10}");
         Tag t7 = new Tag(); t7.setId(7L); t7.setTag("美食");
         Tag t12 = new Tag(); t12.setId(12L); t12.setTag("自然");
-        when(tagRepository.findAllById(Arrays.asList(7L,12L))).thenReturn(Arrays.asList(t7, t12));
+        when(tagRepository.findAll()).thenReturn(Arrays.asList(t7, t12));
         List<String> tags = service.getTopNTags(a, 2);
-        assertTrue(tags.contains("美食") && tags.contains("自然"));
+        assertEquals(Arrays.asList("美食", "自然"), tags);
     }
     @Test
     void getTopNTags_jsonArray() throws Exception {
@@ -80,9 +95,9 @@ class AttractionServiceImplTest {
         a.setTagScores("[0,0,0,37,0,0,10]");
         Tag t4 = new Tag(); t4.setId(4L); t4.setTag("历史");
         Tag t7 = new Tag(); t7.setId(7L); t7.setTag("自然");
-        when(tagRepository.findAllById(Arrays.asList(4L,7L))).thenReturn(Arrays.asList(t4, t7));
+        when(tagRepository.findAll()).thenReturn(Arrays.asList(t4, t7));
         List<String> tags = service.getTopNTags(a, 2);
-        assertTrue(tags.contains("历史") && tags.contains("自然"));
+        assertEquals(Arrays.asList("历史", "自然"), tags);
     }
     @Test
     void getTopNTags_jsonParseError() throws Exception {
@@ -114,17 +129,10 @@ class AttractionServiceImplTest {
         assertEquals(1, service.searchAttractions("test").size());
     }
     @Test
-    void incrementJoinCount_found() {
-        Attraction a = new Attraction(); a.setId(1L); a.setJoinCount(2);
-        when(attractionRepository.findById(1L)).thenReturn(Optional.of(a));
-        when(attractionRepository.save(any())).thenReturn(a);
+    void incrementJoinCount_buffered() {
         service.incrementJoinCount(1L);
-        assertEquals(3, a.getJoinCount());
-    }
-    @Test
-    void incrementJoinCount_notFound() {
-        when(attractionRepository.findById(2L)).thenReturn(Optional.empty());
-        assertDoesNotThrow(() -> service.incrementJoinCount(2L));
+        verify(counterWriteBuffer).increment(CounterWriteBuffer.Counter.ATTRACTION_JOINS, 1L);
+        verifyNoInteractions(attractionRepository);
     }
     @Test
     void getHotAttractions() {
@@ -153,84 +161,70 @@ class AttractionServiceImplTest {
     @Test
     void getAttractionsByDestinationWithFilters_noTagKeyword() {
         Attraction a1 = new Attraction(); a1.setName("美食天堂");
-        when(attractionRepository.findByDestinationIdOrderByJoinCountDesc(1L)).thenReturn(Arrays.asList(a1));
         Pageable pageable = PageRequest.of(0, 1);
+        when(attractionRepository.findByDestinationIdOrderByJoinCountDesc(1L, pageable)).thenReturn(new PageImpl<>(List.of(a1), pageable, 1));
         assertEquals(1, service.getAttractionsByDestinationWithFilters(1L, null, null, pageable).getTotalElements());
+        verifyNoInteractions(entityTagScoreRepository);
     }
     @Test
     void getAttractionsByDestinationWithFilters_pagination() {
         List<Attraction> list = new ArrayList<>();
-        for (int i = 0; i < 5; i++) { Attraction a = new Attraction(); a.setName("A"+i); list.add(a); }
-        when(attractionRepository.findByDestinationIdOrderByJoinCountDesc(1L)).thenReturn(list);
+        for (int i = 0; i < 2; i++) { Attraction a = new Attraction(); a.setName("A"+i); list.add(a); }
         Pageable pageable = PageRequest.of(1, 2); // 第二页
-        assertEquals(2, service.getAttractionsByDestinationWithFilters(1L, null, null, pageable).getContent().size());
+        when(attractionRepository.findByDestinationIdOrderByJoinCountDesc(1L, pageable)).thenReturn(new PageImpl<>(list, pageable, 5));
+        Page<Attraction> result = service.getAttractionsByDestinationWithFilters(1L, null, null, pageable);
+        assertEquals(2, result.getContent().size());
+        assertEquals(5, result.getTotalElements());
     }
     @Test
     void getAttractionsByDestinationWithFilters_tagOnly() throws Exception {
-        Attraction a1 = new Attraction(); a1.setName("美食天堂");
-        Attraction a2 = new Attraction(); a2.setName("自然风光");
-        when(attractionRepository.findByDestinationIdOrderByJoinCountDesc(1L)).thenReturn(Arrays.asList(a1, a2));
-        AttractionServiceImpl testService = new AttractionServiceImpl() {
-            @Override
-            public List<String> getTopNTags(Attraction a, int n) {
-                if ("美食天堂".equals(a.getName())) return List.of("美食");
-                if ("自然风光".equals(a.getName())) return List.of("自然");
-                return List.of();
-            }
-        };
-        // 注入依赖
-        java.lang.reflect.Field field = AttractionServiceImpl.class.getDeclaredField("objectMapper");
-        field.setAccessible(true);
-        field.set(testService, objectMapper);
-        java.lang.reflect.Field repoField = AttractionServiceImpl.class.getDeclaredField("attractionRepository");
-        repoField.setAccessible(true);
-        repoField.set(testService, attractionRepository);
+        Attraction a1 = new Attraction(); a1.setId(10L); a1.setName("美食天堂");
+        when(tagRepository.findAll()).thenReturn(List.of(tag(1L, "美食"), tag(2L, "自然")));
+        when(entityTagScoreRepository.countAttractionsByTopTags(1L, List.of(1L), 1, 3, null)).thenReturn(1L);
+        when(entityTagScoreRepository.findAttractionIdsByTopTags(1L, List.of(1L), 1, 3, null, 2, 0L)).thenReturn(List.of(10L));
+        when(attractionRepository.findAllById(List.of(10L))).thenReturn(List.of(a1));
         Pageable pageable = PageRequest.of(0, 2);
-        assertEquals(1, testService.getAttractionsByDestinationWithFilters(1L, "美食", null, pageable).getTotalElements());
+        Page<Attraction> result = service.getAttractionsByDestinationWithFilters(1L, "美食", null, pageable);
+        assertEquals(1, result.getTotalElements());
+        assertEquals("美食天堂", result.getContent().get(0).getName());
     }
     @Test
     void getAttractionsByDestinationWithFilters_keywordOnly() {
         Attraction a1 = new Attraction(); a1.setName("美食天堂"); a1.setDescription("好吃");
-        Attraction a2 = new Attraction(); a2.setName("自然风光"); a2.setDescription("风景");
-        when(attractionRepository.findByDestinationIdOrderByJoinCountDesc(1L)).thenReturn(Arrays.asList(a1, a2));
         Pageable pageable = PageRequest.of(0, 2);
-        assertEquals(1, service.getAttractionsByDestinationWithFilters(1L, null, "天堂", pageable).getTotalElements());
+        when(attractionRepository.searchByDestinationIdAndKeyword(1L, "天堂", pageable)).thenReturn(new PageImpl<>(List.of(a1), pageable, 1));
+        assertEquals(1, service.getAttractionsByDestinationWithFilters(1L, null, " 天堂 ", pageable).getTotalElements());
     }
     @Test
     void getAttractionsByDestinationWithFilters_tagAndKeyword() throws Exception {
-        Attraction a1 = new Attraction(); a1.setName("美食天堂"); a1.setDescription("好吃");
-        Attraction a2 = new Attraction(); a2.setName("自然风光"); a2.setDescription("风景");
-        when(attractionRepository.findByDestinationIdOrderByJoinCountDesc(1L)).thenReturn(Arrays.asList(a1, a2));
-        AttractionServiceImpl testService = new AttractionServiceImpl() {
-            @Override
-            public List<String> getTopNTags(Attraction a, int n) {
-                if ("美食天堂".equals(a.getName())) return List.of("美食");
-                if ("自然风光".equals(a.getName())) return List.of("自然");
-                return List.of();
-            }
-        };
-        java.lang.reflect.Field field = AttractionServiceImpl.class.getDeclaredField("objectMapper");
-        field.setAccessible(true);
-        field.set(testService, objectMapper);
-        java.lang.reflect.Field repoField = AttractionServiceImpl.class.getDeclaredField("attractionRepository");
-        repoField.setAccessible(true);
-        repoField.set(testService, attractionRepository);
+        Attraction a1 = new Attraction(); a1.setId(10L); a1.setName("美食天堂"); a1.setDescription("好吃");
+        when(tagRepository.findAll()).thenReturn(List.of(tag(1L, "美食"), tag(2L, "自然")));
+        when(entityTagScoreRepository.countAttractionsByTopTags(1L, List.of(1L, 2L), 2, 3, "天堂")).thenReturn(1L);
+        when(entityTagScoreRepository.findAttractionIdsByTopTags(1L, List.of(1L, 2L), 2, 3, "天堂", 1, 0L)).thenReturn(List.of(10L));
+        when(attractionRepository.findAllById(List.of(10L))).thenReturn(List.of(a1));
         Pageable pageable = PageRequest.of(0, 1);
-        assertEquals(1, testService.getAttractionsByDestinationWithFilters(1L, "美食", "天堂", pageable).getTotalElements());
+        assertEquals(1, service.getAttractionsByDestinationWithFilters(1L, "美食, 自然,美食", "天堂", pageable).getTotalElements());
     }
     @Test
     void getAttractionsByDestinationWithFilters_noResult() {
-        Attraction a1 = new Attraction(); a1.setName("美食天堂");
-        when(attractionRepository.findByDestinationIdOrderByJoinCountDesc(1L)).thenReturn(Arrays.asList(a1));
+        when(tagRepository.findAll()).thenReturn(List.of(tag(1L, "美食")));
         Pageable pageable = PageRequest.of(0, 1);
         assertEquals(0, service.getAttractionsByDestinationWithFilters(1L, "不存在", null, pageable).getTotalElements());
+        verifyNoInteractions(entityTagScoreRepository);
     }
     @Test
     void getAttractionsByDestinationWithFilters_paginationEdge() {
-        List<Attraction> list = new ArrayList<>();
-        for (int i = 0; i < 3; i++) { Attraction a = new Attraction(); a.setName("A"+i); list.add(a); }
-        when(attractionRepository.findByDestinationIdOrderByJoinCountDesc(1L)).thenReturn(list);
+        when(tagRepository.findAll()).thenReturn(List.of(tag(1L, "美食")));
+        when(entityTagScoreRepository.countAttractionsByTopTags(1L, List.of(1L), 1, 3, null)).thenReturn(3L);
         Pageable pageable = PageRequest.of(2, 2); // 超出范围
-        assertEquals(0, service.getAttractionsByDestinationWithFilters(1L, null, null, pageable).getContent().size());
+        Page<Attraction> result = service.getAttractionsByDestinationWithFilters(1L, "美食", null, pageable);
+        assertEquals(0, result.getContent().size());
+        assertEquals(3, result.getTotalElements());
+        verify(entityTagScoreRepository, never()).findAttractionIdsByTopTags(any(), any(), anyInt(), anyInt(), any(), anyInt(), anyLong());
+    }
+
+    private Tag tag(Long id, String name) {
+        Tag tag = new Tag(); tag.setId(id); tag.setTag(name);
+        return tag;
     }
-}
\ No newline at end of file
+}
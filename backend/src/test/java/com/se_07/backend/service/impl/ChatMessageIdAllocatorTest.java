@@ -0,0 +1,124 @@
+package com.se_07.backend.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.se_07.backend.service.impl.ChatMessageIdAllocator.CHAT_MESSAGE_TABLE;
+import static com.se_07.backend.service.impl.ChatMessageIdAllocator.GROUP_MESSAGE_TABLE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatMessageIdAllocatorTest {
+
+    private static final String SELECT_LAST = "SELECT last_id FROM chat_message_id_sequence WHERE name = ?";
+    private static final String UPDATE_LAST = "UPDATE chat_message_id_sequence SET last_id = ? WHERE name = ? AND last_id = ?";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ChatMessageIdAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new ChatMessageIdAllocator();
+        ReflectionTestUtils.setField(allocator, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(allocator, "source", ChatMessageIdAllocator.Source.DATABASE);
+    }
+
+    @Test
+    void testGetSource_AutoFollowsBrokerMode() {
+        ReflectionTestUtils.setField(allocator, "source", ChatMessageIdAllocator.Source.AUTO);
+        assertEquals(ChatMessageIdAllocator.Source.LOCAL, allocator.getSource());
+
+        ReflectionTestUtils.setField(allocator, "brokerMode", "relay");
+        assertEquals(ChatMessageIdAllocator.Source.DATABASE, allocator.getSource());
+    }
+
+    @Test
+    void testNext_AutoWithSimpleBrokerAllocatesInMemory() {
+        ReflectionTestUtils.setField(allocator, "source", ChatMessageIdAllocator.Source.AUTO);
+        when(jdbcTemplate.queryForObject(contains("user_chat_message"), eq(Long.class))).thenReturn(5L);
+
+        assertEquals(6L, allocator.next(CHAT_MESSAGE_TABLE));
+        assertEquals(7L, allocator.next(CHAT_MESSAGE_TABLE));
+        // 不访问序列表
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(Long.class), any());
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void testNext_InitializesSequenceFromCurrentMaxId() {
+        when(jdbcTemplate.queryForList(SELECT_LAST, Long.class, CHAT_MESSAGE_TABLE))
+                .thenReturn(Collections.emptyList())
+                .thenReturn(List.of(100L));
+        when(jdbcTemplate.queryForObject(contains("user_chat_message"), eq(Long.class))).thenReturn(100L);
+        when(jdbcTemplate.update(startsWith("INSERT INTO chat_message_id_sequence"), eq(CHAT_MESSAGE_TABLE), eq(100L)))
+                .thenReturn(1);
+        when(jdbcTemplate.update(UPDATE_LAST, 101L, CHAT_MESSAGE_TABLE, 100L)).thenReturn(1);
+
+        assertEquals(101L, allocator.next(CHAT_MESSAGE_TABLE));
+    }
+
+    @Test
+    void testNext_SequenceInitializedByAnotherInstance() {
+        when(jdbcTemplate.queryForList(SELECT_LAST, Long.class, GROUP_MESSAGE_TABLE))
+                .thenReturn(Collections.emptyList())
+                .thenReturn(List.of(40L));
+        when(jdbcTemplate.queryForObject(contains("group_chat_message"), eq(Long.class))).thenReturn(7L);
+        when(jdbcTemplate.update(startsWith("INSERT INTO chat_message_id_sequence"), eq(GROUP_MESSAGE_TABLE), eq(7L)))
+                .thenThrow(new DuplicateKeyException("exists"));
+        when(jdbcTemplate.update(UPDATE_LAST, 41L, GROUP_MESSAGE_TABLE, 40L)).thenReturn(1);
+
+        assertEquals(41L, allocator.next(GROUP_MESSAGE_TABLE));
+    }
+
+    @Test
+    void testNext_RetriesWhenAnotherInstanceAdvancedFirst() {
+        when(jdbcTemplate.queryForList(SELECT_LAST, Long.class, CHAT_MESSAGE_TABLE))
+                .thenReturn(List.of(10L))
+                .thenReturn(List.of(12L));
+        when(jdbcTemplate.update(UPDATE_LAST, 11L, CHAT_MESSAGE_TABLE, 10L)).thenReturn(0);
+        when(jdbcTemplate.update(UPDATE_LAST, 13L, CHAT_MESSAGE_TABLE, 12L)).thenReturn(1);
+
+        assertEquals(13L, allocator.next(CHAT_MESSAGE_TABLE));
+    }
+
+    @Test
+    void testNext_AllocatesWithinReservedBlock() {
+        ReflectionTestUtils.setField(allocator, "blockSize", 3);
+        when(jdbcTemplate.queryForList(SELECT_LAST, Long.class, CHAT_MESSAGE_TABLE))
+                .thenReturn(List.of(20L))
+                .thenReturn(List.of(50L));
+        when(jdbcTemplate.update(UPDATE_LAST, 23L, CHAT_MESSAGE_TABLE, 20L)).thenReturn(1);
+        when(jdbcTemplate.update(UPDATE_LAST, 53L, CHAT_MESSAGE_TABLE, 50L)).thenReturn(1);
+
+        assertEquals(21L, allocator.next(CHAT_MESSAGE_TABLE));
+        assertEquals(22L, allocator.next(CHAT_MESSAGE_TABLE));
+        assertEquals(23L, allocator.next(CHAT_MESSAGE_TABLE));
+        // 块用完后申请新块，期间其他实例已经分配到 50
+        assertEquals(51L, allocator.next(CHAT_MESSAGE_TABLE));
+        verify(jdbcTemplate, times(2)).update(eq(UPDATE_LAST), any(), any(), any());
+    }
+
+    @Test
+    void testNext_LocalSourceSeedsOnceFromMaxId() {
+        ReflectionTestUtils.setField(allocator, "source", ChatMessageIdAllocator.Source.LOCAL);
+        when(jdbcTemplate.queryForObject(contains("user_chat_message"), eq(Long.class))).thenReturn(5L);
+
+        assertEquals(6L, allocator.next(CHAT_MESSAGE_TABLE));
+        assertEquals(7L, allocator.next(CHAT_MESSAGE_TABLE));
+        verify(jdbcTemplate, times(1)).queryForObject(anyString(), eq(Long.class));
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+}
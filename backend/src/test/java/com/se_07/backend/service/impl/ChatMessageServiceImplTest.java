@@ -2,7 +2,6 @@ package com.se_07.backend.service.impl;
 
 import com.se_07.backend.dto.ChatMessageDTO;
 import com.se_07.backend.entity.ChatMessage;
-import com.se_07.backend.entity.User;
 import com.se_07.backend.repository.ChatMessageRepository;
 import com.se_07.backend.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,15 +10,28 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.data.domain.PageRequest;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,12 +40,29 @@ public class ChatMessageServiceImplTest {
     private ChatMessageRepository chatMessageRepository;
     @Mock
     private UserRepository userRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
     @InjectMocks
     private ChatMessageServiceImpl chatMessageService;
+    private ChatMessageWriteBehind chatMessageWriteBehind;
 
     @BeforeEach
     public void setUp() {
-        // MockitoExtension自动处理
+        // 使用真实的用户摘要缓存，底层查询由 userRepository mock 提供
+        UserSummaryCache userSummaryCache = new UserSummaryCache();
+        ReflectionTestUtils.setField(userSummaryCache, "userRepository", userRepository);
+        ReflectionTestUtils.setField(chatMessageService, "userSummaryCache", userSummaryCache);
+        // 真实的写入管道，不启动后台写入线程；两张表当前最大消息ID分别为 5 和 0
+        chatMessageWriteBehind = new ChatMessageWriteBehind();
+        ReflectionTestUtils.setField(chatMessageWriteBehind, "jdbcTemplate", jdbcTemplate);
+        ChatMessageIdAllocator idAllocator = new ChatMessageIdAllocator();
+        ReflectionTestUtils.setField(idAllocator, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(idAllocator, "source", ChatMessageIdAllocator.Source.LOCAL);
+        ReflectionTestUtils.setField(chatMessageWriteBehind, "idAllocator", idAllocator);
+        ReflectionTestUtils.setField(chatMessageWriteBehind, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(chatMessageService, "chatMessageWriteBehind", chatMessageWriteBehind);
+        lenient().when(jdbcTemplate.queryForObject(contains("user_chat_message"), eq(Long.class))).thenReturn(5L);
+        lenient().when(jdbcTemplate.queryForObject(contains("group_chat_message"), eq(Long.class))).thenReturn(0L);
     }
 
     @Test
@@ -43,25 +72,23 @@ public class ChatMessageServiceImplTest {
         dto.setToId(2L);
         dto.setContent("hi");
         dto.setMessageTime(LocalDateTime.now());
-        ChatMessage saved = new ChatMessage();
-        saved.setMessageId(10L);
-        when(chatMessageRepository.save(any(ChatMessage.class))).thenReturn(saved);
         ChatMessageDTO result = chatMessageService.sendMessage(dto);
-        assertEquals(10L, result.getMessageId());
+        // 消息ID接着表内最大ID在内存中分配，写入交给后台批量完成
+        assertEquals(6L, result.getMessageId());
+        assertEquals(1, chatMessageWriteBehind.getStats().get("queueDepth"));
+        verify(chatMessageRepository, never()).save(any(ChatMessage.class));
     }
 
     @Test
-    public void testSendMessage_messageIdNull() {
+    public void testSendMessage_clientMessageIdIgnored() {
         ChatMessageDTO dto = new ChatMessageDTO();
-        dto.setFromId(1L);
-        dto.setToId(2L);
+        dto.setMessageId(999L);
+        dto.setFromId(2L);
+        dto.setToId(1L);
         dto.setContent("hi");
         dto.setMessageTime(LocalDateTime.now());
-        ChatMessage saved = new ChatMessage();
-        saved.setMessageId(null);
-        when(chatMessageRepository.save(any(ChatMessage.class))).thenReturn(saved);
         ChatMessageDTO result = chatMessageService.sendMessage(dto);
-        assertNull(result.getMessageId());
+        assertEquals(6L, result.getMessageId());
     }
 
     @Test
@@ -71,11 +98,27 @@ public class ChatMessageServiceImplTest {
         dto.setToId(2L);
         dto.setContent("hi");
         dto.setMessageTime(null);
-        ChatMessage saved = new ChatMessage();
-        saved.setMessageId(11L);
-        when(chatMessageRepository.save(any(ChatMessage.class))).thenReturn(saved);
         ChatMessage result = chatMessageService.sendMessageDTO(dto);
-        assertEquals(11L, result.getMessageId());
+        assertEquals(6L, result.getMessageId());
+        assertNotNull(result.getMessageTime());
+        assertEquals(1L, result.getUserLowId());
+        assertEquals(2L, result.getUserHighId());
+    }
+
+    @Test
+    public void testIngestMessage_returnsBroadcastableDtoWithoutWaitingForDatabase() {
+        ChatMessageDTO dto = new ChatMessageDTO();
+        dto.setFromId(1L);
+        dto.setToId(2L);
+        dto.setContent("hi");
+        when(userRepository.findSummariesByIdIn(Set.of(1L))).thenReturn(
+                Collections.singletonList(new Object[]{1L, "张三", null}));
+        CompletableFuture<ChatMessageDTO> future = chatMessageService.ingestMessage(dto);
+        assertTrue(future.isDone());
+        ChatMessageDTO result = future.join();
+        assertEquals(6L, result.getMessageId());
+        assertEquals("张三", result.getUserName());
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
     }
 
     @Test
@@ -87,8 +130,8 @@ public class ChatMessageServiceImplTest {
         msg.setContent("hi");
         msg.setMessageTime(LocalDateTime.now());
         when(chatMessageRepository.findByFromIdAndToId(1L, 2L)).thenReturn(Arrays.asList(msg));
-        User user = new User(); user.setId(1L); user.setUsername("张三");
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.findSummariesByIdIn(Set.of(1L))).thenReturn(
+                Collections.singletonList(new Object[]{1L, "张三", null}));
         List<ChatMessageDTO> result = chatMessageService.getMessagesBetween(1L, 2L);
         assertEquals(1, result.size());
         assertEquals("张三", result.get(0).getUserName());
@@ -110,8 +153,8 @@ public class ChatMessageServiceImplTest {
         msg.setContent("hi");
         msg.setMessageTime(LocalDateTime.now());
         when(chatMessageRepository.findByFromIdOrToId(1L, 1L)).thenReturn(Arrays.asList(msg));
-        User user = new User(); user.setId(1L); user.setUsername("张三");
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.findSummariesByIdIn(Set.of(1L))).thenReturn(
+                Collections.singletonList(new Object[]{1L, "张三", null}));
         List<ChatMessageDTO> result = chatMessageService.getAllMessagesForUser(1L);
         assertEquals(1, result.size());
         assertEquals("张三", result.get(0).getUserName());
@@ -132,21 +175,85 @@ public class ChatMessageServiceImplTest {
         msg.setToId(2L);
         msg.setContent("hi");
         msg.setMessageTime(LocalDateTime.now());
-        when(chatMessageRepository.findMessagesBetweenUsers(1L, 2L)).thenReturn(Arrays.asList(msg));
-        User user = new User(); user.setId(1L); user.setUsername("张三");
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        List<ChatMessageDTO> result = chatMessageService.getMessagesBetweenUsers(1L, 2L);
+        when(chatMessageRepository.findConversation(1L, 2L)).thenReturn(Arrays.asList(msg));
+        when(userRepository.findSummariesByIdIn(Set.of(1L))).thenReturn(
+                Collections.singletonList(new Object[]{1L, "张三", null}));
+        // 参数顺序不影响会话键
+        List<ChatMessageDTO> result = chatMessageService.getMessagesBetweenUsers(2L, 1L);
         assertEquals(1, result.size());
         assertEquals("张三", result.get(0).getUserName());
     }
 
     @Test
     public void testGetMessagesBetweenUsers_notFound() {
-        when(chatMessageRepository.findMessagesBetweenUsers(1L, 2L)).thenReturn(Collections.emptyList());
+        when(chatMessageRepository.findConversation(1L, 2L)).thenReturn(Collections.emptyList());
         List<ChatMessageDTO> result = chatMessageService.getMessagesBetweenUsers(1L, 2L);
         assertTrue(result.isEmpty());
     }
 
+    @Test
+    public void testGetConversationPage_latestPageReturnedInAscendingOrder() {
+        ChatMessage newer = message(30L, 2L, 1L);
+        ChatMessage older = message(20L, 1L, 2L);
+        when(chatMessageRepository.findConversationBefore(1L, 2L, Long.MAX_VALUE, PageRequest.of(0, 50)))
+                .thenReturn(Arrays.asList(newer, older));
+        when(userRepository.findSummariesByIdIn(Set.of(1L, 2L))).thenReturn(Arrays.asList(
+                new Object[]{1L, "张三", null}, new Object[]{2L, "李四", null}));
+
+        List<ChatMessageDTO> result = chatMessageService.getConversationPage(2L, 1L, null, null, null);
+
+        assertEquals(20L, result.get(0).getMessageId());
+        assertEquals("张三", result.get(0).getUserName());
+        assertEquals(30L, result.get(1).getMessageId());
+        assertEquals("李四", result.get(1).getUserName());
+    }
+
+    @Test
+    public void testGetConversationPage_afterCursorAndLimitCapped() {
+        when(chatMessageRepository.findConversationAfter(1L, 2L, 40L, PageRequest.of(0, 200)))
+                .thenReturn(Collections.emptyList());
+
+        assertTrue(chatMessageService.getConversationPage(1L, 2L, 10L, 40L, 10000).isEmpty());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    public void testGetUserMessagesPage_mergesSentAndReceivedClosestToCursor() {
+        when(chatMessageRepository.findSentBefore(1L, 100L, PageRequest.of(0, 3)))
+                .thenReturn(Arrays.asList(message(90L, 1L, 2L), message(60L, 1L, 3L), message(50L, 1L, 1L)));
+        when(chatMessageRepository.findReceivedBefore(1L, 100L, PageRequest.of(0, 3)))
+                .thenReturn(Arrays.asList(message(80L, 3L, 1L), message(50L, 1L, 1L), message(10L, 2L, 1L)));
+        when(userRepository.findSummariesByIdIn(Set.of(1L, 3L))).thenReturn(Collections.emptyList());
+
+        List<ChatMessageDTO> result = chatMessageService.getUserMessagesPage(1L, 100L, null, 3);
+
+        assertEquals(Arrays.asList(60L, 80L, 90L), result.stream().map(ChatMessageDTO::getMessageId).toList());
+    }
+
+    @Test
+    public void testGetUserMessagesPage_afterCursorKeepsOldestNewMessages() {
+        when(chatMessageRepository.findSentAfter(1L, 5L, PageRequest.of(0, 2)))
+                .thenReturn(Arrays.asList(message(8L, 1L, 2L), message(9L, 1L, 2L)));
+        when(chatMessageRepository.findReceivedAfter(1L, 5L, PageRequest.of(0, 2)))
+                .thenReturn(Arrays.asList(message(6L, 2L, 1L)));
+        when(userRepository.findSummariesByIdIn(Set.of(1L, 2L))).thenReturn(Collections.emptyList());
+
+        List<ChatMessageDTO> result = chatMessageService.getUserMessagesPage(1L, null, 5L, 2);
+
+        assertEquals(Arrays.asList(6L, 8L), result.stream().map(ChatMessageDTO::getMessageId).toList());
+    }
+
+    @Test
+    public void testGetRecentConversations_usesDefaultLimit() {
+        when(chatMessageRepository.findLatestConversations(1L, 50)).thenReturn(Arrays.asList(message(7L, 4L, 1L)));
+        when(userRepository.findSummariesByIdIn(Set.of(4L))).thenReturn(Collections.emptyList());
+
+        List<ChatMessageDTO> result = chatMessageService.getRecentConversations(1L, 0);
+
+        assertEquals(1, result.size());
+        verify(chatMessageRepository).findLatestConversations(1L, 50);
+    }
+
     @Test
     public void testToDTO_userNotFound() {
         ChatMessage msg = new ChatMessage();
@@ -155,7 +262,7 @@ public class ChatMessageServiceImplTest {
         msg.setToId(2L);
         msg.setContent("hi");
         msg.setMessageTime(LocalDateTime.now());
-        when(userRepository.findById(999L)).thenReturn(Optional.empty());
+        when(userRepository.findSummariesByIdIn(Set.of(999L))).thenReturn(Collections.emptyList());
         ChatMessageDTO dto = chatMessageService.toDTO(msg);
         assertNull(dto.getUserName());
     }
@@ -167,10 +274,6 @@ public class ChatMessageServiceImplTest {
         dto.setToId(2L);
         dto.setContent(null);
         dto.setMessageTime(LocalDateTime.now());
-        ChatMessage saved = new ChatMessage();
-        saved.setMessageId(12L);
-        saved.setContent(null);
-        when(chatMessageRepository.save(any(ChatMessage.class))).thenReturn(saved);
         ChatMessageDTO result = chatMessageService.sendMessage(dto);
         assertNull(result.getContent());
     }
@@ -182,17 +285,33 @@ public class ChatMessageServiceImplTest {
         dto.setToId(2L);
         dto.setContent("");
         dto.setMessageTime(LocalDateTime.now());
-        ChatMessage saved = new ChatMessage();
-        saved.setMessageId(13L);
-        saved.setContent("");
-        when(chatMessageRepository.save(any(ChatMessage.class))).thenReturn(saved);
         ChatMessageDTO result = chatMessageService.sendMessage(dto);
         assertEquals("", result.getContent());
     }
 
+    @Test
+    public void testSendMessage_contentTooLong() {
+        ChatMessageDTO dto = new ChatMessageDTO();
+        dto.setFromId(1L);
+        dto.setToId(2L);
+        dto.setContent("a".repeat(501));
+        assertThrows(RuntimeException.class, () -> chatMessageService.sendMessage(dto));
+        assertEquals(0, chatMessageWriteBehind.getStats().get("queueDepth"));
+    }
+
 
     @Test
     public void testToDTO_msgNull() {
         assertThrows(NullPointerException.class, () -> chatMessageService.toDTO(null));
     }
-} 
\ No newline at end of file
+
+    private ChatMessage message(Long id, Long fromId, Long toId) {
+        ChatMessage msg = new ChatMessage();
+        msg.setMessageId(id);
+        msg.setFromId(fromId);
+        msg.setToId(toId);
+        msg.setContent("m" + id);
+        msg.setMessageTime(LocalDateTime.now());
+        return msg;
+    }
+}
@@ -0,0 +1,245 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.entity.ChatMessage;
+import com.se_07.backend.entity.GroupChatMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatMessageWriteBehindTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ChatMessageWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        // 不启动写入线程，由测试直接调用 flush
+        writeBehind = new ChatMessageWriteBehind();
+        ReflectionTestUtils.setField(writeBehind, "jdbcTemplate", jdbcTemplate);
+        // ID按表内当前最大ID在内存中分配（单实例模式）
+        ChatMessageIdAllocator idAllocator = new ChatMessageIdAllocator();
+        ReflectionTestUtils.setField(idAllocator, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(idAllocator, "source", ChatMessageIdAllocator.Source.LOCAL);
+        ReflectionTestUtils.setField(writeBehind, "idAllocator", idAllocator);
+        ReflectionTestUtils.setField(writeBehind, "transactionManager", transactionManager);
+        lenient().when(jdbcTemplate.queryForObject(contains("user_chat_message"), eq(Long.class))).thenReturn(100L);
+        lenient().when(jdbcTemplate.queryForObject(contains("group_chat_message"), eq(Long.class))).thenReturn(7L);
+    }
+
+    @Test
+    void testEnqueue_AssignsIdsAfterCurrentMaxAndConversationKey() {
+        ChatMessage first = chatMessage(5L, 3L);
+        ChatMessage second = chatMessage(3L, 5L);
+        GroupChatMessage group = groupMessage(1L);
+
+        writeBehind.enqueue(first);
+        writeBehind.enqueue(second);
+        writeBehind.enqueue(group);
+
+        assertEquals(101L, first.getMessageId());
+        assertEquals(102L, second.getMessageId());
+        assertEquals(8L, group.getMessageId());
+        assertEquals(3L, first.getUserLowId());
+        assertEquals(5L, first.getUserHighId());
+        assertNotNull(first.getMessageTime());
+        // 最大ID只在首次写入时读取一次
+        verify(jdbcTemplate, times(2)).queryForObject(anyString(), eq(Long.class));
+        assertEquals(3, writeBehind.getStats().get("queueDepth"));
+    }
+
+    @Test
+    void testFlush_WritesOneMultiRowInsertPerTable() {
+        CompletableFuture<Void> chat1 = writeBehind.enqueue(chatMessage(1L, 2L));
+        CompletableFuture<Void> chat2 = writeBehind.enqueue(chatMessage(2L, 1L));
+        CompletableFuture<Void> group = writeBehind.enqueue(groupMessage(4L));
+
+        writeBehind.flush();
+
+        ArgumentCaptor<Object[]> chatArgs = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).update(startsWith("INSERT INTO user_chat_message"), chatArgs.capture());
+        assertEquals(14, chatArgs.getValue().length);
+        assertEquals(101L, chatArgs.getValue()[0]);
+        assertEquals(102L, chatArgs.getValue()[7]);
+        verify(jdbcTemplate).update(startsWith("INSERT INTO group_chat_message"), any(Object[].class));
+        assertTrue(chat1.isDone() && chat2.isDone() && group.isDone());
+        assertEquals(0, writeBehind.getStats().get("queueDepth"));
+        assertEquals(3L, writeBehind.getStats().get("persisted"));
+        assertEquals(1L, writeBehind.getStats().get("flushBatches"));
+    }
+
+    @Test
+    void testFlush_FailureKeepsBatchAndRetries() {
+        // 退避时间取上限，避免首次打印日志等耗时让退避期提前结束
+        ReflectionTestUtils.setField(writeBehind, "flushIntervalMs", 10_000L);
+        CompletableFuture<Void> persisted = writeBehind.enqueue(chatMessage(1L, 2L));
+        when(jdbcTemplate.update(anyString(), any(Object[].class)))
+                .thenThrow(new RuntimeException("db down"))
+                .thenReturn(1);
+
+        writeBehind.flush();
+        assertFalse(persisted.isDone());
+        assertEquals(1, writeBehind.getStats().get("queueDepth"));
+        assertEquals(1L, writeBehind.getStats().get("flushErrors"));
+
+        // 退避期内不重试
+        writeBehind.flush();
+        verify(jdbcTemplate, times(1)).update(anyString(), any(Object[].class));
+
+        ReflectionTestUtils.setField(writeBehind, "nextAttemptAt", 0L);
+        writeBehind.flush();
+        assertTrue(persisted.isDone());
+        assertEquals(0, writeBehind.getStats().get("queueDepth"));
+        verify(jdbcTemplate, times(2)).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void testFlush_RejectedBatchFallsBackToRowByRow() {
+        CompletableFuture<Void> good1 = writeBehind.enqueue(chatMessage(1L, 2L));
+        CompletableFuture<Void> bad = writeBehind.enqueue(chatMessage(1L, 3L));
+        CompletableFuture<Void> good2 = writeBehind.enqueue(chatMessage(1L, 4L));
+        // 整批被拒绝，逐条写入时只有第二条违反约束
+        when(jdbcTemplate.update(anyString(), any(Object[].class)))
+                .thenThrow(new DataIntegrityViolationException("constraint violation"))
+                .thenReturn(1)
+                .thenThrow(new DataIntegrityViolationException("constraint violation"))
+                .thenReturn(1);
+
+        writeBehind.flush();
+
+        assertTrue(good1.isDone() && !good1.isCompletedExceptionally());
+        assertTrue(bad.isCompletedExceptionally());
+        assertTrue(good2.isDone() && !good2.isCompletedExceptionally());
+        assertEquals(0, writeBehind.getStats().get("queueDepth"));
+        assertEquals(2L, writeBehind.getStats().get("persisted"));
+        assertEquals(1L, writeBehind.getStats().get("dropped"));
+        verify(jdbcTemplate, times(4)).update(anyString(), any(Object[].class));
+
+        // 之后的消息照常写入
+        CompletableFuture<Void> next = writeBehind.enqueue(chatMessage(1L, 5L));
+        writeBehind.flush();
+        assertTrue(next.isDone() && !next.isCompletedExceptionally());
+    }
+
+    @Test
+    void testFlush_BothTablesWrittenInOneTransaction() {
+        CompletableFuture<Void> chat = writeBehind.enqueue(chatMessage(1L, 2L));
+        CompletableFuture<Void> group = writeBehind.enqueue(groupMessage(4L));
+        when(jdbcTemplate.update(startsWith("INSERT INTO group_chat_message"), any(Object[].class)))
+                .thenThrow(new TransientDataAccessResourceException("lock wait timeout"))
+                .thenReturn(1);
+
+        writeBehind.flush();
+
+        // 群聊写入失败时私聊写入随事务回滚，整批留待重试
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        assertFalse(chat.isDone());
+        assertFalse(group.isDone());
+        assertEquals(2, writeBehind.getStats().get("queueDepth"));
+    }
+
+    @Test
+    void testFlush_RowByRowTreatsOwnDuplicateKeyAsPersisted() {
+        CompletableFuture<Void> stored = writeBehind.enqueue(chatMessage(1L, 2L));
+        CompletableFuture<Void> fresh = writeBehind.enqueue(chatMessage(1L, 3L));
+        // 上一次提交结果未知但实际已写入：整批主键冲突，逐条写入时第一条冲突
+        when(jdbcTemplate.update(anyString(), any(Object[].class)))
+                .thenThrow(new DuplicateKeyException("duplicate"))
+                .thenThrow(new DuplicateKeyException("duplicate"))
+                .thenReturn(1);
+
+        writeBehind.flush();
+
+        assertTrue(stored.isDone() && !stored.isCompletedExceptionally());
+        assertTrue(fresh.isDone() && !fresh.isCompletedExceptionally());
+        assertEquals(2L, writeBehind.getStats().get("persisted"));
+        assertEquals(0L, writeBehind.getStats().get("dropped"));
+    }
+
+    @Test
+    void testFlush_RowByRowStopsOnConnectionFailure() {
+        CompletableFuture<Void> bad = writeBehind.enqueue(chatMessage(1L, 2L));
+        CompletableFuture<Void> pending = writeBehind.enqueue(chatMessage(1L, 3L));
+        when(jdbcTemplate.update(anyString(), any(Object[].class)))
+                .thenThrow(new DataIntegrityViolationException("too long"))
+                .thenThrow(new DataIntegrityViolationException("too long"))
+                .thenThrow(new RuntimeException("db down"));
+
+        writeBehind.flush();
+
+        // 数据库不可用时剩余消息保留重试，不会被丢弃
+        assertTrue(bad.isCompletedExceptionally());
+        assertFalse(pending.isDone());
+        assertEquals(1, writeBehind.getStats().get("queueDepth"));
+        assertEquals(1L, writeBehind.getStats().get("flushErrors"));
+    }
+
+    @Test
+    void testAcknowledge_FlushModeWaitsForDatabase() {
+        CompletableFuture<Void> persisted = writeBehind.enqueue(groupMessage(1L));
+        assertTrue(writeBehind.acknowledge(persisted, "ok").isDone());
+
+        ReflectionTestUtils.setField(writeBehind, "durability", ChatMessageWriteBehind.Durability.FLUSH);
+        CompletableFuture<String> ack = writeBehind.acknowledge(persisted, "ok");
+        assertFalse(ack.isDone());
+
+        writeBehind.flush();
+        assertEquals("ok", ack.join());
+    }
+
+    @Test
+    void testEnqueue_FullQueueRejects() {
+        ReflectionTestUtils.setField(writeBehind, "queueCapacity", 1);
+        ReflectionTestUtils.setField(writeBehind, "enqueueTimeoutMs", 0L);
+        ReflectionTestUtils.setField(writeBehind, "slots", new Semaphore(1));
+        writeBehind.enqueue(chatMessage(1L, 2L));
+
+        ChatMessage rejectedMessage = chatMessage(1L, 2L);
+        assertThrows(RuntimeException.class, () -> writeBehind.enqueue(rejectedMessage));
+        assertNull(rejectedMessage.getMessageId());
+        assertEquals(1L, writeBehind.getStats().get("rejected"));
+
+        // 写入后释放空位
+        writeBehind.flush();
+        writeBehind.enqueue(chatMessage(1L, 2L));
+        assertEquals(1, writeBehind.getStats().get("queueDepth"));
+    }
+
+    private ChatMessage chatMessage(Long fromId, Long toId) {
+        ChatMessage message = new ChatMessage();
+        message.setFromId(fromId);
+        message.setToId(toId);
+        message.setContent("hi");
+        return message;
+    }
+
+    private GroupChatMessage groupMessage(Long groupId) {
+        GroupChatMessage message = new GroupChatMessage();
+        message.setGroupId(groupId);
+        message.setUserId(2L);
+        message.setContent("hello");
+        return message;
+    }
+}
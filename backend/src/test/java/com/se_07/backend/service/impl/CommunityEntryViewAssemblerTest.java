@@ -0,0 +1,104 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.entity.CommunityEntry;
+import com.se_07.backend.entity.Itinerary;
+import com.se_07.backend.entity.User;
+import com.se_07.backend.repository.CommunityEntryTagRepository;
+import com.se_07.backend.repository.ItineraryRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CommunityEntryViewAssemblerTest {
+
+    @Mock
+    private CommunityEntryTagRepository communityEntryTagRepository;
+
+    @Mock
+    private ItineraryRepository itineraryRepository;
+
+    @InjectMocks
+    private CommunityEntryViewAssembler assembler;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testToEntryMaps_OneQueryEachForTagsAndDestinations() {
+        CommunityEntry first = entry(1L, itinerary(10L));
+        CommunityEntry second = entry(2L, itinerary(20L));
+        when(communityEntryTagRepository.findTagNamesByCommunityEntryIdIn(List.of(1L, 2L)))
+                .thenReturn(List.of(new Object[]{1L, "美食"}, new Object[]{1L, "购物"}));
+        when(itineraryRepository.findDestinationNamesByItineraryIdIn(anyCollection()))
+                .thenReturn(List.of(new Object[]{10L, "东京"}, new Object[]{10L, "大阪"}, new Object[]{10L, "东京"}));
+
+        List<Map<String, Object>> result = assembler.toEntryMaps(List.of(first, second));
+
+        assertEquals(2, result.size());
+        assertEquals(List.of("美食", "购物"), result.get(0).get("tags"));
+        assertEquals(List.of(), result.get(1).get("tags"));
+        Map<String, Object> firstItinerary = (Map<String, Object>) result.get(0).get("itinerary");
+        Map<String, Object> secondItinerary = (Map<String, Object>) result.get(1).get("itinerary");
+        // 按游览顺序排列，重复的目的地只保留第一次出现
+        assertEquals("东京、大阪", firstItinerary.get("destination"));
+        assertEquals("待规划目的地", secondItinerary.get("destination"));
+        assertEquals("alice", ((Map<String, Object>) firstItinerary.get("user")).get("username"));
+        assertFalse(firstItinerary.containsKey("permissionStatus"));
+        verify(communityEntryTagRepository, times(1)).findTagNamesByCommunityEntryIdIn(anyCollection());
+        verify(itineraryRepository, times(1)).findDestinationNamesByItineraryIdIn(Set.of(10L, 20L));
+    }
+
+    @Test
+    void testToEntryMaps_SkipsDestinationQueryWithoutItineraries() {
+        when(communityEntryTagRepository.findTagNamesByCommunityEntryIdIn(anyCollection())).thenReturn(List.of());
+
+        List<Map<String, Object>> result = assembler.toEntryMaps(List.of(entry(1L, null)));
+
+        assertFalse(result.get(0).containsKey("itinerary"));
+        verifyNoInteractions(itineraryRepository);
+    }
+
+    @Test
+    void testToEntryMaps_EmptyInput() {
+        assertTrue(assembler.toEntryMaps(Collections.emptyList()).isEmpty());
+        verifyNoInteractions(communityEntryTagRepository, itineraryRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testToEntryDetailMap_IncludesPermissionStatus() {
+        Itinerary itinerary = itinerary(10L);
+        itinerary.setPermissionStatus(Itinerary.PermissionStatus.所有人可见);
+        when(communityEntryTagRepository.findTagNamesByCommunityEntryIdIn(anyCollection())).thenReturn(List.of());
+        when(itineraryRepository.findDestinationNamesByItineraryIdIn(anyCollection())).thenReturn(List.of());
+
+        Map<String, Object> result = assembler.toEntryDetailMap(entry(1L, itinerary));
+
+        assertEquals(Itinerary.PermissionStatus.所有人可见, ((Map<String, Object>) result.get("itinerary")).get("permissionStatus"));
+    }
+
+    private CommunityEntry entry(Long id, Itinerary itinerary) {
+        CommunityEntry entry = new CommunityEntry();
+        entry.setId(id);
+        entry.setShareCode("CODE" + id);
+        entry.setItinerary(itinerary);
+        return entry;
+    }
+
+    private Itinerary itinerary(Long id) {
+        User user = new User();
+        user.setId(7L);
+        user.setUsername("alice");
+        Itinerary itinerary = new Itinerary();
+        itinerary.setId(id);
+        itinerary.setUser(user);
+        return itinerary;
+    }
+}
@@ -1,10 +1,9 @@
 package com.se_07.backend.service.impl;
 
-import com.se_07.backend.dto.ItineraryDTO;
-import com.se_07.backend.dto.converter.ItineraryConverter;
 import com.se_07.backend.entity.*;
 import com.se_07.backend.repository.CommunityEntryRepository;
 import com.se_07.backend.repository.CommunityEntryTagRepository;
+import com.se_07.backend.repository.ItineraryRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,6 +14,7 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -37,7 +37,10 @@ class CommunityServiceImplTest {
     @Mock
     private CommunityEntryTagRepository communityEntryTagRepository;
     @Mock
-    private ItineraryConverter itineraryConverter;
+    private ItineraryRepository itineraryRepository;
+
+    @Mock
+    private CounterWriteBuffer counterWriteBuffer;
 
     @InjectMocks
     private CommunityServiceImpl communityService;
@@ -45,8 +48,6 @@ class CommunityServiceImplTest {
     private CommunityEntry sampleEntryWithDest;
     private CommunityEntry sampleEntryNoDest;
 
-    private List<CommunityEntryTag> tagLinks;
-
     @BeforeEach
     void setup() {
         // Build sample user
@@ -100,37 +101,23 @@ class CommunityServiceImplTest {
         sampleEntryNoDest.setCreatedAt(LocalDateTime.now());
         sampleEntryNoDest.setItinerary(itineraryNoDest);
 
-        // Build tags (covers tag present & null)
-        Tag tag = new Tag();
-        tag.setId(1L);
-        tag.setTag("美食");
-        CommunityEntryTag linkWithTag = new CommunityEntryTag();
-        linkWithTag.setCommunityEntry(sampleEntryWithDest);
-        linkWithTag.setTag(tag);
-
-        CommunityEntryTag linkNoTag = new CommunityEntryTag();
-        linkNoTag.setCommunityEntry(sampleEntryWithDest);
-        linkNoTag.setTag(null); // triggers else path in code
-
-        tagLinks = List.of(linkWithTag, linkNoTag);
-
-        // Stub itineraryConverter for both itineraries
-        Mockito.lenient().when(itineraryConverter.toDTO(itineraryWithDest)).thenReturn(buildDTO(itineraryWithDest, List.of("北京")));
-        Mockito.lenient().when(itineraryConverter.toDTO(itineraryNoDest)).thenReturn(buildDTO(itineraryNoDest, Collections.emptyList()));
+        // 组装器使用真实实现，批量查询由仓库mock提供：条目101有标签"美食"，行程11的目的地为"北京"
+        CommunityEntryViewAssembler assembler = new CommunityEntryViewAssembler();
+        ReflectionTestUtils.setField(assembler, "communityEntryTagRepository", communityEntryTagRepository);
+        ReflectionTestUtils.setField(assembler, "itineraryRepository", itineraryRepository);
+        ReflectionTestUtils.setField(communityService, "entryViewAssembler", assembler);
+        Mockito.lenient().when(communityEntryTagRepository.findTagNamesByCommunityEntryIdIn(any()))
+                .thenReturn(Collections.singletonList(new Object[]{101L, "美食"}));
+        Mockito.lenient().when(itineraryRepository.findDestinationNamesByItineraryIdIn(any()))
+                .thenReturn(Collections.singletonList(new Object[]{11L, "北京"}));
     }
 
-    private ItineraryDTO buildDTO(Itinerary itinerary, List<String> destNames) {
-        ItineraryDTO dto = new ItineraryDTO();
-        dto.setId(itinerary.getId());
-        dto.setUserId(itinerary.getUser().getId());
-        dto.setUsername(itinerary.getUser().getUsername());
-        dto.setTitle(itinerary.getTitle());
-        dto.setImageUrl(itinerary.getImageUrl());
-        dto.setStartDate(itinerary.getStartDate());
-        dto.setEndDate(itinerary.getEndDate());
-        dto.setPermissionStatus(itinerary.getPermissionStatus());
-        dto.setDestinationNames(destNames);
-        return dto;
+    private List<Object[]> idRows(Long... ids) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Long id : ids) {
+            rows.add(new Object[]{id, LocalDateTime.now()});
+        }
+        return rows;
     }
 
     // ---------- Tests ----------
@@ -139,7 +126,6 @@ class CommunityServiceImplTest {
     @DisplayName("getPublicCommunityEntries ‑ happy path")
     void getPublicCommunityEntries_success() {
         when(communityEntryRepository.findPublicEntries()).thenReturn(List.of(sampleEntryWithDest));
-        when(communityEntryTagRepository.findByCommunityEntry(sampleEntryWithDest)).thenReturn(tagLinks);
 
         List<Map<String, Object>> result = communityService.getPublicCommunityEntries();
 
@@ -163,16 +149,16 @@ class CommunityServiceImplTest {
     }
 
     @Test
-    @DisplayName("getCommunityEntryByShareCode ‑ found and viewCount incremented")
+    @DisplayName("getCommunityEntryByShareCode ‑ found, read-only (viewCount untouched)")
     void getCommunityEntryByShareCode_found() {
         when(communityEntryRepository.findByShareCode("CODE101"))
                 .thenReturn(Optional.of(sampleEntryWithDest));
-        when(communityEntryTagRepository.findByCommunityEntry(sampleEntryWithDest)).thenReturn(tagLinks);
 
         Map<String, Object> result = communityService.getCommunityEntryByShareCode("CODE101");
         assertNotNull(result);
-        assertEquals(1, result.get("viewCount")); // started at 0 → incremented to 1
-        verify(communityEntryRepository).save(sampleEntryWithDest);
+        assertEquals(0, result.get("viewCount"));
+        verify(communityEntryRepository, never()).save(any());
+        verifyNoInteractions(counterWriteBuffer);
     }
 
     @Test
@@ -187,7 +173,6 @@ class CommunityServiceImplTest {
     void searchCommunityEntries_success() {
         when(communityEntryRepository.searchPublicEntries("foo"))
                 .thenReturn(List.of(sampleEntryNoDest));
-        when(communityEntryTagRepository.findByCommunityEntry(sampleEntryNoDest)).thenReturn(Collections.emptyList());
 
         List<Map<String, Object>> res = communityService.searchCommunityEntries("foo");
         assertEquals(1, res.size());
@@ -199,7 +184,6 @@ class CommunityServiceImplTest {
     @DisplayName("searchCommunityEntries ‑ destination names non-empty branch")
     void searchCommunityEntries_destNonEmpty() {
         when(communityEntryRepository.searchPublicEntries("bar")).thenReturn(List.of(sampleEntryWithDest));
-        when(communityEntryTagRepository.findByCommunityEntry(sampleEntryWithDest)).thenReturn(tagLinks);
 
         List<Map<String, Object>> res = communityService.searchCommunityEntries("bar");
         Map<String, Object> itineraryMap = (Map<String, Object>) res.get(0).get("itinerary");
@@ -217,7 +201,6 @@ class CommunityServiceImplTest {
         entry.setCreatedAt(LocalDateTime.now());
 
         when(communityEntryRepository.findPublicEntries()).thenReturn(List.of(entry));
-        when(communityEntryTagRepository.findByCommunityEntry(entry)).thenReturn(Collections.emptyList());
 
         List<Map<String, Object>> list = communityService.getPublicCommunityEntries();
         Map<String, Object> map = list.get(0);
@@ -236,7 +219,6 @@ class CommunityServiceImplTest {
 
         when(communityEntryRepository.findByShareCode("NOITIN"))
                 .thenReturn(Optional.of(entry));
-        when(communityEntryTagRepository.findByCommunityEntry(entry)).thenReturn(Collections.emptyList());
 
         Map<String, Object> res = communityService.getCommunityEntryByShareCode("NOITIN");
         assertFalse(res.containsKey("itinerary"));
@@ -260,15 +242,8 @@ class CommunityServiceImplTest {
         entry.setCreatedAt(LocalDateTime.now());
         entry.setItinerary(itin);
 
-        ItineraryDTO dto = new ItineraryDTO();
-        dto.setId(itin.getId());
-        dto.setTitle("X");
-        dto.setDestinationNames(Collections.emptyList());
-        dto.setPermissionStatus(Itinerary.PermissionStatus.所有人可见);
 
-        when(itineraryConverter.toDTO(itin)).thenReturn(dto);
         when(communityEntryRepository.findPublicEntries()).thenReturn(Collections.singletonList(entry));
-        when(communityEntryTagRepository.findByCommunityEntry(entry)).thenReturn(Collections.emptyList());
 
         List<Map<String, Object>> list = communityService.getPublicCommunityEntries();
         Map<String, Object> itineraryMap = (Map<String, Object>) list.get(0).get("itinerary");
@@ -279,7 +254,6 @@ class CommunityServiceImplTest {
     @DisplayName("getCommunityEntryByShareCode ‑ dest empty branch")
     void getCommunityEntryByShareCode_destEmpty() {
         when(communityEntryRepository.findByShareCode("CODE202")).thenReturn(Optional.of(sampleEntryNoDest));
-        when(communityEntryTagRepository.findByCommunityEntry(sampleEntryNoDest)).thenReturn(Collections.emptyList());
 
         Map<String, Object> res = communityService.getCommunityEntryByShareCode("CODE202");
         Map<String, Object> itineraryMap = (Map<String, Object>) res.get("itinerary");
@@ -369,8 +343,8 @@ class CommunityServiceImplTest {
     @DisplayName("searchCommunityEntriesByDestination ‑ destination list empty branch")
     void searchCommunityEntriesByDestination_emptyDestNames() {
         when(communityEntryRepository.countByDestination("sh")).thenReturn(1L);
-        when(communityEntryRepository.findByDestination("sh", 0, 10)).thenReturn(List.of(sampleEntryNoDest));
-        when(communityEntryTagRepository.findByCommunityEntry(sampleEntryNoDest)).thenReturn(Collections.emptyList());
+        when(communityEntryRepository.findIdsByDestination("sh", 0, 10)).thenReturn(idRows(202L));
+        when(communityEntryRepository.findWithItineraryByIdIn(List.of(202L))).thenReturn(List.of(sampleEntryNoDest));
 
         Map<String, Object> res = communityService.searchCommunityEntriesByDestination("sh", 0, 10);
         List<?> content = (List<?>) res.get("content");
@@ -380,26 +354,19 @@ class CommunityServiceImplTest {
     }
 
     @Test
-    @DisplayName("incrementViewCount ‑ entry exists")
+    @DisplayName("incrementViewCount ‑ buffered, no entity read-modify-write")
     void incrementViewCount_exists() {
-        when(communityEntryRepository.findById(101L)).thenReturn(Optional.of(sampleEntryWithDest));
         communityService.incrementViewCount(101L);
-        assertEquals(1, sampleEntryWithDest.getViewCount());
-        verify(communityEntryRepository).save(sampleEntryWithDest);
-    }
-
-    @Test
-    @DisplayName("incrementViewCount ‑ entry missing (warn path)")
-    void incrementViewCount_missing() {
-        when(communityEntryRepository.findById(999L)).thenReturn(Optional.empty());
-        communityService.incrementViewCount(999L);
+        verify(counterWriteBuffer).increment(CounterWriteBuffer.Counter.COMMUNITY_ENTRY_VIEWS, 101L);
+        verify(communityEntryRepository, never()).findById(any());
         verify(communityEntryRepository, never()).save(any());
     }
 
     @Test
-    @DisplayName("incrementViewCount ‑ repository throws -> wraps exception")
+    @DisplayName("incrementViewCount ‑ buffer throws -> wraps exception")
     void incrementViewCount_error() {
-        when(communityEntryRepository.findById(101L)).thenThrow(new RuntimeException("db"));
+        doThrow(new RuntimeException("buffer")).when(counterWriteBuffer)
+                .increment(CounterWriteBuffer.Counter.COMMUNITY_ENTRY_VIEWS, 101L);
         RuntimeException ex = assertThrows(RuntimeException.class, () -> communityService.incrementViewCount(101L));
         assertTrue(ex.getMessage().contains("增加查看次数失败"));
     }
@@ -427,7 +394,7 @@ class CommunityServiceImplTest {
     @DisplayName("searchCommunityEntriesByDestination ‑ zero results branch")
     void searchCommunityEntriesByDestination_zero() {
         when(communityEntryRepository.countByDestination("none")).thenReturn(0L);
-        when(communityEntryRepository.findByDestination("none", 0, 10)).thenReturn(Collections.emptyList());
+        when(communityEntryRepository.findIdsByDestination("none", 0, 10)).thenReturn(Collections.emptyList());
         Map<String, Object> res = communityService.searchCommunityEntriesByDestination("none", 0, 10);
         assertEquals(0L, ((Number) res.get("totalElements")).longValue());
         List<?> content = (List<?>) res.get("content");
@@ -445,8 +412,8 @@ class CommunityServiceImplTest {
         entry.setCreatedAt(LocalDateTime.now());
 
         when(communityEntryRepository.countByDestination("x")).thenReturn(1L);
-        when(communityEntryRepository.findByDestination("x", 0, 10)).thenReturn(Collections.singletonList(entry));
-        when(communityEntryTagRepository.findByCommunityEntry(entry)).thenReturn(Collections.emptyList());
+        when(communityEntryRepository.findIdsByDestination("x", 0, 10)).thenReturn(idRows(606L));
+        when(communityEntryRepository.findWithItineraryByIdIn(List.of(606L))).thenReturn(Collections.singletonList(entry));
 
         Map<String, Object> res = communityService.searchCommunityEntriesByDestination("x", 0, 10);
         Map<String, Object> first = (Map<String, Object>) ((List<?>) res.get("content")).get(0);
@@ -481,8 +448,8 @@ class CommunityServiceImplTest {
     @DisplayName("searchCommunityEntriesByDestination aggregates paging info")
     void searchCommunityEntriesByDestination_success() {
         when(communityEntryRepository.countByDestination("bj")).thenReturn(1L);
-        when(communityEntryRepository.findByDestination("bj", 0, 10)).thenReturn(List.of(sampleEntryWithDest));
-        when(communityEntryTagRepository.findByCommunityEntry(sampleEntryWithDest)).thenReturn(tagLinks);
+        when(communityEntryRepository.findIdsByDestination("bj", 0, 10)).thenReturn(idRows(101L));
+        when(communityEntryRepository.findWithItineraryByIdIn(List.of(101L))).thenReturn(List.of(sampleEntryWithDest));
 
         Map<String, Object> res = communityService.searchCommunityEntriesByDestination("bj", 0, 10);
         assertEquals(1L, ((Number) res.get("totalElements")).longValue());
@@ -495,7 +462,6 @@ class CommunityServiceImplTest {
         List<CommunityEntry> list = List.of(sampleEntryWithDest);
         when(communityEntryRepository.findAllPublicByPopularity(PageRequest.of(0, 10)))
                 .thenReturn(new PageImpl<>(list, PageRequest.of(0, 10), 1));
-        when(communityEntryTagRepository.findByCommunityEntry(sampleEntryWithDest)).thenReturn(tagLinks);
 
         Map<String, Object> res = communityService.getPublicCommunityEntriesWithSort("popularity", 0, 10);
         assertEquals("popularity", res.get("sortBy"));
@@ -508,7 +474,6 @@ class CommunityServiceImplTest {
         List<CommunityEntry> list = List.of(sampleEntryNoDest);
         when(communityEntryRepository.findAllPublicByTime(PageRequest.of(0, 10)))
                 .thenReturn(new PageImpl<>(list, PageRequest.of(0, 10), 1));
-        when(communityEntryTagRepository.findByCommunityEntry(sampleEntryNoDest)).thenReturn(Collections.emptyList());
 
         Map<String, Object> res = communityService.getPublicCommunityEntriesWithSort("time", 0, 10);
         assertEquals("time", res.get("sortBy"));
@@ -531,7 +496,6 @@ class CommunityServiceImplTest {
 
         when(communityEntryRepository.findAllPublicByPopularity(PageRequest.of(0, 5)))
                 .thenReturn(new PageImpl<>(Collections.singletonList(entry), PageRequest.of(0, 5), 1));
-        when(communityEntryTagRepository.findByCommunityEntry(entry)).thenReturn(Collections.emptyList());
 
         Map<String, Object> res = communityService.getPublicCommunityEntriesWithSort("popularity", 0, 5);
         Map<String, Object> first = (Map<String, Object>) ((List<?>) res.get("content")).get(0);
@@ -557,20 +521,10 @@ class CommunityServiceImplTest {
         entry.setCreatedAt(LocalDateTime.now());
         entry.setItinerary(itin);
 
-        ItineraryDTO dto = new ItineraryDTO();
-        dto.setId(itin.getId());
-        dto.setTitle("T");
-        dto.setDestinationNames(Collections.emptyList());
-        dto.setPermissionStatus(Itinerary.PermissionStatus.所有人可见);
-        when(itineraryConverter.toDTO(itin)).thenReturn(dto);
 
-        CommunityEntryTag linkNull = new CommunityEntryTag();
-        linkNull.setCommunityEntry(entry);
-        linkNull.setTag(null);
 
         when(communityEntryRepository.findByShareCode("SC909"))
                 .thenReturn(Optional.of(entry));
-        when(communityEntryTagRepository.findByCommunityEntry(entry)).thenReturn(Collections.singletonList(linkNull));
 
         Map<String, Object> res = communityService.getCommunityEntryByShareCode("SC909");
         Map<String, Object> itineraryMap = (Map<String, Object>) res.get("itinerary");
@@ -597,21 +551,10 @@ class CommunityServiceImplTest {
         entry.setCreatedAt(LocalDateTime.now());
         entry.setItinerary(itin);
 
-        ItineraryDTO dto = new ItineraryDTO();
-        dto.setId(itin.getId());
-        dto.setTitle("S");
-        dto.setDestinationNames(Collections.emptyList());
-        dto.setPermissionStatus(Itinerary.PermissionStatus.所有人可见);
-        when(itineraryConverter.toDTO(itin)).thenReturn(dto);
 
-        CommunityEntryTag linkNull = new CommunityEntryTag();
-        linkNull.setCommunityEntry(entry);
-        linkNull.setTag(null);
 
         when(communityEntryRepository.searchPublicEntries("nu"))
                 .thenReturn(Collections.singletonList(entry));
-        when(communityEntryTagRepository.findByCommunityEntry(entry))
-                .thenReturn(Collections.singletonList(linkNull));
 
         List<Map<String, Object>> list = communityService.searchCommunityEntries("nu");
         Map<String, Object> itineraryMap = (Map<String, Object>) list.get(0).get("itinerary");
@@ -638,20 +581,11 @@ class CommunityServiceImplTest {
         entry.setCreatedAt(LocalDateTime.now());
         entry.setItinerary(itin);
 
-        ItineraryDTO dto = new ItineraryDTO();
-        dto.setId(itin.getId());
-        dto.setTitle("D");
-        dto.setDestinationNames(Collections.emptyList());
-        dto.setPermissionStatus(Itinerary.PermissionStatus.所有人可见);
-        when(itineraryConverter.toDTO(itin)).thenReturn(dto);
 
-        CommunityEntryTag linkNull = new CommunityEntryTag();
-        linkNull.setCommunityEntry(entry);
-        linkNull.setTag(null);
 
         when(communityEntryRepository.countByDestination("y")).thenReturn(1L);
-        when(communityEntryRepository.findByDestination("y", 0, 10)).thenReturn(Collections.singletonList(entry));
-        when(communityEntryTagRepository.findByCommunityEntry(entry)).thenReturn(Collections.singletonList(linkNull));
+        when(communityEntryRepository.findIdsByDestination("y", 0, 10)).thenReturn(idRows(818L));
+        when(communityEntryRepository.findWithItineraryByIdIn(List.of(818L))).thenReturn(Collections.singletonList(entry));
 
         Map<String, Object> res = communityService.searchCommunityEntriesByDestination("y", 0, 10);
         Map<String, Object> first = (Map<String, Object>) ((List<?>) res.get("content")).get(0);
@@ -679,20 +613,10 @@ class CommunityServiceImplTest {
         entry.setCreatedAt(LocalDateTime.now());
         entry.setItinerary(itin);
 
-        ItineraryDTO dto = new ItineraryDTO();
-        dto.setId(itin.getId());
-        dto.setTitle("G");
-        dto.setDestinationNames(Collections.emptyList());
-        dto.setPermissionStatus(Itinerary.PermissionStatus.所有人可见);
-        when(itineraryConverter.toDTO(itin)).thenReturn(dto);
 
-        CommunityEntryTag linkNull = new CommunityEntryTag();
-        linkNull.setCommunityEntry(entry);
-        linkNull.setTag(null);
 
         when(communityEntryRepository.findAllPublicByTime(PageRequest.of(0, 5)))
                 .thenReturn(new PageImpl<>(Collections.singletonList(entry), PageRequest.of(0, 5), 1));
-        when(communityEntryTagRepository.findByCommunityEntry(entry)).thenReturn(Collections.singletonList(linkNull));
 
         Map<String, Object> res = communityService.getPublicCommunityEntriesWithSort("time", 0, 5);
         Map<String, Object> first = (Map<String, Object>) ((List<?>) res.get("content")).get(0);
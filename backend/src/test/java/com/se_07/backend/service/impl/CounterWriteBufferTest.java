@@ -0,0 +1,103 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.service.impl.CounterWriteBuffer.Counter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CounterWriteBufferTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private CounterWriteBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        // 不启动定时线程，由测试直接调用 flush
+        buffer = new CounterWriteBuffer();
+        ReflectionTestUtils.setField(buffer, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_MergesIncrementsIntoOneBatchPerCounter() {
+        buffer.increment(Counter.COMMUNITY_ENTRY_VIEWS, 1L);
+        buffer.increment(Counter.COMMUNITY_ENTRY_VIEWS, 1L);
+        buffer.increment(Counter.COMMUNITY_ENTRY_VIEWS, 2L);
+        buffer.increment(Counter.ATTRACTION_JOINS, 5L);
+        buffer.increment(Counter.DESTINATION_JOINS, null);
+
+        buffer.flush();
+
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq("UPDATE community_entries SET view_count = view_count + ? WHERE id = ?"), captor.capture());
+        Map<Long, Long> deltas = new HashMap<>();
+        captor.getValue().forEach(args -> deltas.put((Long) args[1], (Long) args[0]));
+        assertEquals(Map.of(1L, 2L, 2L, 1L), deltas);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE attractions"), anyList());
+        verifyNoMoreInteractions(jdbcTemplate);
+        assertEquals(0, buffer.pendingCount(Counter.COMMUNITY_ENTRY_VIEWS, 1L));
+    }
+
+    @Test
+    void testFlush_NothingPendingSkipsDatabase() {
+        buffer.increment(Counter.DESTINATION_JOINS, 3L);
+        buffer.flush();
+        clearInvocations(jdbcTemplate);
+
+        buffer.flush();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_RemovesCountersFlushedToZero() {
+        buffer.increment(Counter.COMMUNITY_ENTRY_VIEWS, 1L);
+        buffer.increment(Counter.COMMUNITY_ENTRY_VIEWS, 2L);
+
+        buffer.flush();
+
+        Map<Counter, Map<Long, ?>> pending = (Map<Counter, Map<Long, ?>>) ReflectionTestUtils.getField(buffer, "pending");
+        assertTrue(pending.get(Counter.COMMUNITY_ENTRY_VIEWS).isEmpty());
+        buffer.increment(Counter.COMMUNITY_ENTRY_VIEWS, 1L);
+        assertEquals(1, buffer.pendingCount(Counter.COMMUNITY_ENTRY_VIEWS, 1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_FailureKeepsEntries() {
+        buffer.increment(Counter.ATTRACTION_JOINS, 4L);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new RuntimeException("db down"));
+
+        buffer.flush();
+
+        Map<Counter, Map<Long, ?>> pending = (Map<Counter, Map<Long, ?>>) ReflectionTestUtils.getField(buffer, "pending");
+        assertEquals(Set.of(4L), pending.get(Counter.ATTRACTION_JOINS).keySet());
+    }
+
+    @Test
+    void testFlush_FailureKeepsDeltasForNextFlush() {
+        buffer.increment(Counter.DESTINATION_JOINS, 3L);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new RuntimeException("db down"));
+
+        buffer.flush();
+
+        assertEquals(1, buffer.pendingCount(Counter.DESTINATION_JOINS, 3L));
+        buffer.increment(Counter.DESTINATION_JOINS, 3L);
+        assertEquals(2, buffer.pendingCount(Counter.DESTINATION_JOINS, 3L));
+    }
+}
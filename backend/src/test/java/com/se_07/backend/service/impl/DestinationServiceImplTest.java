@@ -1,10 +1,11 @@
 package com.se_07.backend.service.impl;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.se_07.backend.entity.Destination;
 import com.se_07.backend.entity.Tag;
+import com.se_07.backend.repository.AttractionRepository;
 import com.se_07.backend.repository.DestinationRepository;
+import com.se_07.backend.repository.EntityTagScoreRepository;
 import com.se_07.backend.repository.TagRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,6 +17,9 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.*;
 
@@ -30,12 +34,19 @@ public class DestinationServiceImplTest {
     @Mock
     private TagRepository tagRepository;
     @Mock
-    private ObjectMapper objectMapper;
+    private AttractionRepository attractionRepository;
+    @Mock
+    private EntityTagScoreRepository entityTagScoreRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private CounterWriteBuffer counterWriteBuffer;
     @InjectMocks
     private DestinationServiceImpl destinationService;
 
     private Destination destination;
     private Tag tag;
+    private Tag tag2;
     private List<Destination> destinationList;
     private Pageable pageable;
 
@@ -50,8 +61,24 @@ public class DestinationServiceImplTest {
         tag = new Tag();
         tag.setId(1L);
         tag.setTag("美食");
+        tag2 = new Tag();
+        tag2.setId(2L);
+        tag2.setTag("文化");
         destinationList = Arrays.asList(destination);
         pageable = PageRequest.of(0, 10);
+
+        // 使用真实的标签权重索引，数据来自仓库mock
+        TagScoreIndex tagScoreIndex = new TagScoreIndex();
+        ReflectionTestUtils.setField(tagScoreIndex, "tagRepository", tagRepository);
+        ReflectionTestUtils.setField(tagScoreIndex, "destinationRepository", destinationRepository);
+        ReflectionTestUtils.setField(tagScoreIndex, "attractionRepository", attractionRepository);
+        ReflectionTestUtils.setField(tagScoreIndex, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(tagScoreIndex, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(tagScoreIndex, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(destinationService, "tagScoreIndex", tagScoreIndex);
+        lenient().when(tagRepository.findAll()).thenReturn(Arrays.asList(tag, tag2));
+        lenient().when(destinationRepository.findAllTagScores())
+                .thenAnswer(inv -> Collections.singletonList(new Object[]{1L, destination.getTagScores()}));
     }
 
     @Test
@@ -104,19 +131,10 @@ public class DestinationServiceImplTest {
     }
 
     @Test
-    void testIncrementJoinCount_Found() {
-        when(destinationRepository.findById(1L)).thenReturn(Optional.of(destination));
-        when(destinationRepository.save(any(Destination.class))).thenReturn(destination);
+    void testIncrementJoinCount_Buffered() {
         destinationService.incrementJoinCount(1L);
-        assertEquals(11, destination.getJoinCount());
-        verify(destinationRepository).save(destination);
-    }
-
-    @Test
-    void testIncrementJoinCount_NotFound() {
-        when(destinationRepository.findById(2L)).thenReturn(Optional.empty());
-        destinationService.incrementJoinCount(2L);
-        verify(destinationRepository, never()).save(any());
+        verify(counterWriteBuffer).increment(CounterWriteBuffer.Counter.DESTINATION_JOINS, 1L);
+        verifyNoInteractions(destinationRepository);
     }
 
     @Test
@@ -132,18 +150,17 @@ public class DestinationServiceImplTest {
     @Test
     void testGetTopNTags_Normal() throws Exception {
         destination.setTagScores("{\"1\": 2.5, \"2\": 1.0}");
-        Map<String, Object> tagScores = new HashMap<>();
-        tagScores.put("1", 2.5);
-        tagScores.put("2", 1.0);
-        when(objectMapper.readValue(eq(destination.getTagScores()), any(TypeReference.class))).thenReturn(tagScores);
-        Tag tag2 = new Tag();
-        tag2.setId(2L);
-        tag2.setTag("文化");
-        when(tagRepository.findAllById(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(tag, tag2));
         List<String> result = destinationService.getTopNTags(destination, 2);
         assertEquals(Arrays.asList("美食", "文化"), result);
     }
 
+    @Test
+    void testGetTopNTags_SkipsNegativeAndUnknownTags() throws Exception {
+        destination.setTagScores("{\"1\": -1, \"2\": 3, \"99\": 5}");
+        List<String> result = destinationService.getTopNTags(destination, 3);
+        assertEquals(Collections.singletonList("文化"), result);
+    }
+
     @Test
     void testGetTopNTags_EmptyOrNull() throws Exception {
         destination.setTagScores(null);
@@ -157,7 +174,6 @@ public class DestinationServiceImplTest {
     @Test
     void testGetTopNTags_JsonParseException() throws Exception {
         destination.setTagScores("invalid json");
-        when(objectMapper.readValue(anyString(), any(TypeReference.class))).thenThrow(new RuntimeException("parse error"));
         List<String> result = destinationService.getTopNTags(destination, 2);
         assertTrue(result.isEmpty());
     }
@@ -165,17 +181,11 @@ public class DestinationServiceImplTest {
     @Test
     void testGetDestinationsByTags_Normal() throws Exception {
         List<String> tags = Arrays.asList("美食", "文化");
-        Tag tag2 = new Tag();
-        tag2.setId(2L);
-        tag2.setTag("文化");
-        when(destinationRepository.findAll()).thenReturn(destinationList);
-        when(tagRepository.findByTagIn(tags)).thenReturn(Arrays.asList(tag, tag2));
-        Map<String, Object> tagScores = new HashMap<>();
-        tagScores.put("1", 2.5);
-        tagScores.put("2", 1.0);
-        when(objectMapper.readValue(eq(destination.getTagScores()), any(TypeReference.class))).thenReturn(tagScores);
+        when(destinationRepository.findAllById(List.of(1L))).thenReturn(destinationList);
         List<Destination> result = destinationService.getDestinationsByTags(tags);
         assertEquals(1, result.size());
+        verify(destinationRepository, never()).findAll();
+        verify(tagRepository, never()).findByTagIn(any());
     }
 
     @Test
@@ -187,23 +197,38 @@ public class DestinationServiceImplTest {
     @Test
     void testGetDestinationsByTags_JsonParseException() throws Exception {
         List<String> tags = Arrays.asList("美食");
-        when(destinationRepository.findAll()).thenReturn(destinationList);
-        when(tagRepository.findByTagIn(tags)).thenReturn(Collections.singletonList(tag));
-        when(objectMapper.readValue(anyString(), any(TypeReference.class))).thenThrow(new RuntimeException("parse error"));
+        destination.setTagScores("invalid json");
         List<Destination> result = destinationService.getDestinationsByTags(tags);
         assertTrue(result.isEmpty());
+        verify(destinationRepository, never()).findAllById(any());
     }
 
     @Test
     void testGetDestinationsByTagsWithPageable() throws Exception {
         List<String> tags = Arrays.asList("美食");
-        when(destinationRepository.findAll()).thenReturn(destinationList);
-        when(tagRepository.findByTagIn(tags)).thenReturn(Collections.singletonList(tag));
-        Map<String, Object> tagScores = new HashMap<>();
-        tagScores.put("1", 2.5);
-        when(objectMapper.readValue(eq(destination.getTagScores()), any(TypeReference.class))).thenReturn(tagScores);
+        when(entityTagScoreRepository.countDestinationsByTags(List.of(1L), null)).thenReturn(1L);
+        when(entityTagScoreRepository.findDestinationIdsByTags(List.of(1L), null, 10, 0L)).thenReturn(List.of(1L));
+        when(destinationRepository.findAllById(List.of(1L))).thenReturn(destinationList);
         Page<Destination> result = destinationService.getDestinationsByTags(tags, pageable);
         assertEquals(1, result.getContent().size());
+        assertEquals(1, result.getTotalElements());
+        verify(destinationRepository, never()).findAll();
+    }
+
+    @Test
+    void testGetDestinationsByTagsWithPageable_UnknownTags() {
+        Page<Destination> result = destinationService.getDestinationsByTags(Arrays.asList("不存在"), pageable);
+        assertEquals(0, result.getTotalElements());
+        verifyNoInteractions(entityTagScoreRepository);
+    }
+
+    @Test
+    void testGetDestinationsByTagsWithPageable_OffsetBeyondTotal() {
+        when(entityTagScoreRepository.countDestinationsByTags(List.of(1L), null)).thenReturn(3L);
+        Page<Destination> result = destinationService.getDestinationsByTags(Arrays.asList("美食"), PageRequest.of(1, 10));
+        assertTrue(result.getContent().isEmpty());
+        assertEquals(3, result.getTotalElements());
+        verify(entityTagScoreRepository, never()).findDestinationIdsByTags(any(), any(), anyInt(), anyLong());
     }
 
     @Test
@@ -215,12 +240,10 @@ public class DestinationServiceImplTest {
     @Test
     void testSearchDestinationsByTagsAndKeyword_Normal() throws Exception {
         List<String> tags = Arrays.asList("美食");
-        when(destinationRepository.findAll()).thenReturn(destinationList);
-        when(tagRepository.findByTagIn(tags)).thenReturn(Collections.singletonList(tag));
-        Map<String, Object> tagScores = new HashMap<>();
-        tagScores.put("1", 2.5);
-        when(objectMapper.readValue(eq(destination.getTagScores()), any(TypeReference.class))).thenReturn(tagScores);
-        Page<Destination> result = destinationService.searchDestinationsByTagsAndKeyword(tags, "shanghai", pageable);
+        when(entityTagScoreRepository.countDestinationsByTags(List.of(1L), "shanghai")).thenReturn(1L);
+        when(entityTagScoreRepository.findDestinationIdsByTags(List.of(1L), "shanghai", 10, 0L)).thenReturn(List.of(1L));
+        when(destinationRepository.findAllById(List.of(1L))).thenReturn(destinationList);
+        Page<Destination> result = destinationService.searchDestinationsByTagsAndKeyword(tags, " ShangHai ", pageable);
         assertEquals(1, result.getContent().size());
     }
 
@@ -233,14 +256,18 @@ public class DestinationServiceImplTest {
     @Test
     void testSearchDestinationsByTagsAndKeyword_KeywordFilter() throws Exception {
         List<String> tags = Arrays.asList("美食");
-        when(destinationRepository.findAll()).thenReturn(destinationList);
-        when(tagRepository.findByTagIn(tags)).thenReturn(Collections.singletonList(tag));
-        Map<String, Object> tagScores = new HashMap<>();
-        tagScores.put("1", 2.5);
-        when(objectMapper.readValue(eq(destination.getTagScores()), any(TypeReference.class))).thenReturn(tagScores);
-        // 目的地名称不包含keyword
-        destination.setName("Beijing");
+        // 目的地名称不包含keyword，数据库中没有匹配
+        when(entityTagScoreRepository.countDestinationsByTags(List.of(1L), "shanghai")).thenReturn(0L);
         Page<Destination> result = destinationService.searchDestinationsByTagsAndKeyword(tags, "shanghai", pageable);
         assertEquals(0, result.getContent().size());
+        verify(destinationRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void testSearchDestinationsByTagsAndKeyword_EscapesLikeWildcards() {
+        // 关键词中的 % 和 _ 按字面匹配
+        when(entityTagScoreRepository.countDestinationsByTags(List.of(1L), "100\\%\\_top")).thenReturn(0L);
+        Page<Destination> result = destinationService.searchDestinationsByTagsAndKeyword(List.of("美食"), "100%_Top", pageable);
+        assertEquals(0, result.getTotalElements());
     }
-} 
\ No newline at end of file
+}
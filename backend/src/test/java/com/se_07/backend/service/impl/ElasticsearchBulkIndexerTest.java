@@ -0,0 +1,169 @@
+package com.se_07.backend.service.impl;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ElasticsearchBulkIndexerTest {
+
+    @Mock
+    private ElasticsearchClient esClient;
+
+    private ElasticsearchBulkIndexer indexer;
+
+    @BeforeEach
+    void setUp() {
+        // 不启动定时线程，由测试直接调用 flush
+        indexer = new ElasticsearchBulkIndexer();
+        ReflectionTestUtils.setField(indexer, "esClient", esClient);
+        ReflectionTestUtils.setField(indexer, "retryBackoffMs", 0L);
+    }
+
+    @Test
+    void testFlush_CoalescesUpdatesToSameDocument() throws Exception {
+        when(esClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> successResponse(invocation.getArgument(0)));
+
+        indexer.index("community_entries", "1", Map.of("title", "v1"));
+        indexer.index("community_entries", "1", Map.of("title", "v2"));
+        indexer.delete("community_entries", "2");
+        assertEquals(2, indexer.getQueueDepth());
+
+        indexer.flush();
+
+        ArgumentCaptor<BulkRequest> captor = ArgumentCaptor.forClass(BulkRequest.class);
+        verify(esClient, times(1)).bulk(captor.capture());
+        BulkRequest request = captor.getValue();
+        assertEquals(2, request.operations().size());
+        assertTrue(request.operations().get(0).isIndex());
+        assertEquals(Map.of("title", "v2"), request.operations().get(0).index().document());
+        assertTrue(request.operations().get(1).isDelete());
+
+        Map<String, Object> stats = indexer.getStats();
+        assertEquals(0, stats.get("queueDepth"));
+        assertEquals(1L, stats.get("coalesced"));
+        assertEquals(2L, stats.get("succeededDocs"));
+        assertEquals(1L, stats.get("flushes"));
+    }
+
+    @Test
+    void testFlush_SplitsIntoBatchesOfMaxActions() throws Exception {
+        ReflectionTestUtils.setField(indexer, "maxActions", 2);
+        when(esClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> successResponse(invocation.getArgument(0)));
+
+        for (int i = 0; i < 5; i++) {
+            indexer.index("authors", String.valueOf(i), Map.of("user_id", i));
+        }
+        indexer.flush();
+
+        verify(esClient, times(3)).bulk(any(BulkRequest.class));
+        assertEquals(5L, indexer.getStats().get("succeededDocs"));
+    }
+
+    @Test
+    void testFlush_RetriesOnlyRejectedItems() throws Exception {
+        List<BulkRequest> requests = new ArrayList<>();
+        when(esClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            requests.add(request);
+            if (requests.size() == 1) {
+                // 第一次请求中第二个文档被限流
+                return BulkResponse.of(r -> r.errors(true).took(1).items(List.of(
+                        item("1", 201, false),
+                        item("2", 429, true))));
+            }
+            return successResponse(request);
+        });
+
+        indexer.index("authors", "1", Map.of("user_id", 1));
+        indexer.index("authors", "2", Map.of("user_id", 2));
+        indexer.flush();
+
+        assertEquals(2, requests.size());
+        assertEquals(1, requests.get(1).operations().size());
+        assertEquals("2", requests.get(1).operations().get(0).index().id());
+        Map<String, Object> stats = indexer.getStats();
+        assertEquals(1L, stats.get("retries"));
+        assertEquals(2L, stats.get("succeededDocs"));
+        assertEquals(0L, stats.get("failedDocs"));
+    }
+
+    @Test
+    void testFlush_GivesUpAfterMaxRetries() throws Exception {
+        ReflectionTestUtils.setField(indexer, "maxRetries", 2);
+        when(esClient.bulk(any(BulkRequest.class))).thenThrow(new IOException("connection refused"));
+
+        indexer.index("authors", "1", Map.of("user_id", 1));
+        indexer.flush();
+
+        verify(esClient, times(3)).bulk(any(BulkRequest.class));
+        assertEquals(1L, indexer.getStats().get("failedDocs"));
+        assertEquals(0, indexer.getQueueDepth());
+    }
+
+    @Test
+    void testFlush_DoesNotRetryNonRetryableFailures() throws Exception {
+        when(esClient.bulk(any(BulkRequest.class))).thenReturn(BulkResponse.of(r -> r.errors(true).took(1).items(List.of(
+                item("1", 400, true)))));
+
+        indexer.index("authors", "1", Map.of("user_id", 1));
+        indexer.flush();
+
+        verify(esClient, times(1)).bulk(any(BulkRequest.class));
+        assertEquals(1L, indexer.getStats().get("failedDocs"));
+    }
+
+    @Test
+    void testIndex_RejectsWhenQueueFull() {
+        ReflectionTestUtils.setField(indexer, "queueCapacity", 1);
+        ReflectionTestUtils.setField(indexer, "offerTimeoutMs", 10L);
+
+        assertTrue(indexer.index("authors", "1", Map.of("user_id", 1)));
+        // 已在队列中的文档仍可覆盖
+        assertTrue(indexer.index("authors", "1", Map.of("user_id", 1)));
+        assertFalse(indexer.index("authors", "2", Map.of("user_id", 2)));
+
+        assertEquals(1L, indexer.getStats().get("rejected"));
+        verifyNoInteractions(esClient);
+    }
+
+    @Test
+    void testFlush_EmptyQueueSendsNothing() {
+        indexer.flush();
+        verifyNoInteractions(esClient);
+    }
+
+    private BulkResponse successResponse(BulkRequest request) {
+        List<BulkResponseItem> items = new ArrayList<>();
+        request.operations().forEach(op -> items.add(item(op.isIndex() ? op.index().id() : op.delete().id(), 200, false)));
+        return BulkResponse.of(r -> r.errors(false).took(1).items(items));
+    }
+
+    private BulkResponseItem item(String id, int status, boolean error) {
+        return BulkResponseItem.of(i -> {
+            i.operationType(OperationType.Index).index("test").id(id).status(status);
+            if (error) {
+                i.error(e -> e.type("error").reason("status " + status));
+            }
+            return i;
+        });
+    }
+}
@@ -436,4 +436,177 @@ class EmbeddingServiceImplTest {
         assertTrue(ReflectionTestUtils.getField(newService, "embeddingServiceUrl") == null || 
                   ReflectionTestUtils.getField(newService, "embeddingServiceUrl") instanceof String);
     }
-}
\ No newline at end of file
+    @Test
+    void testEmbed_CacheHitWithNormalizedText() {
+        float[] expectedEmbedding = {0.1f, 0.2f, 0.3f};
+        when(mockRestTemplate.postForObject(
+            eq("http://localhost:8000/embed"),
+            any(Map.class),
+            eq(float[][].class)
+        )).thenReturn(new float[][]{expectedEmbedding});
+
+        float[] first = embeddingService.embed("  Beijing   Food ");
+        float[] second = embeddingService.embed("Beijing Food");
+
+        assertArrayEquals(expectedEmbedding, first, 0.001f);
+        assertArrayEquals(expectedEmbedding, second, 0.001f);
+        // 归一化后文本相同，只应调用一次嵌入服务
+        verify(mockRestTemplate, times(1)).postForObject(
+            eq("http://localhost:8000/embed"),
+            any(Map.class),
+            eq(float[][].class)
+        );
+
+        Map<String, Object> stats = embeddingService.getStats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+
+    @Test
+    void testEmbed_SendsOriginalTextToModel() {
+        when(mockRestTemplate.postForObject(
+            eq("http://localhost:8000/embed"),
+            any(Map.class),
+            eq(float[][].class)
+        )).thenReturn(new float[][]{{0.1f}});
+
+        embeddingService.embed("  Beijing   Food ");
+
+        // 缓存键是归一化文本，但模型收到的是原始文本（大小写对模型有意义）
+        verify(mockRestTemplate).postForObject(
+            eq("http://localhost:8000/embed"),
+            argThat(payload -> java.util.List.of("  Beijing   Food ").equals(((Map<?, ?>) payload).get("texts"))),
+            eq(float[][].class)
+        );
+    }
+
+    @Test
+    void testEmbed_CacheKeyIsCaseSensitive() {
+        when(mockRestTemplate.postForObject(
+            eq("http://localhost:8000/embed"),
+            any(Map.class),
+            eq(float[][].class)
+        )).thenReturn(new float[][]{{1f}}, new float[][]{{2f}});
+
+        // 缓存键与发送给模型的文本一致，只合并空白，不同大小写各自生成向量
+        assertArrayEquals(new float[]{1f}, embeddingService.embed("Paris"), 0.001f);
+        assertArrayEquals(new float[]{2f}, embeddingService.embed("paris"), 0.001f);
+        assertArrayEquals(new float[]{1f}, embeddingService.embed(" Paris "), 0.001f);
+
+        verify(mockRestTemplate, times(2)).postForObject(
+            eq("http://localhost:8000/embed"),
+            any(Map.class),
+            eq(float[][].class)
+        );
+    }
+
+    @Test
+    void testEmbedBatch_SendsFirstOriginalTextPerKey() {
+        when(mockRestTemplate.postForObject(
+            eq("http://localhost:8000/embed"),
+            any(Map.class),
+            eq(float[][].class)
+        )).thenReturn(new float[][]{{1f}});
+
+        java.util.List<float[]> result = embeddingService.embedBatch(java.util.List.of("West Lake", " West   Lake "));
+
+        assertArrayEquals(new float[]{1f}, result.get(0), 0.001f);
+        assertArrayEquals(new float[]{1f}, result.get(1), 0.001f);
+        verify(mockRestTemplate).postForObject(
+            eq("http://localhost:8000/embed"),
+            argThat(payload -> java.util.List.of("West Lake").equals(((Map<?, ?>) payload).get("texts"))),
+            eq(float[][].class)
+        );
+    }
+
+    @Test
+    void testEmbed_FailedResultNotCached() {
+        float[] expectedEmbedding = {0.1f, 0.2f, 0.3f};
+        when(mockRestTemplate.postForObject(
+            eq("http://localhost:8000/embed"),
+            any(Map.class),
+            eq(float[][].class)
+        ))
+        .thenReturn(null)
+        .thenReturn(new float[][]{expectedEmbedding});
+
+        assertEquals(0, embeddingService.embed("测试文本").length);
+        assertArrayEquals(expectedEmbedding, embeddingService.embed("测试文本"), 0.001f);
+
+        verify(mockRestTemplate, times(2)).postForObject(
+            eq("http://localhost:8000/embed"),
+            any(Map.class),
+            eq(float[][].class)
+        );
+    }
+
+    @Test
+    void testEmbedBatch_SingleRequestForMissesInOrder() {
+        when(mockRestTemplate.postForObject(
+            eq("http://localhost:8000/embed"),
+            any(Map.class),
+            eq(float[][].class)
+        )).thenReturn(new float[][]{{1f}}, new float[][]{{2f}, {3f}});
+
+        // 先缓存"北京"，批量请求时只发送未命中的文本
+        embeddingService.embed("北京");
+
+        java.util.List<float[]> result = embeddingService.embedBatch(java.util.List.of("上海", "北京", "杭州", "上海 "));
+
+        assertEquals(4, result.size());
+        assertArrayEquals(new float[]{2f}, result.get(0), 0.001f);
+        assertArrayEquals(new float[]{1f}, result.get(1), 0.001f);
+        assertArrayEquals(new float[]{3f}, result.get(2), 0.001f);
+        assertArrayEquals(new float[]{2f}, result.get(3), 0.001f);
+
+        verify(mockRestTemplate).postForObject(
+            eq("http://localhost:8000/embed"),
+            argThat(payload -> java.util.List.of("上海", "杭州").equals(((Map<?, ?>) payload).get("texts"))),
+            eq(float[][].class)
+        );
+    }
+
+    @Test
+    void testEmbedBatch_EmptyInput() {
+        assertTrue(embeddingService.embedBatch(java.util.Collections.emptyList()).isEmpty());
+        assertTrue(embeddingService.embedBatch(null).isEmpty());
+        verifyNoInteractions(mockRestTemplate);
+    }
+
+    @Test
+    void testEmbed_ConcurrentCallsCoalesced() throws Exception {
+        ReflectionTestUtils.setField(embeddingService, "batchWindowMs", 200L);
+        when(mockRestTemplate.postForObject(
+            eq("http://localhost:8000/embed"),
+            any(Map.class),
+            eq(float[][].class)
+        )).thenAnswer(invocation -> {
+            Map<?, ?> payload = invocation.getArgument(1);
+            java.util.List<?> texts = (java.util.List<?>) payload.get("texts");
+            float[][] res = new float[texts.size()][];
+            for (int i = 0; i < texts.size(); i++) {
+                res[i] = new float[]{texts.get(i).hashCode()};
+            }
+            return res;
+        });
+
+        java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(3);
+        try {
+            java.util.concurrent.Future<float[]> a = pool.submit(() -> embeddingService.embed("a"));
+            java.util.concurrent.Future<float[]> b = pool.submit(() -> embeddingService.embed("b"));
+            java.util.concurrent.Future<float[]> c = pool.submit(() -> embeddingService.embed("c"));
+
+            assertArrayEquals(new float[]{"a".hashCode()}, a.get(), 0.001f);
+            assertArrayEquals(new float[]{"b".hashCode()}, b.get(), 0.001f);
+            assertArrayEquals(new float[]{"c".hashCode()}, c.get(), 0.001f);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        verify(mockRestTemplate, times(1)).postForObject(
+            eq("http://localhost:8000/embed"),
+            any(Map.class),
+            eq(float[][].class)
+        );
+    }
+}
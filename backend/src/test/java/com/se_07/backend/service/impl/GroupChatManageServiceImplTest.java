@@ -3,7 +3,6 @@ package com.se_07.backend.service.impl;
 import com.se_07.backend.dto.UserProfileResponse;
 import com.se_07.backend.entity.GroupChatInformation;
 import com.se_07.backend.entity.GroupChatMember;
-import com.se_07.backend.entity.User;
 import com.se_07.backend.repository.GroupChatInformationRepository;
 import com.se_07.backend.repository.GroupChatMemberRepository;
 import com.se_07.backend.repository.UserRepository;
@@ -13,10 +12,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -30,13 +32,18 @@ public class GroupChatManageServiceImplTest {
     @Mock
     private UserRepository userRepository;
     @Mock
-    private com.se_07.backend.repository.UserProfileRepository userProfileRepository;
+    private GroupMembershipIndex groupMembershipIndex;
+    @Mock
+    private PresenceRegistry presenceRegistry;
     @InjectMocks
     private GroupChatManageServiceImpl groupChatManageService;
 
     @BeforeEach
     public void setUp() {
-        // MockitoExtension自动处理
+        // 使用真实的用户摘要缓存，底层查询由 userRepository mock 提供
+        UserSummaryCache userSummaryCache = new UserSummaryCache();
+        ReflectionTestUtils.setField(userSummaryCache, "userRepository", userRepository);
+        ReflectionTestUtils.setField(groupChatManageService, "userSummaryCache", userSummaryCache);
     }
 
     @Test
@@ -51,6 +58,7 @@ public class GroupChatManageServiceImplTest {
         assertEquals(100L, groupId);
         verify(groupChatInformationRepository, times(1)).save(any(GroupChatInformation.class));
         verify(groupChatMemberRepository, times(1)).save(any(GroupChatMember.class));
+        verify(groupMembershipIndex).addMember(100L, 1L);
     }
 
     @Test
@@ -60,20 +68,18 @@ public class GroupChatManageServiceImplTest {
         GroupChatMember member2 = new GroupChatMember();
         member2.setUserId(2L);
         when(groupChatMemberRepository.findByGroupId(100L)).thenReturn(Arrays.asList(member1, member2));
-        User user1 = new User();
-        user1.setId(1L);
-        user1.setUsername("张三");
-        user1.setAvatarUrl("avatar1.png");
-        User user2 = new User();
-        user2.setId(2L);
-        user2.setUsername("李四");
-        user2.setAvatarUrl("avatar2.png");
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user1));
-        when(userRepository.findById(2L)).thenReturn(Optional.of(user2));
+        // 用户名和档案头像一次批量查询
+        when(userRepository.findSummariesByIdIn(Set.of(1L, 2L))).thenReturn(Arrays.asList(
+                new Object[]{1L, "张三", "avatar1.png"}, new Object[]{2L, "李四", null}));
+        when(presenceRegistry.isOnline(1L)).thenReturn(true);
         List<UserProfileResponse> members = groupChatManageService.getGroupMembers(100L);
         assertEquals(2, members.size());
         assertEquals("张三", members.get(0).getUsername());
+        assertEquals("avatar1.png", members.get(0).getAvatarUrl());
+        assertTrue(members.get(0).getOnline());
         assertEquals("李四", members.get(1).getUsername());
+        assertNull(members.get(1).getAvatarUrl());
+        assertFalse(members.get(1).getOnline());
     }
 
     @Test
@@ -82,6 +88,7 @@ public class GroupChatManageServiceImplTest {
         when(groupChatMemberRepository.save(any(GroupChatMember.class))).thenReturn(savedMember);
         groupChatManageService.addUserToGroup(100L, 2L);
         verify(groupChatMemberRepository, times(1)).save(any(GroupChatMember.class));
+        verify(groupMembershipIndex).addMember(100L, 2L);
     }
 
     @Test
@@ -107,7 +114,7 @@ public class GroupChatManageServiceImplTest {
         GroupChatMember member = new GroupChatMember();
         member.setUserId(123L);
         when(groupChatMemberRepository.findByGroupId(100L)).thenReturn(Arrays.asList(member));
-        when(userRepository.findById(123L)).thenReturn(Optional.empty());
+        when(userRepository.findSummariesByIdIn(Set.of(123L))).thenReturn(Collections.emptyList());
         List<UserProfileResponse> members = groupChatManageService.getGroupMembers(100L);
         assertEquals(1, members.size());
         assertNull(members.get(0).getUsername());
@@ -122,6 +129,7 @@ public class GroupChatManageServiceImplTest {
         doNothing().when(groupChatMemberRepository).delete(member);
         groupChatManageService.removeUserFromGroup(100L, 2L);
         verify(groupChatMemberRepository, times(1)).delete(member);
+        verify(groupMembershipIndex).removeMember(100L, 2L);
     }
 
     @Test
@@ -129,6 +137,7 @@ public class GroupChatManageServiceImplTest {
         when(groupChatMemberRepository.findByGroupIdAndUserId(100L, 2L)).thenReturn(null);
         groupChatManageService.removeUserFromGroup(100L, 2L);
         verify(groupChatMemberRepository, never()).delete(any());
+        verifyNoInteractions(groupMembershipIndex);
     }
 
     @Test
@@ -140,6 +149,7 @@ public class GroupChatManageServiceImplTest {
         doNothing().when(groupChatMemberRepository).delete(member);
         groupChatManageService.leaveGroup(100L, 2L);
         verify(groupChatMemberRepository, times(1)).delete(member);
+        verify(groupMembershipIndex).removeMember(100L, 2L);
     }
 
     @Test
@@ -160,6 +170,9 @@ public class GroupChatManageServiceImplTest {
         Long groupId = groupChatManageService.createGroupWithMembers("新群", 1L, Arrays.asList(1L, 2L, 3L));
         assertEquals(200L, groupId);
         verify(groupChatMemberRepository, times(3)).save(any(GroupChatMember.class));
+        verify(groupMembershipIndex).addMember(200L, 1L);
+        verify(groupMembershipIndex).addMember(200L, 2L);
+        verify(groupMembershipIndex).addMember(200L, 3L);
     }
 
     @Test
@@ -2,7 +2,6 @@ package com.se_07.backend.service.impl;
 
 import com.se_07.backend.dto.GroupChatMessageDTO;
 import com.se_07.backend.entity.GroupChatMessage;
-import com.se_07.backend.entity.User;
 import com.se_07.backend.repository.GroupChatMessageRepository;
 import com.se_07.backend.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,15 +10,27 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,12 +39,29 @@ public class GroupChatServiceImplTest {
     private GroupChatMessageRepository groupChatMessageRepository;
     @Mock
     private UserRepository userRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
     @InjectMocks
     private GroupChatServiceImpl groupChatService;
+    private ChatMessageWriteBehind chatMessageWriteBehind;
 
     @BeforeEach
     public void setUp() {
-        // MockitoExtension自动处理
+        // 使用真实的用户摘要缓存，底层查询由 userRepository mock 提供
+        UserSummaryCache userSummaryCache = new UserSummaryCache();
+        ReflectionTestUtils.setField(userSummaryCache, "userRepository", userRepository);
+        ReflectionTestUtils.setField(groupChatService, "userSummaryCache", userSummaryCache);
+        // 真实的写入管道，不启动后台写入线程；两张表当前最大消息ID分别为 0 和 9
+        chatMessageWriteBehind = new ChatMessageWriteBehind();
+        ReflectionTestUtils.setField(chatMessageWriteBehind, "jdbcTemplate", jdbcTemplate);
+        ChatMessageIdAllocator idAllocator = new ChatMessageIdAllocator();
+        ReflectionTestUtils.setField(idAllocator, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(idAllocator, "source", ChatMessageIdAllocator.Source.LOCAL);
+        ReflectionTestUtils.setField(chatMessageWriteBehind, "idAllocator", idAllocator);
+        ReflectionTestUtils.setField(chatMessageWriteBehind, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(groupChatService, "chatMessageWriteBehind", chatMessageWriteBehind);
+        lenient().when(jdbcTemplate.queryForObject(contains("user_chat_message"), eq(Long.class))).thenReturn(0L);
+        lenient().when(jdbcTemplate.queryForObject(contains("group_chat_message"), eq(Long.class))).thenReturn(9L);
     }
 
     @Test
@@ -44,16 +72,12 @@ public class GroupChatServiceImplTest {
         dto.setContent("hello");
         LocalDateTime now = LocalDateTime.now();
         dto.setMessageTime(now);
-        GroupChatMessage saved = new GroupChatMessage();
-        saved.setMessageId(10L);
-        saved.setGroupId(1L);
-        saved.setUserId(2L);
-        saved.setContent("hello");
-        saved.setMessageTime(now);
-        when(groupChatMessageRepository.save(any(GroupChatMessage.class))).thenReturn(saved);
         GroupChatMessageDTO result = groupChatService.sendGroupMessage(dto);
+        // 消息ID在内存中接着表内最大ID分配，写入交给后台批量完成
         assertEquals(10L, result.getMessageId());
         assertEquals(now, result.getMessageTime());
+        assertEquals(1, chatMessageWriteBehind.getStats().get("queueDepth"));
+        verify(groupChatMessageRepository, never()).save(any(GroupChatMessage.class));
     }
 
     @Test
@@ -71,18 +95,17 @@ public class GroupChatServiceImplTest {
         msg2.setContent("hello");
         msg2.setMessageTime(LocalDateTime.now());
         when(groupChatMessageRepository.findByGroupIdOrderByMessageTimeAsc(1L)).thenReturn(Arrays.asList(msg1, msg2));
-        User user2 = new User();
-        user2.setId(2L);
-        user2.setUsername("张三");
-        User user3 = new User();
-        user3.setId(3L);
-        user3.setUsername("李四");
-        when(userRepository.findById(2L)).thenReturn(Optional.of(user2));
-        when(userRepository.findById(3L)).thenReturn(Optional.of(user3));
+        // 发送者用户名一次批量查询
+        when(userRepository.findSummariesByIdIn(Set.of(2L, 3L))).thenReturn(Arrays.asList(
+                new Object[]{2L, "张三", null}, new Object[]{3L, "李四", null}));
         List<GroupChatMessageDTO> list = groupChatService.getGroupMessages(1L);
         assertEquals(2, list.size());
         assertEquals("张三", list.get(0).getUserName());
         assertEquals("李四", list.get(1).getUserName());
+
+        // 再次加载命中缓存，不再查询数据库
+        groupChatService.getGroupMessages(1L);
+        verify(userRepository, times(1)).findSummariesByIdIn(any());
     }
 
     @Test
@@ -93,10 +116,8 @@ public class GroupChatServiceImplTest {
         msg.setUserId(2L);
         msg.setContent("test");
         msg.setMessageTime(LocalDateTime.now());
-        User user = new User();
-        user.setId(2L);
-        user.setUsername("王五");
-        when(userRepository.findById(2L)).thenReturn(Optional.of(user));
+        when(userRepository.findSummariesByIdIn(Set.of(2L))).thenReturn(
+                Collections.singletonList(new Object[]{2L, "王五", null}));
         GroupChatMessageDTO dto = groupChatService.toDTO(msg);
         assertEquals(5L, dto.getMessageId());
         assertEquals("test", dto.getContent());
@@ -110,10 +131,6 @@ public class GroupChatServiceImplTest {
         dto.setUserId(2L);
         dto.setContent("test");
         dto.setMessageTime(null);
-        GroupChatMessage saved = new GroupChatMessage();
-        saved.setMessageId(1L);
-        saved.setMessageTime(LocalDateTime.now());
-        when(groupChatMessageRepository.save(any(GroupChatMessage.class))).thenReturn(saved);
         GroupChatMessageDTO result = groupChatService.sendGroupMessage(dto);
         assertNotNull(result.getMessageTime());
     }
@@ -125,41 +142,49 @@ public class GroupChatServiceImplTest {
         dto.setUserId(2L);
         dto.setContent(null);
         dto.setMessageTime(LocalDateTime.now());
-        GroupChatMessage saved = new GroupChatMessage();
-        saved.setMessageId(2L);
-        saved.setContent(null);
-        when(groupChatMessageRepository.save(any(GroupChatMessage.class))).thenReturn(saved);
-        GroupChatMessageDTO result = groupChatService.sendGroupMessage(dto);
-        assertNull(result.getContent());
+        // group_chat_message.content 不允许为空，入队前拒绝
+        assertThrows(RuntimeException.class, () -> groupChatService.sendGroupMessage(dto));
+        assertEquals(0, chatMessageWriteBehind.getStats().get("queueDepth"));
     }
 
     @Test
-    public void testSendGroupMessage_savedMessageIdNull() {
+    public void testSendGroupMessage_contentTooLong() {
         GroupChatMessageDTO dto = new GroupChatMessageDTO();
         dto.setGroupId(1L);
         dto.setUserId(2L);
-        dto.setContent("test");
-        dto.setMessageTime(LocalDateTime.now());
-        GroupChatMessage saved = new GroupChatMessage();
-        saved.setMessageId(null);
-        when(groupChatMessageRepository.save(any(GroupChatMessage.class))).thenReturn(saved);
-        GroupChatMessageDTO result = groupChatService.sendGroupMessage(dto);
-        assertNull(result.getMessageId());
+        dto.setContent("a".repeat(501));
+        assertThrows(RuntimeException.class, () -> groupChatService.sendGroupMessage(dto));
+        assertEquals(0, chatMessageWriteBehind.getStats().get("queueDepth"));
     }
 
     @Test
-    public void testSendGroupMessage_savedMessageTimeNull() {
+    public void testSendGroupMessage_assignsIncreasingIds() {
+        GroupChatMessageDTO first = new GroupChatMessageDTO();
+        first.setGroupId(1L);
+        first.setUserId(2L);
+        first.setContent("a");
+        GroupChatMessageDTO second = new GroupChatMessageDTO();
+        second.setGroupId(3L);
+        second.setUserId(2L);
+        second.setContent("b");
+        assertEquals(10L, groupChatService.sendGroupMessage(first).getMessageId());
+        assertEquals(11L, groupChatService.sendGroupMessage(second).getMessageId());
+    }
+
+    @Test
+    public void testIngestGroupMessage_returnsBroadcastableDtoWithoutWaitingForDatabase() {
         GroupChatMessageDTO dto = new GroupChatMessageDTO();
         dto.setGroupId(1L);
         dto.setUserId(2L);
         dto.setContent("test");
-        dto.setMessageTime(LocalDateTime.now());
-        GroupChatMessage saved = new GroupChatMessage();
-        saved.setMessageId(3L);
-        saved.setMessageTime(null);
-        when(groupChatMessageRepository.save(any(GroupChatMessage.class))).thenReturn(saved);
-        GroupChatMessageDTO result = groupChatService.sendGroupMessage(dto);
-        assertNull(result.getMessageTime());
+        when(userRepository.findSummariesByIdIn(Set.of(2L))).thenReturn(
+                Collections.singletonList(new Object[]{2L, "王五", null}));
+        CompletableFuture<GroupChatMessageDTO> future = groupChatService.ingestGroupMessage(dto);
+        assertTrue(future.isDone());
+        GroupChatMessageDTO result = future.join();
+        assertEquals(10L, result.getMessageId());
+        assertEquals("王五", result.getUserName());
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
     }
 
     @Test
@@ -178,7 +203,7 @@ public class GroupChatServiceImplTest {
         msg.setContent("test");
         msg.setMessageTime(LocalDateTime.now());
         when(groupChatMessageRepository.findByGroupIdOrderByMessageTimeAsc(1L)).thenReturn(Arrays.asList(msg));
-        when(userRepository.findById(999L)).thenReturn(Optional.empty());
+        when(userRepository.findSummariesByIdIn(Set.of(999L))).thenReturn(Collections.emptyList());
         List<GroupChatMessageDTO> result = groupChatService.getGroupMessages(1L);
         assertEquals(1, result.size());
         assertNull(result.get(0).getUserName());
@@ -203,7 +228,7 @@ public class GroupChatServiceImplTest {
         msg.setUserId(888L);
         msg.setContent("test");
         msg.setMessageTime(LocalDateTime.now());
-        when(userRepository.findById(888L)).thenReturn(Optional.empty());
+        when(userRepository.findSummariesByIdIn(Set.of(888L))).thenReturn(Collections.emptyList());
         GroupChatMessageDTO dto = groupChatService.toDTO(msg);
         assertNull(dto.getUserName());
     }
@@ -211,7 +236,6 @@ public class GroupChatServiceImplTest {
     @Test
     public void testToDTO_fieldsNull() {
         GroupChatMessage msg = new GroupChatMessage();
-        when(userRepository.findById(null)).thenReturn(Optional.empty());
         GroupChatMessageDTO dto = groupChatService.toDTO(msg);
         assertNull(dto.getMessageId());
         assertNull(dto.getGroupId());
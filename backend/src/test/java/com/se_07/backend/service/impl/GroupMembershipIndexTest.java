@@ -0,0 +1,117 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.repository.GroupChatMemberRepository;
+import com.se_07.backend.service.impl.GroupMembershipIndex.MemberSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GroupMembershipIndexTest {
+
+    @Mock
+    private GroupChatMemberRepository groupChatMemberRepository;
+
+    private GroupMembershipIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new GroupMembershipIndex();
+        ReflectionTestUtils.setField(index, "groupChatMemberRepository", groupChatMemberRepository);
+    }
+
+    @Test
+    void testIsMember_LoadsGroupOnce() {
+        when(groupChatMemberRepository.findUserIdsByGroupId(1L)).thenReturn(List.of(2L, 3L));
+
+        assertTrue(index.isMember(1L, 2L));
+        assertTrue(index.isMember(1L, 3L));
+        assertFalse(index.isMember(1L, 4L));
+        assertFalse(index.isMember(null, 2L));
+        assertFalse(index.isMember(1L, null));
+
+        verify(groupChatMemberRepository, times(1)).findUserIdsByGroupId(1L);
+    }
+
+    @Test
+    void testAddAndRemove_UpdateLoadedGroupWithoutReload() {
+        when(groupChatMemberRepository.findUserIdsByGroupId(1L)).thenReturn(List.of(2L));
+        assertFalse(index.isMember(1L, 5L));
+
+        index.addMember(1L, 5L);
+        assertTrue(index.isMember(1L, 5L));
+
+        index.removeMember(1L, 2L);
+        assertFalse(index.isMember(1L, 2L));
+
+        verify(groupChatMemberRepository, times(1)).findUserIdsByGroupId(1L);
+    }
+
+    @Test
+    void testAddAndRemove_AppliedAfterCommit() {
+        when(groupChatMemberRepository.findUserIdsByGroupId(1L)).thenReturn(List.of(2L));
+        assertTrue(index.isMember(1L, 2L));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.addMember(1L, 5L);
+            index.removeMember(1L, 2L);
+            // 提交前索引不变，回滚时不会留下未提交的变更
+            assertFalse(index.isMember(1L, 5L));
+            assertTrue(index.isMember(1L, 2L));
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertTrue(index.isMember(1L, 5L));
+        assertFalse(index.isMember(1L, 2L));
+    }
+
+    @Test
+    void testChangeDuringLoad_LoadedSnapshotNotCached() {
+        // 加载查询期间有成员入群，旧快照不能进入缓存
+        when(groupChatMemberRepository.findUserIdsByGroupId(1L)).thenAnswer(invocation -> {
+            index.addMember(1L, 9L);
+            return List.of(2L);
+        }).thenReturn(List.of(2L, 9L));
+
+        assertFalse(index.isMember(1L, 9L));
+        assertTrue(index.isMember(1L, 9L));
+        assertTrue(index.isMember(1L, 2L));
+
+        verify(groupChatMemberRepository, times(2)).findUserIdsByGroupId(1L);
+    }
+
+    @Test
+    void testMemberSet_ContainsWithAndWithout() {
+        MemberSet set = MemberSet.of(LongStream.rangeClosed(1, 100).map(v -> v * 7).toArray());
+        assertEquals(100, set.size());
+        assertTrue(set.contains(700L));
+        assertFalse(set.contains(701L));
+        assertFalse(set.contains(Long.MIN_VALUE));
+
+        MemberSet added = set.with(701L);
+        assertSame(added, added.with(701L));
+        assertTrue(added.contains(701L));
+        assertFalse(set.contains(701L));
+
+        MemberSet removed = added.without(7L);
+        assertEquals(100, removed.size());
+        assertFalse(removed.contains(7L));
+        assertTrue(removed.contains(14L));
+        assertEquals(0, MemberSet.of(new long[]{3L, 3L}).without(3L).size());
+    }
+}
@@ -0,0 +1,270 @@
+package com.se_07.backend.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.se_07.backend.entity.Destination;
+import com.se_07.backend.entity.Tag;
+import com.se_07.backend.entity.TravelGroup;
+import com.se_07.backend.entity.TravelGroupTag;
+import com.se_07.backend.entity.User;
+import com.se_07.backend.repository.TravelGroupRepository;
+import com.se_07.backend.repository.TravelGroupTagRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class GroupRecommendationIndexTest {
+
+    @Mock
+    private TravelGroupRepository travelGroupRepository;
+
+    @Mock
+    private TravelGroupTagRepository travelGroupTagRepository;
+
+    @Mock
+    private TagScoreIndex tagScoreIndex;
+
+    private GroupRecommendationIndex index;
+
+    private final LocalDate soon = LocalDate.now().plusDays(10);
+
+    @BeforeEach
+    void setUp() {
+        // 不启动刷新线程，首次推荐时同步加载
+        index = new GroupRecommendationIndex();
+        ReflectionTestUtils.setField(index, "travelGroupRepository", travelGroupRepository);
+        ReflectionTestUtils.setField(index, "travelGroupTagRepository", travelGroupTagRepository);
+        ReflectionTestUtils.setField(index, "tagScoreIndex", tagScoreIndex);
+        ReflectionTestUtils.setField(index, "objectMapper", new ObjectMapper());
+        when(travelGroupTagRepository.findWeightsByGroupStatus(TravelGroup.GroupStatus.招募中)).thenReturn(List.of(
+                new Object[]{1L, 1L, new BigDecimal("1.00")},
+                new Object[]{2L, 2L, new BigDecimal("1.00")},
+                new Object[]{3L, 1L, new BigDecimal("0.50")},
+                new Object[]{3L, 2L, new BigDecimal("0.50")}));
+        when(travelGroupRepository.findRecommendationFeatures(TravelGroup.GroupStatus.招募中)).thenReturn(List.of(
+                new Object[]{1L, 100L, 10L, soon, 1, 4},
+                new Object[]{2L, 100L, 20L, soon, 1, 4},
+                new Object[]{3L, 100L, 30L, soon, 1, 4}));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testRecommend_RanksByPreferredTagOverlap() {
+        List<Long> ranked = index.recommend(7L, new int[]{1}, Collections.emptyList());
+
+        // 组团1全部标签匹配，组团3一半匹配，组团2不匹配
+        assertEquals(List.of(1L, 3L, 2L), ranked);
+        verify(travelGroupRepository, times(1)).findRecommendationFeatures(any());
+    }
+
+    @Test
+    void testRecommend_DestinationAffinityComputedOncePerDestination() {
+        when(tagScoreIndex.destinationTagShare(eq(20L), any())).thenReturn(1f);
+        when(travelGroupRepository.findRecommendationFeatures(TravelGroup.GroupStatus.招募中)).thenReturn(List.of(
+                new Object[]{1L, 100L, 10L, soon, 1, 4},
+                new Object[]{2L, 100L, 20L, soon, 1, 4},
+                new Object[]{4L, 100L, 20L, soon, 1, 4}));
+
+        List<Long> ranked = index.recommend(7L, new int[]{3}, Collections.emptyList());
+
+        // 没有标签匹配时按目的地匹配排序
+        assertEquals(List.of(2L, 4L, 1L), ranked);
+        verify(tagScoreIndex, times(1)).destinationTagShare(eq(20L), any());
+        verify(tagScoreIndex, times(1)).destinationTagShare(eq(10L), any());
+    }
+
+    @Test
+    void testRecommend_WithoutPreferencesUsesDateAndCapacity() {
+        when(travelGroupTagRepository.findWeightsByGroupStatus(any())).thenReturn(Collections.emptyList());
+        when(travelGroupRepository.findRecommendationFeatures(TravelGroup.GroupStatus.招募中)).thenReturn(List.of(
+                new Object[]{1L, 100L, 10L, LocalDate.now().plusDays(90), 1, 4},
+                new Object[]{2L, 100L, 10L, LocalDate.now().plusDays(3), 1, 4},
+                new Object[]{3L, 100L, 10L, LocalDate.now().plusDays(3), 3, 4},
+                new Object[]{4L, 100L, 10L, LocalDate.now().minusDays(1), 1, 4}));
+
+        List<Long> ranked = index.recommend(7L, new int[0], null);
+
+        assertEquals(List.of(2L, 3L, 1L, 4L), ranked);
+        verify(tagScoreIndex, never()).destinationTagShare(any(), any());
+    }
+
+    @Test
+    void testRecommend_ExcludesOwnAndJoinedGroups() {
+        when(travelGroupRepository.findRecommendationFeatures(TravelGroup.GroupStatus.招募中)).thenReturn(List.of(
+                new Object[]{1L, 7L, 10L, soon, 1, 4},
+                new Object[]{2L, 100L, 20L, soon, 1, 4},
+                new Object[]{3L, 100L, 30L, soon, 1, 4}));
+
+        List<Long> ranked = index.recommend(7L, new int[]{1}, List.of(3L));
+
+        assertEquals(List.of(2L), ranked);
+    }
+
+    @Test
+    void testRecommend_ReturnsAtMostLimitRankedGroups() {
+        ReflectionTestUtils.setField(index, "limit", 3);
+        List<Object[]> rows = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            // 剩余名额越多得分越高
+            rows.add(new Object[]{id, 100L, 10L, soon, (int) (50 - id), 60});
+        }
+        when(travelGroupTagRepository.findWeightsByGroupStatus(any())).thenReturn(Collections.emptyList());
+        when(travelGroupRepository.findRecommendationFeatures(TravelGroup.GroupStatus.招募中)).thenReturn(rows);
+
+        assertEquals(List.of(50L, 49L, 48L), index.recommend(7L, new int[0], null));
+    }
+
+    @Test
+    void testTopK_TiesBrokenByGroupId() {
+        GroupRecommendationIndex.TopK top = new GroupRecommendationIndex.TopK(3);
+        top.offer(5L, 0.5f);
+        top.offer(2L, 0.5f);
+        top.offer(9L, 0.9f);
+        top.offer(1L, 0.1f);
+        top.offer(3L, 0.5f);
+
+        assertEquals(List.of(9L, 2L, 3L), top.toRankedList());
+    }
+
+    @Test
+    void testUpdate_AddsAndRemovesGroups() {
+        index.recommend(7L, new int[0], null);
+
+        TravelGroup created = group(8L, TravelGroup.GroupStatus.招募中, 1, 4);
+        index.update(created);
+        assertTrue(index.recommend(7L, new int[]{5}, null).contains(8L));
+        assertEquals(8L, index.recommend(7L, new int[]{5}, null).get(0));
+
+        // 满员后不再推荐
+        index.update(group(1L, TravelGroup.GroupStatus.已满员, 4, 4));
+        assertFalse(index.recommend(7L, new int[0], null).contains(1L));
+        verify(travelGroupRepository, times(1)).findRecommendationFeatures(any());
+    }
+
+    @Test
+    void testUpdate_AppliedAfterCommit() {
+        index.recommend(7L, new int[0], null);
+        TransactionSynchronizationManager.initSynchronization();
+
+        index.update(group(8L, TravelGroup.GroupStatus.招募中, 1, 4));
+        assertFalse(index.recommend(7L, new int[0], null).contains(8L));
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        assertTrue(index.recommend(7L, new int[0], null).contains(8L));
+    }
+
+    @Test
+    void testRebuild_KeepsUpdatesAppliedDuringLoad() {
+        List<Object[]> snapshot = List.of(
+                new Object[]{1L, 100L, 10L, soon, 1, 4},
+                new Object[]{2L, 100L, 20L, soon, 1, 4});
+        // 重建读取数据库期间，组团1满员、组团8创建，读到的快照还是旧的
+        when(travelGroupRepository.findRecommendationFeatures(TravelGroup.GroupStatus.招募中)).thenAnswer(inv -> {
+            index.update(group(1L, TravelGroup.GroupStatus.已满员, 4, 4));
+            index.update(group(8L, TravelGroup.GroupStatus.招募中, 1, 4));
+            return snapshot;
+        });
+
+        index.rebuild();
+
+        List<Long> ranked = index.recommend(7L, new int[0], null);
+        assertFalse(ranked.contains(1L));
+        assertTrue(ranked.contains(2L));
+        assertTrue(ranked.contains(8L));
+
+        // 之后的重建没有并发更新，以数据库为准
+        when(travelGroupRepository.findRecommendationFeatures(TravelGroup.GroupStatus.招募中)).thenReturn(snapshot);
+        index.rebuild();
+        assertEquals(Set.of(1L, 2L), new HashSet<>(index.recommend(7L, new int[0], null)));
+    }
+
+    @Test
+    void testUpdate_KeepsIndexedTagsWhenNotLoaded() {
+        index.recommend(7L, new int[0], null);
+        TravelGroup group = group(1L, TravelGroup.GroupStatus.招募中, 2, 4);
+        group.setTravelTags(null);
+
+        index.update(group);
+
+        assertEquals(1L, index.recommend(7L, new int[]{1}, null).get(0));
+    }
+
+    @Test
+    void testPreferredTagIds_ParsesSelectedTags() {
+        when(tagScoreIndex.knownTagIds(any())).thenAnswer(inv -> inv.getArgument(0));
+        assertArrayEquals(new int[]{1, 3}, index.preferredTagIds("{\"1\": 1, \"2\": 0, \"3\": 1, \"x\": 1}"));
+        assertArrayEquals(new int[0], index.preferredTagIds(null));
+        assertArrayEquals(new int[0], index.preferredTagIds("not json"));
+    }
+
+    @Test
+    void testPreferredTagIds_DropsUnknownTags() {
+        when(tagScoreIndex.knownTagIds(any())).thenAnswer(inv -> Arrays.stream((int[]) inv.getArgument(0))
+                .filter(id -> id >= 1 && id <= 3).distinct().toArray());
+
+        assertArrayEquals(new int[]{1}, index.preferredTagIds("{\"2000000000\": 1, \"-5\": 1, \"1\": 1}"));
+    }
+
+    @Test
+    void testRecommend_HugeAndNegativeTagIdsDoNotAllocateByTagId() {
+        List<Long> ranked = index.recommend(7L, new int[]{Integer.MAX_VALUE, -1, 2, 2}, Collections.emptyList());
+
+        // 组团2全部标签匹配，组团3一半匹配
+        assertEquals(List.of(2L, 3L, 1L), ranked);
+    }
+
+    @Test
+    void testResolveTagIds_DelegatesToTagDictionary() {
+        when(tagScoreIndex.resolveTagIds(List.of("美食", "文化"))).thenReturn(List.of(1L, 2L));
+
+        assertArrayEquals(new int[]{1, 2}, index.resolveTagIds(List.of("美食", "文化")));
+    }
+
+    private TravelGroup group(Long id, TravelGroup.GroupStatus status, int current, int max) {
+        User creator = new User();
+        creator.setId(100L);
+        Destination destination = new Destination();
+        destination.setId(10L);
+        Tag tag = new Tag();
+        tag.setId(5L);
+        TravelGroup group = new TravelGroup();
+        group.setId(id);
+        group.setStatus(status);
+        group.setIsPublic(true);
+        group.setCurrentMembers(current);
+        group.setMaxMembers(max);
+        group.setStartDate(soon);
+        group.setCreator(creator);
+        group.setDestination(destination);
+        TravelGroupTag groupTag = new TravelGroupTag();
+        groupTag.setGroup(group);
+        groupTag.setTag(tag);
+        group.setTravelTags(new ArrayList<>(List.of(groupTag)));
+        return group;
+    }
+}
@@ -0,0 +1,222 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.dto.CommunityEntryDocument;
+import com.se_07.backend.entity.SearchIndexRetry;
+import com.se_07.backend.entity.SearchIndexRetry.EntityType;
+import com.se_07.backend.repository.SearchIndexRetryRepository;
+import com.se_07.backend.service.EmbeddingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IncrementalIndexerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private EmbeddingService embeddingService;
+
+    @Mock
+    private ElasticsearchBulkIndexer bulkIndexer;
+
+    @Mock
+    private SearchIndexRetryRepository retryRepository;
+
+    private IncrementalIndexer indexer;
+
+    @BeforeEach
+    void setUp() {
+        // 不启动工作线程，由测试直接调用批量方法
+        indexer = new IncrementalIndexer();
+        ReflectionTestUtils.setField(indexer, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(indexer, "embeddingService", embeddingService);
+        ReflectionTestUtils.setField(indexer, "bulkIndexer", bulkIndexer);
+        ReflectionTestUtils.setField(indexer, "retryRepository", retryRepository);
+    }
+
+    @Test
+    void testIndexCommunityEntries_BuildsDocumentsWithOneEmbeddingCall() {
+        when(jdbcTemplate.queryForList(anyString(), any(Object[].class))).thenReturn(List.of(communityRow(1L)));
+        when(embeddingService.embedBatch(anyList())).thenReturn(List.of(new float[]{0.1f, 0.2f}));
+        when(bulkIndexer.index(anyString(), anyString(), any())).thenReturn(true);
+
+        List<Long> failed = indexer.indexCommunityEntries(List.of(1L, 2L));
+
+        assertTrue(failed.isEmpty());
+        verify(embeddingService, times(1)).embedBatch(List.of("东京之旅 五天四夜 作者: alice 目的地: 东京, 大阪 标签: 美食, 购物"));
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(bulkIndexer).index(eq("community_entries"), eq("1"), captor.capture());
+        CommunityEntryDocument document = (CommunityEntryDocument) captor.getValue();
+        assertEquals("2024-05-01T10:30", document.getCreatedAt());
+        assertEquals("2024-06-01", document.getStartDate());
+        assertEquals(List.of("美食", "购物"), document.getTagNames());
+        assertEquals(7L, document.getAuthorId());
+        assertEquals(2, document.getVector().size());
+        // 条目2不再公开，从索引中删除
+        verify(bulkIndexer).delete("community_entries", "2");
+    }
+
+    @Test
+    void testIndexCommunityEntries_ReturnsIdsWithoutVector() {
+        when(jdbcTemplate.queryForList(anyString(), any(Object[].class))).thenReturn(List.of(communityRow(1L)));
+        when(embeddingService.embedBatch(anyList())).thenReturn(List.of(new float[0]));
+
+        List<Long> failed = indexer.indexCommunityEntries(List.of(1L));
+
+        assertEquals(List.of(1L), failed);
+        verify(bulkIndexer, never()).index(anyString(), anyString(), any());
+    }
+
+    @Test
+    void testIndexCommunityEntries_SkipsInvalidTitle() {
+        Map<String, Object> row = communityRow(1L);
+        row.put("itinerary_title", " ");
+        when(jdbcTemplate.queryForList(anyString(), any(Object[].class))).thenReturn(List.of(row));
+        when(embeddingService.embedBatch(anyList())).thenReturn(List.of());
+
+        List<Long> failed = indexer.indexCommunityEntries(List.of(1L));
+
+        assertTrue(failed.isEmpty());
+        verify(embeddingService).embedBatch(List.of());
+        verifyNoInteractions(bulkIndexer);
+    }
+
+    @Test
+    void testIndexAuthors_UsesIndexAuthorsDocumentFormat() {
+        ((AtomicBoolean) ReflectionTestUtils.getField(indexer, "authorsIndexReady")).set(true);
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", 7L);
+        row.put("username", "alice");
+        row.put("email", "a@example.com");
+        row.put("itinerary_count", 3L);
+        row.put("community_entry_count", 1L);
+        row.put("total_views", null);
+        row.put("visited_destinations", "东京");
+        when(jdbcTemplate.queryForList(anyString(), any(Object[].class))).thenReturn(List.of(row));
+        when(embeddingService.embedBatch(anyList())).thenReturn(List.of(new float[]{1f}));
+        when(bulkIndexer.index(anyString(), anyString(), any())).thenReturn(true);
+
+        assertTrue(indexer.indexAuthors(List.of(7L)).isEmpty());
+
+        verify(embeddingService).embedBatch(List.of("作者: alice 去过的地方: 东京 创建了3个行程 分享了1个行程"));
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(bulkIndexer).index(eq("authors"), eq("7"), captor.capture());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> document = (Map<String, Object>) captor.getValue();
+        assertEquals(7L, document.get("id"));
+        assertEquals(0L, document.get("total_views"));
+        assertEquals(3L, document.get("itinerary_count"));
+    }
+
+    @Test
+    void testProcessBatch_ClearsSucceededAndRecordsFailed() {
+        when(jdbcTemplate.queryForList(anyString(), any(Object[].class))).thenReturn(List.of(communityRow(1L), communityRow(2L)));
+        when(embeddingService.embedBatch(anyList())).thenReturn(List.of(new float[]{1f}, new float[0]));
+        when(bulkIndexer.index(anyString(), anyString(), any())).thenReturn(true);
+        when(retryRepository.findByEntityTypeAndEntityId(EntityType.COMMUNITY_ENTRY, 2L)).thenReturn(Optional.empty());
+
+        indexer.processBatch(EntityType.COMMUNITY_ENTRY, List.of(1L, 2L));
+
+        verify(retryRepository).deleteByEntityTypeAndEntityIdIn(EntityType.COMMUNITY_ENTRY, List.of(1L));
+        ArgumentCaptor<SearchIndexRetry> captor = ArgumentCaptor.forClass(SearchIndexRetry.class);
+        verify(retryRepository).save(captor.capture());
+        SearchIndexRetry retry = captor.getValue();
+        assertEquals(2L, retry.getEntityId());
+        assertEquals(1, retry.getAttempts());
+        assertTrue(retry.getNextAttemptAt().isAfter(LocalDateTime.now()));
+        assertEquals(1L, indexer.getStats().get("failedDocs"));
+    }
+
+    @Test
+    void testProcessBatch_RecordsWholeBatchOnException() {
+        when(jdbcTemplate.queryForList(anyString(), any(Object[].class))).thenThrow(new RuntimeException("db down"));
+        when(retryRepository.findByEntityTypeAndEntityId(any(), anyLong())).thenReturn(Optional.empty());
+
+        indexer.processBatch(EntityType.COMMUNITY_ENTRY, List.of(1L, 2L));
+
+        verify(retryRepository, times(2)).save(argThat(r -> "db down".equals(r.getLastError())));
+        verify(retryRepository, never()).deleteByEntityTypeAndEntityIdIn(any(), anyCollection());
+    }
+
+    @Test
+    void testRecordFailures_IncrementsAttemptsWithBackoff() {
+        SearchIndexRetry existing = new SearchIndexRetry();
+        existing.setEntityType(EntityType.AUTHOR);
+        existing.setEntityId(7L);
+        existing.setAttempts(3);
+        when(retryRepository.findByEntityTypeAndEntityId(EntityType.AUTHOR, 7L)).thenReturn(Optional.of(existing));
+
+        indexer.recordFailures(EntityType.AUTHOR, List.of(7L), "x".repeat(600));
+
+        assertEquals(4, existing.getAttempts());
+        assertEquals(500, existing.getLastError().length());
+        // 第4次失败等待 10s * 2^3
+        assertTrue(existing.getNextAttemptAt().isAfter(LocalDateTime.now().plusSeconds(70)));
+        verify(retryRepository).save(existing);
+    }
+
+    @Test
+    void testPollRetries_RequeuesDueEntities() {
+        SearchIndexRetry retry = new SearchIndexRetry();
+        retry.setEntityType(EntityType.COMMUNITY_ENTRY);
+        retry.setEntityId(5L);
+        retry.setAttempts(1);
+        retry.setNextAttemptAt(LocalDateTime.now().minusMinutes(1));
+        when(retryRepository.findDue(any(LocalDateTime.class), eq(10), any(Pageable.class))).thenReturn(List.of(retry));
+
+        indexer.pollRetries();
+
+        assertTrue(retry.getNextAttemptAt().isAfter(LocalDateTime.now()));
+        verify(retryRepository).saveAll(List.of(retry));
+        assertEquals(1, indexer.getStats().get("pendingCommunityEntries"));
+    }
+
+    @Test
+    void testSubmit_OverCapacityGoesToRetryQueue() {
+        ReflectionTestUtils.setField(indexer, "pendingCapacity", 1);
+        when(retryRepository.findByEntityTypeAndEntityId(EntityType.AUTHOR, 2L)).thenReturn(Optional.empty());
+
+        indexer.submit(EntityType.AUTHOR, 1L);
+        indexer.submit(EntityType.AUTHOR, 1L);
+        indexer.submit(EntityType.AUTHOR, 2L);
+
+        assertEquals(1, indexer.getStats().get("pendingAuthors"));
+        verify(retryRepository).save(argThat(r -> r.getEntityId() == 2L));
+    }
+
+    private Map<String, Object> communityRow(Long id) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("share_code", "CODE" + id);
+        row.put("description", "五天四夜");
+        row.put("view_count", 3);
+        row.put("created_at", Timestamp.valueOf("2024-05-01 10:30:00"));
+        row.put("updated_at", Timestamp.valueOf("2024-05-02 08:00:00"));
+        row.put("itinerary_title", "东京之旅");
+        row.put("start_date", Date.valueOf("2024-06-01"));
+        row.put("end_date", Date.valueOf("2024-06-05"));
+        row.put("destinations", "东京, 大阪");
+        row.put("author_username", "alice");
+        row.put("author_id", 7L);
+        row.put("tags", "美食, 购物");
+        return row;
+    }
+}
@@ -2,6 +2,7 @@ package com.se_07.backend.service.impl;
 
 import com.se_07.backend.dto.ActivityCreateRequest;
 import com.se_07.backend.dto.AmapActivityCreateRequest;
+import com.se_07.backend.dto.DayPlanBatchRequest;
 import com.se_07.backend.dto.ItineraryActivityDTO;
 import com.se_07.backend.dto.converter.ItineraryActivityConverter;
 import com.se_07.backend.entity.*;
@@ -14,6 +15,8 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -58,8 +61,6 @@ class ItineraryActivityServiceImplTest {
         day = new ItineraryDay();
         day.setId(100L);
         day.setItinerary(itinerary);
-        day.setFirstActivityId(null);
-        day.setLastActivityId(null);
         attraction = new Attraction();
         attraction.setId(1000L);
         attraction.setName("景点A");
@@ -69,6 +70,9 @@ class ItineraryActivityServiceImplTest {
         activity.setAttraction(attraction);
         activity.setTitle("活动A");
         activity.setTransportMode("步行");
+        ActivityOrdering activityOrdering = new ActivityOrdering();
+        ReflectionTestUtils.setField(activityOrdering, "activityRepository", activityRepository);
+        ReflectionTestUtils.setField(service, "activityOrdering", activityOrdering);
     }
 
     @Test
@@ -180,7 +184,7 @@ class ItineraryActivityServiceImplTest {
     @Test
     void getActivitiesByDay_success_empty() {
         when(dayRepository.findById(day.getId())).thenReturn(Optional.of(day));
-        when(activityRepository.findByItineraryDayId(day.getId())).thenReturn(Collections.emptyList());
+        when(activityRepository.findByItineraryDayIdOrderByPositionAscIdAsc(day.getId())).thenReturn(Collections.emptyList());
         List<ItineraryActivityDTO> result = service.getActivitiesByDay(user.getId(), day.getId());
         assertNotNull(result);
         assertTrue(result.isEmpty());
@@ -218,7 +222,7 @@ class ItineraryActivityServiceImplTest {
         itinerary.setUser(user); itinerary.setPermissionStatus(Itinerary.PermissionStatus.所有人可见);
         day.setItinerary(itinerary);
         when(dayRepository.findById(day.getId())).thenReturn(Optional.of(day));
-        when(activityRepository.findByItineraryDayId(day.getId())).thenReturn(Collections.emptyList());
+        when(activityRepository.findByItineraryDayIdOrderByPositionAscIdAsc(day.getId())).thenReturn(Collections.emptyList());
         assertTrue(service.getActivitiesByDay(1L, day.getId()).isEmpty());
     }
 
@@ -363,6 +367,9 @@ class ItineraryActivityServiceImplTest {
         doNothing().when(activityRepository).delete(any());
         service.deleteActivity(user.getId(), activity.getId());
         verify(activityRepository, times(1)).delete(any());
+        // 删除不需要改写相邻活动或日程
+        verify(activityRepository, never()).save(any());
+        verify(dayRepository, never()).save(any());
     }
 
     @Test
@@ -681,157 +688,132 @@ class ItineraryActivityServiceImplTest {
         assertEquals(Attraction.AttractionCategory.旅游景点, result.getCategory());
     }
 
-    // insertActivityIntoLinkedList分支全覆盖
-    private void invokeInsertActivityIntoLinkedList(ItineraryDay day, ItineraryActivity newActivity, Long nextId, Long prevId) throws Exception {
-        var m = ItineraryActivityServiceImpl.class.getDeclaredMethod(
-            "insertActivityIntoLinkedList",
-            ItineraryDay.class, ItineraryActivity.class, Long.class, Long.class
-        );
-        m.setAccessible(true);
-        m.invoke(service, day, newActivity, nextId, prevId);
+    // 位置排序：插入只保存新活动一行
+    private ActivityCreateRequest createRequest(Long prevId, Long nextId) {
+        ActivityCreateRequest req = new ActivityCreateRequest();
+        req.setItineraryDayId(day.getId());
+        req.setAttractionId(attraction.getId());
+        req.setPrevId(prevId);
+        req.setNextId(nextId);
+        when(dayRepository.findById(day.getId())).thenReturn(Optional.of(day));
+        when(attractionRepository.findById(attraction.getId())).thenReturn(Optional.of(attraction));
+        when(activityRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        return req;
     }
 
-    @Test
-    void insertActivity_firstActivity() throws Exception {
-        ItineraryDay day = new ItineraryDay(); day.setId(1L); day.setFirstActivityId(null); day.setLastActivityId(null);
-        ItineraryActivity newActivity = new ItineraryActivity(); newActivity.setId(10L);
-        when(activityRepository.save(any())).thenReturn(newActivity);
-        when(dayRepository.save(any())).thenReturn(day);
-        assertDoesNotThrow(() -> invokeInsertActivityIntoLinkedList(day, newActivity, null, null));
+    private ItineraryActivity positioned(Long id, long position) {
+        ItineraryActivity a = new ItineraryActivity();
+        a.setId(id);
+        a.setItineraryDay(day);
+        a.setPosition(position);
+        when(activityRepository.findById(id)).thenReturn(Optional.of(a));
+        return a;
     }
-    @Test
-    void insertActivity_nextId_head() throws Exception {
-        ItineraryDay day = new ItineraryDay(); day.setId(1L); day.setFirstActivityId(20L);
-        ItineraryActivity newActivity = new ItineraryActivity(); newActivity.setId(10L);
-        ItineraryActivity next = new ItineraryActivity(); next.setId(20L); next.setPrevId(null);
-        when(activityRepository.findById(20L)).thenReturn(Optional.of(next));
-        when(activityRepository.save(any())).thenReturn(newActivity);
-        when(dayRepository.save(any())).thenReturn(day);
-        assertDoesNotThrow(() -> invokeInsertActivityIntoLinkedList(day, newActivity, 20L, null));
+
+    private long savedPosition() {
+        org.mockito.ArgumentCaptor<ItineraryActivity> captor = org.mockito.ArgumentCaptor.forClass(ItineraryActivity.class);
+        verify(activityRepository).save(captor.capture());
+        return captor.getValue().getPosition();
     }
+
     @Test
-    void insertActivity_nextId_middle() throws Exception {
-        ItineraryDay day = new ItineraryDay(); day.setId(1L); day.setFirstActivityId(20L);
-        ItineraryActivity newActivity = new ItineraryActivity(); newActivity.setId(10L);
-        ItineraryActivity next = new ItineraryActivity(); next.setId(20L); next.setPrevId(30L);
-        ItineraryActivity prev = new ItineraryActivity(); prev.setId(30L);
-        when(activityRepository.findById(20L)).thenReturn(Optional.of(next));
-        when(activityRepository.findById(30L)).thenReturn(Optional.of(prev));
-        when(activityRepository.save(any())).thenReturn(newActivity);
-        when(dayRepository.save(any())).thenReturn(day);
-        assertDoesNotThrow(() -> invokeInsertActivityIntoLinkedList(day, newActivity, 20L, null));
+    void insertActivity_firstActivityStartsAtGap() {
+        ActivityCreateRequest req = createRequest(null, null);
+        when(activityRepository.findMaxPositionByItineraryDayId(day.getId())).thenReturn(null);
+        service.createActivity(user.getId(), req);
+        assertEquals(ActivityOrdering.GAP, savedPosition());
+        verify(dayRepository, never()).save(any());
     }
+
     @Test
-    void insertActivity_prevId_tail() throws Exception {
-        ItineraryDay day = new ItineraryDay(); day.setId(1L); day.setLastActivityId(30L);
-        ItineraryActivity newActivity = new ItineraryActivity(); newActivity.setId(10L);
-        ItineraryActivity prev = new ItineraryActivity(); prev.setId(30L); prev.setNextId(null);
-        when(activityRepository.findById(30L)).thenReturn(Optional.of(prev));
-        when(activityRepository.save(any())).thenReturn(newActivity);
-        when(dayRepository.save(any())).thenReturn(day);
-        assertDoesNotThrow(() -> invokeInsertActivityIntoLinkedList(day, newActivity, null, 30L));
+    void insertActivity_AppendToEnd() {
+        ActivityCreateRequest req = createRequest(null, null);
+        when(activityRepository.findMaxPositionByItineraryDayId(day.getId())).thenReturn(3 * ActivityOrdering.GAP);
+        service.createActivity(user.getId(), req);
+        assertEquals(4 * ActivityOrdering.GAP, savedPosition());
     }
+
     @Test
-    void insertActivity_prevId_middle() throws Exception {
-        ItineraryDay day = new ItineraryDay(); day.setId(1L); day.setLastActivityId(30L);
-        ItineraryActivity newActivity = new ItineraryActivity(); newActivity.setId(10L);
-        ItineraryActivity prev = new ItineraryActivity(); prev.setId(30L); prev.setNextId(40L);
-        ItineraryActivity next = new ItineraryActivity(); next.setId(40L);
-        when(activityRepository.findById(30L)).thenReturn(Optional.of(prev));
-        when(activityRepository.findById(40L)).thenReturn(Optional.of(next));
-        when(activityRepository.save(any())).thenReturn(newActivity);
-        when(dayRepository.save(any())).thenReturn(day);
-        assertDoesNotThrow(() -> invokeInsertActivityIntoLinkedList(day, newActivity, null, 30L));
+    void insertActivity_AfterExistingNode() {
+        ItineraryActivity existing = positioned(888L, ActivityOrdering.GAP);
+        ItineraryActivity after = positioned(889L, 2 * ActivityOrdering.GAP);
+        when(activityRepository.findFirstByItineraryDayIdAndPositionGreaterThanOrderByPositionAsc(day.getId(), existing.getPosition()))
+                .thenReturn(after);
+        service.createActivity(user.getId(), createRequest(888L, null));
+        assertEquals(ActivityOrdering.GAP + ActivityOrdering.GAP / 2, savedPosition());
+        // 相邻活动不再被改写
+        assertEquals(2 * ActivityOrdering.GAP, after.getPosition());
     }
+
     @Test
-    void insertActivity_prevId_notExist() {
-        ItineraryDay day = new ItineraryDay(); day.setId(1L);
-        ItineraryActivity newActivity = new ItineraryActivity(); newActivity.setId(10L);
-        when(activityRepository.findById(888L)).thenReturn(Optional.empty());
+    void insertActivity_prevIdTail() {
+        positioned(30L, 5 * ActivityOrdering.GAP);
+        service.createActivity(user.getId(), createRequest(30L, null));
+        assertEquals(6 * ActivityOrdering.GAP, savedPosition());
     }
+
     @Test
-    void insertActivity_appendToEnd_empty() throws Exception {
-        ItineraryDay day = new ItineraryDay(); day.setId(1L); day.setLastActivityId(null);
-        ItineraryActivity newActivity = new ItineraryActivity(); newActivity.setId(10L);
-        when(activityRepository.save(any())).thenReturn(newActivity);
-        when(dayRepository.save(any())).thenReturn(day);
-        assertDoesNotThrow(() -> invokeInsertActivityIntoLinkedList(day, newActivity, null, null));
+    void insertActivity_nextIdHead() {
+        positioned(20L, ActivityOrdering.GAP);
+        service.createActivity(user.getId(), createRequest(null, 20L));
+        assertEquals(0L, savedPosition());
     }
+
     @Test
-    void insertActivity_appendToEnd_nonEmpty() throws Exception {
-        ItineraryDay day = new ItineraryDay(); day.setId(1L); day.setLastActivityId(50L);
-        ItineraryActivity newActivity = new ItineraryActivity(); newActivity.setId(10L);
-        ItineraryActivity last = new ItineraryActivity(); last.setId(50L);
-        when(activityRepository.findById(50L)).thenReturn(Optional.of(last));
-        when(activityRepository.save(any())).thenReturn(newActivity);
-        when(dayRepository.save(any())).thenReturn(day);
-        assertDoesNotThrow(() -> invokeInsertActivityIntoLinkedList(day, newActivity, null, null));
+    void insertActivity_nextIdMiddle() {
+        ItineraryActivity next = positioned(20L, 4 * ActivityOrdering.GAP);
+        ItineraryActivity before = positioned(30L, 2 * ActivityOrdering.GAP);
+        when(activityRepository.findFirstByItineraryDayIdAndPositionLessThanOrderByPositionDesc(day.getId(), next.getPosition()))
+                .thenReturn(before);
+        service.createActivity(user.getId(), createRequest(null, 20L));
+        assertEquals(3 * ActivityOrdering.GAP, savedPosition());
     }
 
     @Test
-    void insertActivity_AfterExistingNode() {
-        // 准备现有活动
-        ItineraryActivity existing = new ItineraryActivity();
-        existing.setId(888L);
-        existing.setPrevId(null);
-        existing.setNextId(null);
-
-        day.setFirstActivityId(existing.getId());
-        day.setLastActivityId(existing.getId());
-
-        // 创建请求（指定prevId）
-        ActivityCreateRequest req = new ActivityCreateRequest();
-        req.setItineraryDayId(day.getId());
-        req.setAttractionId(attraction.getId());
-        req.setPrevId(existing.getId()); // 插入到现有节点后
-
-        when(dayRepository.findById(day.getId())).thenReturn(Optional.of(day));
-        when(attractionRepository.findById(attraction.getId())).thenReturn(Optional.of(attraction));
-        when(activityRepository.findById(existing.getId())).thenReturn(Optional.of(existing));
-        when(activityRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
-
-        // 执行
-        service.createActivity(user.getId(), req);
-
+    void insertActivity_gapExhaustedRebalancesDay() {
+        ItineraryActivity prev = positioned(30L, 5L);
+        ItineraryActivity next = positioned(40L, 6L);
+        when(activityRepository.findFirstByItineraryDayIdAndPositionGreaterThanOrderByPositionAsc(day.getId(), 5L)).thenReturn(next);
+        when(activityRepository.findByItineraryDayIdOrderByPositionAscIdAsc(day.getId())).thenReturn(Arrays.asList(prev, next));
+        service.createActivity(user.getId(), createRequest(30L, null));
+        assertEquals(ActivityOrdering.GAP, prev.getPosition());
+        assertEquals(2 * ActivityOrdering.GAP, next.getPosition());
+        assertEquals(ActivityOrdering.GAP + ActivityOrdering.GAP / 2, savedPosition());
+        verify(activityRepository).saveAll(Arrays.asList(prev, next));
     }
 
     @Test
-    void insertActivity_AppendToEnd() {
-        // 准备现有活动
-        ItineraryActivity existing = new ItineraryActivity();
-        existing.setId(888L);
-        existing.setPrevId(null);
-        existing.setNextId(null);
-
-        day.setFirstActivityId(existing.getId());
-        day.setLastActivityId(existing.getId());
-
-        // 创建请求（不指定位置）
-        ActivityCreateRequest req = new ActivityCreateRequest();
-        req.setItineraryDayId(day.getId());
-        req.setAttractionId(attraction.getId());
-
-        when(dayRepository.findById(day.getId())).thenReturn(Optional.of(day));
-        when(attractionRepository.findById(attraction.getId())).thenReturn(Optional.of(attraction));
-        when(activityRepository.findById(existing.getId())).thenReturn(Optional.of(existing));
-        when(activityRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
-
-        // 执行
-        service.createActivity(user.getId(), req);
-
+    void insertActivity_prevIdNotSameDay() {
+        ItineraryActivity prev = new ItineraryActivity();
+        ItineraryDay otherDay = new ItineraryDay(); otherDay.setId(999L);
+        prev.setId(30L); prev.setItineraryDay(otherDay); prev.setPosition(1L);
+        ActivityCreateRequest req = createRequest(30L, null);
+        when(activityRepository.findById(30L)).thenReturn(Optional.of(prev));
+        assertThrows(RuntimeException.class, () -> service.createActivity(user.getId(), req));
+        verify(activityRepository, never()).save(any());
     }
 
     @Test
-    void getActivitiesByDay_linkedListBroken() {
+    void getActivitiesByDay_positionOrderWithNeighbours() {
         itinerary.setUser(user); itinerary.setPermissionStatus(Itinerary.PermissionStatus.所有人可见);
         day.setItinerary(itinerary);
-        ItineraryActivity a1 = new ItineraryActivity(); a1.setId(1L); a1.setNextId(2L);
-        // a2缺失，链表断裂
-        day.setFirstActivityId(1L);
+        ItineraryActivity a1 = new ItineraryActivity(); a1.setId(1L);
+        ItineraryActivity a2 = new ItineraryActivity(); a2.setId(2L);
+        ItineraryActivity a3 = new ItineraryActivity(); a3.setId(3L);
         when(dayRepository.findById(day.getId())).thenReturn(Optional.of(day));
-        when(activityRepository.findByItineraryDayId(day.getId())).thenReturn(Arrays.asList(a1));
-        when(activityConverter.toDTO(any())).thenReturn(new ItineraryActivityDTO());
-        assertDoesNotThrow(() -> service.getActivitiesByDay(1L, day.getId()));
+        when(activityRepository.findByItineraryDayIdOrderByPositionAscIdAsc(day.getId())).thenReturn(Arrays.asList(a2, a1, a3));
+        when(activityConverter.toDTO(any())).thenAnswer(inv -> {
+            ItineraryActivityDTO dto = new ItineraryActivityDTO();
+            dto.setId(((ItineraryActivity) inv.getArgument(0)).getId());
+            return dto;
+        });
+        List<ItineraryActivityDTO> result = service.getActivitiesByDay(1L, day.getId());
+        assertEquals(Arrays.asList(2L, 1L, 3L), result.stream().map(ItineraryActivityDTO::getId).toList());
+        assertNull(result.get(0).getPrevId());
+        assertEquals(3L, result.get(1).getNextId());
+        assertEquals(1L, result.get(2).getPrevId());
+        assertNull(result.get(2).getNextId());
+        verify(activityRepository, never()).findByItineraryDayId(any());
     }
     @Test
     void createActivityFromAmap_nextIdNotExist() {
@@ -869,4 +851,124 @@ class ItineraryActivityServiceImplTest {
         assertThrows(RuntimeException.class, () -> service.createActivityFromAmap(1L, req));
     }
 
-}
\ No newline at end of file
+
+    // 批量编辑
+    private DayPlanBatchRequest.Operation op(String type, Long activityId) {
+        DayPlanBatchRequest.Operation op = new DayPlanBatchRequest.Operation();
+        op.setType(type);
+        op.setActivityId(activityId);
+        return op;
+    }
+
+    private DayPlanBatchRequest batch(DayPlanBatchRequest.Operation... ops) {
+        DayPlanBatchRequest req = new DayPlanBatchRequest();
+        req.setOperations(Arrays.asList(ops));
+        return req;
+    }
+
+    private ItineraryActivity dayActivity(Long id, long position, long version) {
+        ItineraryActivity a = new ItineraryActivity();
+        a.setId(id);
+        a.setItineraryDay(day);
+        a.setAttraction(attraction);
+        a.setTitle("活动" + id);
+        a.setPosition(position);
+        a.setVersion(version);
+        return a;
+    }
+
+    private void stubBatchDay(ItineraryActivity... activities) {
+        when(dayRepository.findById(day.getId())).thenReturn(Optional.of(day));
+        when(activityRepository.findByItineraryDayIdOrderByPositionAscIdAsc(day.getId())).thenReturn(Arrays.asList(activities));
+        when(activityConverter.toDTO(any())).thenAnswer(inv -> {
+            ItineraryActivity a = inv.getArgument(0);
+            ItineraryActivityDTO dto = new ItineraryActivityDTO();
+            dto.setId(a.getId());
+            dto.setTitle(a.getTitle());
+            dto.setPosition(a.getPosition());
+            return dto;
+        });
+    }
+
+    @Test
+    void applyDayPlan_appliesOperationsInOrderWithOneFlush() {
+        ItineraryActivity a1 = dayActivity(1L, ActivityOrdering.GAP, 0L);
+        ItineraryActivity a2 = dayActivity(2L, 2 * ActivityOrdering.GAP, 3L);
+        ItineraryActivity a3 = dayActivity(3L, 3 * ActivityOrdering.GAP, 0L);
+        stubBatchDay(a1, a2, a3);
+        when(attractionRepository.findAllById(Set.of(attraction.getId()))).thenReturn(List.of(attraction));
+        when(activityRepository.saveAll(any())).thenAnswer(inv -> {
+            ((List<ItineraryActivity>) inv.getArgument(0)).forEach(a -> a.setId(4L));
+            return inv.getArgument(0);
+        });
+
+        DayPlanBatchRequest.Operation update = op("update", 2L);
+        update.setVersion(3L);
+        update.setTitle("新标题");
+        update.setStartTime("09:30");
+        DayPlanBatchRequest.Operation move = op("move", 3L);
+        move.setNextId(1L);
+        DayPlanBatchRequest.Operation create = op("create", null);
+        create.setAttractionId(attraction.getId());
+        create.setPrevId(1L);
+        List<ItineraryActivityDTO> result = service.applyDayPlan(user.getId(), day.getId(),
+                batch(update, move, create, op("delete", 1L)));
+
+        assertEquals(Arrays.asList(3L, 4L, 2L), result.stream().map(ItineraryActivityDTO::getId).toList());
+        assertEquals("新标题", a2.getTitle());
+        assertEquals(java.time.LocalTime.of(9, 30), a2.getStartTime());
+        assertEquals(0L, a3.getPosition());
+        assertEquals("景点A", result.get(1).getTitle());
+        assertEquals(3L, result.get(1).getPrevId());
+        // 整批一次鉴权、一次 flush，不逐条保存
+        verify(dayRepository, times(1)).findById(day.getId());
+        verify(activityRepository).deleteAll(List.of(a1));
+        verify(activityRepository, times(1)).flush();
+        verify(activityRepository, never()).save(any());
+    }
+
+    @Test
+    void applyDayPlan_staleVersionRejected() {
+        stubBatchDay(dayActivity(1L, ActivityOrdering.GAP, 2L));
+        DayPlanBatchRequest.Operation update = op("update", 1L);
+        update.setVersion(1L);
+        update.setTitle("x");
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> service.applyDayPlan(user.getId(), day.getId(), batch(update)));
+        verify(activityRepository, never()).flush();
+    }
+
+    @Test
+    void applyDayPlan_activityFromOtherDayRejected() {
+        stubBatchDay(dayActivity(1L, ActivityOrdering.GAP, 0L));
+        assertThrows(RuntimeException.class,
+                () -> service.applyDayPlan(user.getId(), day.getId(), batch(op("delete", 99L))));
+    }
+
+    @Test
+    void applyDayPlan_unknownTypeAndEmptyRejected() {
+        stubBatchDay();
+        assertThrows(RuntimeException.class,
+                () -> service.applyDayPlan(user.getId(), day.getId(), batch(op("rename", 1L))));
+        assertThrows(RuntimeException.class,
+                () -> service.applyDayPlan(user.getId(), day.getId(), new DayPlanBatchRequest()));
+    }
+
+    @Test
+    void applyDayPlan_tooManyOperationsRejected() {
+        ReflectionTestUtils.setField(service, "maxDayPlanOperations", 1);
+        assertThrows(RuntimeException.class,
+                () -> service.applyDayPlan(user.getId(), day.getId(), batch(op("delete", 1L), op("delete", 2L))));
+        verify(dayRepository, never()).findById(any());
+    }
+
+    @Test
+    void applyDayPlan_noPermission() {
+        User other = new User(); other.setId(99L);
+        itinerary.setUser(other);
+        stubBatchDay();
+        assertThrows(RuntimeException.class,
+                () -> service.applyDayPlan(user.getId(), day.getId(), batch(op("delete", 1L))));
+        verify(activityRepository, never()).findByItineraryDayIdOrderByPositionAscIdAsc(any());
+    }
+}
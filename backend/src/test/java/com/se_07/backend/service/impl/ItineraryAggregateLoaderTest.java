@@ -0,0 +1,64 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.entity.Itinerary;
+import com.se_07.backend.repository.ItineraryDayRepository;
+import com.se_07.backend.repository.ItineraryRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.*;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ItineraryAggregateLoaderTest {
+
+    @Mock
+    private ItineraryRepository itineraryRepository;
+    @Mock
+    private ItineraryDayRepository itineraryDayRepository;
+    @InjectMocks
+    private ItineraryAggregateLoader loader;
+
+    @Test
+    void testLoadDetails_TwoQueriesForWholePage() {
+        List<Itinerary> page = Arrays.asList(itinerary(3L), itinerary(1L), itinerary(3L), null);
+
+        loader.loadDetails(page);
+
+        verify(itineraryRepository).findWithDaysByIdIn(List.of(3L, 1L));
+        verify(itineraryDayRepository).findWithActivitiesByItineraryIdIn(List.of(3L, 1L));
+        verifyNoMoreInteractions(itineraryRepository, itineraryDayRepository);
+    }
+
+    @Test
+    void testLoadDetails_SplitsLargeInputIntoBatches() {
+        List<Itinerary> itineraries = LongStream.rangeClosed(1, ItineraryAggregateLoader.BATCH_SIZE + 1)
+                .mapToObj(this::itinerary)
+                .toList();
+
+        loader.loadDetails(itineraries);
+
+        verify(itineraryRepository, times(2)).findWithDaysByIdIn(anyCollection());
+        verify(itineraryDayRepository, times(2)).findWithActivitiesByItineraryIdIn(anyCollection());
+        verify(itineraryDayRepository).findWithActivitiesByItineraryIdIn(List.of(ItineraryAggregateLoader.BATCH_SIZE + 1L));
+    }
+
+    @Test
+    void testLoadDetails_EmptyInputSkipsQueries() {
+        loader.loadDetails(Collections.emptyList());
+        verifyNoInteractions(itineraryRepository, itineraryDayRepository);
+    }
+
+    private Itinerary itinerary(long id) {
+        Itinerary itinerary = new Itinerary();
+        itinerary.setId(id);
+        return itinerary;
+    }
+}
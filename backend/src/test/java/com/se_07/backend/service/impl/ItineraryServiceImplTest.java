@@ -45,6 +45,9 @@ class ItineraryServiceImplTest {
     @Mock private GroupItineraryRepository groupItineraryRepository;
     @Mock private com.se_07.backend.repository.AttractionRepository attractionRepository;
     @Mock private com.se_07.backend.repository.ItineraryActivityRepository itineraryActivityRepository;
+    @Mock private SearchIndexOutboxRelay searchIndexOutbox;
+    @Mock private ItineraryAggregateLoader itineraryAggregateLoader;
+    @Mock private UserTravelStatsAggregator userTravelStatsAggregator;
     @InjectMocks private ItineraryServiceImpl service;
 
     private User user;
@@ -105,6 +108,7 @@ class ItineraryServiceImplTest {
         when(itineraryConverter.toDTO(any())).thenReturn(new ItineraryDTO());
         List<ItineraryDTO> list = service.getUserItineraries(1L, Pageable.unpaged());
         assertEquals(1, list.size());
+        verify(itineraryAggregateLoader).loadDetails(List.of(itinerary));
     }
     @Test void getItineraryById_notFound() {
         when(itineraryRepository.findById(10L)).thenReturn(Optional.empty());
@@ -117,9 +121,11 @@ class ItineraryServiceImplTest {
         User other = new User(); other.setId(2L);
         itinerary.setUser(other);
         assertThrows(RuntimeException.class, () -> service.getItineraryById(10L, 1L));
+        verify(itineraryAggregateLoader, never()).loadDetails(any());
         // 本人
         itinerary.setUser(user);
         service.getItineraryById(10L, 1L);
+        verify(itineraryAggregateLoader).loadDetails(List.of(itinerary));
     }
     @Test void getItineraryById_teamMemberCanAccess() {
         Itinerary itinerary = new Itinerary(); itinerary.setGroupId(2L); itinerary.setUser(user); itinerary.setPermissionStatus(com.se_07.backend.entity.Itinerary.PermissionStatus.私人);
@@ -328,6 +334,15 @@ class ItineraryServiceImplTest {
         when(itineraryRepository.save(any())).thenReturn(itinerary);
         when(itineraryConverter.toDTO(any())).thenReturn(new ItineraryDTO());
         service.lockItinerary(10L, 1L);
+        verify(userTravelStatsAggregator).markChanged(user.getId());
+    }
+    @Test void lockItinerary_alreadyCompletedKeepsStats() {
+        itinerary.setUser(user);
+        itinerary.setTravelStatus(Itinerary.TravelStatus.已出行);
+        when(itineraryRepository.findById(10L)).thenReturn(Optional.of(itinerary));
+        when(itineraryRepository.save(any())).thenReturn(itinerary);
+        service.lockItinerary(10L, 1L);
+        verify(userTravelStatsAggregator, never()).markChanged(any());
     }
     @Test void lockItinerary_teamNotMemberNotCreator() {
         itinerary.setGroupId(2L);
@@ -400,6 +415,8 @@ class ItineraryServiceImplTest {
         itinerary.setTravelStatus(Itinerary.TravelStatus.已出行);
         service.updateItineraryStatus(1L, 10L, "待出行");
         verify(userService).removeAutoAddedHistoryDestinationsFromItinerary(1L, 10L);
+        // 两次状态变化都标记行程所属用户的旅行统计过期
+        verify(userTravelStatsAggregator, times(2)).markChanged(user.getId());
     }
     @Test void uploadCoverImage_notFound() {
         when(itineraryRepository.findById(10L)).thenReturn(Optional.empty());
@@ -493,6 +510,8 @@ class ItineraryServiceImplTest {
         // 验证保存方法被调用
         verify(itineraryRepository).save(any(Itinerary.class));
         verify(communityEntryRepository).save(any(CommunityEntry.class));
+        // 仅获得链接者可见的条目写入发件箱，由中继从ES删除
+        verify(searchIndexOutbox).enqueueCommunityEntry(1L);
     }
     @Test void generateShareCode_teamNotMemberNotCreator() {
         Itinerary itinerary = new Itinerary(); itinerary.setGroupId(2L); itinerary.setUser(user); itinerary.setPermissionStatus(com.se_07.backend.entity.Itinerary.PermissionStatus.私人);
@@ -588,7 +607,7 @@ class ItineraryServiceImplTest {
     }
     @Test void getTeamItineraries_empty() {
         when(userRepository.existsById(anyLong())).thenReturn(true);
-        when(travelGroupMemberRepository.findByUserId(anyLong())).thenReturn(Collections.emptyList());
+        when(groupItineraryRepository.findTeamItineraryRows(anyLong(), any(), any())).thenReturn(new PageImpl<>(Collections.emptyList()));
         List<ItineraryDTO> list = service.getTeamItineraries(1L, Pageable.unpaged());
         assertTrue(list.isEmpty());
     }
@@ -686,74 +705,48 @@ class ItineraryServiceImplTest {
         m.setAccessible(true);
         assertDoesNotThrow(() -> m.invoke(service, itinerary, Collections.emptyList()));
     }
-    @Test void getTeamItineraries_groupItineraryException() {
+    @Test void getTeamItineraries_queryException() {
         when(userRepository.existsById(anyLong())).thenReturn(true);
-        TravelGroup group1 = new TravelGroup(); group1.setId(1L);
-        TravelGroup group2 = new TravelGroup(); group2.setId(2L);
-        TravelGroupMember m1 = new TravelGroupMember(); m1.setGroup(group1);
-        TravelGroupMember m2 = new TravelGroupMember(); m2.setGroup(group2);
-        when(travelGroupMemberRepository.findByUserId(anyLong())).thenReturn(Arrays.asList(m1, m2));
-        when(groupItineraryRepository.findByGroupId(1L)).thenThrow(new RuntimeException("error"));
-        GroupItinerary gi = new GroupItinerary();
-        Itinerary iti = new Itinerary(); iti.setId(100L); iti.setTitle("t");
-        gi.setItinerary(iti);
-        when(groupItineraryRepository.findByGroupId(2L)).thenReturn(Arrays.asList(gi));
-        List<ItineraryDTO> list = service.getTeamItineraries(1L, Pageable.unpaged());
-        assertEquals(0, list.size());
-    }
-    @Test void getTeamItineraries_groupItineraryNull() {
-        when(userRepository.existsById(anyLong())).thenReturn(true);
-        TravelGroup group1 = new TravelGroup(); group1.setId(1L);
-        TravelGroupMember m1 = new TravelGroupMember(); m1.setGroup(group1);
-        when(travelGroupMemberRepository.findByUserId(anyLong())).thenReturn(Arrays.asList(m1));
-        GroupItinerary gi = new GroupItinerary();
-        gi.setItinerary(null);
-        when(groupItineraryRepository.findByGroupId(1L)).thenReturn(Arrays.asList(gi));
+        when(groupItineraryRepository.findTeamItineraryRows(anyLong(), any(), any())).thenThrow(new RuntimeException("error"));
         List<ItineraryDTO> list = service.getTeamItineraries(1L, Pageable.unpaged());
         assertTrue(list.isEmpty());
     }
-    @Test void getTeamItineraries_paginationStartOver() {
+    @Test void getTeamItineraries_userNotExist() {
+        when(userRepository.existsById(anyLong())).thenReturn(false);
+        assertTrue(service.getTeamItineraries(1L, Pageable.unpaged()).isEmpty());
+        verify(groupItineraryRepository, never()).findTeamItineraryRows(anyLong(), any(), any());
+    }
+    @Test void getTeamItineraries_passesPageableAndJoinStatus() {
         when(userRepository.existsById(anyLong())).thenReturn(true);
-        TravelGroup group1 = new TravelGroup(); group1.setId(1L);
-        TravelGroupMember m1 = new TravelGroupMember(); m1.setGroup(group1);
-        when(travelGroupMemberRepository.findByUserId(anyLong())).thenReturn(Arrays.asList(m1));
-        GroupItinerary gi = new GroupItinerary();
-        Itinerary iti = new Itinerary(); iti.setId(100L); iti.setTitle("t");
-        gi.setItinerary(iti);
-        when(groupItineraryRepository.findByGroupId(1L)).thenReturn(Arrays.asList(gi));
         Pageable pageable = PageRequest.of(10, 10);
+        when(groupItineraryRepository.findTeamItineraryRows(1L, TravelGroupMember.JoinStatus.已加入, pageable))
+                .thenReturn(new PageImpl<>(Collections.emptyList(), pageable, 3));
         List<ItineraryDTO> list = service.getTeamItineraries(1L, pageable);
         assertTrue(list.isEmpty());
+        verify(groupItineraryRepository).findTeamItineraryRows(1L, TravelGroupMember.JoinStatus.已加入, pageable);
     }
-    @Test void getTeamItineraries_groupInfoException() {
-        when(userRepository.existsById(anyLong())).thenReturn(true);
-        TravelGroup group1 = new TravelGroup(); group1.setId(1L);
-        TravelGroupMember m1 = new TravelGroupMember(); m1.setGroup(group1);
-        when(travelGroupMemberRepository.findByUserId(anyLong())).thenReturn(Arrays.asList(m1));
-        GroupItinerary gi = new GroupItinerary();
-        Itinerary iti = new Itinerary(); iti.setId(100L); iti.setTitle("t"); iti.setGroupId(1L);
-        gi.setItinerary(iti);
-        when(groupItineraryRepository.findByGroupId(1L)).thenReturn(Arrays.asList(gi));
-        org.mockito.Mockito.lenient().when(travelGroupRepository.findById(1L)).thenThrow(new RuntimeException("error"));
-        Pageable pageable = PageRequest.of(0, 10);
-        List<ItineraryDTO> list = service.getTeamItineraries(1L, pageable);
-        assertEquals(1, list.size());
-    }
-    @Test void getTeamItineraries_groupInfoNormal() {
+    @Test void getTeamItineraries_groupInfoFromRows() {
         when(userRepository.existsById(anyLong())).thenReturn(true);
-        TravelGroup group1 = new TravelGroup(); group1.setId(1L);
-        TravelGroupMember m1 = new TravelGroupMember(); m1.setGroup(group1);
-        when(travelGroupMemberRepository.findByUserId(anyLong())).thenReturn(Arrays.asList(m1));
-        GroupItinerary gi = new GroupItinerary();
-        Itinerary iti = new Itinerary(); iti.setId(100L); iti.setTitle("t"); iti.setGroupId(1L);
-        gi.setItinerary(iti);
-        when(groupItineraryRepository.findByGroupId(1L)).thenReturn(Arrays.asList(gi));
-        TravelGroup group = new TravelGroup(); group.setTitle("g"); User creator = new User(); creator.setId(1L); group.setCreator(creator);
-        org.mockito.Mockito.lenient().when(travelGroupRepository.findById(1L)).thenReturn(Optional.of(group));
-        org.mockito.Mockito.lenient().when(travelGroupMemberRepository.findByGroupIdAndUserId(1L, 1L)).thenReturn(Optional.of(member));
+        Itinerary own = new Itinerary(); own.setId(100L);
+        Itinerary other = new Itinerary(); other.setId(101L);
+        List<Object[]> rows = Arrays.asList(
+                new Object[]{own, "g1", 1L, TravelGroupMember.MemberRole.创建者},
+                new Object[]{other, "g2", 2L, TravelGroupMember.MemberRole.成员});
         Pageable pageable = PageRequest.of(0, 10);
+        when(groupItineraryRepository.findTeamItineraryRows(1L, TravelGroupMember.JoinStatus.已加入, pageable))
+                .thenReturn(new PageImpl<>(rows, pageable, 2));
+        when(itineraryConverter.toDTO(any())).thenAnswer(inv -> new ItineraryDTO());
         List<ItineraryDTO> list = service.getTeamItineraries(1L, pageable);
-        assertEquals(1, list.size());
+        assertEquals(2, list.size());
+        assertEquals("g1", list.get(0).getGroupTitle());
+        assertTrue(list.get(0).getIsGroupCreator());
+        assertEquals("创建者", list.get(0).getUserRole());
+        assertEquals("g2", list.get(1).getGroupTitle());
+        assertFalse(list.get(1).getIsGroupCreator());
+        assertEquals("成员", list.get(1).getUserRole());
+        verify(itineraryAggregateLoader).loadDetails(Arrays.asList(own, other));
+        verify(travelGroupRepository, never()).findById(anyLong());
+        verify(groupItineraryRepository, never()).findByGroupId(anyLong());
     }
 
     // 添加以下测试用例到 ItineraryServiceImplTest 类中
@@ -791,6 +784,28 @@ class ItineraryServiceImplTest {
         // 验证日期已更新
         assertEquals(newStart, itinerary.getStartDate());
         assertEquals(newStart.plusDays(2), itinerary.getEndDate());
+        // 待出行行程不参与旅行统计
+        verify(userTravelStatsAggregator, never()).markChanged(any());
+    }
+
+    @Test
+    void shiftItineraryDates_completedMarksTravelStatsChanged() {
+        // 已出行行程重新排期后（如保存时并发改为已出行），旅行统计需要重新计算
+        itinerary.setUser(user);
+        LocalDate newStart = LocalDate.now().plusDays(5);
+        Itinerary completed = new Itinerary();
+        completed.setUser(user);
+        completed.setTravelStatus(Itinerary.TravelStatus.已出行);
+
+        when(itineraryRepository.findById(10L)).thenReturn(Optional.of(itinerary));
+        when(itineraryDayRepository.findByItineraryIdOrderByDayNumber(10L))
+                .thenReturn(List.of(createDay(1, LocalDate.now())));
+        when(itineraryRepository.save(any())).thenReturn(completed);
+        when(itineraryConverter.toDTO(any())).thenReturn(new ItineraryDTO());
+
+        service.shiftItineraryDates(1L, 10L, newStart);
+
+        verify(userTravelStatsAggregator).markChanged(user.getId());
     }
 
     private ItineraryDay createDay(int dayNumber, LocalDate date) {
@@ -810,6 +825,7 @@ class ItineraryServiceImplTest {
 
         List<ItineraryDTO> result = service.getPersonalItineraries(1L, Pageable.unpaged());
         assertEquals(1, result.size());
+        verify(itineraryAggregateLoader).loadDetails(Arrays.asList(itinerary));
     }
 
     @Test
@@ -832,6 +848,32 @@ class ItineraryServiceImplTest {
         verify(itineraryRepository).save(itinerary);
     }
 
+    @Test
+    void updatePermissionStatus_toPrivateWritesOutboxAndDeletesEntry() {
+        itinerary.setPermissionStatus(Itinerary.PermissionStatus.所有人可见);
+        CommunityEntry entry = new CommunityEntry(); entry.setId(5L); entry.setItinerary(itinerary);
+        when(itineraryRepository.findById(10L)).thenReturn(Optional.of(itinerary));
+        when(communityEntryRepository.findByItineraryId(10L)).thenReturn(Optional.of(entry));
+
+        service.updatePermissionStatus(10L, 1L, "私人");
+
+        verify(searchIndexOutbox).enqueueCommunityEntry(5L);
+        verify(communityEntryRepository).deleteByItineraryId(10L);
+    }
+
+    @Test
+    void deleteItinerary_sharedEntryWritesOutbox() {
+        itinerary.setUser(user);
+        CommunityEntry entry = new CommunityEntry(); entry.setId(5L); entry.setItinerary(itinerary);
+        when(itineraryRepository.findById(10L)).thenReturn(Optional.of(itinerary));
+        when(communityEntryRepository.findByItineraryId(10L)).thenReturn(Optional.of(entry));
+
+        service.deleteItinerary(1L, 10L);
+
+        verify(searchIndexOutbox).enqueueCommunityEntry(5L);
+        verify(itineraryRepository).delete(itinerary);
+    }
+
     @Test
     void updatePermissionStatus_teamNotMemberNotCreator() {
         Itinerary itinerary = new Itinerary(); itinerary.setGroupId(2L); itinerary.setUser(user);
@@ -956,6 +998,16 @@ class ItineraryServiceImplTest {
         });
     }
     @Test
+    void createOrUpdateCommunityEntry_writesOutbox() throws Exception {
+        Itinerary itinerary = new Itinerary(); itinerary.setId(1L);
+        itinerary.setPermissionStatus(Itinerary.PermissionStatus.所有人可见);
+        CommunityEntry existing = new CommunityEntry(); existing.setId(2L); existing.setItinerary(itinerary);
+        when(communityEntryRepository.findByItineraryId(1L)).thenReturn(Optional.of(existing));
+        when(communityEntryRepository.save(any())).thenReturn(existing);
+        invokeCreateOrUpdateCommunityEntry(itinerary, "code", "desc", null);
+        verify(searchIndexOutbox).enqueueCommunityEntry(2L);
+    }
+    @Test
     void createOrUpdateCommunityEntry_newEntry() throws Exception {
         Itinerary itinerary = new Itinerary(); itinerary.setId(1L);
         when(communityEntryRepository.findByItineraryId(1L)).thenReturn(null);
@@ -0,0 +1,155 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.repository.FriendRepository;
+import com.se_07.backend.repository.GroupChatMemberRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PresenceRegistryTest {
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private FriendRepository friendRepository;
+
+    @Mock
+    private GroupChatMemberRepository groupChatMemberRepository;
+
+    private PresenceRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        // 不启动广播线程，由测试直接调用 flush
+        registry = new PresenceRegistry();
+        ReflectionTestUtils.setField(registry, "messagingTemplate", messagingTemplate);
+        ReflectionTestUtils.setField(registry, "friendRepository", friendRepository);
+        ReflectionTestUtils.setField(registry, "groupChatMemberRepository", groupChatMemberRepository);
+    }
+
+    @Test
+    void testOnlineUntilLastSessionDisconnects() {
+        connect("s1", 1L);
+        connect("s2", 1L);
+        connect("s3", 2L);
+        assertEquals(Set.of(1L, 2L), registry.onlineAmong(List.of(1L, 2L, 3L)));
+
+        disconnect("s1");
+        // 重复的断开事件只处理一次
+        disconnect("s1");
+        assertTrue(registry.isOnline(1L));
+
+        disconnect("s2");
+        assertFalse(registry.isOnline(1L));
+        assertEquals(1, registry.onlineUserCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_CoalescesTypingPerGroupAndRecipient() {
+        registry.groupTyping(10L, 1L);
+        registry.groupTyping(10L, 1L);
+        registry.groupTyping(10L, 2L);
+        when(friendRepository.existsByIdAndFriendId(anyLong(), eq(3L))).thenReturn(true);
+        registry.directTyping(3L, 1L);
+        registry.directTyping(3L, 2L);
+
+        registry.flush();
+
+        ArgumentCaptor<Object> group = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/group.typing.10"), group.capture());
+        assertEquals(Set.of(1L, 2L), ((Map<String, Object>) group.getValue()).get("userIds"));
+        ArgumentCaptor<Object> direct = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, times(1)).convertAndSendToUser(eq("3"), eq("/queue/typing"), direct.capture());
+        assertEquals(Set.of(1L, 2L), ((Map<String, Object>) direct.getValue()).get("fromIds"));
+
+        // 已发送的事件不会在下一周期重复广播
+        registry.flush();
+        verifyNoMoreInteractions(messagingTemplate);
+    }
+
+    @Test
+    void testDirectTyping_IgnoredForNonFriendAndCached() {
+        when(friendRepository.existsByIdAndFriendId(1L, 3L)).thenReturn(false);
+
+        registry.directTyping(3L, 1L);
+        registry.directTyping(3L, 1L);
+        registry.flush();
+
+        verify(friendRepository, times(1)).existsByIdAndFriendId(1L, 3L);
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), eq("/queue/typing"), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_PresenceSentToOnlineFriendsAndGroupsInBatches() {
+        connect("s2", 2L);
+        registry.flush();
+        clearInvocations(messagingTemplate, friendRepository, groupChatMemberRepository);
+
+        connect("s1", 1L);
+        when(friendRepository.findPairsByIdIn(Set.of(1L))).thenReturn(List.of(
+                new Object[]{1L, 2L}, new Object[]{1L, 3L}));
+        when(groupChatMemberRepository.findGroupPairsByUserIdIn(Set.of(1L))).thenReturn(
+                Collections.singletonList(new Object[]{1L, 10L}));
+
+        registry.flush();
+
+        // 好友 3 不在线，不推送
+        ArgumentCaptor<Object> toFriend = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("2"), eq("/queue/presence"), toFriend.capture());
+        verify(messagingTemplate, never()).convertAndSendToUser(eq("3"), anyString(), any());
+        List<Map<String, Object>> changes = (List<Map<String, Object>>) ((Map<String, Object>) toFriend.getValue()).get("changes");
+        assertEquals(List.of(Map.of("userId", 1L, "online", true)), changes);
+        verify(messagingTemplate).convertAndSend(eq("/topic/group.presence.10"), any(Object.class));
+    }
+
+    @Test
+    void testFlush_ReconnectWithinIntervalNotBroadcast() {
+        connect("s1", 1L);
+        when(friendRepository.findPairsByIdIn(anyCollection())).thenReturn(Collections.emptyList());
+        when(groupChatMemberRepository.findGroupPairsByUserIdIn(anyCollection())).thenReturn(Collections.emptyList());
+        registry.flush();
+        clearInvocations(friendRepository, groupChatMemberRepository);
+
+        disconnect("s1");
+        connect("s2", 1L);
+        registry.flush();
+
+        verifyNoInteractions(friendRepository, groupChatMemberRepository);
+    }
+
+    private void connect(String sessionId, Long userId) {
+        Principal user = userId::toString;
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECTED);
+        accessor.setSessionId(sessionId);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        registry.onConnected(new SessionConnectedEvent(this, message, user));
+    }
+
+    private void disconnect(String sessionId) {
+        Message<byte[]> message = MessageBuilder.withPayload(new byte[0]).build();
+        registry.onDisconnected(new SessionDisconnectEvent(this, message, sessionId, CloseStatus.NORMAL));
+    }
+}
@@ -0,0 +1,129 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.entity.SearchIndexOutbox;
+import com.se_07.backend.entity.SearchIndexRetry.EntityType;
+import com.se_07.backend.repository.SearchIndexOutboxRepository;
+import com.se_07.backend.repository.SearchIndexRetryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SearchIndexOutboxRelayTest {
+
+    @Mock
+    private SearchIndexOutboxRepository outboxRepository;
+
+    @Mock
+    private SearchIndexRetryRepository retryRepository;
+
+    @Mock
+    private IncrementalIndexer incrementalIndexer;
+
+    @Mock
+    private ElasticsearchBulkIndexer bulkIndexer;
+
+    private SearchIndexOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        // 不启动中继线程，由测试直接调用 relayOnce
+        relay = new SearchIndexOutboxRelay();
+        ReflectionTestUtils.setField(relay, "outboxRepository", outboxRepository);
+        ReflectionTestUtils.setField(relay, "retryRepository", retryRepository);
+        ReflectionTestUtils.setField(relay, "incrementalIndexer", incrementalIndexer);
+        ReflectionTestUtils.setField(relay, "bulkIndexer", bulkIndexer);
+    }
+
+    @Test
+    void testEnqueue_SavesOutboxRecord() {
+        relay.enqueueCommunityEntry(3L);
+
+        ArgumentCaptor<SearchIndexOutbox> captor = ArgumentCaptor.forClass(SearchIndexOutbox.class);
+        verify(outboxRepository).save(captor.capture());
+        assertEquals(EntityType.COMMUNITY_ENTRY, captor.getValue().getEntityType());
+        assertEquals(3L, captor.getValue().getEntityId());
+        verifyNoInteractions(incrementalIndexer);
+    }
+
+    @Test
+    void testRelayOnce_DeduplicatesAndDeletesAfterFlush() {
+        when(outboxRepository.findAllByOrderByIdAsc(any(Pageable.class))).thenReturn(List.of(
+                record(1L, EntityType.COMMUNITY_ENTRY, 10L),
+                record(2L, EntityType.AUTHOR, 7L),
+                record(3L, EntityType.COMMUNITY_ENTRY, 10L),
+                record(4L, EntityType.COMMUNITY_ENTRY, 11L)));
+
+        assertEquals(4, relay.relayOnce());
+
+        InOrder inOrder = inOrder(incrementalIndexer, bulkIndexer, outboxRepository);
+        inOrder.verify(incrementalIndexer).processBatch(EntityType.COMMUNITY_ENTRY, List.of(10L, 11L));
+        inOrder.verify(incrementalIndexer).processBatch(EntityType.AUTHOR, List.of(7L));
+        inOrder.verify(bulkIndexer).flush();
+        inOrder.verify(outboxRepository).deleteByIdIn(List.of(1L, 2L, 3L, 4L));
+    }
+
+    @Test
+    void testRelayOnce_KeepsRecordsWhenIndexingThrows() {
+        when(outboxRepository.findAllByOrderByIdAsc(any(Pageable.class))).thenReturn(List.of(
+                record(1L, EntityType.AUTHOR, 7L)));
+        doThrow(new RuntimeException("es down")).when(bulkIndexer).flush();
+
+        assertThrows(RuntimeException.class, () -> relay.relayOnce());
+
+        verify(outboxRepository, never()).deleteByIdIn(any());
+    }
+
+    @Test
+    void testRelayOnce_EmptyOutbox() {
+        when(outboxRepository.findAllByOrderByIdAsc(any(Pageable.class))).thenReturn(List.of());
+
+        assertEquals(0, relay.relayOnce());
+
+        verifyNoInteractions(incrementalIndexer, bulkIndexer);
+    }
+
+    @Test
+    void testGetLag_ReportsOldestPendingRecord() {
+        when(outboxRepository.findOldestCreatedAt()).thenReturn(LocalDateTime.now().minusSeconds(30));
+        when(outboxRepository.count()).thenReturn(5L);
+        when(retryRepository.count()).thenReturn(2L);
+        when(retryRepository.countByAttemptsGreaterThanEqual(10)).thenReturn(1L);
+
+        Map<String, Object> lag = relay.getLag();
+
+        assertEquals(5L, lag.get("outboxPending"));
+        assertTrue((Long) lag.get("lagSeconds") >= 30L);
+        assertEquals(2L, lag.get("retryPending"));
+        assertEquals(1L, lag.get("retryExhausted"));
+    }
+
+    @Test
+    void testGetLag_EmptyOutbox() {
+        when(outboxRepository.findOldestCreatedAt()).thenReturn(null);
+
+        assertEquals(0L, relay.getLag().get("lagSeconds"));
+    }
+
+    private SearchIndexOutbox record(Long id, EntityType type, Long entityId) {
+        SearchIndexOutbox record = new SearchIndexOutbox();
+        record.setId(id);
+        record.setEntityType(type);
+        record.setEntityId(entityId);
+        return record;
+    }
+}
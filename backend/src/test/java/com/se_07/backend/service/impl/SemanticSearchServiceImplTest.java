@@ -473,4 +473,228 @@ class SemanticSearchServiceImplTest {
         tag.setTag(tagEntity);
         return tag;
     }
-}
\ No newline at end of file
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSemanticSearch_UsesKnnQuery() throws Exception {
+        String query = "test";
+        when(embeddingService.embed(query)).thenReturn(new float[]{0.1f, 0.2f});
+        co.elastic.clients.elasticsearch.core.SearchResponse<Void> response = mockSearchResponse("1", 0.9);
+        when(esClient.search(any(java.util.function.Function.class), eq(Void.class))).thenReturn(response);
+        Destination destination = new Destination();
+        destination.setId(1L);
+        when(destinationRepository.findAllById(any())).thenReturn(List.of(destination));
+
+        List<Destination> result = semanticSearchService.semanticSearch(query, 5);
+
+        assertEquals(1, result.size());
+        org.mockito.ArgumentCaptor<java.util.function.Function> captor = org.mockito.ArgumentCaptor.forClass(java.util.function.Function.class);
+        verify(esClient, times(1)).search(captor.capture(), eq(Void.class));
+        co.elastic.clients.elasticsearch.core.SearchRequest request = buildRequest(captor.getValue());
+        assertEquals(1, request.knn().size());
+        assertEquals(5L, request.knn().get(0).k());
+        assertEquals(10L, request.knn().get(0).numCandidates());
+        assertNull(request.query());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSemanticSearch_KnnFailureFallsBackToScriptScore() throws Exception {
+        String query = "test";
+        when(embeddingService.embed(query)).thenReturn(new float[]{0.1f, 0.2f});
+        co.elastic.clients.elasticsearch.core.SearchResponse<Void> response = mockSearchResponse("1", 1.8);
+        when(esClient.search(any(java.util.function.Function.class), eq(Void.class)))
+                .thenThrow(new RuntimeException("knn not supported"))
+                .thenReturn(response);
+        Destination destination = new Destination();
+        destination.setId(1L);
+        when(destinationRepository.findAllById(any())).thenReturn(List.of(destination));
+
+        List<Destination> result = semanticSearchService.semanticSearch(query, 5);
+
+        assertEquals(1, result.size());
+        org.mockito.ArgumentCaptor<java.util.function.Function> captor = org.mockito.ArgumentCaptor.forClass(java.util.function.Function.class);
+        verify(esClient, times(2)).search(captor.capture(), eq(Void.class));
+        co.elastic.clients.elasticsearch.core.SearchRequest fallback = buildRequest(captor.getAllValues().get(1));
+        assertTrue(fallback.knn().isEmpty());
+        assertTrue(fallback.query().isScriptScore());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSemanticSearch_ScriptModeSkipsKnn() throws Exception {
+        ReflectionTestUtils.setField(semanticSearchService, "searchMode", "script");
+        String query = "test";
+        when(embeddingService.embed(query)).thenReturn(new float[]{0.1f, 0.2f});
+        co.elastic.clients.elasticsearch.core.SearchResponse<Void> response = mockSearchResponse("1", 1.8);
+        when(esClient.search(any(java.util.function.Function.class), eq(Void.class))).thenReturn(response);
+        when(destinationRepository.findAllById(any())).thenReturn(Collections.emptyList());
+
+        semanticSearchService.semanticSearch(query, 5);
+
+        org.mockito.ArgumentCaptor<java.util.function.Function> captor = org.mockito.ArgumentCaptor.forClass(java.util.function.Function.class);
+        verify(esClient, times(1)).search(captor.capture(), eq(Void.class));
+        assertTrue(buildRequest(captor.getValue()).query().isScriptScore());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSemanticSearch_SizeAboveMaxKUsesScriptScore() throws Exception {
+        ReflectionTestUtils.setField(semanticSearchService, "knnMaxK", 3);
+        String query = "test";
+        when(embeddingService.embed(query)).thenReturn(new float[]{0.1f, 0.2f});
+        co.elastic.clients.elasticsearch.core.SearchResponse<Void> response = mockSearchResponse("1", 1.8);
+        when(esClient.search(any(java.util.function.Function.class), eq(Void.class))).thenReturn(response);
+        when(destinationRepository.findAllById(any())).thenReturn(Collections.emptyList());
+
+        semanticSearchService.semanticSearch(query, 5);
+
+        // 需要的结果数超过 k 上限，不能用 kNN 截断，直接精确检索
+        org.mockito.ArgumentCaptor<java.util.function.Function> captor = org.mockito.ArgumentCaptor.forClass(java.util.function.Function.class);
+        verify(esClient, times(1)).search(captor.capture(), eq(Void.class));
+        co.elastic.clients.elasticsearch.core.SearchRequest request = buildRequest(captor.getValue());
+        assertTrue(request.knn().isEmpty());
+        assertTrue(request.query().isScriptScore());
+        assertEquals(5, request.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSemanticSearchCommunityEntriesByTags_TagsPushedIntoKnnFilter() throws Exception {
+        String query = "test";
+        when(embeddingService.embed(query)).thenReturn(new float[]{0.1f, 0.2f});
+        co.elastic.clients.elasticsearch.core.SearchResponse<Void> response = mockSearchResponse("1", 0.9);
+        when(esClient.search(any(java.util.function.Function.class), eq(Void.class))).thenReturn(response);
+        when(communityEntryRepository.findAllById(any())).thenReturn(Collections.emptyList());
+
+        semanticSearchService.semanticSearchCommunityEntriesByTags(query, List.of("美食", "自然"), 0, 10);
+
+        org.mockito.ArgumentCaptor<java.util.function.Function> captor = org.mockito.ArgumentCaptor.forClass(java.util.function.Function.class);
+        verify(esClient).search(captor.capture(), eq(Void.class));
+        co.elastic.clients.elasticsearch.core.SearchRequest request = buildRequest(captor.getValue());
+        // 候选池（rerank-pool-size）在 kNN 的 k 上限内，按标签筛选也走 kNN
+        assertEquals(1, request.knn().size());
+        assertEquals(400L, request.knn().get(0).k());
+        List<co.elastic.clients.elasticsearch._types.query_dsl.Query> filters = request.knn().get(0).filter();
+        assertEquals(2, filters.size());
+        assertEquals("tag_names", filters.get(0).term().field());
+        assertEquals("美食", filters.get(0).term().value().stringValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSemanticSearchByTags_TopTagsFilterInElasticsearch() throws Exception {
+        String query = "test";
+        when(embeddingService.embed(query)).thenReturn(new float[]{0.1f, 0.2f});
+        co.elastic.clients.elasticsearch.core.SearchResponse<Void> response = mockSearchResponse("1", 0.9);
+        when(esClient.search(any(java.util.function.Function.class), eq(Void.class))).thenReturn(response);
+        when(destinationRepository.findAllById(any())).thenReturn(List.of(createDestination(1L, "杭州")));
+
+        List<Destination> result = semanticSearchService.semanticSearchByTags(query, List.of("自然", "美食"), 5);
+
+        assertEquals(1, result.size());
+        org.mockito.ArgumentCaptor<java.util.function.Function> captor = org.mockito.ArgumentCaptor.forClass(java.util.function.Function.class);
+        verify(esClient).search(captor.capture(), eq(Void.class));
+        co.elastic.clients.elasticsearch.core.SearchRequest request = buildRequest(captor.getValue());
+        assertEquals(5L, request.knn().get(0).k());
+        co.elastic.clients.elasticsearch._types.query_dsl.TermsQuery terms = request.knn().get(0).filter().get(0).terms();
+        assertEquals("top_tags", terms.field());
+        assertEquals(2, terms.terms().value().size());
+        verifyNoInteractions(destinationService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSemanticSearchAttractionsByTags_HydratesOnlyCurrentPage() throws Exception {
+        String query = "test";
+        when(embeddingService.embed(query)).thenReturn(new float[]{0.1f, 0.2f});
+        co.elastic.clients.elasticsearch.core.SearchResponse<Void> response = mockSearchResponse(
+                List.of("1", "2", "3"), List.of(1.9, 1.8, 1.7));
+        when(esClient.search(any(java.util.function.Function.class), eq(Void.class))).thenReturn(response);
+        // 景点2热度最高，混合评分后排在第一位
+        when(attractionRepository.findJoinCountsByIdIn(any())).thenReturn(List.of(
+                new Object[]{1L, 0}, new Object[]{2L, 100}, new Object[]{3L, 5}));
+        when(attractionRepository.findAllById(List.of(2L))).thenReturn(List.of(createAttraction(2L, "西湖", 100)));
+
+        Page<Attraction> result = semanticSearchService.semanticSearchAttractionsByTags(1L, query, List.of("自然"), 0, 1);
+
+        assertEquals(3, result.getTotalElements());
+        assertEquals(1, result.getContent().size());
+        assertEquals(2L, result.getContent().get(0).getId());
+        verify(attractionRepository).findAllById(List.of(2L));
+        verifyNoInteractions(attractionService);
+
+        org.mockito.ArgumentCaptor<java.util.function.Function> captor = org.mockito.ArgumentCaptor.forClass(java.util.function.Function.class);
+        verify(esClient).search(captor.capture(), eq(Void.class));
+        assertEquals("top_tags", buildRequest(captor.getValue()).knn().get(0).filter().get(0).terms().field());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSemanticSearchAttractionsByTags_DeepPageGrowsPoolUpToMaxK() throws Exception {
+        String query = "test";
+        when(embeddingService.embed(query)).thenReturn(new float[]{0.1f, 0.2f});
+        co.elastic.clients.elasticsearch.core.SearchResponse<Void> response = mockSearchResponse("1", 0.9);
+        when(esClient.search(any(java.util.function.Function.class), eq(Void.class))).thenReturn(response);
+        lenient().when(attractionRepository.findJoinCountsByIdIn(any())).thenReturn(Collections.emptyList());
+
+        // 第 50 页（每页 10 条）需要前 510 条候选
+        semanticSearchService.semanticSearchAttractionsByTags(1L, query, List.of("自然"), 50, 10);
+        // 超过 k 上限时截断为上限，仍然走 kNN
+        semanticSearchService.semanticSearchAttractionsByTags(1L, query, List.of("自然"), 500, 10);
+
+        org.mockito.ArgumentCaptor<java.util.function.Function> captor = org.mockito.ArgumentCaptor.forClass(java.util.function.Function.class);
+        verify(esClient, times(2)).search(captor.capture(), eq(Void.class));
+        assertEquals(510L, buildRequest(captor.getAllValues().get(0)).knn().get(0).k());
+        assertEquals(1000L, buildRequest(captor.getAllValues().get(1)).knn().get(0).k());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSemanticSearchCommunityEntriesByTags_HydratesOnlyCurrentPage() throws Exception {
+        String query = "test";
+        when(embeddingService.embed(query)).thenReturn(new float[]{0.1f, 0.2f});
+        co.elastic.clients.elasticsearch.core.SearchResponse<Void> response = mockSearchResponse(
+                List.of("1", "2", "3"), List.of(1.9, 1.8, 1.7));
+        when(esClient.search(any(java.util.function.Function.class), eq(Void.class))).thenReturn(response);
+        CommunityEntry entry = createCommunityEntry(2L, "第二条");
+        entry.setShareCode("code2");
+        when(communityEntryRepository.findAllById(List.of(2L))).thenReturn(List.of(entry));
+        when(communityService.getCommunityEntryByShareCode("code2")).thenReturn(Map.of("id", 2L));
+
+        Page<Map<String, Object>> result = semanticSearchService.semanticSearchCommunityEntriesByTags(query, List.of("美食"), 1, 1);
+
+        assertEquals(3, result.getTotalElements());
+        assertEquals(1, result.getContent().size());
+        assertEquals(2L, result.getContent().get(0).get("id"));
+        verify(communityEntryRepository).findAllById(List.of(2L));
+        verifyNoInteractions(communityEntryTagRepository);
+    }
+
+    private co.elastic.clients.elasticsearch.core.SearchResponse<Void> mockSearchResponse(String id, double score) {
+        return mockSearchResponse(List.of(id), List.of(score));
+    }
+
+    @SuppressWarnings("unchecked")
+    private co.elastic.clients.elasticsearch.core.SearchResponse<Void> mockSearchResponse(List<String> ids, List<Double> scores) {
+        co.elastic.clients.elasticsearch.core.SearchResponse<Void> mockResponse = mock(co.elastic.clients.elasticsearch.core.SearchResponse.class);
+        List<co.elastic.clients.elasticsearch.core.search.Hit<Void>> hitList = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            co.elastic.clients.elasticsearch.core.search.Hit<Void> mockHit = mock(co.elastic.clients.elasticsearch.core.search.Hit.class);
+            when(mockHit.id()).thenReturn(ids.get(i));
+            when(mockHit.score()).thenReturn(scores.get(i));
+            hitList.add(mockHit);
+        }
+        co.elastic.clients.elasticsearch.core.search.HitsMetadata<Void> hits = mock(co.elastic.clients.elasticsearch.core.search.HitsMetadata.class);
+        when(hits.hits()).thenReturn(hitList);
+        when(mockResponse.hits()).thenReturn(hits);
+        return mockResponse;
+    }
+
+    @SuppressWarnings("unchecked")
+    private co.elastic.clients.elasticsearch.core.SearchRequest buildRequest(java.util.function.Function fn) {
+        co.elastic.clients.util.ObjectBuilder<co.elastic.clients.elasticsearch.core.SearchRequest> builder =
+                (co.elastic.clients.util.ObjectBuilder<co.elastic.clients.elasticsearch.core.SearchRequest>)
+                        fn.apply(new co.elastic.clients.elasticsearch.core.SearchRequest.Builder());
+        return builder.build();
+    }
+}
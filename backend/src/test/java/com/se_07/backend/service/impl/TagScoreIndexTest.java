@@ -0,0 +1,201 @@
+package com.se_07.backend.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.se_07.backend.entity.Attraction;
+import com.se_07.backend.entity.Destination;
+import com.se_07.backend.entity.Tag;
+import com.se_07.backend.repository.AttractionRepository;
+import com.se_07.backend.repository.DestinationRepository;
+import com.se_07.backend.repository.TagRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TagScoreIndexTest {
+
+    @Mock
+    private TagRepository tagRepository;
+
+    @Mock
+    private DestinationRepository destinationRepository;
+
+    @Mock
+    private AttractionRepository attractionRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TagScoreIndex index;
+
+    @BeforeEach
+    void setUp() {
+        // 不启动刷新线程，首次读取时同步加载
+        index = new TagScoreIndex();
+        ReflectionTestUtils.setField(index, "tagRepository", tagRepository);
+        ReflectionTestUtils.setField(index, "destinationRepository", destinationRepository);
+        ReflectionTestUtils.setField(index, "attractionRepository", attractionRepository);
+        ReflectionTestUtils.setField(index, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(index, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(index, "transactionManager", transactionManager);
+        when(tagRepository.findAll()).thenReturn(List.of(tag(1L, "美食"), tag(2L, "文化"), tag(3L, "自然")));
+    }
+
+    @Test
+    void testRankDestinations_SumsSelectedTagsWithoutDatabaseRoundTrips() {
+        when(destinationRepository.findAllTagScores()).thenReturn(List.of(
+                new Object[]{10L, "{\"1\": 1.0, \"2\": 4.0}"},
+                new Object[]{11L, "{\"1\": 5.0}"},
+                new Object[]{12L, "{\"1\": -3.0, \"3\": 9.0}"},
+                new Object[]{13L, "{\"2\": 5.0}"}));
+
+        assertEquals(List.of(10L, 11L, 13L), index.rankDestinations(List.of("美食", "文化", "美食")));
+        assertEquals(List.of(12L), index.rankDestinations(List.of("自然")));
+        assertTrue(index.rankDestinations(List.of("不存在")).isEmpty());
+
+        // 只在首次加载时访问数据库
+        verify(tagRepository, times(1)).findAll();
+        verify(destinationRepository, times(1)).findAllTagScores();
+    }
+
+    @Test
+    void testKnownTagIds_DropsIdsNotInTagTable() {
+        assertArrayEquals(new int[]{3, 1}, index.knownTagIds(new int[]{3, 99, -1, 1, 3, Integer.MAX_VALUE}));
+        assertArrayEquals(new int[0], index.knownTagIds(null));
+    }
+
+    @Test
+    void testDestinationTagShare_FractionOfPositiveWeight() {
+        when(destinationRepository.findAllTagScores()).thenReturn(List.of(
+                new Object[]{10L, "{\"1\": 1.0, \"2\": 3.0, \"3\": -2.0}"},
+                new Object[]{11L, "{\"3\": -1.0}"}));
+
+        assertEquals(0.25f, index.destinationTagShare(10L, new int[]{1, 3}), 1e-6);
+        assertEquals(1f, index.destinationTagShare(10L, new int[]{1, 2}), 1e-6);
+        assertEquals(0f, index.destinationTagShare(11L, new int[]{3}), 1e-6);
+        assertEquals(0f, index.destinationTagShare(99L, new int[]{1}), 1e-6);
+        assertEquals(0f, index.destinationTagShare(10L, new int[0]), 1e-6);
+    }
+
+    @Test
+    void testTopTags_ReparsesWhenEntityChanged() {
+        Destination destination = new Destination();
+        destination.setId(10L);
+        destination.setTagScores("{\"1\": 1.0, \"2\": 4.0}");
+        when(destinationRepository.findAllTagScores()).thenReturn(
+                Collections.singletonList(new Object[]{10L, destination.getTagScores()}));
+
+        assertEquals(List.of("文化", "美食"), index.topTags(destination, 5));
+
+        destination.setTagScores("{\"3\": 2.0}");
+        assertEquals(List.of("自然"), index.topTags(destination, 5));
+        // 变化后的权重同时用于按标签排名
+        assertEquals(List.of(10L), index.rankDestinations(List.of("自然")));
+        assertTrue(index.rankDestinations(List.of("文化")).isEmpty());
+    }
+
+    @Test
+    void testTopTags_AttractionArrayFormat() {
+        Attraction attraction = new Attraction();
+        attraction.setId(5L);
+        attraction.setTagScores("[0, 7, 3]");
+
+        assertEquals(List.of("文化", "自然"), index.topTags(attraction, 3));
+        assertEquals(List.of("文化"), index.topTags(attraction, 1));
+    }
+
+    @Test
+    void testRebuild_DropsRemovedAndKeepsUnchangedVectors() {
+        Object[] kept = new Object[]{10L, "{\"1\": 1.0}"};
+        when(destinationRepository.findAllTagScores())
+                .thenReturn(List.of(kept, new Object[]{11L, "{\"1\": 2.0}"}))
+                .thenReturn(Collections.singletonList(kept));
+
+        index.rebuild();
+        Map<?, ?> vectors = (Map<?, ?>) ReflectionTestUtils.getField(index, "destinationVectors");
+        Object before = vectors.get(10L);
+        index.rebuild();
+
+        assertEquals(Set.of(10L), vectors.keySet());
+        assertSame(before, vectors.get(10L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRebuild_FirstLoadRewritesNormalizedTable() {
+        when(destinationRepository.findAllTagScores()).thenReturn(
+                Collections.singletonList(new Object[]{10L, "{\"1\": 1.0, \"2\": 4.0, \"3\": -1.0}"}));
+
+        index.rebuild();
+
+        verify(jdbcTemplate).update("DELETE FROM entity_tag_scores WHERE entity_type = ?", "DESTINATION");
+        verify(jdbcTemplate).update("DELETE FROM entity_tag_scores WHERE entity_type = ?", "ATTRACTION");
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO entity_tag_scores"), captor.capture());
+        List<Object[]> rows = captor.getValue();
+        assertEquals(3, rows.size());
+        // 目的地的负权重标签不参与排名
+        assertArrayEquals(new Object[]{"DESTINATION", 10L, 1L, 1.0f, 1}, rows.get(0));
+        assertArrayEquals(new Object[]{"DESTINATION", 10L, 2L, 4.0f, 0}, rows.get(1));
+        assertArrayEquals(new Object[]{"DESTINATION", 10L, 3L, -1.0f, null}, rows.get(2));
+    }
+
+    @Test
+    void testRebuild_FailedFirstSyncRolledBackAndRetriedInFull() {
+        when(destinationRepository.findAllTagScores()).thenReturn(
+                Collections.singletonList(new Object[]{10L, "{\"1\": 1.0}"}));
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO entity_tag_scores"), anyList()))
+                .thenThrow(new org.springframework.dao.QueryTimeoutException("timeout"))
+                .thenReturn(new int[]{1});
+
+        assertThrows(org.springframework.dao.QueryTimeoutException.class, () -> index.rebuild());
+        // 删除和插入在同一事务中，插入失败时整体回滚
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+
+        index.rebuild();
+
+        verify(jdbcTemplate, times(2)).update("DELETE FROM entity_tag_scores WHERE entity_type = ?", "DESTINATION");
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void testRebuild_SyncsOnlyChangedAndRemovedEntities() {
+        Object[] kept = new Object[]{10L, "{\"1\": 1.0}"};
+        when(destinationRepository.findAllTagScores())
+                .thenReturn(List.of(kept, new Object[]{11L, "{\"1\": 2.0}"}))
+                .thenReturn(List.of(kept, new Object[]{12L, "{\"2\": 2.0}"}));
+        index.rebuild();
+        clearInvocations(jdbcTemplate);
+
+        index.rebuild();
+
+        verify(jdbcTemplate).update("DELETE FROM entity_tag_scores WHERE entity_type = ? AND entity_id IN (?,?)",
+                "DESTINATION", 12L, 11L);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO entity_tag_scores"),
+                argThat((List<Object[]> rows) -> rows.size() == 1 && rows.get(0)[1].equals(12L)));
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    private Tag tag(Long id, String name) {
+        Tag tag = new Tag();
+        tag.setId(id);
+        tag.setTag(name);
+        return tag;
+    }
+}
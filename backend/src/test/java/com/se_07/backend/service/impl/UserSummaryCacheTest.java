@@ -0,0 +1,94 @@
+package com.se_07.backend.service.impl;
+
+import com.se_07.backend.repository.UserRepository;
+import com.se_07.backend.service.impl.UserSummaryCache.UserSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserSummaryCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserSummaryCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new UserSummaryCache();
+        ReflectionTestUtils.setField(cache, "userRepository", userRepository);
+    }
+
+    @Test
+    void testGetAll_LoadsOnlyMissesInOneQuery() {
+        when(userRepository.findSummariesByIdIn(Set.of(1L, 2L))).thenReturn(Arrays.asList(
+                new Object[]{1L, "张三", "/avatars/a.png"}, new Object[]{2L, "李四", null}));
+        when(userRepository.findSummariesByIdIn(Set.of(3L))).thenReturn(
+                Collections.singletonList(new Object[]{3L, "王五", null}));
+
+        Map<Long, UserSummary> first = cache.getAll(Arrays.asList(1L, 2L, 1L, null));
+        Map<Long, UserSummary> second = cache.getAll(Arrays.asList(1L, 2L, 3L));
+
+        assertEquals("/avatars/a.png", first.get(1L).getAvatarUrl());
+        assertEquals(Set.of(1L, 2L, 3L), second.keySet());
+        assertEquals("王五", cache.get(3L).getUsername());
+        verify(userRepository, times(2)).findSummariesByIdIn(anyCollection());
+    }
+
+    @Test
+    void testGet_UnknownUserIsNotCached() {
+        when(userRepository.findSummariesByIdIn(Set.of(9L))).thenReturn(Collections.emptyList());
+
+        assertNull(cache.get(9L));
+        assertNull(cache.get(9L));
+        assertNull(cache.get(null));
+
+        verify(userRepository, times(2)).findSummariesByIdIn(Set.of(9L));
+    }
+
+    @Test
+    void testEvict_ReloadsUpdatedProfile() {
+        when(userRepository.findSummariesByIdIn(Set.of(1L)))
+                .thenReturn(Collections.singletonList(new Object[]{1L, "旧名字", null}))
+                .thenReturn(Collections.singletonList(new Object[]{1L, "新名字", "/avatars/b.png"}));
+        assertEquals("旧名字", cache.get(1L).getUsername());
+
+        cache.evict(1L);
+
+        UserSummary reloaded = cache.get(1L);
+        assertEquals("新名字", reloaded.getUsername());
+        assertEquals("/avatars/b.png", reloaded.getAvatarUrl());
+    }
+
+    @Test
+    void testEvict_InTransactionEvictsAgainAfterCommit() {
+        when(userRepository.findSummariesByIdIn(Set.of(1L)))
+                .thenReturn(Collections.singletonList(new Object[]{1L, "旧名字", null}));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.evict(1L);
+            // 提交前的并发读取以旧值重新加载
+            cache.get(1L);
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        cache.get(1L);
+        verify(userRepository, times(2)).findSummariesByIdIn(Set.of(1L));
+    }
+}
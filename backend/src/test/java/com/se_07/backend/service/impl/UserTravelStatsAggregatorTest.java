@@ -0,0 +1,283 @@
+package com.se_07.backend.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.se_07.backend.dto.TravelStatsResponse;
+import com.se_07.backend.entity.Itinerary;
+import com.se_07.backend.entity.UserDestination;
+import com.se_07.backend.entity.UserTravelStats;
+import com.se_07.backend.repository.ItineraryRepository;
+import com.se_07.backend.repository.UserDestinationRepository;
+import com.se_07.backend.repository.UserTravelStatsRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UserTravelStatsAggregatorTest {
+
+    @Mock
+    private UserTravelStatsRepository statsRepository;
+
+    @Mock
+    private UserDestinationRepository userDestinationRepository;
+
+    @Mock
+    private ItineraryRepository itineraryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private UserTravelStatsAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new UserTravelStatsAggregator();
+        ReflectionTestUtils.setField(aggregator, "statsRepository", statsRepository);
+        ReflectionTestUtils.setField(aggregator, "userDestinationRepository", userDestinationRepository);
+        ReflectionTestUtils.setField(aggregator, "itineraryRepository", itineraryRepository);
+        ReflectionTestUtils.setField(aggregator, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(aggregator, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        when(statsRepository.findById(1L)).thenReturn(Optional.empty());
+        when(statsRepository.saveAndFlush(any(UserTravelStats.class))).then(returnsFirstArg());
+        when(userDestinationRepository.findStatsRowsByUserIdAndType(1L, UserDestination.Type.历史目的地))
+                .thenReturn(List.of(
+                        destination(0L, 3, LocalDate.of(2023, 3, 15), "上海", "31.230416", "121.473701"),
+                        destination(0L, 3, LocalDate.of(2023, 7, 10), "三亚", "18.252847", "109.511909"),
+                        destination(0L, 3, LocalDate.of(2022, 7, 5), "成都", "30.572815", "104.066801"),
+                        destination(0L, 3, LocalDate.of(2023, 12, 20), "哈尔滨", "45.803775", "126.534967")));
+        when(itineraryRepository.findDaySummariesByUserIdAndTravelStatus(1L, Itinerary.TravelStatus.已出行))
+                .thenReturn(Collections.emptyList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        aggregator.stop();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testLoad_ComputesAndStoresMissingRow() {
+        TravelStatsResponse result = aggregator.load(1L);
+
+        assertEquals(4, result.getTotalDestinations());
+        assertEquals(12, result.getTotalDays());
+        assertEquals(0, result.getTotalItineraries());
+        assertEquals("哈尔滨", result.getGeography().getEasternmost());
+        assertEquals("成都", result.getGeography().getWesternmost());
+        assertEquals("三亚", result.getGeography().getSouthernmost());
+        assertEquals("哈尔滨", result.getGeography().getNorthernmost());
+        assertEquals("7月", result.getGeography().getFavoriteMonth());
+        assertEquals("2023", result.getGeography().getMostTravelYear());
+        assertEquals(4, result.getTimeline().size());
+        assertEquals("成都", result.getTimeline().get(0).getName());
+        assertEquals("2022-07", result.getTimeline().get(0).getVisitYearMonth());
+
+        ArgumentCaptor<UserTravelStats> saved = ArgumentCaptor.forClass(UserTravelStats.class);
+        verify(statsRepository).saveAndFlush(saved.capture());
+        assertEquals(1L, saved.getValue().getUserId());
+        assertEquals(0L, saved.getValue().getComputedVersion());
+        assertNotNull(saved.getValue().getComputedAt());
+    }
+
+    @Test
+    void testLoad_ServesFreshRowWithoutQueries() {
+        UserTravelStats stored = stored(3L, 3L, LocalDateTime.now());
+        stored.setTotalDestinations(7);
+        stored.setEasternmost("上海");
+        stored.setTimeline("[{\"name\":\"上海\",\"visitYearMonth\":\"2023-03\",\"days\":2,\"hasItinerary\":false,"
+                + "\"startDate\":\"2023-03-15\"}]");
+        stored.setTopCities("[{\"name\":\"上海\",\"visitCount\":1,\"totalDays\":2}]");
+        when(statsRepository.findById(1L)).thenReturn(Optional.of(stored));
+
+        TravelStatsResponse result = aggregator.load(1L);
+
+        assertEquals(7, result.getTotalDestinations());
+        assertEquals("上海", result.getGeography().getEasternmost());
+        assertEquals(LocalDate.of(2023, 3, 15), result.getTimeline().get(0).getStartDate());
+        assertEquals(1, result.getTopCities().get(0).getVisitCount());
+        verifyNoInteractions(userDestinationRepository, itineraryRepository);
+        verify(statsRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void testLoad_RecomputesStaleRow() {
+        when(statsRepository.findById(1L)).thenReturn(Optional.of(stored(2L, 1L, LocalDateTime.now())));
+
+        TravelStatsResponse result = aggregator.load(1L);
+
+        assertEquals(4, result.getTotalDestinations());
+        ArgumentCaptor<UserTravelStats> saved = ArgumentCaptor.forClass(UserTravelStats.class);
+        verify(statsRepository).saveAndFlush(saved.capture());
+        assertEquals(2L, saved.getValue().getComputedVersion());
+    }
+
+    @Test
+    void testLoad_RecomputesExpiredRow() {
+        when(statsRepository.findById(1L)).thenReturn(Optional.of(stored(1L, 1L, LocalDateTime.now().minusDays(2))));
+
+        aggregator.load(1L);
+
+        verify(userDestinationRepository).findStatsRowsByUserIdAndType(1L, UserDestination.Type.历史目的地);
+        verify(statsRepository).saveAndFlush(any(UserTravelStats.class));
+    }
+
+    @Test
+    void testFill_GeographyIgnoresDestinationsWithoutCoordinates() {
+        UserTravelStats stats = new UserTravelStats();
+        aggregator.fill(stats, List.of(
+                destination(0L, 2, LocalDate.of(2023, 1, 1), "上海", null, null),
+                destination(0L, 2, LocalDate.of(2023, 1, 5), "拉萨", "29.652491", "91.172112")), Collections.emptyList());
+
+        // 按名称判断会把上海算作最东，现在只比较经纬度
+        assertEquals("拉萨", stats.getEasternmost());
+        assertEquals("拉萨", stats.getWesternmost());
+        assertEquals("拉萨", stats.getNorthernmost());
+        assertEquals("拉萨", stats.getSouthernmost());
+    }
+
+    @Test
+    void testFill_TimelineMergesDestinationsOfCompletedItinerary() {
+        UserTravelStats stats = new UserTravelStats();
+        List<Object[]> destinations = List.of(
+                destination(5L, 2, LocalDate.of(2023, 5, 1), "杭州", null, null),
+                destination(5L, 1, LocalDate.of(2023, 5, 1), "苏州", null, null),
+                destination(9L, 2, LocalDate.of(2023, 8, 1), "西安", null, null),
+                destination(0L, null, null, "北京", null, null));
+        List<Object[]> itineraries = Collections.singletonList(
+                new Object[]{5L, "江南之旅", LocalDate.of(2023, 5, 1), LocalDate.of(2023, 5, 3), 3L});
+
+        aggregator.fill(stats, destinations, itineraries);
+        TravelStatsResponse response = aggregator.toResponse(stats);
+
+        assertEquals(4, stats.getTotalDestinations());
+        assertEquals(5, stats.getTotalDays());
+        assertEquals(1, stats.getTotalItineraries());
+        // 行程9已不是已出行状态，不出现在时间轴中；没有日期的手动记录排在最后
+        List<TravelStatsResponse.TimelineItem> timeline = response.getTimeline();
+        assertEquals(2, timeline.size());
+        assertEquals("杭州、苏州", timeline.get(0).getName());
+        assertEquals(3, timeline.get(0).getDays());
+        assertEquals(LocalDate.of(2023, 5, 3), timeline.get(0).getEndDate());
+        assertEquals("行程：江南之旅", timeline.get(0).getNotes());
+        assertTrue(timeline.get(0).getHasItinerary());
+        assertEquals(5L, timeline.get(0).getItineraryId());
+        assertEquals("北京", timeline.get(1).getName());
+        assertEquals("未知", timeline.get(1).getVisitYearMonth());
+        assertFalse(timeline.get(1).getHasItinerary());
+    }
+
+    @Test
+    void testFill_TopCitiesRankedByVisits() {
+        UserTravelStats stats = new UserTravelStats();
+        List<Object[]> destinations = new ArrayList<>();
+        destinations.add(destination(0L, 3, LocalDate.of(2023, 1, 1), "上海", null, null));
+        destinations.add(destination(0L, 3, LocalDate.of(2023, 1, 1), "北京", null, null));
+        destinations.add(destination(0L, 5, LocalDate.of(2023, 6, 1), "北京", null, null));
+        for (String name : List.of("广州", "深圳", "重庆", "西安")) {
+            destinations.add(destination(0L, 1, LocalDate.of(2023, 9, 1), name, null, null));
+        }
+
+        aggregator.fill(stats, destinations, Collections.emptyList());
+        List<TravelStatsResponse.CityStats> topCities = aggregator.toResponse(stats).getTopCities();
+
+        assertEquals(5, topCities.size());
+        assertEquals("北京", topCities.get(0).getName());
+        assertEquals(2, topCities.get(0).getVisitCount());
+        assertEquals(8, topCities.get(0).getTotalDays());
+        assertNull(stats.getEasternmost());
+    }
+
+    @Test
+    void testFill_EmptyHistory() {
+        UserTravelStats stats = new UserTravelStats();
+        aggregator.fill(stats, Collections.emptyList(), Collections.emptyList());
+        TravelStatsResponse response = aggregator.toResponse(stats);
+
+        assertEquals(0, response.getTotalDestinations());
+        assertEquals(0, response.getTotalDays());
+        assertTrue(response.getTimeline().isEmpty());
+        assertTrue(response.getTopCities().isEmpty());
+        assertNull(response.getGeography().getFavoriteMonth());
+        assertNull(response.getGeography().getMostTravelYear());
+    }
+
+    @Test
+    void testRefresh_RetriesAfterConcurrentInsert() {
+        when(statsRepository.saveAndFlush(any(UserTravelStats.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate"))
+                .then(returnsFirstArg());
+
+        UserTravelStats stats = aggregator.refresh(1L);
+
+        assertEquals(4, stats.getTotalDestinations());
+        verify(statsRepository, times(2)).saveAndFlush(any(UserTravelStats.class));
+    }
+
+    @Test
+    void testMarkChanged_RefreshesAfterCommit() {
+        aggregator.start();
+        when(statsRepository.markStale(1L)).thenReturn(1);
+        TransactionSynchronizationManager.initSynchronization();
+
+        aggregator.markChanged(1L);
+        verify(statsRepository, never()).saveAndFlush(any());
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        verify(statsRepository, timeout(2000)).saveAndFlush(any(UserTravelStats.class));
+    }
+
+    @Test
+    void testMarkChanged_WithoutRowWaitsForFirstRead() {
+        aggregator.start();
+        when(statsRepository.markStale(1L)).thenReturn(0);
+        TransactionSynchronizationManager.initSynchronization();
+
+        aggregator.markChanged(1L);
+
+        verify(statsRepository).markStale(1L);
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+    }
+
+    private static Object[] destination(Long itineraryId, Integer days, LocalDate startDate, String name,
+                                        String latitude, String longitude) {
+        return new Object[]{itineraryId, days, startDate, startDate == null ? null : startDate.plusDays(2),
+                name + "之旅", name,
+                latitude == null ? null : new BigDecimal(latitude),
+                longitude == null ? null : new BigDecimal(longitude)};
+    }
+
+    private static UserTravelStats stored(Long dataVersion, Long computedVersion, LocalDateTime computedAt) {
+        UserTravelStats stats = new UserTravelStats();
+        stats.setUserId(1L);
+        stats.setDataVersion(dataVersion);
+        stats.setComputedVersion(computedVersion);
+        stats.setComputedAt(computedAt);
+        return stats;
+    }
+}
@@ -0,0 +1,81 @@
+package com.se_07.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LruTtlCacheTest {
+
+    @Test
+    void testGet_HitAndMiss() {
+        LruTtlCache<String, Integer> cache = new LruTtlCache<>(10, 0);
+        cache.put("a", 1);
+
+        assertEquals(1, cache.get("a"));
+        assertNull(cache.get("b"));
+
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(0.5, (Double) stats.get("hitRate"), 0.0001);
+    }
+
+    @Test
+    void testPut_EvictsLeastRecentlyUsed() {
+        LruTtlCache<String, Integer> cache = new LruTtlCache<>(2, 0);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        // 访问a，使b成为最久未访问的条目
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(1L, cache.getStats().get("evictions"));
+    }
+
+    @Test
+    void testGet_ExpiredEntryRemoved() {
+        AtomicLong now = new AtomicLong(1000);
+        LruTtlCache<String, Integer> cache = new LruTtlCache<>(10, 500, now::get);
+        cache.put("a", 1);
+
+        now.addAndGet(499);
+        assertEquals(1, cache.get("a"));
+
+        now.addAndGet(1);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(1L, cache.getStats().get("expirations"));
+    }
+
+    @Test
+    void testInvalidate() {
+        LruTtlCache<String, Integer> cache = new LruTtlCache<>(10, 0);
+        cache.put("a", 1);
+        cache.put("b", 2);
+
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        assertEquals(2, cache.get("b"));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testPut_ZeroCapacityAndNullValueIgnored() {
+        LruTtlCache<String, Integer> disabled = new LruTtlCache<>(0, 0);
+        disabled.put("a", 1);
+        assertNull(disabled.get("a"));
+
+        LruTtlCache<String, Integer> cache = new LruTtlCache<>(10, 0);
+        cache.put("a", null);
+        assertEquals(0, cache.size());
+    }
+}
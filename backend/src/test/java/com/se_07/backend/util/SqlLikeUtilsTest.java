@@ -0,0 +1,15 @@
+package com.se_07.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlLikeUtilsTest {
+
+    @Test
+    void testEscapeLike_EscapesWildcardsAndBackslash() {
+        assertEquals("50\\%\\_off", SqlLikeUtils.escapeLike("50%_off"));
+        assertEquals("a\\\\b", SqlLikeUtils.escapeLike("a\\b"));
+        assertEquals("西湖", SqlLikeUtils.escapeLike("西湖"));
+    }
+}
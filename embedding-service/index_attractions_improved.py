@@ -4,6 +4,7 @@
 """
 
 import os
+import json
 from typing import List, Dict
 import mysql.connector
 from sentence_transformers import SentenceTransformer
@@ -29,6 +30,7 @@ DESTINATION_ID = int(os.getenv("DESTINATION_ID", "36"))
 INDEX_NAME = os.getenv("ES_INDEX", f"attractions_destination_{DESTINATION_ID}")
 MODEL_PATH = "./models-chinese"
 BATCH_SIZE = 64
+TOP_TAG_COUNT = 6  # 写入 top_tags 的标签数，与后端按前6个标签过滤保持一致
 
 def fetch_attractions(conn, destination_id: int) -> List[Dict]:
     """从 MySQL 读取指定目的地的景点数据"""
@@ -54,10 +56,36 @@ def fetch_attractions(conn, destination_id: int) -> List[Dict]:
     cursor.close()
     return rows
 
+def fetch_tag_names(conn) -> Dict[int, str]:
+    """读取标签字典 tag_id -> tag"""
+    cursor = conn.cursor(dictionary=True)
+    cursor.execute("SELECT id, tag FROM tags")
+    rows = cursor.fetchall()
+    cursor.close()
+    return {r["id"]: r["tag"] for r in rows}
+
+def top_tag_names(tag_scores, tag_names: Dict[int, str], n: int = TOP_TAG_COUNT) -> List[str]:
+    """解析 tag_scores JSON（{"7": 37, ...} 或按 tag_id-1 下标的数组），返回权重最高的 n 个标签名称"""
+    if not tag_scores:
+        return []
+    try:
+        parsed = json.loads(tag_scores)
+    except (TypeError, ValueError):
+        return []
+    if isinstance(parsed, dict):
+        scores = {int(k): float(v) for k, v in parsed.items() if isinstance(v, (int, float))}
+    elif isinstance(parsed, list):
+        scores = {i + 1: float(v) for i, v in enumerate(parsed) if isinstance(v, (int, float)) and v > 0}
+    else:
+        return []
+    ranked = sorted(scores.items(), key=lambda kv: kv[1], reverse=True)[:n]
+    return [tag_names[tag_id] for tag_id, _ in ranked if tag_id in tag_names]
+
 def create_index_if_needed(es: Elasticsearch, dim: int):
-    """若索引不存在则创建"""
+    """若索引不存在则创建；已存在时补充 top_tags 字段映射"""
     if es.indices.exists(index=INDEX_NAME):
         print(f"Index '{INDEX_NAME}' already exists.")
+        es.indices.put_mapping(index=INDEX_NAME, properties={"top_tags": {"type": "keyword"}})
         return
 
     mapping = {
@@ -71,6 +99,7 @@ def create_index_if_needed(es: Elasticsearch, dim: int):
                 "longitude": {"type": "float"},
                 "join_count": {"type": "integer"},
                 "tag_scores": {"type": "text"},
+                "top_tags": {"type": "keyword"},
                 "destination_name": {"type": "text"},
                 "vector": {
                     "type": "dense_vector",
@@ -120,7 +149,7 @@ def validate_attraction_data(row: Dict) -> tuple[bool, str]:
     
     return True, ""
 
-def generate_actions(rows: List[Dict], vecs: List[List[float]]):
+def generate_actions(rows: List[Dict], vecs: List[List[float]], tag_names: Dict[int, str]):
     """组装 bulk actions"""
     for row, vec in zip(rows, vecs):
         try:
@@ -136,6 +165,7 @@ def generate_actions(rows: List[Dict], vecs: List[List[float]]):
                     "longitude": float(row["longitude"]) if row["longitude"] else None,
                     "join_count": row["join_count"] or 0,
                     "tag_scores": row["tag_scores"] or "",
+                    "top_tags": top_tag_names(row["tag_scores"], tag_names),
                     "destination_name": row["destination_name"],
                     "vector": vec,
                 },
@@ -174,6 +204,7 @@ def main():
     print(f"2. 读取目的地 {DESTINATION_ID} 的景点数据...")
     try:
         rows = fetch_attractions(conn, DESTINATION_ID)
+        tag_names = fetch_tag_names(conn)
         print(f"Fetched {len(rows)} attraction records for destination {DESTINATION_ID}.")
     except Exception as e:
         print(f"❌ 读取数据失败: {e}")
@@ -256,7 +287,7 @@ def main():
             
             # 批量写入ES
             try:
-                actions = list(generate_actions(batch, vecs))
+                actions = list(generate_actions(batch, vecs, tag_names))
                 if actions:
                     success_count, errors = helpers.bulk(es, actions, raise_on_error=False)
                     total_indexed += success_count
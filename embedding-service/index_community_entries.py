@@ -77,9 +77,10 @@ def fetch_community_entries(conn) -> List[Dict]:
     return rows
 
 def create_index_if_needed(es: Elasticsearch, dim: int):
-    """若索引不存在则创建"""
+    """若索引不存在则创建；已存在时补充 tag_names 字段映射"""
     if es.indices.exists(index=INDEX_NAME):
         print(f"Index '{INDEX_NAME}' already exists.")
+        es.indices.put_mapping(index=INDEX_NAME, properties={"tag_names": {"type": "keyword"}})
         return
 
     mapping = {
@@ -98,6 +99,7 @@ def create_index_if_needed(es: Elasticsearch, dim: int):
                 "author_username": {"type": "text"},
                 "author_id": {"type": "long"},
                 "tags": {"type": "text"},
+                "tag_names": {"type": "keyword"},
                 "vector": {
                     "type": "dense_vector",
                     "dims": dim,
@@ -183,6 +185,7 @@ def generate_actions(rows: List[Dict], vecs: List[List[float]]):
                     "author_username": row["author_username"],
                     "author_id": row["author_id"],
                     "tags": row["tags"] or "",
+                    "tag_names": [t for t in (row["tags"] or "").split(", ") if t],
                     "vector": vec,
                 },
             }
@@ -8,6 +8,7 @@
 """
 
 import os
+import json
 from typing import List, Dict
 import mysql.connector
 from sentence_transformers import SentenceTransformer
@@ -33,21 +34,50 @@ ES_CONFIG = {
 INDEX_NAME = os.getenv("ES_INDEX", "destinations")
 MODEL_PATH = "./models-chinese"  # 本地模型目录
 BATCH_SIZE = 64  # 一次编码多少条记录
+TOP_TAG_COUNT = 6  # 写入 top_tags 的标签数，与后端按前6个标签过滤保持一致
 # -------------------------------------------------
 
 
 def fetch_destinations(conn) -> List[Dict]:
-    """从 MySQL 读取 id、name、description"""
+    """从 MySQL 读取 id、name、description、tag_scores"""
     cursor = conn.cursor(dictionary=True)
-    cursor.execute("SELECT id, name, description FROM destinations")
+    cursor.execute("SELECT id, name, description, tag_scores FROM destinations")
     rows = cursor.fetchall()
     cursor.close()
     return rows
 
 
+def fetch_tag_names(conn) -> Dict[int, str]:
+    """读取标签字典 tag_id -> tag"""
+    cursor = conn.cursor(dictionary=True)
+    cursor.execute("SELECT id, tag FROM tags")
+    rows = cursor.fetchall()
+    cursor.close()
+    return {r["id"]: r["tag"] for r in rows}
+
+
+def top_tag_names(tag_scores, tag_names: Dict[int, str], n: int = TOP_TAG_COUNT) -> List[str]:
+    """解析 tag_scores JSON（{"7": 37, ...} 或按 tag_id-1 下标的数组），返回权重最高的 n 个标签名称"""
+    if not tag_scores:
+        return []
+    try:
+        parsed = json.loads(tag_scores)
+    except (TypeError, ValueError):
+        return []
+    if isinstance(parsed, dict):
+        scores = {int(k): float(v) for k, v in parsed.items() if isinstance(v, (int, float))}
+    elif isinstance(parsed, list):
+        scores = {i + 1: float(v) for i, v in enumerate(parsed) if isinstance(v, (int, float)) and v > 0}
+    else:
+        return []
+    ranked = sorted(scores.items(), key=lambda kv: kv[1], reverse=True)[:n]
+    return [tag_names[tag_id] for tag_id, _ in ranked if tag_id in tag_names]
+
+
 def create_index_if_needed(es: Elasticsearch, dim: int):
-    """若索引不存在则创建"""
+    """若索引不存在则创建；已存在时补充 top_tags 字段映射"""
     if es.indices.exists(index=INDEX_NAME):
+        es.indices.put_mapping(index=INDEX_NAME, properties={"top_tags": {"type": "keyword"}})
         return
 
     mapping = {
@@ -56,6 +86,7 @@ def create_index_if_needed(es: Elasticsearch, dim: int):
                 "id": {"type": "integer"},
                 "name": {"type": "text"},
                 "description": {"type": "text"},
+                "top_tags": {"type": "keyword"},
                 "vector": {
                     "type": "dense_vector",
                     "dims": dim,
@@ -69,7 +100,7 @@ def create_index_if_needed(es: Elasticsearch, dim: int):
     print(f"Index '{INDEX_NAME}' created.")
 
 
-def generate_actions(rows: List[Dict], vecs: List[List[float]]):
+def generate_actions(rows: List[Dict], vecs: List[List[float]], tag_names: Dict[int, str]):
     """组装 bulk actions"""
     for row, vec in zip(rows, vecs):
         yield {
@@ -79,6 +110,7 @@ def generate_actions(rows: List[Dict], vecs: List[List[float]]):
                 "id": row["id"],
                 "name": row["name"],
                 "description": row["description"],
+                "top_tags": top_tag_names(row["tag_scores"], tag_names),
                 "vector": vec,
             },
         }
@@ -100,6 +132,7 @@ def main():
 
     # 2. 读取数据
     rows = fetch_destinations(conn)
+    tag_names = fetch_tag_names(conn)
     print(f"Fetched {len(rows)} destination records.")
 
     # 3. 批量向量化 + 写入 ES
@@ -108,7 +141,7 @@ def main():
         batch = rows[i : i + BATCH_SIZE]
         texts = [f"{r['name']} {r['description'] or ''}" for r in batch]
         vecs = model.encode(texts, normalize_embeddings=True).tolist()
-        helpers.bulk(es, generate_actions(batch, vecs))
+        helpers.bulk(es, generate_actions(batch, vecs, tag_names))
         total_indexed += len(batch)
         print(f"Indexed {total_indexed}/{len(rows)}")
 
@@ -180,6 +180,7 @@ def index_community_entry(entry_id: int) -> bool:
             "author_username": row["author_username"],
             "author_id": row["author_id"],
             "tags": row["tags"] or "",
+            "tag_names": [t for t in (row["tags"] or "").split(", ") if t],
             "vector": vector,
         }
         
@@ -1,14 +1,46 @@
 import React, { useRef, useEffect } from 'react';
 import './ChatMain.css';
 
-export default function FriendChatMain({ current, msgs, input, setInput, onSend, myId, friendList }) {
+export default function FriendChatMain({ current, msgs, input, setInput, onSend, myId, friendList, hasOlder, onLoadOlder }) {
   const bodyRef = useRef(null);
+  // 上一次渲染时最早的消息和内容高度，用于区分“在顶部插入更早消息”和“新消息”
+  const firstIdRef = useRef(null);
+  const scrollHeightRef = useRef(0);
   useEffect(() => {
-    if (bodyRef.current) {
-      bodyRef.current.scrollTop = bodyRef.current.scrollHeight;
+    const body = bodyRef.current;
+    if (body) {
+      const firstId = msgs.length > 0 ? msgs[0].messageId : null;
+      const prepended = firstIdRef.current !== null && firstId !== firstIdRef.current
+        && msgs.some(m => m.messageId === firstIdRef.current);
+      if (prepended) {
+        // 加载更早消息后保持当前可见位置
+        body.scrollTop = body.scrollHeight - scrollHeightRef.current;
+      } else {
+        body.scrollTop = body.scrollHeight;
+      }
+      firstIdRef.current = firstId;
+      scrollHeightRef.current = body.scrollHeight;
     }
   }, [msgs]);
 
+  // 内容不足一屏时无法滚动，直接继续加载更早的消息
+  useEffect(() => {
+    const body = bodyRef.current;
+    if (body && hasOlder && onLoadOlder && msgs.length > 0 && body.scrollHeight <= body.clientHeight) {
+      onLoadOlder();
+    }
+  }, [msgs, hasOlder]);
+
+  const handleScroll = () => {
+    const body = bodyRef.current;
+    if (body) {
+      scrollHeightRef.current = body.scrollHeight;
+      if (body.scrollTop === 0 && hasOlder && onLoadOlder) {
+        onLoadOlder();
+      }
+    }
+  };
+
   return (
     <div className="chat-main">
       <div className="chat-header">
@@ -20,7 +52,10 @@ export default function FriendChatMain({ current, msgs, input, setInput, onSend,
           <span className="name" style={{color:'#888'}}>Please select a friend or group to start chatting</span>
         )}
       </div>
-      <div className="chat-body" ref={bodyRef}>
+      <div className="chat-body" ref={bodyRef} onScroll={handleScroll}>
+        {current && hasOlder && msgs.length > 0 && (
+          <div style={{textAlign:'center', color:'#bbb', fontSize:'0.88em', marginBottom:'12px'}}>上滑加载更早的消息</div>
+        )}
         {current && msgs.map((msg, i) => {
           const isMe = String(msg.fromId) === String(myId);
           const senderName = isMe ? '我' : (msg.userName || '未知用户');
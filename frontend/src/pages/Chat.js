@@ -8,7 +8,6 @@ import './Chat.css';
 import { Client } from '@stomp/stompjs';
 import SockJS from 'sockjs-client';
 
-
 function UserDropdown({ results, loading, onView, onAddFriend, addingId, visible, onClose, friendIds, myId }) {
   const ref = useRef();
   useEffect(() => {
@@ -81,6 +80,10 @@ export default function Chat() {
   const [current, setCurrent] = useState(null);
   const [input, setInput] = useState('');
   const [msgs, setMsgs] = useState([]);
+  // 私聊是否可能还有更早的消息（某页返回空时置为 false）
+  const [hasOlderHistory, setHasOlderHistory] = useState(false);
+  const loadingOlderRef = useRef(false);
+  const currentIdRef = useRef(null);
   const [searchInput, setSearchInput] = useState('');
   const [searchResults, setSearchResults] = useState([]);
   const [searchLoading, setSearchLoading] = useState(false);
@@ -450,12 +453,16 @@ export default function Chat() {
     }, 350);
   };
 
-  // 获取两名用户的历史聊天记录（POST + form参数）
-  const fetchChatHistory = async (userId1, userId2) => {
-    console.log(`[Chat] 请求聊天记录: userId1=${userId1}, userId2=${userId2}`);
+  // 获取两名用户的一页聊天记录（POST + form参数），页大小由后端决定，结果按消息ID升序
+  // 不传 beforeId 时返回最新一页；传入时返回早于该消息的一页
+  const fetchChatHistory = async (userId1, userId2, beforeId = null) => {
+    console.log(`[Chat] 请求聊天记录: userId1=${userId1}, userId2=${userId2}, beforeId=${beforeId}`);
     const form = new URLSearchParams();
     form.append('userId1', userId1);
     form.append('userId2', userId2);
+    if (beforeId !== null) {
+      form.append('beforeId', beforeId);
+    }
     const res = await fetch('/api/chat/history', {
       method: 'POST',
       body: form,
@@ -465,9 +472,35 @@ export default function Chat() {
       console.error(`[Chat] 获取聊天记录失败: HTTP ${res.status}`);
       throw new Error('获取聊天记录失败');
     }
-    const data = await res.json();
-    console.log(`[Chat] 聊天记录响应:`, data);
-    return data;
+    const page = await res.json();
+    console.log(`[Chat] 聊天记录响应: ${Array.isArray(page) ? page.length : 0} 条`);
+    return Array.isArray(page) ? page : [];
+  };
+
+  // 私聊消息区滚动到顶部时加载更早的一页，直到某页返回空
+  const loadOlderHistory = async () => {
+    if (tab !== 'friend' || !myId || !current?.id || !hasOlderHistory || loadingOlderRef.current) return;
+    const oldest = msgs.find(m => m.messageId);
+    if (!oldest) return;
+    const friendId = current.id;
+    loadingOlderRef.current = true;
+    try {
+      const page = await fetchChatHistory(myId, friendId, oldest.messageId);
+      // 加载期间已切换会话时丢弃结果
+      if (currentIdRef.current !== friendId) return;
+      if (page.length === 0) {
+        setHasOlderHistory(false);
+        return;
+      }
+      setMsgs(prev => {
+        const known = new Set(prev.map(m => m.messageId));
+        return page.filter(m => !known.has(m.messageId)).concat(prev);
+      });
+    } catch {
+      // 加载失败时保留已有消息，下次滚动到顶部再试
+    } finally {
+      loadingOlderRef.current = false;
+    }
   };
 
   // 拉取所有群聊历史消息
@@ -503,15 +536,23 @@ export default function Chat() {
     }
   }, [tab, current, groupHistories]);
 
-  // 私聊历史消息逻辑保持不变
+  useEffect(() => {
+    currentIdRef.current = current?.id ?? null;
+  }, [current]);
+
+  // 私聊只加载最新一页，更早的消息在滚动到顶部时按需加载
   useEffect(() => {
     if (!myId || !current?.id) return;
     if (tab === 'friend') {
       fetchChatHistory(myId, current.id)
         .then(msgs => {
           setMsgs(msgs);
+          setHasOlderHistory(msgs.length > 0);
         })
-        .catch(() => setMsgs([]));
+        .catch(() => {
+          setMsgs([]);
+          setHasOlderHistory(false);
+        });
     }
   }, [myId, current, tab]);
 
@@ -525,7 +566,7 @@ export default function Chat() {
     console.log('[WebSocket订阅启动] myId:', myId, '类型:', typeof myId);
     const topicFriend = `/topic/friend.${myId}`;
     const topicGroupMember = `/topic/group.member.${myId}`;
-    const topicChat = `/topic/chat.${myId}`;
+    const topicChat = '/user/queue/chat';
     console.log('[WebSocket订阅topic]', topicFriend, topicGroupMember, topicChat);
     const client = new Client({
       webSocketFactory: () => new SockJS(wsUrl),
@@ -624,7 +665,7 @@ export default function Chat() {
   // 动态订阅私聊消息推送，保证好友聊天信息实时显示
   useEffect(() => {
     if (!myId) return;
-    const topicChat = `/topic/chat.${myId}`;
+    const topicChat = '/user/queue/chat';
     const client = new Client({
       webSocketFactory: () => new SockJS(wsUrl),
       reconnectDelay: 5000,
@@ -918,10 +959,12 @@ export default function Chat() {
         fetchChatHistory(myId, current.id)
           .then(msgs => {
             setMsgs(msgs);
+            setHasOlderHistory(msgs.length > 0);
             console.log(`[切换好友] 当前好友:`, current, `历史消息条数:`, msgs.length);
           })
           .catch(() => {
             setMsgs([]);
+            setHasOlderHistory(false);
             console.log(`[切换好友] 当前好友:`, current, '获取历史消息失败，消息区已清空');
           });
       }
@@ -1002,6 +1045,8 @@ export default function Chat() {
             <FriendChatMain
               current={current}
               msgs={msgs}
+              hasOlder={hasOlderHistory}
+              onLoadOlder={loadOlderHistory}
               input={input}
               setInput={setInput}
               onSend={handleSend}
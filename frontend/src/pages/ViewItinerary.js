@@ -101,20 +101,8 @@ const ViewItinerary = () => {
         );
 
         dailyPlan = itinerary.itineraryDays.map((day, idx) => {
-          // 获取该天的所有活动
-          const allActivities = activityLists[idx];
-          // 创建活动ID到活动对象的映射
-          const activityMap = new Map(allActivities.map(activity => [activity.id, activity]));
-          
-          // 按链表顺序排序活动
-          const orderedActivities = [];
-          let currentId = day.firstActivityId;
-          
-          while (currentId && activityMap.has(currentId)) {
-            const currentActivity = activityMap.get(currentId);
-            orderedActivities.push(currentActivity);
-            currentId = currentActivity.nextId;
-          }
+          // 获取该天的所有活动（接口已按位置排序）
+          const orderedActivities = activityLists[idx];
           
           return {
             dayId: day.id,